@@ -11,6 +11,7 @@ import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import net.sourceforge.pmd.cli.commands.typesupport.internal.CpdLanguageTypeSupport;
+import net.sourceforge.pmd.cli.commands.typesupport.internal.NumThreadsConverter;
 import net.sourceforge.pmd.cli.internal.CliExitCode;
 import net.sourceforge.pmd.cpd.CPDConfiguration;
 import net.sourceforge.pmd.cpd.CpdAnalysis;
@@ -90,6 +91,21 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
             defaultValue = CpdLanguagePropertiesDefaults.DEFAULT_SKIP_BLOCKS_PATTERN)
     private String skipBlocksPattern;
 
+    private int threads;
+
+    @Option(names = {"--threads", "-t"}, description =
+        "Set the number of threads used to tokenize files. This can be an integer, or a float (or int) followed by the letter `C`, eg `0.5C` or `1C`. "
+            + "In the latter case, the float will be multiplied by the number of cores of the host machine, and rounded down to an integer. "
+            + "If the specified number of threads is zero, then CPD will use the main thread for everything.",
+        defaultValue = "0", converter = NumThreadsConverter.class)
+    public void setThreads(final int threads) {
+        if (threads < 0) {
+            throw new ParameterException(spec.commandLine(), "Thread count should be a positive number or zero, found " + threads + " instead.");
+        }
+
+        this.threads = threads;
+    }
+
     @Override
     protected FileCollectionOptions<CPDConfiguration> getFileCollectionOptions() {
         return files;
@@ -118,6 +134,7 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
         configuration.setRendererName(rendererName);
         configuration.setSkipBlocksPattern(skipBlocksPattern);
         configuration.setSkipDuplicates(skipDuplicates);
+        configuration.setThreads(threads);
 
         if (skipLexicalErrors) {
             configuration.getReporter().warn("--skip-lexical-errors is deprecated. Use --no-fail-on-error instead.");
@@ -25,6 +25,7 @@ import net.sourceforge.pmd.benchmark.TextTimingReportRenderer;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimingReport;
 import net.sourceforge.pmd.benchmark.TimingReportRenderer;
+import net.sourceforge.pmd.cache.AnalysisCacheFormat;
 import net.sourceforge.pmd.cli.commands.typesupport.internal.NumThreadsConverter;
 import net.sourceforge.pmd.cli.commands.typesupport.internal.PmdLanguageTypeSupport;
 import net.sourceforge.pmd.cli.commands.typesupport.internal.PmdLanguageVersionTypeSupport;
@@ -105,6 +106,8 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
 
     private Path cacheLocation;
 
+    private AnalysisCacheFormat cacheFormat;
+
     private boolean noCache;
 
     private boolean showProgressBar;
@@ -211,6 +214,23 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         this.cacheLocation = cacheLocation;
     }
 
+    @Option(names = "--cache-format",
+            description = "The format of the cache file for incremental analysis. The 'indexed' format only reads "
+                    + "the results of the analysed files, and doesn't rewrite the results of unchanged files. "
+                    + "With 'sharded', the cache location is a directory, in which the results are split into "
+                    + "several files, written in parallel. "
+                    + "With 'content_addressed', the cache location is a directory, in which the results are "
+                    + "stored by file content, so that it can be shared by several checkouts of a project. "
+                    + "With 'file_with_dependencies', the classes of the auxclasspath that each file depends on are "
+                    + "recorded, so that a change to the auxclasspath only invalidates the results of the files that "
+                    + "depend on a changed class. "
+                    + "This option is ignored if no '--cache' is specified.%n"
+                    + "Valid values (case insensitive): ${COMPLETION-CANDIDATES}",
+            defaultValue = "file")
+    public void setCacheFormat(final AnalysisCacheFormat cacheFormat) {
+        this.cacheFormat = cacheFormat;
+    }
+
     @Option(names = "--no-cache", description = "Explicitly disable incremental analysis. The '-cache' option is ignored if this switch is present in the command line.")
     public void setNoCache(final boolean noCache) {
         this.noCache = noCache;
@@ -260,7 +280,7 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         configuration.setRuleSets(rulesets);
         configuration.setShowSuppressedViolations(showSuppressed);
         configuration.setSuppressMarker(suppressMarker);
-        configuration.setAnalysisCacheLocation(cacheLocation != null ? cacheLocation.toString() : null);
+        configuration.setAnalysisCacheLocation(cacheLocation != null ? cacheLocation.toString() : null, cacheFormat);
         configuration.setIgnoreIncrementalAnalysis(noCache);
         configuration.setThreads(threads);
 
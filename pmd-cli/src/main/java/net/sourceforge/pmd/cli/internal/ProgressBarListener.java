@@ -30,9 +30,18 @@ public final class ProgressBarListener implements GlobalAnalysisListener {
     @Override
     public ListenerInitializer initializer() {
         return new ListenerInitializer() {
+            // unknown if the analysis starts while the files are still being collected
+            private int totalFiles = -1;
+
             @Override
             public void setNumberOfFilesToAnalyze(int totalFiles) {
-                // We need to delay initialization until we know how many files there are to avoid a first bogus render
+                this.totalFiles = totalFiles;
+            }
+
+            @Override
+            public void close() {
+                // We need to delay initialization until we know how many files there are to avoid a first bogus render.
+                // A negative max shows an indefinite progress bar.
                 progressBar = new ProgressBarBuilder()
                         .setTaskName("Processing files")
                         .setStyle(ProgressBarStyle.ASCII)
@@ -35,6 +35,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -176,6 +177,71 @@ class PmdCliTest extends BaseCliTest {
         assertThat(readString(reportFile), not(containsString("Found 1 violation.")));
     }
 
+    @Test
+    void testIndexedCacheFormat() throws Exception {
+        Path cacheFile = tempRoot().resolve("pmd.cache");
+        Path reportFile = tempRoot().resolve("out/reportFile.txt");
+
+        for (int run = 0; run < 2; run++) {
+            // the second run reports the violation from the cache
+            runCli(new RunCliArgumentBuilder()
+                           .expectedExitCode(VIOLATIONS_FOUND)
+                           .resetArgs()
+                           .args("check", "--no-progress", "--cache", cacheFile.toString(), "--cache-format", "indexed",
+                                 "--dir", srcDir.toString(), "--rulesets", RULESET_WITH_VIOLATION, "--report-file", reportFile.toString()));
+            assertThat(readString(reportFile), containsString("Violation from ReportAllRootNodes"));
+        }
+
+        // indexed cache files start with the magic number "PMDC"
+        byte[] magic = new byte[4];
+        System.arraycopy(Files.readAllBytes(cacheFile), 0, magic, 0, 4);
+        assertEquals("PMDC", new String(magic, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void testShardedCacheFormat() throws Exception {
+        Path cacheDir = tempRoot().resolve("pmd-cache");
+        Path reportFile = tempRoot().resolve("out/reportFile.txt");
+
+        for (int run = 0; run < 2; run++) {
+            // the second run reports the violation from the cache
+            runCli(new RunCliArgumentBuilder()
+                           .expectedExitCode(VIOLATIONS_FOUND)
+                           .resetArgs()
+                           .args("check", "--no-progress", "--cache", cacheDir.toString(), "--cache-format", "sharded",
+                                 "--threads", "2", "--dir", srcDir.toString(), "--rulesets", RULESET_WITH_VIOLATION,
+                                 "--report-file", reportFile.toString()));
+            assertThat(readString(reportFile), containsString("Violation from ReportAllRootNodes"));
+        }
+
+        assertTrue(Files.isDirectory(cacheDir));
+        try (Stream<Path> shards = Files.list(cacheDir)) {
+            assertNotEquals(0, shards.count(), "No shard was written");
+        }
+    }
+
+    @Test
+    void testContentAddressedCacheFormat() throws Exception {
+        Path cacheDir = tempRoot().resolve("pmd-cache");
+        Path reportFile = tempRoot().resolve("out/reportFile.txt");
+
+        for (int run = 0; run < 2; run++) {
+            // the second run reports the violation from the cache
+            runCli(new RunCliArgumentBuilder()
+                           .expectedExitCode(VIOLATIONS_FOUND)
+                           .resetArgs()
+                           .args("check", "--no-progress", "--cache", cacheDir.toString(),
+                                 "--cache-format", "content_addressed", "--dir", srcDir.toString(),
+                                 "--rulesets", RULESET_WITH_VIOLATION, "--report-file", reportFile.toString()));
+            assertThat(readString(reportFile), containsString("Violation from ReportAllRootNodes"));
+        }
+
+        assertTrue(Files.isDirectory(cacheDir));
+        try (Stream<Path> entries = Files.walk(cacheDir)) {
+            assertNotEquals(0, entries.filter(Files::isRegularFile).count(), "No entry was written");
+        }
+    }
+
     @Test
     void testFileCollectionWithUnknownFiles() throws Exception {
         Path reportFile = tempRoot().resolve("out/reportFile.txt");
@@ -22,9 +22,13 @@ import java.util.stream.Stream;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.LoggerFactory;
 
+import net.sourceforge.pmd.cache.AnalysisCacheFormat;
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
+import net.sourceforge.pmd.cache.internal.ContentAddressedAnalysisCache;
 import net.sourceforge.pmd.cache.internal.FileAnalysisCache;
+import net.sourceforge.pmd.cache.internal.IndexedFileAnalysisCache;
 import net.sourceforge.pmd.cache.internal.NoopAnalysisCache;
+import net.sourceforge.pmd.cache.internal.ShardedAnalysisCache;
 import net.sourceforge.pmd.internal.util.IOUtil;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageRegistry;
@@ -544,9 +548,51 @@ public class PMDConfiguration extends AbstractConfiguration {
      *                      to disable the cache.
      */
     public void setAnalysisCacheLocation(final String cacheLocation) {
-        setAnalysisCache(cacheLocation == null
-                         ? new NoopAnalysisCache()
-                         : new FileAnalysisCache(new File(cacheLocation)));
+        setAnalysisCacheLocation(cacheLocation, AnalysisCacheFormat.FILE);
+    }
+
+    /**
+     * Sets the location and format of the analysis cache to be used. Setting a
+     * location of {@code null} will cause a Noop AnalysisCache to be used.
+     * If incremental analysis was explicitly disabled ({@link #isIgnoreIncrementalAnalysis()}),
+     * then this method is a noop.
+     *
+     * @param cacheLocation The location of the analysis cache to be used. Use {@code null}
+     *                      to disable the cache. This is a directory for the
+     *                      {@linkplain AnalysisCacheFormat#SHARDED sharded} and
+     *                      {@linkplain AnalysisCacheFormat#CONTENT_ADDRESSED content-addressed}
+     *                      formats, a file otherwise.
+     * @param format        The format of the cache
+     *
+     * @since 7.27.0
+     */
+    public void setAnalysisCacheLocation(final String cacheLocation, final @NonNull AnalysisCacheFormat format) {
+        Objects.requireNonNull(format, "Cache format must not be null");
+        if (cacheLocation == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+            return;
+        }
+        final File location = new File(cacheLocation);
+        switch (format) {
+        case INDEXED:
+            setAnalysisCache(new IndexedFileAnalysisCache(location));
+            break;
+        case SHARDED:
+            // the threads may be configured after the cache
+            setAnalysisCache(new ShardedAnalysisCache(location, ShardedAnalysisCache.DEFAULT_SHARD_COUNT,
+                                                      this::getThreads));
+            break;
+        case CONTENT_ADDRESSED:
+            setAnalysisCache(new ContentAddressedAnalysisCache(location));
+            break;
+        case FILE_WITH_DEPENDENCIES:
+            setAnalysisCache(new FileAnalysisCache(location, true));
+            break;
+        case FILE:
+        default:
+            setAnalysisCache(new FileAnalysisCache(location));
+            break;
+        }
     }
 
 
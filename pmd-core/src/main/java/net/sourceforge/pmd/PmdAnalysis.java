@@ -4,9 +4,12 @@
 
 package net.sourceforge.pmd;
 
+import static net.sourceforge.pmd.lang.document.InternalApiBridge.deferDirectoryWalks;
 import static net.sourceforge.pmd.lang.document.InternalApiBridge.newCollector;
+import static net.sourceforge.pmd.lang.document.InternalApiBridge.streamFiles;
 import static net.sourceforge.pmd.lang.rule.InternalApiBridge.loadRuleSetsWithoutException;
 import static net.sourceforge.pmd.lang.rule.InternalApiBridge.ruleSetApplies;
+import static net.sourceforge.pmd.reporting.InternalApiBridge.fileCollected;
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 
 import java.nio.file.Path;
@@ -19,7 +22,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
@@ -30,6 +36,7 @@ import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.cache.internal.AnalysisCacheListener;
 import net.sourceforge.pmd.cache.internal.NoopAnalysisCache;
 import net.sourceforge.pmd.internal.LogMessages;
+import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
 import net.sourceforge.pmd.internal.util.FileCollectionUtil;
 import net.sourceforge.pmd.internal.util.IOUtil;
@@ -43,6 +50,7 @@ import net.sourceforge.pmd.lang.LanguagePropertyBundle;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
+import net.sourceforge.pmd.lang.document.CollectedFileQueue;
 import net.sourceforge.pmd.lang.document.FileCollector;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.Rule;
@@ -50,6 +58,7 @@ import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.lang.rule.RuleSetLoader;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
+import net.sourceforge.pmd.renderers.EmptyRenderer;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.reporting.ConfigurableFileNameRenderer;
 import net.sourceforge.pmd.reporting.DeterministicOutputListenerWrapper;
@@ -168,7 +177,14 @@ public final class PmdAnalysis implements AutoCloseable {
             config.getLanguageVersionDiscoverer(),
             reporter
         );
-
+        if (SystemProps.isParallelFileWalkMode()) {
+            // with 0 threads, the analysis runs on the main thread
+            this.collector.setThreads(Math.max(1, config.getThreads()));
+        }
+        if (canStreamFiles()) {
+            // directories are walked while the files are analysed
+            deferDirectoryWalks(this.collector);
+        }
     }
 
     /**
@@ -384,9 +400,103 @@ public final class PmdAnalysis implements AutoCloseable {
 
     void performAnalysisImpl(List<? extends GlobalReportBuilderListener> extraListeners) {
         try (FileCollector files = collector) {
-            files.filterLanguages(getApplicableLanguages(false));
-            performAnalysisImpl(extraListeners, files.getCollectedFiles());
+            Set<Language> languages = getApplicableLanguages(false);
+            if (canStreamFiles()) {
+                performStreamingAnalysis(extraListeners, files);
+            } else {
+                files.filterLanguages(languages);
+                performAnalysisImpl(extraListeners, files.getCollectedFiles());
+            }
+        }
+    }
+
+    /**
+     * Whether the files can be analysed while they are being collected.
+     * This is only done in {@linkplain SystemProps#isPipelinedMode() pipelined mode},
+     * as the other processors wait for all files anyway, and without an
+     * analysis cache, which needs all files to be loaded.
+     */
+    private boolean canStreamFiles() {
+        return SystemProps.isPipelinedMode()
+            && !SystemProps.isVirtualThreadsMode()
+            && configuration.getThreads() > 0
+            && configuration.getAnalysisCache() instanceof NoopAnalysisCache;
+    }
+
+    /**
+     * Like {@link #performAnalysisImpl(List, List)}, but the analysis starts
+     * while the files are still being collected: a separate thread walks the
+     * directories, and hands over each file to the processor of its language
+     * as soon as it is found. The listeners are initialized before the files
+     * are known, and receive the events of each file as it is analysed.
+     */
+    private void performStreamingAnalysis(List<? extends GlobalReportBuilderListener> extraListeners,
+                                          FileCollector files) {
+        RuleSets rulesets = new RuleSets(this.ruleSets);
+        // the renderers that need a deterministic order learn it as the files are collected
+        List<DeterministicOutputListenerWrapper> orderedListeners = new ArrayList<>(1);
+        // there is no analysis cache, so no cache listener
+        GlobalAnalysisListener listener = startListeners(extraListeners, GlobalAnalysisListener.noop(), null, orderedListeners);
+        runAnalysis(rulesets, Collections.emptyList(), listener,
+            (lpRegistry, analysisTask, analyses) -> launchStreamingAnalyses(files, orderedListeners, lpRegistry, analysisTask, analyses));
+    }
+
+    private void launchStreamingAnalyses(FileCollector files,
+                                         List<DeterministicOutputListenerWrapper> orderedListeners,
+                                         LanguageProcessorRegistry lpRegistry,
+                                         AnalysisTask analysisTask,
+                                         List<AutoCloseable> analyses) {
+        // one queue per language, so that each processor only sees its files
+        Map<Language, CollectedFileQueue> fileQueues = new HashMap<>();
+        for (Language lang : lpRegistry.getLanguages()) {
+            fileQueues.put(lang, new CollectedFileQueue(() -> filesOfLanguage(files, lang)));
+        }
+        AtomicInteger numFiles = new AtomicInteger();
+        AtomicReference<Throwable> collectionFailure = new AtomicReference<>();
+        Thread fileWalker = new Thread(() -> {
+            try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.COLLECT_FILES)) {
+                streamFiles(files, file -> {
+                    CollectedFileQueue queue = fileQueues.get(file.getLanguageVersion().getLanguage());
+                    if (queue != null) {
+                        numFiles.incrementAndGet();
+                        for (DeterministicOutputListenerWrapper orderedListener : orderedListeners) {
+                            fileCollected(orderedListener, file.getFileId());
+                        }
+                        queue.add(file);
+                    }
+                });
+            } catch (Throwable e) { // NOPMD AvoidCatchingThrowable - reported on the main thread
+                collectionFailure.set(e);
+            } finally {
+                fileQueues.values().forEach(CollectedFileQueue::complete);
+            }
+        }, "PmdFileWalker");
+        fileWalker.start();
+
+        for (Language lang : lpRegistry.getLanguages()) {
+            AnalysisTask languageTask = InternalApiBridge.taskWithFileQueue(analysisTask, fileQueues.get(lang));
+            analyses.add(lpRegistry.getProcessor(lang).launchAnalysis(languageTask));
         }
+
+        try {
+            fileWalker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reporter.errorEx("Interrupted while collecting files", e);
+            throw new RuntimeException("Interrupted while collecting files", e);
+        }
+        if (collectionFailure.get() != null) {
+            reporter.errorEx("Exception while collecting files", collectionFailure.get());
+        }
+        if (numFiles.get() == 0) {
+            reporter.warn("No files to analyze. Check input paths and exclude parameters, use --debug to see file collection traces.");
+        }
+    }
+
+    private static List<TextFile> filesOfLanguage(FileCollector files, Language language) {
+        List<TextFile> result = new ArrayList<>(files.getCollectedFiles());
+        result.removeIf(it -> !it.getLanguageVersion().getLanguage().equals(language));
+        return result;
     }
 
     void performAnalysisImpl(List<? extends GlobalReportBuilderListener> extraListeners, List<TextFile> textFiles) {
@@ -396,27 +506,60 @@ public final class PmdAnalysis implements AutoCloseable {
 
         RuleSets rulesets = new RuleSets(this.ruleSets);
 
-        GlobalAnalysisListener listener;
+        @SuppressWarnings("PMD.CloseResource")
+        AnalysisCacheListener cacheListener = new AnalysisCacheListener(configuration.getAnalysisCache(), rulesets,
+                AuxClasspathUtil.getAuxClasspath(configuration), textFiles);
+        GlobalAnalysisListener listener = startListeners(extraListeners, cacheListener, textFiles, new ArrayList<>(1));
+
+        // Note the analysis task is shared: all processors see
+        // the same file list, which may contain files for other
+        // languages.
+        runAnalysis(rulesets, textFiles, listener, (lpRegistry, analysisTask, analyses) -> {
+            for (Language lang : lpRegistry.getLanguages()) {
+                analyses.add(lpRegistry.getProcessor(lang).launchAnalysis(analysisTask));
+            }
+        });
+    }
+
+    /**
+     * Creates the listener of the analysis and initializes it.
+     *
+     * @param textFiles        The files to analyse, or null if they are still being collected
+     * @param orderedListeners Receives the listeners that reorder the events of the renderers
+     */
+    private GlobalAnalysisListener startListeners(List<? extends GlobalReportBuilderListener> extraListeners,
+                                                  GlobalAnalysisListener cacheListener,
+                                                  @Nullable List<TextFile> textFiles,
+                                                  List<DeterministicOutputListenerWrapper> orderedListeners) {
         try {
-            @SuppressWarnings("PMD.CloseResource")
-            AnalysisCacheListener cacheListener = new AnalysisCacheListener(configuration.getAnalysisCache(), rulesets,
-                    AuxClasspathUtil.getAuxClasspath(configuration), textFiles);
-            listener = GlobalAnalysisListener.tee(listOf(createComposedRendererListener(renderers),
-                                                         GlobalAnalysisListener.tee(listeners),
-                                                         GlobalAnalysisListener.tee(extraListeners),
-                                                         cacheListener));
-            
+            GlobalAnalysisListener listener = GlobalAnalysisListener.tee(listOf(createComposedRendererListener(renderers, orderedListeners),
+                                                                                GlobalAnalysisListener.tee(listeners),
+                                                                                GlobalAnalysisListener.tee(extraListeners),
+                                                                                cacheListener));
+
             // Initialize listeners
             try (ListenerInitializer initializer = listener.initializer()) {
-                initializer.setNumberOfFilesToAnalyze(textFiles.size());
-                initializer.setFilesToAnalyze(CollectionUtil.map(textFiles, TextFile::getFileId));
+                if (textFiles != null) {
+                    initializer.setNumberOfFilesToAnalyze(textFiles.size());
+                    initializer.setFilesToAnalyze(CollectionUtil.map(textFiles, TextFile::getFileId));
+                }
                 initializer.setFileNameRenderer(fileNameRenderer());
             }
+            return listener;
         } catch (Exception e) {
             reporter.errorEx("Exception while initializing analysis listeners", e);
             throw new RuntimeException("Exception while initializing analysis listeners", e);
         }
+    }
 
+    /**
+     * Launches the analysis of the applicable languages, waits for it
+     * to finish, and closes the listener.
+     *
+     * @param textFiles The files of the analysis task
+     * @param launcher  Launches the analysis of each language processor
+     */
+    private void runAnalysis(RuleSets rulesets, List<TextFile> textFiles, GlobalAnalysisListener listener, AnalysisLauncher launcher) {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.FILE_PROCESSING)) {
             for (final Rule rule : removeBrokenRules(rulesets)) {
                 // todo Just like we throw for invalid properties, "broken rules"
@@ -434,9 +577,6 @@ public final class PmdAnalysis implements AutoCloseable {
                 langProperties,
                 reporter
             )) {
-                // Note the analysis task is shared: all processors see
-                // the same file list, which may contain files for other
-                // languages.
                 AnalysisTask analysisTask = InternalApiBridge.createAnalysisTask(
                     rulesets,
                     textFiles,
@@ -449,9 +589,7 @@ public final class PmdAnalysis implements AutoCloseable {
 
                 List<AutoCloseable> analyses = new ArrayList<>();
                 try {
-                    for (Language lang : lpRegistry.getLanguages()) {
-                        analyses.add(lpRegistry.getProcessor(lang).launchAnalysis(analysisTask));
-                    }
+                    launcher.launch(lpRegistry, analysisTask, analyses);
                 } finally {
                     Exception e = IOUtil.closeAll(analyses);
                     if (e != null) {
@@ -473,36 +611,61 @@ public final class PmdAnalysis implements AutoCloseable {
         }
     }
 
+    /**
+     * Launches the analyses of the language processors of an analysis.
+     */
+    @FunctionalInterface
+    private interface AnalysisLauncher {
 
-    private GlobalAnalysisListener createComposedRendererListener(List<Renderer> renderers) throws Exception {
+        /**
+         * Launches the analyses and adds them to the given list, as soon
+         * as they are launched. They are closed afterwards.
+         */
+        void launch(LanguageProcessorRegistry lpRegistry, AnalysisTask analysisTask, List<AutoCloseable> analyses);
+    }
+
+    private GlobalAnalysisListener createComposedRendererListener(List<Renderer> renderers,
+                                                                  List<DeterministicOutputListenerWrapper> orderedListeners) throws Exception {
         if (renderers.isEmpty()) {
             return GlobalAnalysisListener.noop();
         }
 
-        boolean isAnyIncremental = false;
-
         List<GlobalAnalysisListener> rendererListeners = new ArrayList<>(renderers.size());
+        List<GlobalAnalysisListener> orderSensitiveListeners = new ArrayList<>(renderers.size());
         for (Renderer renderer : renderers) {
-            isAnyIncremental |= !(renderer instanceof AbstractAccumulatingRenderer);
-
             try {
                 @SuppressWarnings("PMD.CloseResource")
                 GlobalAnalysisListener listener =
                     Objects.requireNonNull(renderer.newListener(), "Renderer should provide non-null listener");
-                rendererListeners.add(listener);
+                if (isOrderSensitive(renderer)) {
+                    orderSensitiveListeners.add(listener);
+                } else {
+                    rendererListeners.add(listener);
+                }
             } catch (Exception ioe) {
                 // close listeners so far, throw their close exception or the ioe
-                IOUtil.ensureClosed(rendererListeners, ioe);
+                IOUtil.ensureClosed(CollectionUtil.concatView(rendererListeners, orderSensitiveListeners), ioe);
                 throw AssertionUtil.shouldNotReachHere("ensureClosed should have thrown", ioe);
             }
         }
-        GlobalAnalysisListener rendererListener = GlobalAnalysisListener.tee(rendererListeners);
-        // If all are non-incremental then they do their own buffering and should sort the events.
-        // If any is incremental then we need to reorder the events for deterministic output.
-        if (isAnyIncremental) {
-            rendererListener = new DeterministicOutputListenerWrapper(rendererListener);
+        // The incremental renderers output the events in the order they are received,
+        // we need to reorder the events for deterministic output.
+        if (!orderSensitiveListeners.isEmpty()) {
+            DeterministicOutputListenerWrapper wrapper =
+                new DeterministicOutputListenerWrapper(GlobalAnalysisListener.tee(orderSensitiveListeners));
+            orderedListeners.add(wrapper);
+            rendererListeners.add(wrapper);
         }
-        return rendererListener;
+        return GlobalAnalysisListener.tee(rendererListeners);
+    }
+
+    /**
+     * Whether the output of the renderer depends on the order in which the files
+     * are analysed. Accumulating renderers do their own buffering and should sort
+     * the events, and the empty renderer outputs nothing.
+     */
+    private static boolean isOrderSensitive(Renderer renderer) {
+        return !(renderer instanceof AbstractAccumulatingRenderer) && !(renderer instanceof EmptyRenderer);
     }
 
     private Set<Language> getApplicableLanguages(boolean quiet) {
@@ -14,6 +14,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
+import net.sourceforge.pmd.annotation.Experimental;
+
 /**
  * A time tracker class to measure time spent on different sections of PMD analysis.
  * The class is thread-aware, allowing to differentiate CPU and wall clock time.
@@ -158,6 +160,56 @@ public final class TimeTracker {
         }
     }
 
+    /**
+     * Returns true if time is being tracked, that is, between {@link #startGlobalTracking()}
+     * and {@link #stopGlobalTracking()}. Callers that measure time themselves
+     * with {@link #recordOperation(TimedOperationCategory, String, long, long)}
+     * can check this to avoid measuring when it's not needed.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public static boolean isTrackingTime() {
+        return trackTime;
+    }
+
+    /**
+     * Records an operation whose time was measured by the caller. This
+     * is useful for operations that are interleaved with others, and can
+     * therefore not be tracked with {@link #startOperation(TimedOperationCategory, String)}.
+     * The operation is counted as a single call, which is nested in
+     * the operation currently tracked on this thread.
+     *
+     * @param category         The category under which to track the operation.
+     * @param label            A label to be added to the category.
+     * @param elapsedNanos     The time spent in the operation, in nanos.
+     * @param extraDataCounter An optional additional data counter to track along the measurements.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public static void recordOperation(final TimedOperationCategory category, final String label,
+                                       final long elapsedNanos, final long extraDataCounter) {
+        if (!trackTime) {
+            return;
+        }
+
+        final TimedOperationKey operation = new TimedOperationKey(category, label);
+        TimedResult result = ACCUMULATED_RESULTS.get(operation);
+        if (result == null) {
+            ACCUMULATED_RESULTS.putIfAbsent(operation, new TimedResult());
+            result = ACCUMULATED_RESULTS.get(operation);
+        }
+
+        result.accumulate(elapsedNanos, 0, extraDataCounter);
+        final Queue<TimerEntry> queue = TIMER_ENTRIES.get();
+        if (!queue.isEmpty()) {
+            queue.peek().inNestedOperationsNanos += elapsedNanos;
+        }
+    }
+
     public static void bench(String label, Runnable runnable) {
         try (TimedOperation ignored = startOperation(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, label)) {
             runnable.run();
@@ -206,13 +258,21 @@ public final class TimeTracker {
          */
         /* package */ long accumulate(final TimerEntry timerEntry, final long extraData) {
             final long delta = System.nanoTime() - timerEntry.start;
+            accumulate(delta, timerEntry.inNestedOperationsNanos, extraData);
+            return delta;
+        }
 
+        /**
+         * Adds a single call to the results.
+         * @param delta The time spent in the call in nanos
+         * @param nestedNanos The time spent in nested operations in nanos
+         * @param extraData Any extra data counter to be added
+         */
+        /* package */ void accumulate(final long delta, final long nestedNanos, final long extraData) {
             totalTimeNanos.getAndAdd(delta);
-            selfTimeNanos.getAndAdd(delta - timerEntry.inNestedOperationsNanos);
+            selfTimeNanos.getAndAdd(delta - nestedNanos);
             callCount.getAndIncrement();
             extraDataCounter.getAndAdd(extraData);
-
-            return delta;
         }
 
         /**
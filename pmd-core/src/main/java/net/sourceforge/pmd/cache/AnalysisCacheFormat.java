@@ -0,0 +1,55 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.annotation.Experimental;
+
+/**
+ * The format in which the analysis cache is stored.
+ *
+ * @see PMDConfiguration#setAnalysisCacheLocation(String, AnalysisCacheFormat)
+ * @since 7.27.0
+ * @experimental The available formats may change.
+ */
+@Experimental
+public enum AnalysisCacheFormat {
+    /**
+     * A single file, which is read entirely before the analysis, and
+     * rewritten after it. This is the default.
+     */
+    FILE,
+    /**
+     * A single indexed file. Only the index is read before the analysis,
+     * the results of a file are read when the file is analysed. Results
+     * of unchanged files are not rewritten. This is faster than {@link #FILE}
+     * when few files of a large project change between analyses.
+     */
+    INDEXED,
+    /**
+     * A directory of shard files. Only the shards that contain changed
+     * results are rewritten, in parallel. Results of files that are not
+     * part of the analysis are kept, so that analyses of different sets
+     * of files can share the directory.
+     */
+    SHARDED,
+    /**
+     * A directory in which each result is stored in its own file, named
+     * after the content of the analysed file, the rules and the classpaths,
+     * rather than after its path. The directory can be shared by several
+     * checkouts of a project, e.g. CI workspaces, or by concurrent analyses.
+     * Entries are never removed, the directory should be cleaned up by other means.
+     */
+    CONTENT_ADDRESSED,
+    /**
+     * Like {@link #FILE}, but the classes of the analysis classpath that
+     * each file depends on are recorded, for languages that support it.
+     * When the classpath changes, only the results of the files that depend
+     * on a changed class are invalidated. This also picks up changes to class
+     * files in the directories of the classpath. Recording and checking the
+     * dependencies costs some time on each analysis.
+     */
+    FILE_WITH_DEPENDENCIES
+}
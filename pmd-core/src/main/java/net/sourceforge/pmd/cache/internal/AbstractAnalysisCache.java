@@ -15,9 +15,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +53,8 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
     protected long rulesetChecksum;
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
+    private ClassFileFingerprinter classFileFingerprinter;
+    private ClassDependencyGraph dependencyGraph;
 
     /**
      * Creates a new empty cache
@@ -60,7 +66,7 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
     @Override
     public boolean isUpToDate(final TextDocument document) {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
-            final AnalysisResult cachedResult = fileResultsCache.get(document.getFileId());
+            final AnalysisResult cachedResult = getCachedResult(document);
             final AnalysisResult updatedResult;
 
             // is this a known file? has it changed?
@@ -80,15 +86,45 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
                 updatedResult = new AnalysisResult(document.getCheckSum(), new ArrayList<>());
             }
 
-            updatedResultsCache.put(document.getFileId(), updatedResult);
+            updatedResultsOf(document.getFileId()).put(document.getFileId(), updatedResult);
             
             return upToDate;
         }
     }
 
+    /**
+     * Returns the result stored in the cache for the given file, or null
+     * if there is none. The checksum of the result is compared with the
+     * checksum of the document to determine whether the file is up to date.
+     * The returned result is the one used by {@link #getCachedViolations(TextDocument)}
+     * if the file is up to date, it should be put into the map returned by
+     * {@link #cachedResultsOf(FileId)} if it is not already there.
+     */
+    protected AnalysisResult getCachedResult(final TextDocument document) {
+        return cachedResultsOf(document.getFileId()).get(document.getFileId());
+    }
+
+    /**
+     * Returns the map of the results loaded from the cache that holds the
+     * result of the given file. This is {@link #fileResultsCache}, unless
+     * the results are partitioned.
+     */
+    protected ConcurrentMap<FileId, AnalysisResult> cachedResultsOf(final FileId file) {
+        return fileResultsCache;
+    }
+
+    /**
+     * Returns the map of the results of the current analysis that holds the
+     * result of the given file. This is {@link #updatedResultsCache}, unless
+     * the results are partitioned.
+     */
+    protected ConcurrentMap<FileId, AnalysisResult> updatedResultsOf(final FileId file) {
+        return updatedResultsCache;
+    }
+
     @Override
     public List<RuleViolation> getCachedViolations(final TextDocument sourceFile) {
-        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getFileId());
+        final AnalysisResult analysisResult = cachedResultsOf(sourceFile.getFileId()).get(sourceFile.getFileId());
 
         if (analysisResult == null) {
             // new file, avoid nulls
@@ -100,7 +136,7 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
 
     @Override
     public void analysisFailed(final TextDocument sourceFile) {
-        updatedResultsCache.remove(sourceFile.getFileId());
+        updatedResultsOf(sourceFile.getFileId()).remove(sourceFile.getFileId());
     }
 
 
@@ -110,6 +146,17 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
      */
     protected abstract boolean cacheExists();
 
+    /**
+     * Returns true if this cache persists the {@linkplain AnalysisResult#getDependencies() dependencies}
+     * of the results, and the {@linkplain #getDependencyGraph() graph} of
+     * the classes they reference. If so, the results that depend on a changed
+     * class are invalidated, and only those. Results whose dependencies are
+     * unknown are invalidated when the checksum of the analysis classpath changes.
+     */
+    @Override
+    public boolean tracksDependencies() {
+        return false;
+    }
 
     @Override
     public void checkValidity(RuleSets ruleSets, List<Path> analysisClasspath, Collection<? extends TextFile> files) {
@@ -121,13 +168,13 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
                 cacheIsValid = false;
             }
 
-            final long currentAuxClassPathChecksum = FINGERPRINTER.fingerprint(analysisClasspath);
-            if (cacheIsValid && currentAuxClassPathChecksum != auxClassPathChecksum) {
-                // TODO some rules don't need that (in fact, some languages)
-                LOG.debug("Analysis cache invalidated, analysis classpath changed.");
-                cacheIsValid = false;
+            if (tracksDependencies()) {
+                classFileFingerprinter = new ClassFileFingerprinter(analysisClasspath);
             }
 
+            final long currentAuxClassPathChecksum = FINGERPRINTER.fingerprint(analysisClasspath);
+            final boolean auxClassPathChanged = currentAuxClassPathChecksum != auxClassPathChecksum;
+
             final long currentExecutionClassPathChecksum = FINGERPRINTER.fingerprint(getClassPathEntries());
             if (cacheIsValid && currentExecutionClassPathChecksum != executionClassPathChecksum) {
                 LOG.debug("Analysis cache invalidated, execution classpath changed.");
@@ -135,8 +182,15 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
             }
 
             if (!cacheIsValid) {
-                // Clear the cache
-                fileResultsCache.clear();
+                clearCachedResults();
+            } else if (tracksDependencies()) {
+                // The recorded dependencies replace the classpath checksum, which
+                // doesn't cover the contents of directories anyway
+                clearResultsWithChangedDependencies(auxClassPathChanged);
+            } else if (auxClassPathChanged) {
+                // TODO some rules don't need that (in fact, some languages)
+                LOG.debug("Analysis cache invalidated, analysis classpath changed.");
+                clearCachedResults();
             }
 
             // Update the local checksums
@@ -147,6 +201,112 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
         }
     }
 
+    /**
+     * Computes the checksums of the current analysis, without comparing
+     * them to the ones the cache was written with. This is an alternative
+     * to {@link #checkValidity(RuleSets, List, Collection)}, for caches
+     * whose parts are written with different checksums, and which check
+     * the validity of each part when loading it.
+     */
+    protected void computeChecksums(RuleSets ruleSets, List<Path> analysisClasspath) {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "validity check")) {
+            rulesetChecksum = ruleSets.getChecksum();
+            auxClassPathChecksum = FINGERPRINTER.fingerprint(analysisClasspath);
+            executionClassPathChecksum = FINGERPRINTER.fingerprint(getClassPathEntries());
+            ruleMapper.initialize(ruleSets);
+        }
+    }
+
+    /**
+     * Drops all results loaded from the cache, because it is invalid.
+     */
+    protected void clearCachedResults() {
+        fileResultsCache.clear();
+    }
+
+    private void clearResultsWithChangedDependencies(boolean auxClassPathChanged) {
+        final Set<String> affected = dependencyGraph == null
+                                     ? Collections.emptySet()
+                                     : dependencyGraph.findAffected(classFileFingerprinter);
+        int invalidated = 0;
+        for (Iterator<AnalysisResult> iterator = fileResultsCache.values().iterator(); iterator.hasNext();) {
+            final Set<String> dependencies = iterator.next().getDependencies();
+            final boolean upToDate = dependencies == null
+                                     ? !auxClassPathChanged
+                                     : dependencies.stream().noneMatch(dep -> isAffected(dep, affected));
+            if (!upToDate) {
+                iterator.remove();
+                invalidated++;
+            }
+        }
+        if (invalidated > 0) {
+            LOG.debug("Analysis cache partially invalidated, dependencies of {} files changed.", invalidated);
+        }
+    }
+
+    private boolean isAffected(String dependency, Set<String> affected) {
+        // all dependencies are part of the graph, unless the cache was edited
+        return affected.contains(dependency) || dependencyGraph == null || !dependencyGraph.contains(dependency);
+    }
+
+    @Override
+    public void recordDependencies(TextDocument file, Supplier<Set<String>> dependencies) {
+        final AnalysisResult result = updatedResultsOf(file.getFileId()).get(file.getFileId());
+        if (!tracksDependencies() || result == null) {
+            return;
+        }
+        result.setDependencies(new HashSet<>(dependencies.get()));
+    }
+
+    /**
+     * Returns the graph of the classes the results loaded from the cache
+     * depend on, or null if there is none.
+     */
+    protected ClassDependencyGraph getDependencyGraph() {
+        return dependencyGraph;
+    }
+
+    /**
+     * Sets the graph of the classes the results loaded from the cache depend on.
+     * This should be called when loading the cache, if it tracks dependencies.
+     */
+    protected void setDependencyGraph(ClassDependencyGraph graph) {
+        this.dependencyGraph = graph;
+    }
+
+    /**
+     * Builds the graph of the classes the updated results depend on. The
+     * class files are read at this point, when the dependencies of all files
+     * are known. This should be called when persisting the cache. If the cache
+     * doesn't track dependencies, the graph is empty.
+     */
+    protected ClassDependencyGraph buildUpdatedDependencyGraph() {
+        if (!tracksDependencies()) {
+            return ClassDependencyGraph.empty();
+        }
+        final Set<String> dependencies = new HashSet<>();
+        for (AnalysisResult result : updatedResultsCache.values()) {
+            if (result.getDependencies() != null) {
+                dependencies.addAll(result.getDependencies());
+            }
+        }
+        final ClassFileFingerprinter fingerprinter = classFileFingerprinter != null
+                                                     ? classFileFingerprinter
+                                                     // validity wasn't checked, there is no classpath
+                                                     : new ClassFileFingerprinter(Collections.emptyList());
+        return ClassDependencyGraph.build(dependencies, fingerprinter, dependencyGraph);
+    }
+
+    /**
+     * Releases the resources used to track dependencies. This should
+     * be called when persisting the cache.
+     */
+    protected void closeDependencyTracking() {
+        if (classFileFingerprinter != null) {
+            classFileFingerprinter.close();
+        }
+    }
+
     private List<Path> getClassPathEntries() {
         List<Path> classpathEntries = AuxClasspathUtil.getRuntimeClasspath();
         final List<Path> entries = new ArrayList<>();
@@ -189,7 +349,7 @@ abstract class AbstractAnalysisCache implements AnalysisCache {
             @Override
             public void onRuleViolation(RuleViolation violation) {
                 if (!failed) {
-                    updatedResultsCache.get(fileName).addViolation(violation);
+                    updatedResultsOf(fileName).get(fileName).addViolation(violation);
                 }
             }
 
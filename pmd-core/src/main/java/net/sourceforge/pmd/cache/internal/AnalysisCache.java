@@ -8,13 +8,18 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
+import net.sourceforge.pmd.lang.ast.AstInfo;
 import net.sourceforge.pmd.lang.document.TextDocument;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
 import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.DataMap;
+import net.sourceforge.pmd.util.DataMap.SimpleDataKey;
 
 /**
  * An analysis cache for incremental analysis.
@@ -23,6 +28,15 @@ import net.sourceforge.pmd.reporting.RuleViolation;
  */
 public interface AnalysisCache {
 
+    /**
+     * Key under which a language implementation may store, in the
+     * {@linkplain AstInfo#getUserMap() user map} of a parsed file, the binary
+     * names of the classes from the analysis classpath that the analysis
+     * of the file depends on. The supplier is only queried after the rules
+     * have been applied, and only if the cache {@linkplain #tracksDependencies() tracks dependencies}.
+     */
+    SimpleDataKey<Supplier<Set<String>>> TYPE_DEPENDENCIES = DataMap.simpleDataKey("pmd.cache.type.dependencies");
+
     /**
      * Persists the updated analysis results on whatever medium is used by the cache.
      */
@@ -73,4 +87,28 @@ public interface AnalysisCache {
      */
     FileAnalysisListener startFileAnalysis(TextDocument file);
 
+    /**
+     * Records the classes the analysis of the given file depends on. This
+     * is called after the file has been analysed, if the language reported
+     * its {@linkplain #TYPE_DEPENDENCIES dependencies}. Caches that track
+     * dependencies may then only invalidate the results of this file if
+     * one of those classes changes, instead of when anything changes on
+     * the analysis classpath.
+     *
+     * @param file         The analysed file
+     * @param dependencies Supplier for the binary names of the classes
+     */
+    default void recordDependencies(TextDocument file, Supplier<Set<String>> dependencies) {
+        // do nothing
+    }
+
+    /**
+     * Returns true if this cache uses the {@linkplain #recordDependencies(TextDocument, Supplier) recorded dependencies}
+     * of the files. Languages only need to record the dependencies of a file
+     * if this is the case.
+     */
+    default boolean tracksDependencies() {
+        return false;
+    }
+
 }
@@ -6,6 +6,7 @@ package net.sourceforge.pmd.cache.internal;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import net.sourceforge.pmd.reporting.RuleViolation;
 
@@ -17,6 +18,7 @@ public class AnalysisResult {
 
     private final long fileChecksum;
     private final List<RuleViolation> violations;
+    private Set<String> dependencies;
 
     public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
         this.fileChecksum = fileChecksum;
@@ -35,6 +37,18 @@ public class AnalysisResult {
         return violations;
     }
 
+    /**
+     * Returns the binary names of the classes the analysis of the file
+     * depends on directly. Returns null if the dependencies are unknown.
+     */
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    public void setDependencies(final Set<String> dependencies) {
+        this.dependencies = dependencies;
+    }
+
     public void addViolations(final List<RuleViolation> violations) {
         this.violations.addAll(violations);
     }
@@ -0,0 +1,215 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The classes of the analysis classpath that the cached results depend
+ * on, with their fingerprint at the time the results were computed, and
+ * the classes they reference. This is the transitive closure of the
+ * dependencies recorded for each file, so that a result is invalidated
+ * when a class it depends on indirectly changes, eg a supertype of a
+ * class it uses.
+ *
+ * <p>Only the classes that are present on the classpath are traversed.
+ * Classes that are absent or can't be read are part of the graph, so that
+ * a result is invalidated when they appear, but they don't reference anything.
+ */
+final class ClassDependencyGraph {
+
+    private final List<String> names;
+    private final long[] fingerprints;
+    private final int[][] references;
+    private final Map<String, Integer> indices;
+
+    private ClassDependencyGraph(List<String> names, long[] fingerprints, int[][] references) {
+        this.names = names;
+        this.fingerprints = fingerprints;
+        this.references = references;
+        this.indices = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            indices.put(names.get(i), i);
+        }
+    }
+
+    /**
+     * Returns a graph without any class.
+     */
+    static ClassDependencyGraph empty() {
+        return new ClassDependencyGraph(Collections.emptyList(), new long[0], new int[0][]);
+    }
+
+    /**
+     * Builds the graph of the given direct dependencies and the classes
+     * they reference. The edges of classes whose fingerprint didn't change
+     * since the previous graph are reused instead of reading the class file again.
+     *
+     * @param dependencies  The direct dependencies of all results
+     * @param fingerprinter Fingerprinter of the current classpath
+     * @param previous      The graph that was loaded with the cache, may be null
+     */
+    static ClassDependencyGraph build(Collection<String> dependencies,
+                                      ClassFileFingerprinter fingerprinter,
+                                      ClassDependencyGraph previous) {
+        // sorted, so that the file doesn't change if the dependencies don't
+        final Set<String> closure = new TreeSet<>();
+        final Map<String, Collection<String>> edges = new HashMap<>();
+        final Deque<String> todo = new ArrayDeque<>();
+        for (String name : dependencies) {
+            if (closure.add(name)) {
+                todo.add(name);
+            }
+        }
+        while (!todo.isEmpty()) {
+            final String name = todo.pop();
+            final long fingerprint = fingerprinter.fingerprint(name);
+            if (fingerprint == ClassFileFingerprinter.ABSENT || fingerprint == ClassFileFingerprinter.UNKNOWN) {
+                continue;
+            }
+            final Collection<String> refs = previous != null && previous.fingerprintOf(name) == fingerprint
+                                            ? previous.referencesOf(name)
+                                            : fingerprinter.references(name);
+            edges.put(name, refs);
+            for (String ref : refs) {
+                if (closure.add(ref)) {
+                    todo.add(ref);
+                }
+            }
+        }
+
+        final List<String> names = new ArrayList<>(closure);
+        final Map<String, Integer> indices = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            indices.put(names.get(i), i);
+        }
+        final long[] fingerprints = new long[names.size()];
+        final int[][] references = new int[names.size()][];
+        for (int i = 0; i < names.size(); i++) {
+            final String name = names.get(i);
+            fingerprints[i] = fingerprinter.fingerprint(name);
+            final Collection<String> refs = edges.get(name);
+            references[i] = refs == null
+                            ? new int[0]
+                            : refs.stream().mapToInt(indices::get).sorted().toArray();
+        }
+        return new ClassDependencyGraph(names, fingerprints, references);
+    }
+
+    boolean contains(String name) {
+        return indices.containsKey(name);
+    }
+
+    private long fingerprintOf(String name) {
+        final Integer index = indices.get(name);
+        return index == null ? ClassFileFingerprinter.UNKNOWN : fingerprints[index];
+    }
+
+    private Collection<String> referencesOf(String name) {
+        final int[] refs = references[indices.get(name)];
+        final List<String> result = new ArrayList<>(refs.length);
+        for (int ref : refs) {
+            result.add(names.get(ref));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the classes that changed since the graph was built, and the
+     * classes that reference them, directly or not. The edges of the graph
+     * are still valid for the classes that didn't change, since they only
+     * depend on the contents of the class file. A class whose fingerprint
+     * can't be computed is considered changed.
+     */
+    Set<String> findAffected(ClassFileFingerprinter fingerprinter) {
+        final List<List<Integer>> referencedBy = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            referencedBy.add(new ArrayList<>());
+        }
+        for (int i = 0; i < names.size(); i++) {
+            for (int ref : references[i]) {
+                referencedBy.get(ref).add(i);
+            }
+        }
+
+        final boolean[] affected = new boolean[names.size()];
+        final Deque<Integer> todo = new ArrayDeque<>();
+        for (int i = 0; i < names.size(); i++) {
+            final long current = fingerprinter.fingerprint(names.get(i));
+            if (current == ClassFileFingerprinter.UNKNOWN || current != fingerprints[i]) {
+                affected[i] = true;
+                todo.add(i);
+            }
+        }
+        final Set<String> result = new HashSet<>();
+        while (!todo.isEmpty()) {
+            final int i = todo.pop();
+            result.add(names.get(i));
+            for (int user : referencedBy.get(i)) {
+                if (!affected[user]) {
+                    affected[user] = true;
+                    todo.add(user);
+                }
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    int indexOf(String name) {
+        return indices.get(name);
+    }
+
+    String nameAt(int index) {
+        return names.get(index);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            out.writeUTF(names.get(i));
+            out.writeLong(fingerprints[i]);
+            out.writeInt(references[i].length);
+            for (int ref : references[i]) {
+                out.writeInt(ref);
+            }
+        }
+    }
+
+    static ClassDependencyGraph read(DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final List<String> names = new ArrayList<>(size);
+        final long[] fingerprints = new long[size];
+        final int[][] references = new int[size][];
+        for (int i = 0; i < size; i++) {
+            names.add(in.readUTF());
+            fingerprints[i] = in.readLong();
+            references[i] = new int[in.readInt()];
+            for (int j = 0; j < references[i].length; j++) {
+                references[i][j] = in.readInt();
+                if (references[i][j] < 0 || references[i][j] >= size) {
+                    throw new IOException("Invalid class reference " + references[i][j]);
+                }
+            }
+        }
+        return new ClassDependencyGraph(names, fingerprints, references);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Adler32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.internal.util.IOUtil;
+
+/**
+ * Computes fingerprints of individual classes of a classpath. This is used
+ * to find out whether the classes a file depends on have changed.
+ *
+ * <p>The fingerprint of a class is the checksum of the first class file
+ * found for it on the classpath, or {@link #ABSENT} if there is none.
+ * Fingerprints are memoized, and zip files stay open until {@link #close()}.
+ * Instances are thread-safe.
+ *
+ * <p>The {@linkplain #references(String) references} of a class are
+ * read from the constant pool of its class file. They only depend on the
+ * contents of the class file, so the classes a file depends on transitively
+ * are the same whichever order the classes were loaded in during the analysis.
+ */
+final class ClassFileFingerprinter implements Closeable {
+
+    /** Fingerprint of a class that is not on the classpath. */
+    static final long ABSENT = 0L;
+    /** Fingerprint of a class whose class file could not be read. */
+    static final long UNKNOWN = -1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassFileFingerprinter.class);
+
+    private final List<Path> classpath;
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+
+    private final ConcurrentMap<String, Long> fingerprints = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> references = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, ZipFile> openZips = new ConcurrentHashMap<>();
+
+    ClassFileFingerprinter(List<Path> classpath) {
+        this.classpath = new ArrayList<>(classpath);
+    }
+
+    /**
+     * Returns the fingerprint of the class with the given binary name.
+     */
+    long fingerprint(String binaryName) {
+        return fingerprints.computeIfAbsent(binaryName, this::computeFingerprint);
+    }
+
+    /**
+     * Returns the binary names of the classes referenced by the class file
+     * of the given class: its supertypes, and the classes that appear in
+     * the signatures of its members or in its code. Returns an empty set if
+     * the class is not on the classpath, or its class file is invalid.
+     */
+    Set<String> references(String binaryName) {
+        return references.computeIfAbsent(binaryName, this::computeReferences);
+    }
+
+    private long computeFingerprint(String binaryName) {
+        final String classFile = toClassFileName(binaryName);
+        try {
+            for (Path entry : classpath) {
+                if (Files.isDirectory(entry)) {
+                    Path file = entry.resolve(classFile);
+                    if (Files.isRegularFile(file)) {
+                        Adler32 adler32 = new Adler32();
+                        adler32.update(Files.readAllBytes(file));
+                        // an adler32 checksum is never zero
+                        return adler32.getValue();
+                    }
+                } else if (Files.isRegularFile(entry)) {
+                    ZipEntry zipEntry = getZip(entry).getEntry(classFile);
+                    if (zipEntry != null) {
+                        // the crc is unsigned 32 bit, this is never zero
+                        return zipEntry.getCrc() + 1;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not fingerprint class {}: {}", binaryName, e.getMessage());
+            return UNKNOWN;
+        }
+        return ABSENT;
+    }
+
+    private Set<String> computeReferences(String binaryName) {
+        final String classFile = toClassFileName(binaryName);
+        try {
+            for (Path entry : classpath) {
+                if (Files.isDirectory(entry)) {
+                    Path file = entry.resolve(classFile);
+                    if (Files.isRegularFile(file)) {
+                        return readReferences(Files.readAllBytes(file));
+                    }
+                } else if (Files.isRegularFile(entry)) {
+                    ZipFile zip = getZip(entry);
+                    ZipEntry zipEntry = zip.getEntry(classFile);
+                    if (zipEntry != null) {
+                        try (InputStream stream = zip.getInputStream(zipEntry)) {
+                            return readReferences(IOUtil.toByteArray(stream));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not read class {}: {}", binaryName, e.getMessage());
+        }
+        return Collections.emptySet();
+    }
+
+    private static String toClassFileName(String binaryName) {
+        return binaryName.replace('.', '/') + ".class";
+    }
+
+    /**
+     * Collects the class names of the constant pool of a class file. These
+     * are the names of the class entries, and the class types that appear
+     * in descriptors and signatures.
+     */
+    static Set<String> readReferences(byte[] classFile) {
+        final ByteBuffer buf = ByteBuffer.wrap(classFile);
+        final Set<String> result = new HashSet<>();
+        try {
+            if (buf.getInt() != CLASS_FILE_MAGIC) {
+                return Collections.emptySet();
+            }
+            buf.getInt(); // minor and major version
+            final int poolSize = buf.getShort() & 0xFFFF;
+            final String[] utf8 = new String[poolSize];
+            final int[] classNameIndices = new int[poolSize];
+            int classCount = 0;
+            for (int i = 1; i < poolSize; i++) {
+                final int tag = buf.get();
+                switch (tag) {
+                case 1: // Utf8
+                    final byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+                    buf.get(bytes);
+                    // modified UTF-8 only differs for \0 and supplementary characters
+                    utf8[i] = new String(bytes, StandardCharsets.UTF_8);
+                    break;
+                case 7: // Class
+                    classNameIndices[classCount++] = buf.getShort() & 0xFFFF;
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    buf.getShort();
+                    break;
+                case 15: // MethodHandle
+                    buf.get();
+                    buf.getShort();
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    buf.getInt();
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    buf.getLong();
+                    i++; // takes two entries
+                    break;
+                default:
+                    return Collections.emptySet();
+                }
+            }
+            for (int i = 0; i < classCount; i++) {
+                final String name = utf8[classNameIndices[i]];
+                if (name != null && !name.isEmpty() && name.charAt(0) != '[') {
+                    result.add(name.replace('/', '.'));
+                }
+            }
+            for (String value : utf8) {
+                if (value != null) {
+                    addDescriptorReferences(value, result);
+                }
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            return Collections.emptySet();
+        }
+        return result;
+    }
+
+    /**
+     * Adds the class types of the form {@code Lpkg/Name;} or {@code Lpkg/Name<...>;}
+     * found in the given descriptor or signature. Other strings of the
+     * constant pool may yield spurious names, which only make the dependencies
+     * larger.
+     */
+    private static void addDescriptorReferences(String descriptor, Set<String> result) {
+        int i = descriptor.indexOf('L');
+        while (i >= 0) {
+            int end = i + 1;
+            while (end < descriptor.length() && isInternalNameChar(descriptor.charAt(end))) {
+                end++;
+            }
+            if (end > i + 1 && end < descriptor.length()
+                && (descriptor.charAt(end) == ';' || descriptor.charAt(end) == '<')) {
+                result.add(descriptor.substring(i + 1, end).replace('/', '.'));
+                i = descriptor.indexOf('L', end);
+            } else {
+                i = descriptor.indexOf('L', i + 1);
+            }
+        }
+    }
+
+    private static boolean isInternalNameChar(char c) {
+        return c != ';' && c != '<' && c != '>' && c != '.' && c != '[' && c != ':'
+            && c != '(' && c != ')' && !Character.isWhitespace(c);
+    }
+
+    private ZipFile getZip(Path entry) throws IOException {
+        ZipFile zip = openZips.get(entry);
+        if (zip == null) {
+            ZipFile newZip = new ZipFile(entry.toFile());
+            zip = openZips.putIfAbsent(entry, newZip);
+            if (zip == null) {
+                zip = newZip;
+            } else {
+                newZip.close();
+            }
+        }
+        return zip;
+    }
+
+    @Override
+    public void close() {
+        for (ZipFile zip : openZips.values()) {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close {}: {}", zip.getName(), e.getMessage());
+            }
+        }
+        openZips.clear();
+    }
+}
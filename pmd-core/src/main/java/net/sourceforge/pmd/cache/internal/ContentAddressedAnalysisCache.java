@@ -0,0 +1,206 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * An analysis cache that stores results in a directory tree, keyed by
+ * the content of the analysed file rather than by its path. The key of
+ * an entry is a SHA-256 digest of the normalized file text, the language
+ * version, the PMD version, the ruleset checksum and the fingerprints of
+ * the analysis and execution classpaths.
+ *
+ * <p>Since keys don't depend on the location of a file, the store can be
+ * reused by other checkouts of the same project, eg fresh CI workspaces,
+ * and shared between machines through a shared filesystem. Entries are
+ * immutable and written with an atomic move, so concurrent analyses may
+ * use the same store. Entries are never evicted, the store should be
+ * cleaned up by external means.
+ */
+public class ContentAddressedAnalysisCache extends AbstractAnalysisCache {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File storeDir;
+
+    /** Keys of the files analysed so far, computed in the up-to-date check. */
+    private final ConcurrentMap<FileId, String> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cache using the given directory as store. The directory
+     * is created if needed.
+     *
+     * @param storeDir The root directory of the store
+     */
+    public ContentAddressedAnalysisCache(final File storeDir) {
+        super();
+        this.storeDir = storeDir;
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        // The checksums are part of the key of each entry, entries
+        // written for other rulesets or classpaths are never found.
+        return false;
+    }
+
+    @Override
+    protected AnalysisResult getCachedResult(final TextDocument document) {
+        final String key = computeKey(document);
+        keys.put(document.getFileId(), key);
+
+        final File entry = entryFile(key);
+        final List<RuleViolation> violations;
+        try (DataInputStream inputStream = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(entry.toPath())))) {
+
+            final int countViolations = inputStream.readInt();
+            violations = new ArrayList<>(countViolations);
+            for (int i = 0; i < countViolations; i++) {
+                violations.add(CachedRuleViolation.loadFromStream(inputStream, document.getFileId(), ruleMapper));
+            }
+        } catch (final NoSuchFileException e) {
+            return null;
+        } catch (final EOFException e) {
+            LOG.warn("Cache entry {} is malformed, will not be used for current analysis", entry.getPath());
+            return null;
+        } catch (final IOException e) {
+            LOG.error("Could not load analysis cache entry {}: {}", entry, e.getMessage());
+            return null;
+        }
+
+        // the entry matches the content, so it is up to date
+        final AnalysisResult result = new AnalysisResult(document.getCheckSum(), violations);
+        fileResultsCache.put(document.getFileId(), result);
+        return result;
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            if (storeDir.isFile()) {
+                LOG.error("Cannot persist the cache, the given path points to a file.");
+                return;
+            }
+
+            for (final Map.Entry<FileId, AnalysisResult> entry : updatedResultsCache.entrySet()) {
+                final String key = keys.get(entry.getKey());
+                if (key != null && fileResultsCache.get(entry.getKey()) != entry.getValue()) {
+                    // the file was analysed in this run
+                    writeEntry(entryFile(key), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private void writeEntry(final File entry, final AnalysisResult result) {
+        final Path target = entry.toPath();
+        try {
+            Files.createDirectories(target.getParent());
+            final Path tmp = Files.createTempFile(target.getParent(), entry.getName(), ".tmp");
+            try {
+                try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    final List<RuleViolation> violations = result.getViolations();
+                    outputStream.writeInt(violations.size());
+                    for (final RuleViolation rv : violations) {
+                        CachedRuleViolation.storeToStream(outputStream, rv);
+                    }
+                }
+
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (final FileAlreadyExistsException e) {
+            // written concurrently by another analysis, with the same content
+            LOG.trace("Analysis cache entry {} already exists", entry);
+        } catch (final IOException e) {
+            LOG.error("Could not persist analysis cache entry {}: {}", entry, e.getMessage());
+        }
+    }
+
+    private String computeKey(final TextDocument document) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(document.getText().getBytes(StandardCharsets.UTF_8));
+        digest.update(document.getLanguageVersion().getTerseName().getBytes(StandardCharsets.UTF_8));
+        digest.update(pmdVersion.getBytes(StandardCharsets.UTF_8));
+        updateDigest(digest, rulesetChecksum);
+        updateDigest(digest, auxClassPathChecksum);
+        updateDigest(digest, executionClassPathChecksum);
+
+        final byte[] hash = digest.digest();
+        final char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static void updateDigest(final MessageDigest digest, final long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    /**
+     * Returns the file storing the entry with the given key. Entries are
+     * spread into subdirectories named after the first two characters of
+     * the key, to keep directories small.
+     */
+    private File entryFile(final String key) {
+        return new File(new File(storeDir, key.substring(0, 2)), key.substring(2));
+    }
+
+    /**
+     * Returns the file in which the result for the given file is stored,
+     * or null if the file has not been checked yet.
+     */
+    File entryFile(final FileId fileId) {
+        final String key = keys.get(fileId);
+        return key == null ? null : entryFile(key);
+    }
+}
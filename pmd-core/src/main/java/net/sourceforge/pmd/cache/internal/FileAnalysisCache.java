@@ -15,8 +15,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import net.sourceforge.pmd.PMDVersion;
@@ -29,19 +31,46 @@ import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.RuleViolation;
 
 /**
- * An analysis cache backed by a regular file.
+ * An analysis cache backed by a regular file. If the cache tracks
+ * dependencies, the dependencies of each result are stored along with it,
+ * as well as the graph of the classes they reference, so that only the
+ * results that depend on a changed class of the analysis classpath are
+ * invalidated. Otherwise, these are empty.
+ *
+ * <p>The file starts with a magic number and a format version, which
+ * is incremented when the layout of the file changes. Files written by
+ * older versions, which don't start with the magic number, are ignored.
  */
 public class FileAnalysisCache extends AbstractAnalysisCache {
 
+    private static final int MAGIC = 0x504D4446; // "PMDF"
+    /**
+     * Version 2 added the dependencies of each result, version 3 the
+     * graph of the classes they reference.
+     */
+    private static final int FORMAT_VERSION = 3;
+
     private final File cacheFile;
+    private final boolean trackDependencies;
 
     /**
      * Creates a new cache backed by the given file.
      * @param cache The file on which to store analysis cache
      */
     public FileAnalysisCache(final File cache) {
+        this(cache, false);
+    }
+
+    /**
+     * Creates a new cache backed by the given file.
+     * @param cache             The file on which to store analysis cache
+     * @param trackDependencies Whether to record the dependencies of each
+     *                          file, see {@link #tracksDependencies()}
+     */
+    public FileAnalysisCache(final File cache, final boolean trackDependencies) {
         super();
         this.cacheFile = cache;
+        this.trackDependencies = trackDependencies;
     }
 
     @Override
@@ -67,6 +96,11 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                     DataInputStream inputStream = new DataInputStream(
                         new BufferedInputStream(Files.newInputStream(cacheFile.toPath())));
                 ) {
+                    if (inputStream.readInt() != MAGIC || inputStream.readInt() != FORMAT_VERSION) {
+                        LOG.debug("Analysis cache invalidated, unknown cache format.");
+                        return;
+                    }
+
                     final String cacheVersion = inputStream.readUTF();
 
                     if (PMDVersion.VERSION.equals(cacheVersion)) {
@@ -77,6 +111,9 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                         auxClassPathChecksum = inputStream.readLong();
                         executionClassPathChecksum = inputStream.readLong();
 
+                        final ClassDependencyGraph graph = ClassDependencyGraph.read(inputStream);
+                        setDependencyGraph(graph);
+
                         // Cached results
                         while (inputStream.available() > 0) {
                             final String filePathId = inputStream.readUTF();
@@ -94,7 +131,9 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                                 violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
                             }
 
-                            fileResultsCache.put(fileId, new AnalysisResult(checksum, violations));
+                            final AnalysisResult result = new AnalysisResult(checksum, violations);
+                            result.setDependencies(loadDependencies(inputStream, graph));
+                            fileResultsCache.put(fileId, result);
                         }
 
                         LOG.debug("Analysis cache loaded from {}", cacheFile);
@@ -112,6 +151,35 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
         }
     }
 
+    private static Set<String> loadDependencies(final DataInputStream inputStream,
+                                                final ClassDependencyGraph graph) throws IOException {
+        final int countDependencies = inputStream.readInt();
+        if (countDependencies < 0) {
+            return null;
+        }
+        final Set<String> dependencies = new HashSet<>();
+        for (int i = 0; i < countDependencies; i++) {
+            final int index = inputStream.readInt();
+            if (index < 0 || index >= graph.size()) {
+                throw new IOException("Invalid dependency " + index);
+            }
+            dependencies.add(graph.nameAt(index));
+        }
+        return dependencies;
+    }
+
+    private static void storeDependencies(final DataOutputStream outputStream, final Set<String> dependencies,
+                                          final ClassDependencyGraph graph) throws IOException {
+        if (dependencies == null) {
+            outputStream.writeInt(-1);
+            return;
+        }
+        outputStream.writeInt(dependencies.size());
+        for (final String dependency : dependencies) {
+            outputStream.writeInt(graph.indexOf(dependency));
+        }
+    }
+
     @Override
     public void persist() {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
@@ -134,12 +202,17 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                 DataOutputStream outputStream = new DataOutputStream(
                     new BufferedOutputStream(Files.newOutputStream(cacheFile.toPath())))
             ) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(FORMAT_VERSION);
                 outputStream.writeUTF(pmdVersion);
 
                 outputStream.writeLong(rulesetChecksum);
                 outputStream.writeLong(auxClassPathChecksum);
                 outputStream.writeLong(executionClassPathChecksum);
 
+                final ClassDependencyGraph graph = buildUpdatedDependencyGraph();
+                graph.write(outputStream);
+
                 for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
                     final List<RuleViolation> violations = resultEntry.getValue().getViolations();
 
@@ -150,6 +223,7 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                     for (final RuleViolation rv : violations) {
                         CachedRuleViolation.storeToStream(outputStream, rv);
                     }
+                    storeDependencies(outputStream, resultEntry.getValue().getDependencies(), graph);
                 }
                 if (cacheFileShouldBeCreated) {
                     LOG.debug("Analysis cache created");
@@ -158,10 +232,17 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                 }
             } catch (final IOException e) {
                 LOG.error("Could not persist analysis cache to file: {}", e.getMessage());
+            } finally {
+                closeDependencyTracking();
             }
         }
     }
 
+    @Override
+    public boolean tracksDependencies() {
+        return trackDependencies;
+    }
+
     @Override
     protected boolean cacheExists() {
         return cacheFile.exists() && cacheFile.isFile() && cacheFile.length() > 0;
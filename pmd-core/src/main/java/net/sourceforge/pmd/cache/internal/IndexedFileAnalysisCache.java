@@ -0,0 +1,552 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * An analysis cache backed by an indexed file. Contrary to
+ * {@link FileAnalysisCache}, the cache is not read entirely before
+ * the analysis: only the header and a hash index on the file URI are
+ * read. The record of a file is read when the file is analysed, and
+ * violations are only deserialized if the file is up to date.
+ *
+ * <p>Records are read with positional reads on a channel, that stays
+ * open until the cache is persisted. Each lookup costs two reads, one
+ * for the length of the record and one for its content, and the index
+ * is probed in memory. The file is deliberately not memory-mapped:
+ * <ul>
+ * <li>Persisting appends to the file or replaces it. A mapping cannot be
+ * unmapped explicitly in Java, it is only released when it is garbage
+ * collected, and until then the file cannot be replaced or deleted on
+ * some platforms, like Windows.
+ * <li>A mapping would not see the records appended by the persist, so it
+ * would have to be remapped anyway for the file to be reused.
+ * <li>Every record is read at most once per analysis, so a mapping would
+ * not save more than a system call per analysed file, which is negligible
+ * compared to the analysis of the file.
+ * </ul>
+ *
+ * <p>When persisting, the records of files that were up to date are
+ * kept where they are. New records and a new index are appended to the
+ * file, and the header is updated last to point to the new index.
+ * The file is compacted (rewritten) when more than half of it is
+ * made of stale records and indexes.
+ *
+ * <p>File layout:
+ * <pre>
+ * header:  int magic, int format version,
+ *          long ruleset checksum, long aux classpath checksum, long execution classpath checksum,
+ *          long index offset, UTF pmd version
+ * record:  int length (of the rest), UTF file URI, long file checksum, int violation count, violations...
+ * index:   int capacity (power of two), then for each slot: int URI hash code, int record offset (0 if empty)
+ * </pre>
+ */
+public class IndexedFileAnalysisCache extends AbstractAnalysisCache {
+
+    private static final int MAGIC = 0x504D4443; // "PMDC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int INDEX_OFFSET_POS = 32;
+    private static final int HEADER_FIXED_SIZE = INDEX_OFFSET_POS + 8;
+    private static final int SLOT_SIZE = 8;
+    private static final int MIN_INDEX_CAPACITY = 16;
+
+    private final File cacheFile;
+
+    /** Channel to read the cache file, null if there is no usable cache. */
+    private FileChannel reader;
+    private int fileSize;
+    private int recordsStart;
+    /** The index of the file, read when the cache is opened. */
+    private int[] indexHashes;
+    private int[] indexOffsets;
+
+    /**
+     * Creates a new cache backed by the given file.
+     * @param cache The file on which to store analysis cache
+     */
+    public IndexedFileAnalysisCache(final File cache) {
+        super();
+        this.cacheFile = cache;
+    }
+
+    @Override
+    public void checkValidity(RuleSets ruleSets, List<Path> analysisClasspath, Collection<? extends TextFile> files) {
+        // open the cache before checking for validity
+        openCacheFile();
+        super.checkValidity(ruleSets, analysisClasspath, files);
+    }
+
+    private void openCacheFile() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "load")) {
+            if (cacheFile.isDirectory()) {
+                LOG.error("The configured cache location must be the path to a file, but is a directory.");
+                return;
+            } else if (!cacheFile.isFile() || cacheFile.length() == 0) {
+                return;
+            }
+
+            FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+            try {
+                if (readHeaderAndIndex(channel)) {
+                    reader = channel;
+                    LOG.debug("Analysis cache opened from {}", cacheFile);
+                }
+            } finally {
+                if (reader != channel) { // NOPMD CompareObjectsWithEquals
+                    channel.close();
+                }
+            }
+        } catch (final IOException e) {
+            LOG.error("Could not load analysis cache from file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the header and the index of the file. Returns false if the
+     * file cannot be used.
+     */
+    private boolean readHeaderAndIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            LOG.warn("Cache file {} is too large, will not be used for current analysis", cacheFile.getPath());
+            return false;
+        } else if (size < HEADER_FIXED_SIZE + 2) {
+            LOG.debug("Analysis cache invalidated, unknown cache format.");
+            return false;
+        }
+
+        ByteBuffer header = readAt(channel, 0, HEADER_FIXED_SIZE + 2);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+            LOG.debug("Analysis cache invalidated, unknown cache format.");
+            return false;
+        }
+
+        int versionLength = header.getShort(HEADER_FIXED_SIZE) & 0xFFFF;
+        ByteBuffer version = readAt(channel, HEADER_FIXED_SIZE, 2 + versionLength);
+        final String cacheVersion = new DataInputStream(new ByteBufferInputStream(version)).readUTF();
+        if (!PMDVersion.VERSION.equals(cacheVersion)) {
+            LOG.debug("Analysis cache invalidated, PMD version changed.");
+            return false;
+        }
+
+        long index = header.getLong(INDEX_OFFSET_POS);
+        int capacity = index > 0 && index <= size - 4 ? readAt(channel, index, 4).getInt() : -1;
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1
+            || index + 4 + (long) capacity * SLOT_SIZE > size) {
+            LOG.warn("Cache file {} is malformed, will not be used for current analysis", cacheFile.getPath());
+            return false;
+        }
+
+        ByteBuffer slots = readAt(channel, index + 4, capacity * SLOT_SIZE);
+        indexHashes = new int[capacity];
+        indexOffsets = new int[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            indexHashes[slot] = slots.getInt();
+            indexOffsets[slot] = slots.getInt();
+        }
+
+        rulesetChecksum = header.getLong(8);
+        auxClassPathChecksum = header.getLong(16);
+        executionClassPathChecksum = header.getLong(24);
+        recordsStart = HEADER_FIXED_SIZE + 2 + versionLength;
+        fileSize = (int) size;
+        return true;
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        return reader != null;
+    }
+
+    @Override
+    protected void clearCachedResults() {
+        super.clearCachedResults();
+        closeReader();
+    }
+
+    @Override
+    protected AnalysisResult getCachedResult(final TextDocument document) {
+        final FileId fileId = document.getFileId();
+        AnalysisResult result = fileResultsCache.get(fileId);
+        final FileChannel channel = reader;
+        if (result != null || channel == null) {
+            return result;
+        }
+
+        try {
+            final Record record = findRecord(channel, fileId.getUriString());
+            if (record == null) {
+                return null;
+            }
+
+            final long checksum = record.content.readLong();
+            if (checksum != document.getCheckSum()) {
+                // the file has changed, no need to read violations
+                return new AnalysisResult(checksum);
+            }
+
+            final int countViolations = record.content.readInt();
+            final List<RuleViolation> violations = new ArrayList<>(countViolations);
+            for (int i = 0; i < countViolations; i++) {
+                violations.add(CachedRuleViolation.loadFromStream(record.content, fileId, ruleMapper));
+            }
+
+            result = new IndexedAnalysisResult(checksum, violations, record.offset, record.length);
+            fileResultsCache.put(fileId, result);
+            return result;
+        } catch (final IOException | IndexOutOfBoundsException e) {
+            LOG.warn("Cache file {} is malformed, record of {} will not be used", cacheFile.getPath(), fileId.getUriString());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the record for the given URI, positioned after the URI,
+     * or null if there is none.
+     */
+    private @Nullable Record findRecord(FileChannel channel, String uri) throws IOException {
+        final int hash = uri.hashCode();
+        final int mask = indexHashes.length - 1;
+        int slot = spread(hash) & mask;
+        for (int probes = 0; probes < indexHashes.length; probes++) {
+            final int recordOffset = indexOffsets[slot];
+            if (recordOffset == 0) {
+                return null;
+            } else if (indexHashes[slot] == hash) {
+                Record record = readRecord(channel, recordOffset);
+                if (uri.equals(record.content.readUTF())) {
+                    return record;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private Record readRecord(FileChannel channel, int recordOffset) throws IOException {
+        final int length = readAt(channel, recordOffset, 4).getInt();
+        if (length < 0 || (long) recordOffset + 4 + length > fileSize) {
+            throw new EOFException("Record is out of bounds");
+        }
+        ByteBuffer content = readAt(channel, recordOffset + 4, length);
+        return new Record(recordOffset, length + 4, new DataInputStream(new ByteBufferInputStream(content)));
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            if (cacheFile.isDirectory()) {
+                LOG.error("Cannot persist the cache, the given path points to a directory.");
+                return;
+            }
+
+            try {
+                if (reader != null && !needsCompaction()) {
+                    appendToCacheFile();
+                    LOG.debug("Analysis cache updated");
+                } else {
+                    rewriteCacheFile();
+                    LOG.debug("Analysis cache written");
+                }
+            } catch (final IOException e) {
+                LOG.error("Could not persist analysis cache to file: {}", e.getMessage());
+            } finally {
+                closeReader();
+            }
+        }
+    }
+
+    private void closeReader() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close analysis cache file: {}", e.getMessage());
+            }
+            reader = null;
+        }
+    }
+
+    /**
+     * Whether more than half of the existing file would be made of stale
+     * records and indexes after this run.
+     */
+    private boolean needsCompaction() {
+        long reusedBytes = 0;
+        for (AnalysisResult result : updatedResultsCache.values()) {
+            if (result instanceof IndexedAnalysisResult) {
+                reusedBytes += ((IndexedAnalysisResult) result).recordLength;
+            }
+        }
+        long existingBytes = fileSize - recordsStart;
+        return existingBytes - reusedBytes > existingBytes / 2;
+    }
+
+    /**
+     * Writes the new records and a new index at the end of the existing
+     * file. The header is updated last, so that the previous index stays
+     * valid if the process is interrupted.
+     */
+    @SuppressWarnings("PMD.CloseResource") // closing the stream would close the channel
+    private void appendToCacheFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.position(fileSize);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            final long newIndexOffset = writeRecordsAndIndex(out, fileSize, true);
+            out.flush();
+            channel.force(false);
+
+            writeIndexOffset(channel, newIndexOffset);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Writes a complete new cache file, then replaces the existing one.
+     * The existing file is closed before it is replaced.
+     */
+    @SuppressWarnings("PMD.CloseResource") // closing the stream would close the channel
+    private void rewriteCacheFile() throws IOException {
+        final File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+        if (parentFile != null && !parentFile.exists()) {
+            // Create directories missing along the way
+            parentFile.mkdirs();
+        }
+
+        final Path target = cacheFile.toPath();
+        final Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), cacheFile.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(rulesetChecksum);
+                out.writeLong(auxClassPathChecksum);
+                out.writeLong(executionClassPathChecksum);
+                out.writeLong(0); // index offset, written below
+                out.writeUTF(pmdVersion);
+
+                final long newIndexOffset = writeRecordsAndIndex(out, 0, false);
+                out.flush();
+                writeIndexOffset(channel, newIndexOffset);
+            }
+
+            closeReader();
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeIndexOffset(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(offset).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, INDEX_OFFSET_POS + 8 - buffer.remaining());
+        }
+    }
+
+    /**
+     * Writes the records of the updated results, then the index. Returns
+     * the offset of the index.
+     *
+     * @param out          Output, which is positioned at {@code base} in the file
+     * @param base         Offset in the file of the start of the output
+     * @param keepInPlace  If true, records of up-to-date files are referenced
+     *                     at their current offset. Otherwise, they are copied
+     *                     to the output.
+     */
+    private long writeRecordsAndIndex(DataOutputStream out, int base, boolean keepInPlace) throws IOException {
+        final int n = updatedResultsCache.size();
+        final int[] hashes = new int[n];
+        final int[] offsets = new int[n];
+        final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        final DataOutputStream record = new DataOutputStream(recordBytes);
+
+        int i = 0;
+        for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+            if (i == n) {
+                break; // defensive, the map is not modified during persist
+            }
+            final String uri = resultEntry.getKey().getUriString();
+            final AnalysisResult result = resultEntry.getValue();
+            hashes[i] = uri.hashCode();
+
+            if (result instanceof IndexedAnalysisResult && reader != null) {
+                IndexedAnalysisResult indexedResult = (IndexedAnalysisResult) result;
+                if (keepInPlace) {
+                    offsets[i] = indexedResult.recordOffset;
+                } else {
+                    offsets[i] = checkedPosition(base, out);
+                    ByteBuffer source = readAt(reader, indexedResult.recordOffset, indexedResult.recordLength);
+                    out.write(source.array(), 0, indexedResult.recordLength);
+                }
+            } else {
+                offsets[i] = checkedPosition(base, out);
+                recordBytes.reset();
+                final List<RuleViolation> violations = result.getViolations();
+                record.writeUTF(uri); // the path id
+                record.writeLong(result.getFileChecksum());
+                record.writeInt(violations.size());
+                for (final RuleViolation rv : violations) {
+                    CachedRuleViolation.storeToStream(record, rv);
+                }
+                record.flush();
+                out.writeInt(recordBytes.size());
+                recordBytes.writeTo(out);
+            }
+            i++;
+        }
+
+        final int capacity = indexCapacityFor(i);
+        final int[] slotHashes = new int[capacity];
+        final int[] slotOffsets = new int[capacity];
+        for (int j = 0; j < i; j++) {
+            int slot = spread(hashes[j]) & (capacity - 1);
+            while (slotOffsets[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slotHashes[slot] = hashes[j];
+            slotOffsets[slot] = offsets[j];
+        }
+
+        final int newIndexOffset = checkedPosition(base, out);
+        out.writeInt(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            out.writeInt(slotHashes[slot]);
+            out.writeInt(slotOffsets[slot]);
+        }
+        checkedPosition(base, out);
+        return newIndexOffset;
+    }
+
+    private static int checkedPosition(int base, DataOutputStream out) throws IOException {
+        // DataOutputStream#size saturates at Integer.MAX_VALUE
+        long position = (long) base + out.size();
+        if (position >= Integer.MAX_VALUE) {
+            throw new IOException("Analysis cache is too large");
+        }
+        return (int) position;
+    }
+
+    private static int indexCapacityFor(int numEntries) {
+        int capacity = MIN_INDEX_CAPACITY;
+        while (capacity < 2 * numEntries) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Reads the given number of bytes at the given position. This doesn't
+     * change the position of the channel, and may be called concurrently.
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of cache file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static final class Record {
+
+        private final int offset;
+        /** Length of the record, including its length prefix. */
+        private final int length;
+        private final DataInputStream content;
+
+        Record(int offset, int length, DataInputStream content) {
+            this.offset = offset;
+            this.length = length;
+            this.content = content;
+        }
+    }
+
+    /**
+     * A result that was read from the cache file. Its record can be
+     * reused as is when persisting the cache.
+     */
+    private static final class IndexedAnalysisResult extends AnalysisResult {
+
+        private final int recordOffset;
+        private final int recordLength;
+
+        IndexedAnalysisResult(long fileChecksum, List<RuleViolation> violations, int recordOffset, int recordLength) {
+            super(fileChecksum, violations);
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            } else if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
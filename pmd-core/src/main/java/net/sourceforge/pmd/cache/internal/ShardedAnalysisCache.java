@@ -0,0 +1,426 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * An analysis cache stored in a directory, as a fixed number of shard
+ * files. Files are assigned to a shard by the hash of their URI.
+ *
+ * <p>Each shard is self-contained: it holds the results read from its
+ * file and the results of the current analysis, and the file records the
+ * checksums of the rulesets and classpaths it was written with. A shard
+ * is only used if these match the current analysis. When persisting, each
+ * shard whose content changed is written by a separate worker, to a
+ * temporary file which is then moved over the previous version. An
+ * interrupted run therefore only loses the shards that were being written.
+ *
+ * <p>Contrary to {@link FileAnalysisCache}, results for files that are not
+ * part of the current analysis are kept. This allows several analyses of
+ * disjoint sets of files (eg different modules) to share a cache directory,
+ * even at the same time: a shard is written while holding a lock on it,
+ * after reading again the results that other analyses wrote since it was
+ * loaded.
+ */
+public class ShardedAnalysisCache extends AbstractAnalysisCache {
+
+    /** Default number of shards. */
+    public static final int DEFAULT_SHARD_COUNT = 16;
+
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String SHARD_SUFFIX = ".cache";
+    private static final String LOCK_SUFFIX = ".lock";
+
+    /**
+     * File locks are held by the whole JVM, so the analyses of a JVM that
+     * share a directory must also exclude each other.
+     */
+    private static final ConcurrentMap<Path, Object> JVM_SHARD_LOCKS = new ConcurrentHashMap<>();
+
+    private final File cacheDir;
+    private final IntSupplier persistThreads;
+    private final Shard[] shards;
+
+    /** Files of the current analysis, whose results are replaced on persist. */
+    private final Set<FileId> analyzedFiles = new HashSet<>();
+    /** Ids of the files of the current analysis, by URI. */
+    private final Map<String, FileId> idMap = new HashMap<>();
+
+    /**
+     * Creates a new cache stored in the given directory, with the
+     * {@linkplain #DEFAULT_SHARD_COUNT default number of shards}.
+     *
+     * @param cacheDir The directory in which to store the shards
+     */
+    public ShardedAnalysisCache(final File cacheDir) {
+        this(cacheDir, DEFAULT_SHARD_COUNT, () -> 0);
+    }
+
+    /**
+     * Creates a new cache stored in the given directory.
+     *
+     * @param cacheDir       The directory in which to store the shards
+     * @param shardCount     Number of shards. Changing this invalidates the
+     *                       existing shards.
+     * @param persistThreads Number of threads with which to write the shards,
+     *                       queried when persisting. With zero or one thread,
+     *                       they are written on the calling thread.
+     */
+    public ShardedAnalysisCache(final File cacheDir, int shardCount, IntSupplier persistThreads) {
+        super();
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive, got " + shardCount);
+        }
+        this.cacheDir = cacheDir;
+        this.persistThreads = persistThreads;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(new File(cacheDir, SHARD_PREFIX + i + "-of-" + shardCount + SHARD_SUFFIX));
+        }
+    }
+
+    /**
+     * Returns true if any shard file exists. The validity of each shard is
+     * checked separately, when loading it.
+     */
+    @Override
+    protected boolean cacheExists() {
+        for (Shard shard : shards) {
+            if (shard.file.isFile()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void checkValidity(RuleSets ruleSets, List<Path> analysisClasspath, Collection<? extends TextFile> files) {
+        // the shards are compared with the current checksums when they are loaded
+        computeChecksums(ruleSets, analysisClasspath);
+
+        for (TextFile file : files) {
+            analyzedFiles.add(file.getFileId());
+            idMap.put(file.getFileId().getUriString(), file.getFileId());
+        }
+
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "load")) {
+            if (cacheDir.isFile()) {
+                LOG.error("The configured cache location must be the path to a directory, but is a file.");
+                return;
+            }
+            if (cacheExists()) {
+                for (Shard shard : shards) {
+                    shard.load();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected ConcurrentMap<FileId, AnalysisResult> cachedResultsOf(FileId file) {
+        return shardOf(file).cachedResults;
+    }
+
+    @Override
+    protected ConcurrentMap<FileId, AnalysisResult> updatedResultsOf(FileId file) {
+        return shardOf(file).updatedResults;
+    }
+
+    @Override
+    protected void clearCachedResults() {
+        for (Shard shard : shards) {
+            shard.cachedResults.clear();
+        }
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            if (cacheDir.isFile()) {
+                LOG.error("Cannot persist the cache, the given path points to a file.");
+                return;
+            }
+            if (!cacheDir.exists()) {
+                cacheDir.mkdirs();
+            }
+
+            final List<Shard> dirtyShards = new ArrayList<>();
+            for (Shard shard : shards) {
+                if (shard.isDirty()) {
+                    dirtyShards.add(shard);
+                }
+            }
+
+            final int threads = Math.min(persistThreads.getAsInt(), dirtyShards.size());
+            if (threads <= 1) {
+                dirtyShards.forEach(Shard::persist);
+                return;
+            }
+
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final List<Future<?>> writes = new ArrayList<>(dirtyShards.size());
+                for (Shard shard : dirtyShards) {
+                    writes.add(executor.submit(shard::persist));
+                }
+                for (Future<?> write : writes) {
+                    write.get();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while persisting the analysis cache, some shards may not be updated");
+            } catch (final ExecutionException e) {
+                LOG.error("Could not persist analysis cache: {}", e.getCause().toString());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private Shard shardOf(FileId fileId) {
+        return shards[Math.floorMod(fileId.getUriString().hashCode(), shards.length)];
+    }
+
+    /**
+     * Returns the file in which the results of the given file are stored.
+     */
+    File shardFile(FileId fileId) {
+        return shardOf(fileId).file;
+    }
+
+    /**
+     * The results of the files assigned to one shard file.
+     */
+    private final class Shard {
+
+        private final File file;
+        /** Results read from the shard file, if it is valid for the current analysis. */
+        private final ConcurrentMap<FileId, AnalysisResult> cachedResults = new ConcurrentHashMap<>();
+        /** Results of the files of the current analysis. */
+        private final ConcurrentMap<FileId, AnalysisResult> updatedResults = new ConcurrentHashMap<>();
+        /** Whether the shard file exists, but could not be used for this analysis. */
+        private boolean stale;
+
+        Shard(File file) {
+            this.file = file;
+        }
+
+        void load() {
+            if (file.isFile()) {
+                Map<FileId, AnalysisResult> results = read();
+                if (results == null) {
+                    stale = true;
+                } else {
+                    cachedResults.putAll(results);
+                }
+            }
+        }
+
+        /**
+         * Reads the shard file. Returns null if it cannot be used for the
+         * current analysis, because it is malformed, or because it was written
+         * with other checksums.
+         */
+        private Map<FileId, AnalysisResult> read() {
+            Map<FileId, AnalysisResult> results = new HashMap<>();
+            try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+
+                if (!PMDVersion.VERSION.equals(inputStream.readUTF())) {
+                    LOG.debug("Analysis cache shard {} invalidated, PMD version changed.", file);
+                    return null;
+                }
+                if (inputStream.readLong() != rulesetChecksum
+                    || inputStream.readLong() != auxClassPathChecksum
+                    || inputStream.readLong() != executionClassPathChecksum) {
+                    LOG.debug("Analysis cache shard {} invalidated, rulesets or classpath changed.", file);
+                    return null;
+                }
+
+                final int countFiles = inputStream.readInt();
+                for (int f = 0; f < countFiles; f++) {
+                    final String filePathId = inputStream.readUTF();
+                    FileId fileId = idMap.get(filePathId);
+                    if (fileId == null) {
+                        fileId = FileId.fromURI(filePathId);
+                    }
+                    final long checksum = inputStream.readLong();
+
+                    final int countViolations = inputStream.readInt();
+                    final List<RuleViolation> violations = new ArrayList<>(countViolations);
+                    for (int i = 0; i < countViolations; i++) {
+                        violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
+                    }
+                    results.put(fileId, new AnalysisResult(checksum, violations));
+                }
+            } catch (final EOFException e) {
+                LOG.warn("Cache shard {} is malformed, will not be used for current analysis", file.getPath());
+                return null;
+            } catch (final IOException e) {
+                LOG.error("Could not load analysis cache shard {}: {}", file, e.getMessage());
+                return null;
+            }
+            return results;
+        }
+
+        /**
+         * Returns true if the results of the current analysis differ from
+         * the ones that were loaded, or if the file could not be used.
+         */
+        boolean isDirty() {
+            if (stale) {
+                return true;
+            }
+            for (Map.Entry<FileId, AnalysisResult> entry : cachedResults.entrySet()) {
+                if (analyzedFiles.contains(entry.getKey()) && updatedResults.get(entry.getKey()) != entry.getValue()) {
+                    // changed, or analysis failed
+                    return true;
+                }
+            }
+            for (Map.Entry<FileId, AnalysisResult> entry : updatedResults.entrySet()) {
+                if (cachedResults.get(entry.getKey()) != entry.getValue()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Writes the shard file. The results of the files that are not part
+         * of the current analysis are read again from the file, while holding
+         * the lock, so that the results written by concurrent analyses are kept.
+         */
+        void persist() {
+            final Path lockFile = new File(cacheDir, file.getName() + LOCK_SUFFIX).toPath();
+            synchronized (JVM_SHARD_LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), k -> new Object())) {
+                try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock ignored = channel.lock()) {
+                    write(file.isFile() ? readOtherEntries() : Collections.emptyList());
+                } catch (final IOException e) {
+                    LOG.error("Could not persist analysis cache shard {}: {}", file, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Returns the serialized entries of the shard file that belong to
+         * files that are not part of the current analysis. They are copied
+         * as is, their rules may not be part of the current rulesets.
+         * Returns an empty list if the file cannot be used.
+         */
+        private List<byte[]> readOtherEntries() throws IOException {
+            final byte[] bytes = Files.readAllBytes(file.toPath());
+            final ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+            final List<byte[]> entries = new ArrayList<>();
+            try (DataInputStream inputStream = new DataInputStream(buffer)) {
+                if (!PMDVersion.VERSION.equals(inputStream.readUTF())
+                    || inputStream.readLong() != rulesetChecksum
+                    || inputStream.readLong() != auxClassPathChecksum
+                    || inputStream.readLong() != executionClassPathChecksum) {
+                    return Collections.emptyList();
+                }
+
+                final int countFiles = inputStream.readInt();
+                for (int f = 0; f < countFiles; f++) {
+                    final int start = bytes.length - buffer.available();
+                    final String filePathId = inputStream.readUTF();
+                    final FileId fileId = FileId.fromURI(filePathId);
+                    inputStream.readLong(); // checksum
+                    final int countViolations = inputStream.readInt();
+                    for (int i = 0; i < countViolations; i++) {
+                        CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper);
+                    }
+                    if (!idMap.containsKey(filePathId)) {
+                        entries.add(Arrays.copyOfRange(bytes, start, bytes.length - buffer.available()));
+                    }
+                }
+            } catch (final EOFException e) {
+                LOG.warn("Cache shard {} is malformed, the results of other analyses are dropped", file.getPath());
+                return Collections.emptyList();
+            }
+            return entries;
+        }
+
+        private void write(List<byte[]> otherEntries) throws IOException {
+            Path target = file.toPath();
+            Path tmp = Files.createTempFile(cacheDir.toPath(), file.getName(), ".tmp");
+            try {
+                try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    outputStream.writeUTF(pmdVersion);
+
+                    outputStream.writeLong(rulesetChecksum);
+                    outputStream.writeLong(auxClassPathChecksum);
+                    outputStream.writeLong(executionClassPathChecksum);
+
+                    outputStream.writeInt(otherEntries.size() + updatedResults.size());
+                    for (final byte[] entry : otherEntries) {
+                        outputStream.write(entry);
+                    }
+                    for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResults.entrySet()) {
+                        final List<RuleViolation> violations = resultEntry.getValue().getViolations();
+
+                        outputStream.writeUTF(resultEntry.getKey().getUriString()); // the path id
+                        outputStream.writeLong(resultEntry.getValue().getFileChecksum());
+
+                        outputStream.writeInt(violations.size());
+                        for (final RuleViolation rv : violations) {
+                            CachedRuleViolation.storeToStream(outputStream, rv);
+                        }
+                    }
+                }
+
+                try {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                LOG.debug("Analysis cache shard {} updated", file);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+}
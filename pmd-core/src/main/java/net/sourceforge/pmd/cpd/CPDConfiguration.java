@@ -12,6 +12,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -19,6 +20,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.AbstractConfiguration;
+import net.sourceforge.pmd.annotation.Experimental;
 import net.sourceforge.pmd.cpd.internal.CpdLanguagePropertiesDefaults;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageRegistry;
@@ -78,6 +80,10 @@ public class CPDConfiguration extends AbstractConfiguration {
 
     private String skipBlocksPattern = CpdLanguagePropertiesDefaults.DEFAULT_SKIP_BLOCKS_PATTERN;
 
+    private int threads = 0;
+
+    private MatchEngine matchEngine = MatchEngine.HASH;
+
     private boolean help;
 
 
@@ -156,6 +162,62 @@ public class CPDConfiguration extends AbstractConfiguration {
         this.minimumTileSize = minimumTileSize;
     }
 
+    /**
+     * Get the number of threads to use when tokenizing files.
+     *
+     * @return The number of threads.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads to use when tokenizing files. If zero,
+     * files are tokenized on the main thread. The default is zero.
+     *
+     * @param threads
+     *            The number of threads.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Get the algorithm used to find duplicates.
+     *
+     * @return The match engine.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public MatchEngine getMatchEngine() {
+        return matchEngine;
+    }
+
+    /**
+     * Set the algorithm used to find duplicates. The default is
+     * {@link MatchEngine#HASH}.
+     *
+     * @param matchEngine
+     *            The match engine.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public void setMatchEngine(MatchEngine matchEngine) {
+        this.matchEngine = Objects.requireNonNull(matchEngine, "Match engine was null");
+    }
+
     public boolean isSkipDuplicates() {
         return skipDuplicates;
     }
@@ -283,5 +345,24 @@ public class CPDConfiguration extends AbstractConfiguration {
         }
     }
 
-
+    /**
+     * The algorithms that can be used to find duplicates.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public enum MatchEngine {
+        /**
+         * Hashes the tiles of tokens of the minimum size with a rolling
+         * hash, and extends the matches pairwise.
+         */
+        HASH,
+        /**
+         * Enumerates the maximal repeats of the token sequence with a
+         * suffix array. Its running time and memory usage are more
+         * predictable on highly repetitive code, e.g. generated sources.
+         */
+        SUFFIX_ARRAY
+    }
 }
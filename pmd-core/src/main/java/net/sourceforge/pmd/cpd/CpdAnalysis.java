@@ -8,11 +8,18 @@ import java.io.IOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -21,6 +28,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.internal.util.FileCollectionUtil;
 import net.sourceforge.pmd.internal.util.IOUtil;
 import net.sourceforge.pmd.lang.Language;
@@ -89,6 +97,9 @@ public final class CpdAnalysis implements AutoCloseable {
             config.getLanguageVersionDiscoverer(),
             reporter
         );
+        if (SystemProps.isParallelFileWalkMode()) {
+            this.files.setThreads(Math.max(1, config.getThreads()));
+        }
 
         this.renderer = config.getCPDReportRenderer();
 
@@ -201,21 +212,34 @@ public final class CpdAnalysis implements AutoCloseable {
         }
 
         LOGGER.debug("Running match algorithm on {} files...", sourceManager.size());
-        MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, configuration.getMinimumTileSize());
-        List<Match> matches = matchAlgorithm.findMatches(listener, sourceManager);
+        List<Match> matches;
+        if (configuration.getMatchEngine() == CPDConfiguration.MatchEngine.SUFFIX_ARRAY) {
+            SuffixArrayMatchAlgorithm matchAlgorithm = new SuffixArrayMatchAlgorithm(tokens, configuration.getMinimumTileSize());
+            matches = matchAlgorithm.findMatches(listener, sourceManager);
+        } else {
+            MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, configuration.getMinimumTileSize());
+            matches = matchAlgorithm.findMatches(listener, sourceManager);
+        }
         LOGGER.debug("Finished: {} duplicates found", matches.size());
         return matches;
     }
 
+    private Map<Language, CpdLexer> createLexers(SourceManager sourceManager) {
+        return sourceManager.getTextFiles().stream()
+                .map(it -> it.getLanguageVersion().getLanguage())
+                .distinct()
+                .filter(it -> it instanceof CpdCapableLanguage)
+                .collect(Collectors.toMap(lang -> lang, lang -> ((CpdCapableLanguage) lang).createCpdLexer(configuration.getLanguageProperties(lang))));
+    }
+
     @SuppressWarnings("PMD.CloseResource")
     // TextFiles and TextDocuments are managed by sourceManager, which closes all text files in the end.
     private Tokens tokenizeFiles(SourceManager sourceManager) {
-        Map<Language, CpdLexer> tokenizers =
-                sourceManager.getTextFiles().stream()
-                        .map(it -> it.getLanguageVersion().getLanguage())
-                        .distinct()
-                        .filter(it -> it instanceof CpdCapableLanguage)
-                        .collect(Collectors.toMap(lang -> lang, lang -> ((CpdCapableLanguage) lang).createCpdLexer(configuration.getLanguageProperties(lang))));
+        if (configuration.getThreads() > 0) {
+            return tokenizeFilesInParallel(sourceManager, configuration.getThreads());
+        }
+
+        Map<Language, CpdLexer> tokenizers = createLexers(sourceManager);
 
         Tokens tokens = new Tokens();
         for (TextFile textFile : sourceManager.getTextFiles()) {
@@ -226,18 +250,88 @@ public final class CpdAnalysis implements AutoCloseable {
                 numberOfTokensPerFile.put(textDocument.getFileId(), newTokens);
                 listener.addedFile(1);
             } catch (IOException | FileAnalysisException e) {
-                if (e instanceof FileAnalysisException) { // NOPMD
-                    ((FileAnalysisException) e).setFileId(textFile.getFileId());
-                }
-                String message = configuration.isSkipLexicalErrors() ? "Skipping file" : "Error while tokenizing";
-                reporter.errorEx(message, e);
-                processingErrors.add(new Report.ProcessingError(e, textFile.getFileId()));
+                tokenizationFailed(textFile, e);
                 savedState.restore(tokens);
             }
         }
         return tokens;
     }
 
+    /**
+     * Tokenizes every file into its own {@link Tokens} buffer on a thread pool.
+     * The buffers are merged in the order of the files, so that the result is
+     * the same as with {@link #tokenizeFiles(SourceManager)} on a single thread.
+     * Lexers are not necessarily thread-safe, so each thread creates its own.
+     *
+     * <p>At most {@code 2 * threads} files are tokenized ahead of the merge,
+     * so that only a bounded number of per-file buffers are held at once.
+     */
+    @SuppressWarnings("PMD.CloseResource")
+    private Tokens tokenizeFilesInParallel(SourceManager sourceManager, int threads) {
+        LOGGER.debug("Using {} threads for tokenization", threads);
+        ThreadLocal<Map<Language, CpdLexer>> tokenizers = ThreadLocal.withInitial(() -> createLexers(sourceManager));
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> new Thread(r, "CpdThread " + threadCounter.incrementAndGet()));
+        try {
+            final int maxPending = 2 * threads;
+            List<TextFile> textFiles = sourceManager.getTextFiles();
+            Deque<Future<Tokens>> pending = new ArrayDeque<>(maxPending);
+            Tokens tokens = new Tokens();
+            int submitted = 0;
+            for (int merged = 0; merged < textFiles.size(); merged++) {
+                while (submitted < textFiles.size() && pending.size() < maxPending) {
+                    TextFile toTokenize = textFiles.get(submitted++);
+                    pending.addLast(executor.submit(() -> {
+                        Tokens fileTokens = new Tokens();
+                        doTokenize(sourceManager.get(toTokenize), tokenizers.get().get(toTokenize.getLanguageVersion().getLanguage()), fileTokens);
+                        return fileTokens;
+                    }));
+                }
+
+                TextFile textFile = textFiles.get(merged);
+                try {
+                    Tokens fileTokens = awaitTokens(pending.removeFirst());
+                    tokens.appendAll(fileTokens);
+                    numberOfTokensPerFile.put(textFile.getFileId(), fileTokens.size() - 1); /* EOF */
+                    listener.addedFile(1);
+                } catch (IOException | FileAnalysisException e) {
+                    tokenizationFailed(textFile, e);
+                }
+            }
+            return tokens;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Tokens awaitTokens(Future<Tokens> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while tokenizing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void tokenizationFailed(TextFile textFile, Exception e) {
+        if (e instanceof FileAnalysisException) { // NOPMD
+            ((FileAnalysisException) e).setFileId(textFile.getFileId());
+        }
+        String message = configuration.isSkipLexicalErrors() ? "Skipping file" : "Error while tokenizing";
+        reporter.errorEx(message, e);
+        processingErrors.add(new Report.ProcessingError(e, textFile.getFileId()));
+    }
+
     @Override
     public void close() throws IOException {
         // nothing for now
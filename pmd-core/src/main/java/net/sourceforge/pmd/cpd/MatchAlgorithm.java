@@ -4,12 +4,9 @@
 
 package net.sourceforge.pmd.cpd;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
@@ -19,12 +16,10 @@ class MatchAlgorithm {
     private int lastMod = 1;
 
     private final Tokens tokens;
-    private final List<TokenEntry> code;
     private final int minTileSize;
 
     MatchAlgorithm(Tokens tokens, int minTileSize) {
         this.tokens = tokens;
-        this.code = tokens.getTokens();
         this.minTileSize = minTileSize;
         for (int i = 0; i < minTileSize; i++) {
             lastMod *= MOD;
@@ -32,8 +27,13 @@ class MatchAlgorithm {
     }
 
 
-    public TokenEntry tokenAt(int offset, TokenEntry m) {
-        return code.get(offset + m.getIndex());
+    public TokenEntry tokenAt(int index) {
+        return tokens.getToken(index);
+    }
+
+    /** Returns the identifier of the token at the given index. */
+    int identifierAt(int index) {
+        return tokens.getIdentifier(index);
     }
 
     public int getMinimumTileSize() {
@@ -44,23 +44,40 @@ class MatchAlgorithm {
         MatchCollector matchCollector = new MatchCollector(this);
         {
             cpdListener.phaseUpdate(CPDListener.HASH);
-            Map<TokenEntry, Object> markGroups = hash();
+            long[] marks = hash();
 
             cpdListener.phaseUpdate(CPDListener.MATCH);
-            markGroups.values()
-                      .stream()
-                      .filter(it -> it instanceof List)
-                      .forEach(it -> {
-                          @SuppressWarnings("unchecked")
-                          List<TokenEntry> l = (List<TokenEntry>) it;
-                          Collections.reverse(l);
-                          matchCollector.collect(l);
-                      });
-            // put markGroups out of scope
+            // marks are sorted by hash, then by index: a run of marks
+            // with the same hash is a group of potential matches
+            int groupStart = 0;
+            while (groupStart < marks.length) {
+                int groupEnd = groupStart + 1;
+                while (groupEnd < marks.length && hashOf(marks[groupEnd]) == hashOf(marks[groupStart])) {
+                    groupEnd++;
+                }
+                if (groupEnd - groupStart > 1) {
+                    int[] group = new int[groupEnd - groupStart];
+                    for (int i = 0; i < group.length; i++) {
+                        group[i] = indexOf(marks[groupStart + i]);
+                    }
+                    matchCollector.collect(group);
+                }
+                groupStart = groupEnd;
+            }
+            // put marks out of scope
         }
 
         cpdListener.phaseUpdate(CPDListener.GROUPING);
         List<Match> matches = matchCollector.getMatches();
+        finishMatches(tokens, matches);
+        cpdListener.phaseUpdate(CPDListener.DONE);
+        return matches;
+    }
+
+    /**
+     * Sorts the matches and sets the end token of their marks.
+     */
+    static void finishMatches(Tokens tokens, List<Match> matches) {
         matches.sort(Comparator.naturalOrder());
 
         for (Match match : matches) {
@@ -71,48 +88,45 @@ class MatchAlgorithm {
                 mark.setEndToken(endToken);
             }
         }
-        cpdListener.phaseUpdate(CPDListener.DONE);
-        return matches;
     }
 
+    private static int hashOf(long mark) {
+        return (int) (mark >> 32);
+    }
+
+    private static int indexOf(long mark) {
+        return (int) mark;
+    }
+
+    /**
+     * Computes the hash of the tile starting at each token. Returns the
+     * hashed tokens, each one packed in a long with its hash in the high
+     * bits and its index in the low bits, sorted.
+     */
     @SuppressWarnings("PMD.JumbledIncrementer")
-    private Map<TokenEntry, Object> hash() {
+    private long[] hash() {
         int lastHash = 0;
-        Map<TokenEntry, Object> markGroups = new HashMap<>(tokens.size());
-        for (int i = code.size() - 1; i >= 0; i--) {
-            TokenEntry token = code.get(i);
-            if (!token.isEof()) {
-                int last = tokenAt(minTileSize, token).getIdentifier();
-                lastHash = MOD * lastHash + token.getIdentifier() - lastMod * last;
-                token.setHashCode(lastHash);
-                Object o = markGroups.get(token);
-
-                // Note that this insertion method is worthwhile since the vast
-                // majority
-                // markGroup keys will have only one value.
-                if (o == null) {
-                    markGroups.put(token, token);
-                } else if (o instanceof TokenEntry) {
-                    List<TokenEntry> l = new ArrayList<>();
-                    l.add((TokenEntry) o);
-                    l.add(token);
-                    markGroups.put(token, l);
-                } else {
-                    @SuppressWarnings("unchecked")
-                    List<TokenEntry> l = (List<TokenEntry>) o;
-                    l.add(token);
-                }
+        long[] marks = new long[tokens.size()];
+        int numMarks = 0;
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            int identifier = tokens.getIdentifier(i);
+            if (identifier != TokenEntry.EOF) {
+                int last = tokens.getIdentifier(i + minTileSize);
+                lastHash = MOD * lastHash + identifier - lastMod * last;
+                marks[numMarks++] = (long) lastHash << 32 | i;
             } else {
                 lastHash = 0;
                 for (int end = Math.max(0, i - minTileSize + 1); i > end; i--) {
-                    token = code.get(i - 1);
-                    lastHash = MOD * lastHash + token.getIdentifier();
-                    if (token.isEof()) {
+                    identifier = tokens.getIdentifier(i - 1);
+                    lastHash = MOD * lastHash + identifier;
+                    if (identifier == TokenEntry.EOF) {
                         break;
                     }
                 }
             }
         }
-        return markGroups;
+        marks = Arrays.copyOf(marks, numMarks);
+        Arrays.sort(marks);
+        return marks;
     }
 }
@@ -0,0 +1,274 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Finds duplicates using a suffix array and an LCP array over the token
+ * identifiers. This is an alternative to {@link MatchAlgorithm}, whose
+ * pairwise extension of the matches degrades on highly repetitive code.
+ *
+ * <p>The suffix array is built by prefix doubling with radix sorts, in
+ * O(n log n), and the LCP array with Kasai's algorithm, in O(n). Each
+ * LCP interval whose length is at least the minimum tile size and whose
+ * occurrences are not all preceded by the same token is a maximal repeat,
+ * which is reported as a match. Overlapping occurrences of a repeat
+ * are dropped. Apart from the matches, memory usage is a few int arrays
+ * of the size of the token sequence.
+ *
+ * <p>EOF tokens are replaced with identifiers that are unique to each
+ * file, so that no match crosses a file boundary.
+ */
+class SuffixArrayMatchAlgorithm {
+
+    private final Tokens tokens;
+    private final int minTileSize;
+
+    SuffixArrayMatchAlgorithm(Tokens tokens, int minTileSize) {
+        this.tokens = tokens;
+        this.minTileSize = minTileSize;
+    }
+
+    public List<Match> findMatches(@NonNull CPDListener cpdListener, SourceManager sourceManager) {
+        List<Match> matches = new ArrayList<>();
+        {
+            cpdListener.phaseUpdate(CPDListener.HASH);
+            int[] text = text();
+            int[] suffixArray = suffixArray(text);
+            int[] lcp = lcp(text, suffixArray);
+
+            cpdListener.phaseUpdate(CPDListener.MATCH);
+            collectRepeats(text, suffixArray, lcp, matches);
+            // put arrays out of scope
+        }
+
+        cpdListener.phaseUpdate(CPDListener.GROUPING);
+        MatchAlgorithm.finishMatches(tokens, matches);
+        cpdListener.phaseUpdate(CPDListener.DONE);
+        return matches;
+    }
+
+    /**
+     * Returns the identifiers of the tokens, where EOF tokens are
+     * replaced with unique identifiers greater than all the others.
+     */
+    private int[] text() {
+        int n = tokens.size();
+        int[] text = new int[n];
+        int maxId = 0;
+        for (int i = 0; i < n; i++) {
+            text[i] = tokens.getIdentifier(i);
+            maxId = Math.max(maxId, text[i]);
+        }
+        int nextEof = maxId + 1;
+        for (int i = 0; i < n; i++) {
+            if (text[i] == TokenEntry.EOF) {
+                text[i] = nextEof++;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Sorts the suffixes of the text by prefix doubling. After each round,
+     * the suffixes are sorted by their first {@code 2k} symbols, and
+     * {@code rank} holds the class of each suffix for that ordering.
+     */
+    static int[] suffixArray(int[] text) {
+        final int n = text.length;
+        int[] sa = new int[n];
+        int[] rank = new int[n];
+        int[] tmp = new int[n];
+        if (n == 0) {
+            return sa;
+        }
+
+        int alphabetSize = 0;
+        for (int symbol : text) {
+            alphabetSize = Math.max(alphabetSize, symbol + 1);
+        }
+        int[] counts = new int[Math.max(alphabetSize, n) + 1];
+
+        // initial ranks are the symbols themselves
+        for (int i = 0; i < n; i++) {
+            counts[text[i]]++;
+        }
+        for (int i = 1; i < alphabetSize; i++) {
+            counts[i] += counts[i - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            sa[--counts[text[i]]] = i;
+        }
+        int classes = 1;
+        rank[sa[0]] = 0;
+        for (int i = 1; i < n; i++) {
+            if (text[sa[i]] != text[sa[i - 1]]) {
+                classes++;
+            }
+            rank[sa[i]] = classes - 1;
+        }
+
+        for (int k = 1; classes < n; k <<= 1) {
+            // order by second key: suffixes shorter than k come first
+            int p = 0;
+            for (int i = n - k; i < n; i++) {
+                tmp[p++] = i;
+            }
+            for (int i = 0; i < n; i++) {
+                if (sa[i] >= k) {
+                    tmp[p++] = sa[i] - k;
+                }
+            }
+
+            // stable counting sort by first key
+            Arrays.fill(counts, 0, classes, 0);
+            for (int i = 0; i < n; i++) {
+                counts[rank[i]]++;
+            }
+            for (int i = 1; i < classes; i++) {
+                counts[i] += counts[i - 1];
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                sa[--counts[rank[tmp[i]]]] = tmp[i];
+            }
+
+            // compute the new classes
+            tmp[sa[0]] = 0;
+            classes = 1;
+            for (int i = 1; i < n; i++) {
+                int cur = sa[i];
+                int prev = sa[i - 1];
+                if (rank[cur] != rank[prev] || secondRank(rank, cur + k) != secondRank(rank, prev + k)) {
+                    classes++;
+                }
+                tmp[cur] = classes - 1;
+            }
+            int[] swap = rank;
+            rank = tmp;
+            tmp = swap;
+        }
+        return sa;
+    }
+
+    private static int secondRank(int[] rank, int index) {
+        return index < rank.length ? rank[index] : -1;
+    }
+
+    /**
+     * Computes the LCP array with Kasai's algorithm. {@code lcp[i]} is
+     * the length of the longest common prefix of the suffixes at
+     * {@code sa[i - 1]} and {@code sa[i]}, and {@code lcp[0]} is zero.
+     */
+    static int[] lcp(int[] text, int[] sa) {
+        final int n = text.length;
+        int[] lcp = new int[n];
+        // inverse of the suffix array
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[sa[i]] = i;
+        }
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            int pos = positions[i];
+            if (pos > 0) {
+                int j = sa[pos - 1];
+                while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+                    h++;
+                }
+                lcp[pos] = h;
+                if (h > 0) {
+                    h--;
+                }
+            } else {
+                h = 0;
+            }
+        }
+        return lcp;
+    }
+
+    /**
+     * Enumerates the LCP intervals bottom-up with a stack, and reports the
+     * maximal repeats that are long enough.
+     */
+    private void collectRepeats(int[] text, int[] sa, int[] lcp, List<Match> matches) {
+        final int n = sa.length;
+        // stack of intervals, as parallel arrays of lcp and left bound
+        int[] stackLcp = new int[16];
+        int[] stackLeft = new int[16];
+        int top = 0;
+        stackLcp[0] = 0;
+        stackLeft[0] = 0;
+
+        for (int i = 1; i <= n; i++) {
+            int curLcp = i < n ? lcp[i] : 0;
+            int left = i - 1;
+            while (curLcp < stackLcp[top]) {
+                left = stackLeft[top];
+                if (stackLcp[top] >= minTileSize) {
+                    reportRepeat(text, sa, stackLcp[top], left, i - 1, matches);
+                }
+                top--;
+            }
+            if (curLcp > stackLcp[top]) {
+                top++;
+                if (top == stackLcp.length) {
+                    stackLcp = Arrays.copyOf(stackLcp, top * 2);
+                    stackLeft = Arrays.copyOf(stackLeft, top * 2);
+                }
+                stackLcp[top] = curLcp;
+                stackLeft[top] = left;
+            }
+        }
+    }
+
+    private void reportRepeat(int[] text, int[] sa, int length, int left, int right, List<Match> matches) {
+        if (!isLeftMaximal(text, sa, left, right)) {
+            // all occurrences extend to the left, this is part of a longer repeat
+            return;
+        }
+
+        int[] occurrences = Arrays.copyOfRange(sa, left, right + 1);
+        Arrays.sort(occurrences);
+
+        Match match = null;
+        int first = occurrences[0];
+        int lastKept = first;
+        for (int k = 1; k < occurrences.length; k++) {
+            int occurrence = occurrences[k];
+            if (occurrence < lastKept + length) {
+                // overlaps with the previous occurrence
+                continue;
+            }
+            if (match == null) {
+                match = new Match(length, tokens.getToken(first), tokens.getToken(occurrence));
+            } else {
+                match.addMark(tokens.getToken(occurrence));
+            }
+            lastKept = occurrence;
+        }
+        if (match != null) {
+            matches.add(match);
+        }
+    }
+
+    private static boolean isLeftMaximal(int[] text, int[] sa, int left, int right) {
+        int previous = previousSymbol(text, sa[left]);
+        for (int k = left + 1; k <= right; k++) {
+            if (previousSymbol(text, sa[k]) != previous) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int previousSymbol(int[] text, int position) {
+        return position == 0 ? -1 : text[position - 1];
+    }
+}
@@ -6,78 +6,58 @@ package net.sourceforge.pmd.cpd;
 
 import net.sourceforge.pmd.lang.document.FileId;
 
+/**
+ * A token recorded in a {@link Tokens} instance. The data of the token
+ * is stored in the token collection, this object is only a view of the
+ * token at a given index, and may be created anew each time the token
+ * is accessed. Two entries are equal if they are views of the same token
+ * of the same collection.
+ */
 public class TokenEntry implements Comparable<TokenEntry> {
 
-    private static final int EOF = 0;
-
-    private final FileId fileId;
-    private final int beginLine;
-    private final int beginColumn;
-    private final int endColumn;
-    private final int endLine;
-    private int index;
-    private int identifier;
-    private int hashCode;
-
-    /** constructor for EOF entries. */
-    TokenEntry(FileId fileId, int line, int column) {
-        assert isOk(line) && isOk(column) : "Coordinates are 1-based";
-        this.identifier = EOF;
-        this.fileId = fileId;
-        this.beginLine = line;
-        this.beginColumn = column;
-        this.endLine = line;
-        this.endColumn = column;
-    }
+    /** Identifier of EOF tokens. */
+    static final int EOF = 0;
+
+    private final Tokens tokens;
+    private final int index;
 
-    TokenEntry(int imageId, FileId fileId, int beginLine, int beginColumn, int endLine, int endColumn, int index) {
-        assert isOk(beginLine) && isOk(beginColumn) && isOk(endLine) && isOk(endColumn) : "Coordinates are 1-based";
-        assert imageId != EOF;
-        this.fileId = fileId;
-        this.beginLine = beginLine;
-        this.beginColumn = beginColumn;
-        this.endLine = endLine;
-        this.endColumn = endColumn;
-        this.identifier = imageId;
+    TokenEntry(Tokens tokens, int index) {
+        this.tokens = tokens;
         this.index = index;
     }
 
     public boolean isEof() {
-        return this.identifier == EOF;
-    }
-
-    private boolean isOk(int coord) {
-        return coord >= 1;
+        return getIdentifier() == EOF;
     }
 
 
     FileId getFileId() {
-        return fileId;
+        return tokens.getFileId(index);
     }
 
 
     /** The line number where this token starts. */
     public int getBeginLine() {
-        return beginLine;
+        return tokens.getBeginLine(index);
     }
 
     /** The line number where this token ends. */
     public int getEndLine() {
-        return endLine;
+        return tokens.getEndLine(index);
     }
 
     /** The column number where this token starts, inclusive. */
     public int getBeginColumn() {
-        return beginColumn;
+        return tokens.getBeginColumn(index);
     }
 
     /** The column number where this token ends, exclusive. */
     public int getEndColumn() {
-        return endColumn;
+        return tokens.getEndColumn(index);
     }
 
     int getIdentifier() {
-        return this.identifier;
+        return tokens.getIdentifier(index);
     }
 
     int getIndex() {
@@ -86,11 +66,7 @@ public class TokenEntry implements Comparable<TokenEntry> {
 
     @Override
     public int hashCode() {
-        return hashCode;
-    }
-
-    void setHashCode(int hashCode) {
-        this.hashCode = hashCode;
+        return index;
     }
 
     @Override
@@ -101,28 +77,19 @@ public class TokenEntry implements Comparable<TokenEntry> {
             return false;
         }
         TokenEntry other = (TokenEntry) o;
-        if (other.isEof() != this.isEof()) {
-            return false;
-        } else if (this.isEof()) {
-            return other.getFileId().equals(this.getFileId());
-        }
-        return other.hashCode == hashCode;
+        return other.tokens == tokens && other.index == index; // NOPMD CompareObjectsWithEquals
     }
 
     @Override
     public int compareTo(TokenEntry other) {
-        return getIndex() - other.getIndex();
-    }
-
-    final void setImageIdentifier(int identifier) {
-        this.identifier = identifier;
+        return Integer.compare(getIndex(), other.getIndex());
     }
 
     public String getImage(Tokens tokens) {
         if (this.isEof()) {
             return "EOF";
         }
-        String image = tokens.imageFromId(this.identifier);
+        String image = tokens.imageFromId(getIdentifier());
         return image == null ? "--unknown--" : image;
     }
 
@@ -131,7 +98,7 @@ public class TokenEntry implements Comparable<TokenEntry> {
         if (this.isEof()) {
             return "EOF";
         }
-        return Integer.toString(identifier);
+        return Integer.toString(getIdentifier());
     }
 
 }
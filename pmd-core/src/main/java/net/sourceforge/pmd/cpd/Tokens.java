@@ -4,7 +4,9 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,11 +22,28 @@ import net.sourceforge.pmd.lang.document.TextDocument;
 /**
  * Global token collector for CPD. This is populated by lexing all files,
  * after which the match algorithm proceeds.
+ *
+ * <p>Tokens are stored in columns of primitive arrays, indexed by the
+ * index of the token. Tokens of a file are contiguous, so the file of
+ * each token is not stored, only the index at which each file starts.
+ * {@link TokenEntry} instances are views created on demand.
  */
 public class Tokens {
 
-    // This stores all the token entries recorded during the run.
-    private final List<TokenEntry> tokens = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // The columns storing all the tokens recorded during the run.
+    private int size;
+    private int[] identifiers = new int[INITIAL_CAPACITY];
+    private int[] beginLines = new int[INITIAL_CAPACITY];
+    private int[] beginColumns = new int[INITIAL_CAPACITY];
+    private int[] endLines = new int[INITIAL_CAPACITY];
+    private int[] endColumns = new int[INITIAL_CAPACITY];
+
+    // The files of the tokens, and the index of their first token.
+    private final List<FileId> files = new ArrayList<>();
+    private int[] fileStarts = new int[16];
+
     private final Map<String, Integer> images = new HashMap<>();
     // the first ID is 1, 0 is the ID of the EOF token.
     private int curImageId = 1;
@@ -38,17 +57,78 @@ public class Tokens {
         // constructor is package private
     }
 
-    private void add(TokenEntry tokenEntry) {
-        this.tokens.add(tokenEntry);
+    private int add(int imageId, FileId fileId, int beginLine, int beginColumn, int endLine, int endColumn) {
+        assert isOk(beginLine) && isOk(beginColumn) && isOk(endLine) && isOk(endColumn) : "Coordinates are 1-based";
+        ensureCapacity(size + 1);
+        startFile(fileId, size);
+        identifiers[size] = imageId;
+        beginLines[size] = beginLine;
+        beginColumns[size] = beginColumn;
+        endLines[size] = endLine;
+        endColumns[size] = endColumn;
+        return size++;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > identifiers.length) {
+            int newCapacity = Math.max(minCapacity, identifiers.length + (identifiers.length >> 1));
+            identifiers = Arrays.copyOf(identifiers, newCapacity);
+            beginLines = Arrays.copyOf(beginLines, newCapacity);
+            beginColumns = Arrays.copyOf(beginColumns, newCapacity);
+            endLines = Arrays.copyOf(endLines, newCapacity);
+            endColumns = Arrays.copyOf(endColumns, newCapacity);
+        }
+    }
+
+    private void startFile(FileId fileId, int start) {
+        if (files.isEmpty() || !files.get(files.size() - 1).equals(fileId)) {
+            if (files.size() == fileStarts.length) {
+                fileStarts = Arrays.copyOf(fileStarts, fileStarts.length * 2);
+            }
+            fileStarts[files.size()] = start;
+            files.add(fileId);
+        }
+    }
+
+    /**
+     * Appends all the tokens of the other instance to this one. The image
+     * IDs of the other instance are remapped to the IDs of this instance,
+     * so that equal images still have equal IDs.
+     *
+     * @param other Tokens to append, which is not modified
+     */
+    void appendAll(Tokens other) {
+        int[] idMap = new int[other.curImageId];
+        // EOF tokens keep ID 0
+        for (Entry<String, Integer> image : other.images.entrySet()) {
+            idMap[image.getValue()] = getImageId(image.getKey());
+        }
+
+        int offset = size;
+        ensureCapacity(offset + other.size);
+        for (int i = 0; i < other.size; i++) {
+            identifiers[offset + i] = idMap[other.identifiers[i]];
+        }
+        System.arraycopy(other.beginLines, 0, beginLines, offset, other.size);
+        System.arraycopy(other.beginColumns, 0, beginColumns, offset, other.size);
+        System.arraycopy(other.endLines, 0, endLines, offset, other.size);
+        System.arraycopy(other.endColumns, 0, endColumns, offset, other.size);
+        for (int i = 0; i < other.files.size(); i++) {
+            startFile(other.files.get(i), offset + other.fileStarts[i]);
+        }
+        size += other.size;
+    }
+
+    private static boolean isOk(int coord) {
+        return coord >= 1;
     }
 
     private void addEof(FileId filePathId, int line, int column) {
-        add(new TokenEntry(filePathId, line, column));
+        add(TokenEntry.EOF, filePathId, line, column, line, column);
     }
 
     private void setImage(TokenEntry entry, String newImage) {
-        int i = getImageId(newImage);
-        entry.setImageIdentifier(i);
+        identifiers[entry.getIndex()] = getImageId(newImage);
     }
 
     private int getImageId(String newImage) {
@@ -60,29 +140,72 @@ public class Tokens {
     }
 
     private TokenEntry peekLastToken() {
-        return tokens.isEmpty() ? null : getToken(size() - 1);
+        return size == 0 ? null : getToken(size - 1);
     }
 
-    private TokenEntry getToken(int index) {
-        return tokens.get(index);
+    TokenEntry getToken(int index) {
+        return new TokenEntry(this, index);
+    }
+
+    int getIdentifier(int index) {
+        return identifiers[index];
+    }
+
+    int getBeginLine(int index) {
+        return beginLines[index];
+    }
+
+    int getBeginColumn(int index) {
+        return beginColumns[index];
+    }
+
+    int getEndLine(int index) {
+        return endLines[index];
+    }
+
+    int getEndColumn(int index) {
+        return endColumns[index];
+    }
+
+    FileId getFileId(int index) {
+        int file = Arrays.binarySearch(fileStarts, 0, files.size(), index);
+        if (file < 0) {
+            // index of the last file starting before the token
+            file = -file - 2;
+        }
+        return files.get(file);
     }
 
     public int size() {
-        return tokens.size();
+        return size;
     }
 
     TokenEntry getEndToken(TokenEntry mark, Match match) {
         return getToken(mark.getIndex() + match.getTokenCount() - 1);
     }
 
+    /**
+     * Returns a view of the recorded tokens.
+     */
     public List<TokenEntry> getTokens() {
-        return tokens;
+        return new AbstractList<TokenEntry>() {
+            @Override
+            public TokenEntry get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+                }
+                return getToken(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     TokenEntry addToken(String image, FileId fileName, int startLine, int startCol, int endLine, int endCol) {
-        TokenEntry newToken = new TokenEntry(getImageId(image), fileName, startLine, startCol, endLine, endCol, tokens.size());
-        add(newToken);
-        return newToken;
+        return getToken(add(getImageId(image), fileName, startLine, startCol, endLine, endCol));
     }
 
     State savePoint() {
@@ -146,10 +269,12 @@ public class Tokens {
     static final class State {
 
         private final int tokenCount;
+        private final int fileCount;
         private final int curImageId;
 
         State(Tokens tokens) {
-            this.tokenCount = tokens.tokens.size();
+            this.tokenCount = tokens.size;
+            this.fileCount = tokens.files.size();
             this.curImageId = tokens.curImageId;
         }
 
@@ -157,8 +282,8 @@ public class Tokens {
             tokens.images.entrySet().removeIf(e -> e.getValue() >= curImageId);
             tokens.curImageId = this.curImageId;
 
-            final List<TokenEntry> entries = tokens.getTokens();
-            entries.subList(tokenCount, entries.size()).clear();
+            tokens.size = tokenCount;
+            tokens.files.subList(fileCount, tokens.files.size()).clear();
         }
     }
 
@@ -7,6 +7,12 @@ package net.sourceforge.pmd.internal;
 public final class SystemProps {
 
     public static final String PMD_ERROR_RECOVERY = "pmd.error_recovery";
+    public static final String PMD_VIRTUAL_THREADS = "pmd.virtual_threads";
+    public static final String PMD_PIPELINED = "pmd.pipelined";
+    public static final String PMD_MMAP_SOURCES = "pmd.mmap_sources";
+    public static final String PMD_FUSED_RULE_DISPATCH = "pmd.fused_rule_dispatch";
+    public static final String PMD_SHARED_XPATH_STEPS = "pmd.shared_xpath_steps";
+    public static final String PMD_PARALLEL_FILE_WALK = "pmd.parallel_file_walk";
 
     private SystemProps() {
     }
@@ -25,4 +31,85 @@ public final class SystemProps {
     public static boolean isErrorRecoveryMode() {
         return System.getProperty(PMD_ERROR_RECOVERY) != null;
     }
+
+    /**
+     * In virtual threads mode, each file is analysed on its own virtual thread,
+     * if the JVM supports virtual threads (Java 21+). The number of files that
+     * are analysed in parallel is still bounded by the configured thread count,
+     * but reading files can overlap with the analysis of other files.
+     * If virtual threads are not supported, this setting is ignored.
+     * <p>
+     * The System Property is called {@code pmd.virtual_threads}.
+     */
+    public static boolean isVirtualThreadsMode() {
+        return System.getProperty(PMD_VIRTUAL_THREADS) != null;
+    }
+
+    /**
+     * In pipelined mode, files are read and decoded by separate threads,
+     * ahead of the threads that analyse them, so that the analysis doesn't
+     * wait for IO. The number of files read ahead is bounded. Without an
+     * analysis cache, the analysis also starts while the input directories
+     * are still being walked. This has no effect when analysing on the main
+     * thread, or in virtual threads mode, which already reads files ahead.
+     * <p>
+     * The System Property is called {@code pmd.pipelined}.
+     */
+    public static boolean isPipelinedMode() {
+        return System.getProperty(PMD_PIPELINED) != null;
+    }
+
+    /**
+     * When enabled, large source files in a charset like UTF-8 are memory-mapped
+     * instead of being read into a byte array before decoding. This is
+     * not enabled by default, because on some platforms, like Windows,
+     * a mapped file cannot be written until the mapping is garbage collected,
+     * which would prevent writing fixes to the file.
+     * <p>
+     * The System Property is called {@code pmd.mmap_sources}.
+     */
+    public static boolean isMemoryMappedSourcesMode() {
+        return System.getProperty(PMD_MMAP_SOURCES) != null;
+    }
+
+    /**
+     * In fused rule dispatch mode, the rules are applied to a file in a single
+     * traversal of its AST: each node is passed to all the rules that visit it,
+     * before moving on to the next node. By default, each rule iterates over
+     * the nodes it visits in turn. The violations of each rule are still reported
+     * together, in the order of the rules, though the violations of a single rule
+     * may be in another order.
+     * <p>
+     * The System Property is called {@code pmd.fused_rule_dispatch}.
+     */
+    public static boolean isFusedRuleDispatchMode() {
+        return System.getProperty(PMD_FUSED_RULE_DISPATCH) != null;
+    }
+
+    /**
+     * In shared XPath steps mode, the XPath rules that start with the same
+     * path from the same rule chain nodes, like {@code //A/B[...]}, share the
+     * evaluation of that path: it is evaluated once per node and file, and
+     * each rule only evaluates its remaining predicates on the selected nodes.
+     * <p>
+     * The System Property is called {@code pmd.shared_xpath_steps}.
+     */
+    public static boolean isSharedXPathStepsMode() {
+        return System.getProperty(PMD_SHARED_XPATH_STEPS) != null;
+    }
+
+    /**
+     * In parallel file walk mode, the input directories of an analysis are
+     * walked with as many threads as the analysis, instead of a single one.
+     * This can help on file systems with a high latency, like network file
+     * systems. It is not enabled by default, as it has not been shown to
+     * speed up the walk of a local disk, and it uses more threads.
+     * <p>
+     * The System Property is called {@code pmd.parallel_file_walk}.
+     *
+     * @see net.sourceforge.pmd.lang.document.FileCollector#setThreads(int)
+     */
+    public static boolean isParallelFileWalkMode() {
+        return System.getProperty(PMD_PARALLEL_FILE_WALK) != null;
+    }
 }
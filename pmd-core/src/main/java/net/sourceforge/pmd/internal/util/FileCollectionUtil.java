@@ -12,6 +12,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -77,6 +79,25 @@ public final class FileCollectionUtil {
         }
 
 
+        // errors like "excluded file does not exist" are reported as warnings.
+        PmdReporter mutedLog = new ErrorsAsWarningsReporter(collector.getReporter());
+        List<Path> excludes = new ArrayList<>(configuration.getExcludes());
+        if (configuration.getIgnoreFile() != null) {
+            // todo better reporting of *where* exactly the path is
+            excludes.addAll(readFileList(mutedLog, configuration.getIgnoreFile()));
+        }
+        // Excluded directories are not walked at all. Other excluded
+        // paths are collected and removed after collection.
+        List<Path> excludedFiles = new ArrayList<>();
+        for (Path exclude : excludes) {
+            if (Files.isDirectory(exclude)) {
+                LOG.debug("Excluding directory {}.", exclude);
+                collector.excludeDirectory(exclude);
+            } else {
+                excludedFiles.add(exclude);
+            }
+        }
+
         collectFiles(collector, configuration.getInputPathList());
 
         if (configuration.getUri() != null) {
@@ -88,18 +109,11 @@ public final class FileCollectionUtil {
             collectFileList(collector, configuration.getInputFile());
         }
 
-        if (configuration.getIgnoreFile() != null || !configuration.getExcludes().isEmpty()) {
+        if (!excludedFiles.isEmpty()) {
             // This is to be able to interpret the log (will report 'adding' xxx)
             LOG.debug("Now collecting files to exclude.");
-            // errors like "excluded file does not exist" are reported as warnings.
-            PmdReporter mutedLog = new ErrorsAsWarningsReporter(collector.getReporter());
             try (FileCollector excludeCollector = InternalApiBridge.newCollector(collector, mutedLog)) {
-
-                if (configuration.getIgnoreFile() != null) {
-                    // todo better reporting of *where* exactly the path is
-                    collectFileList(excludeCollector, configuration.getIgnoreFile());
-                }
-                collectFiles(excludeCollector, configuration.getExcludes());
+                collectFiles(excludeCollector, excludedFiles);
                 collector.exclude(excludeCollector);
             }
         }
@@ -117,20 +131,22 @@ public final class FileCollectionUtil {
     }
 
     public static void collectFileList(FileCollector collector, Path fileList) {
+        collectFiles(collector, readFileList(collector.getReporter(), fileList));
+    }
+
+    private static List<Path> readFileList(PmdReporter reporter, Path fileList) {
         LOG.debug("Reading file list {}.", fileList);
         if (!Files.exists(fileList)) {
-            collector.getReporter().error("No such file {0}", fileList);
-            return;
+            reporter.error("No such file {0}", fileList);
+            return Collections.emptyList();
         }
 
-        List<Path> filePaths;
         try {
-            filePaths = FileUtil.readFilelistEntries(fileList);
+            return FileUtil.readFilelistEntries(fileList);
         } catch (IOException e) {
-            collector.getReporter().errorEx("Error reading {0}", new Object[] { fileList }, e);
-            return;
+            reporter.errorEx("Error reading {0}", new Object[] { fileList }, e);
+            return Collections.emptyList();
         }
-        collectFiles(collector, filePaths);
     }
 
     private static void addRoot(FileCollector collector, Path path) throws IOException {
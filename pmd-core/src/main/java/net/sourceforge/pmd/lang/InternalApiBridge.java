@@ -6,8 +6,11 @@ package net.sourceforge.pmd.lang;
 
 import java.util.List;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
+import net.sourceforge.pmd.lang.document.CollectedFileQueue;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
@@ -41,4 +44,17 @@ public final class InternalApiBridge {
     public static LanguageProcessor.AnalysisTask taskWithFiles(LanguageProcessor.AnalysisTask originalTask, List<TextFile> newFiles) {
         return originalTask.withFiles(newFiles);
     }
+
+    /**
+     * Produce a new analysis task, whose files are taken from the given
+     * queue while they are being collected. The queue should only contain
+     * files of the language of the processor the task is given to.
+     */
+    public static LanguageProcessor.AnalysisTask taskWithFileQueue(LanguageProcessor.AnalysisTask originalTask, CollectedFileQueue fileQueue) {
+        return originalTask.withFileQueue(fileQueue);
+    }
+
+    public static @Nullable CollectedFileQueue getFileQueue(LanguageProcessor.AnalysisTask task) {
+        return task.getFileQueue();
+    }
 }
@@ -8,8 +8,10 @@ import java.util.Collections;
 import java.util.List;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.cache.internal.AnalysisCache;
+import net.sourceforge.pmd.lang.document.CollectedFileQueue;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
@@ -66,6 +68,7 @@ public interface LanguageProcessor extends AutoCloseable {
         private final AnalysisCache analysisCache;
         private final PmdReporter messageReporter;
         private final LanguageProcessorRegistry lpRegistry;
+        private final @Nullable CollectedFileQueue fileQueue;
 
 
         /**
@@ -81,6 +84,17 @@ public interface LanguageProcessor extends AutoCloseable {
                             AnalysisCache analysisCache,
                             PmdReporter messageReporter,
                             LanguageProcessorRegistry lpRegistry) {
+            this(rulesets, files, listener, threadCount, analysisCache, messageReporter, lpRegistry, null);
+        }
+
+        private AnalysisTask(RuleSets rulesets,
+                             List<TextFile> files,
+                             GlobalAnalysisListener listener,
+                             int threadCount,
+                             AnalysisCache analysisCache,
+                             PmdReporter messageReporter,
+                             LanguageProcessorRegistry lpRegistry,
+                             @Nullable CollectedFileQueue fileQueue) {
             this.rulesets = rulesets;
             this.files = files;
             this.listener = listener;
@@ -88,13 +102,26 @@ public interface LanguageProcessor extends AutoCloseable {
             this.analysisCache = analysisCache;
             this.messageReporter = messageReporter;
             this.lpRegistry = lpRegistry;
+            this.fileQueue = fileQueue;
         }
 
         public RuleSets getRulesets() {
             return rulesets;
         }
 
+        /**
+         * Returns the files to analyse. If the files are still being
+         * collected, this waits until the collection is complete.
+         */
         public List<TextFile> getFiles() {
+            if (fileQueue != null) {
+                try {
+                    return fileQueue.awaitAll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the collection of files", e);
+                }
+            }
             return Collections.unmodifiableList(files);
         }
 
@@ -134,6 +161,35 @@ public interface LanguageProcessor extends AutoCloseable {
                 lpRegistry
             );
         }
+
+        /**
+         * Produce a new analysis task, whose files are taken from the given
+         * queue while they are being collected.
+         *
+         * @internalApi None of this is published API, and compatibility can be broken anytime! Use this only at your own risk.
+         */
+        AnalysisTask withFileQueue(CollectedFileQueue newFileQueue) {
+            return new AnalysisTask(
+                rulesets,
+                Collections.emptyList(),
+                listener,
+                threadCount,
+                analysisCache,
+                messageReporter,
+                lpRegistry,
+                newFileQueue
+            );
+        }
+
+        /**
+         * Returns the queue from which the files are taken, if they are
+         * still being collected.
+         *
+         * @internalApi None of this is published API, and compatibility can be broken anytime! Use this only at your own risk.
+         */
+        @Nullable CollectedFileQueue getFileQueue() {
+            return fileQueue;
+        }
     }
 
 
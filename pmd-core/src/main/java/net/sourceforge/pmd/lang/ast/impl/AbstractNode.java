@@ -39,6 +39,8 @@ public abstract class AbstractNode<B extends AbstractNode<B, N>,
     private Node[] children = EMPTY_ARRAY;
     private B parent;
     private int childIndex;
+    // assigned when the XPath wrapper tree is built
+    private int documentOrderId = -1;
 
     protected AbstractNode() {
         // only for subclassing
@@ -64,6 +66,20 @@ public abstract class AbstractNode<B extends AbstractNode<B, N>,
         return children.length;
     }
 
+    /**
+     * Returns the index of this node in its tree according to document order,
+     * or -1 if it has not been assigned. This is assigned by the XPath wrapper
+     * tree, to find the wrapper of a node without a map lookup. It is not
+     * updated when the tree is modified afterwards.
+     */
+    int getDocumentOrderId() {
+        return documentOrderId;
+    }
+
+    void setDocumentOrderId(int documentOrderId) {
+        this.documentOrderId = documentOrderId;
+    }
+
     protected void setParent(final B parent) {
         this.parent = parent;
     }
@@ -0,0 +1,42 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.impl;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * Internal API.
+ *
+ * <p>Acts as a bridge between outer parts of PMD and the restricted access
+ * internal API of this package.
+ *
+ * <p><b>None of this is published API, and compatibility can be broken anytime!</b>
+ * Use this only at your own risk.
+ *
+ * @internalApi None of this is published API, and compatibility can be broken anytime! Use this only at your own risk.
+ */
+@InternalApi
+public final class InternalApiBridge {
+    private InternalApiBridge() {}
+
+    /**
+     * Returns the id of the node in document order, or -1 if it has none,
+     * see {@link AbstractNode#getDocumentOrderId()}.
+     */
+    public static int getDocumentOrderId(Node node) {
+        return node instanceof AbstractNode ? ((AbstractNode<?, ?>) node).getDocumentOrderId() : -1;
+    }
+
+    /**
+     * Sets the id of the node in document order. This does nothing if the
+     * node is not an {@link AbstractNode}.
+     */
+    public static void setDocumentOrderId(Node node, int id) {
+        if (node instanceof AbstractNode) {
+            ((AbstractNode<?, ?>) node).setDocumentOrderId(id);
+        }
+    }
+}
@@ -0,0 +1,611 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.impl.antlr4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RuntimeMetaData;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNSerializer;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.atn.ArrayPredictionContext;
+import org.antlr.v4.runtime.atn.EmptyPredictionContext;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.atn.SemanticContext;
+import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.internal.util.IOUtil;
+
+/**
+ * Saves the DFA of an ANTLR parser to a file, and restores it in later
+ * runs. ANTLR builds the DFA lazily by simulating the ATN, which is slow
+ * for complex grammars. A run that only parses a few files spends most
+ * of its parsing time doing that, unless it starts with a warm DFA.
+ *
+ * <p>A snapshot is only restored by a parser with the same grammar and
+ * ANTLR runtime version as the one that saved it. Otherwise, or if the
+ * file is missing or cannot be read, the parser starts with an empty DFA.
+ *
+ * <p>Usage: call {@link #restore(Parser)} before each parse, then
+ * {@link #save()} at the end of the analysis, once no parser is running.
+ * The parsers may use a DFA shared by all threads (the default for
+ * generated parsers), or several DFAs, eg one per thread. In the latter
+ * case the largest DFA is saved, unless it was {@linkplain #forget(Parser) forgotten}.
+ * The DFAs are held by this instance until then, even if the parsers
+ * don't use them anymore, so parsers that drop a DFA should forget it.
+ * Instances are thread-safe. Restoring only locks the instance the first
+ * time a DFA is seen, to read the file. The snapshot is decoded without
+ * holding a lock, and only published into the DFA under its lock.
+ *
+ * @since 7.27.0
+ * @experimental This is a new API for ANTLR based language modules.
+ */
+@Experimental
+public final class AntlrDfaSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AntlrDfaSnapshot.class);
+
+    private static final int MAGIC = 0x50444641; // "PDFA"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int NULL_REF = -1;
+    private static final int ERROR_REF = -2;
+
+    private static final byte CTX_EMPTY = 0;
+    private static final byte CTX_SINGLETON = 1;
+    private static final byte CTX_ARRAY = 2;
+
+    private static final byte SEM_NONE = 0;
+    private static final byte SEM_PREDICATE = 1;
+    private static final byte SEM_PRECEDENCE = 2;
+    private static final byte SEM_AND = 3;
+    private static final byte SEM_OR = 4;
+
+    private final Path file;
+    // the DFAs restored or seen by this instance, of which the largest is saved
+    private final Set<DFA[]> trackedDfas = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // guarded by this
+    private @Nullable ATN atn;
+    private String grammarKey;
+    private byte[] contents;
+    private boolean contentsRead;
+
+    public AntlrDfaSnapshot(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Restores the snapshot into the DFA used by the given parser, if
+     * that DFA is still empty. Does nothing if the DFA was already seen
+     * by this method, so this may be called before every parse. This
+     * only takes a lock the first time a DFA is seen.
+     *
+     * @param parser A parser, whose interpreter is set up
+     */
+    public void restore(Parser parser) {
+        DFA[] decisionToDfa = parser.getInterpreter().decisionToDFA;
+        if (!trackedDfas.add(decisionToDfa)) {
+            return;
+        }
+        ATN grammarAtn;
+        String key;
+        byte[] bytes;
+        synchronized (this) {
+            initGrammar(parser);
+            grammarAtn = atn;
+            key = grammarKey;
+            bytes = readContents();
+        }
+        if (bytes == null || countStates(decisionToDfa) > 0) {
+            return;
+        }
+
+        RestoredDfa[] restored;
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+            restored = readDfas(in, grammarAtn, key, decisionToDfa);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not restore DFA snapshot {}: {}", file, e.toString());
+            synchronized (this) {
+                // don't try again
+                contents = null;
+            }
+            return;
+        }
+        if (restored == null) {
+            LOG.debug("DFA snapshot {} was saved for another grammar, ignoring it", file);
+            return;
+        }
+        for (int decision = 0; decision < decisionToDfa.length; decision++) {
+            restored[decision].publish(decisionToDfa[decision]);
+        }
+    }
+
+    /**
+     * Stops tracking the DFA used by the given parser, so that it is not
+     * saved, and can be garbage collected. This should be called when a
+     * parser drops its DFA, eg because it grew too large to be worth keeping.
+     *
+     * @param parser A parser, whose interpreter is set up
+     */
+    public void forget(Parser parser) {
+        trackedDfas.remove(parser.getInterpreter().decisionToDFA);
+    }
+
+    /**
+     * Saves the largest DFA seen by {@link #restore(Parser)}. This should
+     * be called when no parse is running.
+     *
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        DFA[] largest = null;
+        int largestStates = 0;
+        for (DFA[] dfas : trackedDfas) {
+            int states = countStates(dfas);
+            if (states > largestStates) {
+                largest = dfas;
+                largestStates = states;
+            }
+        }
+        if (largest == null) {
+            return;
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(os)))) {
+                writeDfas(out, largest);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        LOG.debug("Saved DFA snapshot with {} states to {}", largestStates, file);
+    }
+
+    private void initGrammar(Parser parser) {
+        if (atn == null) {
+            atn = parser.getATN();
+            grammarKey = grammarKey(parser.getGrammarFileName(), atn);
+        }
+    }
+
+    private byte[] readContents() {
+        if (!contentsRead) {
+            contentsRead = true;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                contents = IOUtil.toByteArray(in);
+            } catch (NoSuchFileException e) {
+                LOG.debug("No DFA snapshot at {}", file);
+            } catch (IOException e) {
+                LOG.warn("Could not read DFA snapshot {}: {}", file, e.toString());
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Returns a key that identifies the grammar and the ANTLR runtime.
+     */
+    static String grammarKey(String grammarFileName, ATN atn) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int value : ATNSerializer.getSerialized(atn).toArray()) {
+                digest.update((byte) (value >>> 24));
+                digest.update((byte) (value >>> 16));
+                digest.update((byte) (value >>> 8));
+                digest.update((byte) value);
+            }
+            StringBuilder key = new StringBuilder(grammarFileName).append(':').append(RuntimeMetaData.VERSION).append(':');
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always supported", e);
+        }
+    }
+
+    static int countStates(DFA[] decisionToDfa) {
+        int states = 0;
+        for (DFA dfa : decisionToDfa) {
+            synchronized (dfa.states) {
+                states += dfa.states.size();
+            }
+        }
+        return states;
+    }
+
+    // Writing
+
+    private void writeDfas(DataOutputStream out, DFA[] decisionToDfa) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(grammarKey);
+        out.writeInt(decisionToDfa.length);
+
+        List<List<DFAState>> statesByDecision = new ArrayList<>(decisionToDfa.length);
+        for (DFA dfa : decisionToDfa) {
+            List<DFAState> states;
+            synchronized (dfa.states) {
+                states = new ArrayList<>(dfa.states.keySet());
+            }
+            states.sort((a, b) -> Integer.compare(a.stateNumber, b.stateNumber));
+            statesByDecision.add(states);
+        }
+
+        // prediction contexts are shared by many configurations, write them once
+        Map<PredictionContext, Integer> contextIds = new IdentityHashMap<>();
+        List<PredictionContext> contexts = new ArrayList<>();
+        for (List<DFAState> states : statesByDecision) {
+            for (DFAState state : states) {
+                for (ATNConfig config : state.configs.configs) {
+                    collectContexts(config.context, contextIds, contexts);
+                }
+            }
+        }
+        out.writeInt(contexts.size());
+        for (PredictionContext context : contexts) {
+            writeContext(out, context, contextIds);
+        }
+
+        for (int decision = 0; decision < decisionToDfa.length; decision++) {
+            DFA dfa = decisionToDfa[decision];
+            List<DFAState> states = statesByDecision.get(decision);
+            Map<DFAState, Integer> stateIds = new IdentityHashMap<>();
+            for (DFAState state : states) {
+                stateIds.put(state, stateIds.size());
+            }
+
+            out.writeInt(states.size());
+            for (DFAState state : states) {
+                writeState(out, state, contextIds);
+            }
+            for (DFAState state : states) {
+                writeEdges(out, state.edges, stateIds);
+            }
+            if (dfa.isPrecedenceDfa()) {
+                writeEdges(out, dfa.s0.edges, stateIds);
+            } else {
+                out.writeInt(ref(dfa.s0, stateIds));
+            }
+        }
+    }
+
+    private static void collectContexts(PredictionContext context, Map<PredictionContext, Integer> ids, List<PredictionContext> contexts) {
+        if (context == null || ids.containsKey(context)) {
+            return;
+        }
+        // parents first, so that they can be referenced when reading
+        for (int i = 0; i < context.size(); i++) {
+            collectContexts(context.getParent(i), ids, contexts);
+        }
+        ids.put(context, contexts.size());
+        contexts.add(context);
+    }
+
+    private static void writeContext(DataOutputStream out, PredictionContext context, Map<PredictionContext, Integer> ids) throws IOException {
+        if (context == EmptyPredictionContext.Instance) {
+            out.writeByte(CTX_EMPTY);
+        } else if (context instanceof SingletonPredictionContext) {
+            out.writeByte(CTX_SINGLETON);
+            out.writeInt(ref(context.getParent(0), ids));
+            out.writeInt(context.getReturnState(0));
+        } else {
+            out.writeByte(CTX_ARRAY);
+            out.writeInt(context.size());
+            for (int i = 0; i < context.size(); i++) {
+                out.writeInt(ref(context.getParent(i), ids));
+                out.writeInt(context.getReturnState(i));
+            }
+        }
+    }
+
+    private static void writeState(DataOutputStream out, DFAState state, Map<PredictionContext, Integer> contextIds) throws IOException {
+        ATNConfigSet configs = state.configs;
+        out.writeBoolean(configs.fullCtx);
+        out.writeInt(configs.size());
+        for (ATNConfig config : configs.configs) {
+            out.writeInt(config.state.stateNumber);
+            out.writeInt(config.alt);
+            out.writeInt(ref(config.context, contextIds));
+            out.writeInt(config.reachesIntoOuterContext);
+            writeSemanticContext(out, config.semanticContext);
+        }
+        out.writeInt(configs.uniqueAlt);
+        out.writeBoolean(configs.hasSemanticContext);
+        out.writeBoolean(configs.dipsIntoOuterContext);
+
+        out.writeBoolean(state.isAcceptState);
+        out.writeInt(state.prediction);
+        out.writeBoolean(state.requiresFullContext);
+        if (state.predicates == null) {
+            out.writeInt(NULL_REF);
+        } else {
+            out.writeInt(state.predicates.length);
+            for (DFAState.PredPrediction predicate : state.predicates) {
+                writeSemanticContext(out, predicate.pred);
+                out.writeInt(predicate.alt);
+            }
+        }
+    }
+
+    private static void writeSemanticContext(DataOutputStream out, SemanticContext context) throws IOException {
+        if (context instanceof SemanticContext.Predicate) {
+            SemanticContext.Predicate predicate = (SemanticContext.Predicate) context;
+            out.writeByte(SEM_PREDICATE);
+            out.writeInt(predicate.ruleIndex);
+            out.writeInt(predicate.predIndex);
+            out.writeBoolean(predicate.isCtxDependent);
+        } else if (context instanceof SemanticContext.PrecedencePredicate) {
+            out.writeByte(SEM_PRECEDENCE);
+            out.writeInt(((SemanticContext.PrecedencePredicate) context).precedence);
+        } else if (context instanceof SemanticContext.AND || context instanceof SemanticContext.OR) {
+            SemanticContext.Operator operator = (SemanticContext.Operator) context;
+            out.writeByte(context instanceof SemanticContext.AND ? SEM_AND : SEM_OR);
+            out.writeInt(operator.getOperands().size());
+            for (SemanticContext operand : operator.getOperands()) {
+                writeSemanticContext(out, operand);
+            }
+        } else {
+            out.writeByte(SEM_NONE);
+        }
+    }
+
+    private static void writeEdges(DataOutputStream out, DFAState[] edges, Map<DFAState, Integer> stateIds) throws IOException {
+        if (edges == null) {
+            out.writeInt(NULL_REF);
+            return;
+        }
+        out.writeInt(edges.length);
+        for (DFAState target : edges) {
+            out.writeInt(target == ATNSimulator.ERROR ? ERROR_REF : ref(target, stateIds));
+        }
+    }
+
+    private static <T> int ref(T item, Map<T, Integer> ids) {
+        if (item == null) {
+            return NULL_REF;
+        }
+        Integer id = ids.get(item);
+        // an edge may target a state that was added after the copy of the states
+        return id == null ? NULL_REF : id;
+    }
+
+    // Reading
+
+    /**
+     * Decodes the DFA of each decision. This doesn't modify the given DFAs,
+     * which are only used to know which decisions have a precedence DFA.
+     * Returns null if the snapshot was saved for another grammar.
+     */
+    private static RestoredDfa @Nullable [] readDfas(DataInputStream in, ATN atn, String grammarKey,
+                                                     DFA[] decisionToDfa) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+            || !grammarKey.equals(in.readUTF()) || in.readInt() != decisionToDfa.length) {
+            return null;
+        }
+
+        PredictionContext[] contexts = new PredictionContext[in.readInt()];
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = readContext(in, contexts);
+        }
+
+        RestoredDfa[] result = new RestoredDfa[decisionToDfa.length];
+        for (int decision = 0; decision < decisionToDfa.length; decision++) {
+            DFAState[] states = new DFAState[in.readInt()];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = readState(in, atn, contexts);
+                states[i].stateNumber = i;
+            }
+            for (DFAState state : states) {
+                state.edges = readEdges(in, states);
+            }
+            if (decisionToDfa[decision].isPrecedenceDfa()) {
+                result[decision] = new RestoredDfa(states, readEdges(in, states), null);
+            } else {
+                result[decision] = new RestoredDfa(states, null, deref(in.readInt(), states));
+            }
+        }
+        return result;
+    }
+
+    private static PredictionContext readContext(DataInputStream in, PredictionContext[] contexts) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case CTX_EMPTY:
+            return EmptyPredictionContext.Instance;
+        case CTX_SINGLETON:
+            PredictionContext parent = deref(in.readInt(), contexts);
+            return SingletonPredictionContext.create(parent, in.readInt());
+        case CTX_ARRAY:
+            int size = in.readInt();
+            PredictionContext[] parents = new PredictionContext[size];
+            int[] returnStates = new int[size];
+            for (int i = 0; i < size; i++) {
+                parents[i] = deref(in.readInt(), contexts);
+                returnStates[i] = in.readInt();
+            }
+            return new ArrayPredictionContext(parents, returnStates);
+        default:
+            throw new IOException("Unknown prediction context type " + type);
+        }
+    }
+
+    private static DFAState readState(DataInputStream in, ATN atn, PredictionContext[] contexts) throws IOException {
+        boolean fullCtx = in.readBoolean();
+        int numConfigs = in.readInt();
+        List<ATNConfig> configList = new ArrayList<>(numConfigs);
+        for (int i = 0; i < numConfigs; i++) {
+            ATNConfig config = new ATNConfig(atn.states.get(in.readInt()), in.readInt(), deref(in.readInt(), contexts),
+                                             readSemanticContext(in));
+            config.reachesIntoOuterContext = in.readInt();
+            configList.add(config);
+        }
+        RestoredConfigSet configs = new RestoredConfigSet(fullCtx);
+        configs.addAll(configList);
+        configs.uniqueAlt = in.readInt();
+        configs.hasSemanticContext = in.readBoolean();
+        configs.dipsIntoOuterContext = in.readBoolean();
+
+        DFAState state = new DFAState(configs);
+        state.isAcceptState = in.readBoolean();
+        state.prediction = in.readInt();
+        state.requiresFullContext = in.readBoolean();
+        if (state.requiresFullContext) {
+            // this is how the simulator computes them, before marking the state
+            configs.setConflictingAlts(PredictionMode.getAlts(PredictionMode.getConflictingAltSubsets(configs)));
+        }
+        configs.setReadonly(true);
+
+        int numPredicates = in.readInt();
+        if (numPredicates != NULL_REF) {
+            state.predicates = new DFAState.PredPrediction[numPredicates];
+            for (int i = 0; i < numPredicates; i++) {
+                state.predicates[i] = new DFAState.PredPrediction(readSemanticContext(in), in.readInt());
+            }
+        }
+        return state;
+    }
+
+    private static SemanticContext readSemanticContext(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case SEM_NONE:
+            return SemanticContext.Empty.Instance;
+        case SEM_PREDICATE:
+            return new SemanticContext.Predicate(in.readInt(), in.readInt(), in.readBoolean());
+        case SEM_PRECEDENCE:
+            return new SemanticContext.PrecedencePredicate(in.readInt());
+        case SEM_AND:
+        case SEM_OR:
+            int size = in.readInt();
+            SemanticContext result = readSemanticContext(in);
+            for (int i = 1; i < size; i++) {
+                SemanticContext operand = readSemanticContext(in);
+                result = type == SEM_AND ? SemanticContext.and(result, operand) : SemanticContext.or(result, operand);
+            }
+            return result;
+        default:
+            throw new IOException("Unknown semantic context type " + type);
+        }
+    }
+
+    private static DFAState[] readEdges(DataInputStream in, DFAState[] states) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_REF) {
+            return null;
+        }
+        DFAState[] edges = new DFAState[length];
+        for (int i = 0; i < length; i++) {
+            int ref = in.readInt();
+            edges[i] = ref == ERROR_REF ? ATNSimulator.ERROR : deref(ref, states);
+        }
+        return edges;
+    }
+
+    private static <T> T deref(int ref, T[] items) throws IOException {
+        if (ref == NULL_REF) {
+            return null;
+        } else if (ref < 0 || ref >= items.length) {
+            throw new IOException("Invalid reference " + ref);
+        }
+        return items[ref];
+    }
+
+    /**
+     * The decoded states of the DFA of a decision.
+     */
+    private static final class RestoredDfa {
+
+        private final DFAState[] states;
+        private final DFAState @Nullable [] precedenceStartStates;
+        private final @Nullable DFAState s0;
+
+        RestoredDfa(DFAState[] states, DFAState @Nullable [] precedenceStartStates, @Nullable DFAState s0) {
+            this.states = states;
+            this.precedenceStartStates = precedenceStartStates;
+            this.s0 = s0;
+        }
+
+        /**
+         * Adds the states to the DFA, unless it already has some, because a
+         * parser that shares it started to fill it while this was decoded.
+         */
+        void publish(DFA dfa) {
+            synchronized (dfa.states) {
+                if (!dfa.states.isEmpty()) {
+                    return;
+                }
+                for (DFAState state : states) {
+                    dfa.states.put(state, state);
+                }
+                if (dfa.isPrecedenceDfa()) {
+                    for (int precedence = 0; precedenceStartStates != null && precedence < precedenceStartStates.length; precedence++) {
+                        if (precedenceStartStates[precedence] != null) {
+                            dfa.setPrecedenceStartState(precedence, precedenceStartStates[precedence]);
+                        }
+                    }
+                } else {
+                    dfa.s0 = s0;
+                }
+            }
+        }
+    }
+
+    /**
+     * A configuration set whose conflicting alternatives can be set. They
+     * are only accessible in the ANTLR runtime package otherwise.
+     */
+    private static final class RestoredConfigSet extends ATNConfigSet {
+
+        RestoredConfigSet(boolean fullCtx) {
+            super(fullCtx);
+        }
+
+        void setConflictingAlts(BitSet conflictingAlts) {
+            this.conflictingAlts = conflictingAlts;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.document;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * Files handed over from the file collection to the analysis while the
+ * files are still being collected. The collection {@linkplain #add(TextFile) adds}
+ * files and finally {@linkplain #complete() completes} the queue. A single
+ * consumer {@linkplain #take() takes} the files in the order they were added.
+ * The queue doesn't retain the files that were taken. The list of
+ * {@linkplain #awaitAll() all files} is only available once the queue is
+ * complete, it is then obtained from the file collection.
+ *
+ * @internalApi None of this is published API, and compatibility can be broken anytime! Use this only at your own risk.
+ */
+@InternalApi
+public final class CollectedFileQueue {
+
+    private final Supplier<List<TextFile>> allFiles;
+    private final Deque<TextFile> pending = new ArrayDeque<>();
+    private boolean complete;
+
+    /**
+     * Creates a new queue.
+     *
+     * @param allFiles Supplies all the files that were added, once the
+     *                 queue is complete
+     */
+    public CollectedFileQueue(Supplier<List<TextFile>> allFiles) {
+        this.allFiles = Objects.requireNonNull(allFiles);
+    }
+
+    /**
+     * Adds a file at the end of the queue.
+     *
+     * @throws IllegalStateException If the queue is already complete
+     */
+    public synchronized void add(TextFile file) {
+        if (complete) {
+            throw new IllegalStateException("Queue is complete");
+        }
+        pending.addLast(file);
+        notifyAll();
+    }
+
+    /**
+     * Marks the end of the queue. Further calls have no effect.
+     */
+    public synchronized void complete() {
+        complete = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns the next file, waiting until one is added, or null if the
+     * queue is complete and all its files have been taken.
+     */
+    public synchronized @Nullable TextFile take() throws InterruptedException {
+        while (pending.isEmpty() && !complete) {
+            wait();
+        }
+        return pending.pollFirst();
+    }
+
+    /**
+     * Returns all the files that were added, waiting until the queue
+     * is complete. This doesn't take files from the queue.
+     */
+    public List<TextFile> awaitAll() throws InterruptedException {
+        synchronized (this) {
+            while (!complete) {
+                wait();
+            }
+        }
+        return allFiles.get();
+    }
+}
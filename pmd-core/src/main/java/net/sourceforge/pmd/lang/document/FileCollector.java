@@ -28,9 +28,13 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,7 +65,11 @@ public final class FileCollector implements AutoCloseable {
     private final FileId outerFsPath;
     private boolean closed;
     private boolean recursive = true;
+    private int threads = 1;
+    private final Set<Path> excludedDirectories = new HashSet<>();
     private Predicate<FileId> fileFilter = file -> true;
+    private boolean deferDirectoryWalks;
+    private final List<PendingWalk> pendingWalks = new ArrayList<>();
 
     // construction
 
@@ -89,6 +97,7 @@ public final class FileCollector implements AutoCloseable {
     FileCollector newCollector(PmdReporter logger) {
         FileCollector fileCollector = new FileCollector(discoverer, logger, null);
         fileCollector.charset = this.charset;
+        fileCollector.threads = this.threads;
         return fileCollector;
     }
 
@@ -103,6 +112,7 @@ public final class FileCollector implements AutoCloseable {
         if (closed) {
             throw new IllegalStateException("Collector was closed!");
         }
+        runPendingWalks(file -> { });
         List<TextFile> allFilesToProcess = new ArrayList<>(this.allFilesToProcess);
         allFilesToProcess.sort(Comparator.comparing(TextFile::getFileId));
         return Collections.unmodifiableList(allFilesToProcess);
@@ -147,11 +157,23 @@ public final class FileCollector implements AutoCloseable {
             reporter.error("Not a regular file: {0}", file);
             return false;
         }
+        if (isInExcludedDirectory(file)) {
+            LOG.trace("File {} is in an excluded directory, skipping", file);
+            return false;
+        }
+        TextFile textFile = newTextFile(file, charset);
+        return textFile != null && addFileImpl(textFile, fileFilter);
+    }
+
+    /** Returns null if the language of the file is not known. */
+    private TextFile newTextFile(Path file, Charset charset) {
         LanguageVersion languageVersion = discoverLanguage(file.toString());
-        return languageVersion != null
-            && addFileImpl(TextFile.builderForPath(file, charset, languageVersion)
-                                   .setParentFsPath(outerFsPath)
-                                   .build());
+        if (languageVersion == null) {
+            return null;
+        }
+        return TextFile.builderForPath(file, charset, languageVersion)
+                       .setParentFsPath(outerFsPath)
+                       .build();
     }
 
     /**
@@ -170,11 +192,15 @@ public final class FileCollector implements AutoCloseable {
             reporter.error("Not a regular file: {0}", file);
             return false;
         }
+        if (isInExcludedDirectory(file)) {
+            LOG.trace("File {} is in an excluded directory, skipping", file);
+            return false;
+        }
         LanguageVersion lv = discoverer.getDefaultLanguageVersion(language);
         Objects.requireNonNull(lv);
         return addFileImpl(TextFile.builderForPath(file, charset, lv)
                                    .setParentFsPath(outerFsPath)
-                                   .build());
+                                   .build(), fileFilter);
     }
 
     /**
@@ -186,7 +212,7 @@ public final class FileCollector implements AutoCloseable {
      */
     public boolean addFile(TextFile textFile) {
         AssertionUtil.requireParamNotNull("textFile", textFile);
-        return checkContextualVersion(textFile) && addFileImpl(textFile);
+        return checkContextualVersion(textFile) && addFileImpl(textFile, fileFilter);
     }
 
     /**
@@ -203,10 +229,10 @@ public final class FileCollector implements AutoCloseable {
         return version != null
             && addFileImpl(TextFile.builderForCharSeq(sourceContents, fileId, version)
                                    .setParentFsPath(outerFsPath)
-                                   .build());
+                                   .build(), fileFilter);
     }
 
-    private boolean addFileImpl(TextFile textFile) {
+    private boolean addFileImpl(TextFile textFile, Predicate<FileId> fileFilter) {
         LOG.trace("Adding file {} (lang: {}) ", textFile.getFileId().getAbsolutePath(), textFile.getLanguageVersion().getTerseName());
 
         if (!fileFilter.test(textFile.getFileId())) {
@@ -262,7 +288,8 @@ public final class FileCollector implements AutoCloseable {
 
     /**
      * Add a directory recursively using {@link #addFile(Path)} on
-     * all regular files.
+     * all regular files. Subdirectories that are {@linkplain #excludeDirectory(Path) excluded}
+     * are not walked.
      *
      * @param dir Directory path
      *
@@ -277,19 +304,162 @@ public final class FileCollector implements AutoCloseable {
             reporter.error("Not a directory {0}", dir);
             return false;
         }
+        if (isInExcludedDirectory(dir)) {
+            LOG.trace("Directory {} is excluded, skipping", dir);
+            return false;
+        }
         int maxDepth = recurse ? Integer.MAX_VALUE : 1;
-        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, new SimpleFileVisitor<Path>() {
+        PendingWalk walk = new PendingWalk(dir, maxDepth, charset, fileFilter);
+        if (deferDirectoryWalks) {
+            LOG.trace("Deferring the walk of directory {}", dir);
+            pendingWalks.add(walk);
+            return true;
+        }
+        walkDirectory(walk, null);
+        return true;
+    }
+
+    /**
+     * Walks the directory and adds its files. If a consumer is given, it
+     * is called with each file that is added, as soon as it is added. The
+     * files are then walked in the order of their paths, so that the consumer
+     * sees them in the same order on every run.
+     */
+    private void walkDirectory(PendingWalk walk, @Nullable Consumer<? super TextFile> onAdded) throws IOException {
+        if (onAdded != null) {
+            new ParallelFileWalker(1, walk.maxDepth, this::shouldEnterDirectory, file -> {
+                TextFile textFile = newTextFile(file, walk.charset);
+                if (textFile != null) {
+                    addWalkedFile(textFile, walk, onAdded);
+                }
+            }).walk(walk.dir);
+            return;
+        }
+        if (threads > 1) {
+            addDirectoryInParallel(walk);
+            return;
+        }
+        Files.walkFileTree(walk.dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), walk.maxDepth, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) throws IOException {
+                if (isExcludedDirectory(subdir)) {
+                    LOG.trace("Directory {} is excluded, skipping", subdir);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return super.preVisitDirectory(subdir, attrs);
+            }
+
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                 if (attrs.isRegularFile()) {
-                    FileCollector.this.addFile(file);
+                    TextFile textFile = newTextFile(file, walk.charset);
+                    if (textFile != null) {
+                        addWalkedFile(textFile, walk, onAdded);
+                    }
                 }
                 return super.visitFile(file, attrs);
             }
         });
+    }
+
+    /**
+     * Lists the directories and determines the language of the files on
+     * several threads. The files are then added in the order of their id,
+     * as the file filter may depend on the order.
+     */
+    private void addDirectoryInParallel(PendingWalk walk) throws IOException {
+        Queue<TextFile> textFiles = new ConcurrentLinkedQueue<>();
+        ParallelFileWalker walker = new ParallelFileWalker(threads, walk.maxDepth, this::shouldEnterDirectory,
+            file -> {
+                TextFile textFile = newTextFile(file, walk.charset);
+                if (textFile != null) {
+                    textFiles.add(textFile);
+                }
+            });
+        walker.walk(walk.dir);
+
+        List<TextFile> sorted = new ArrayList<>(textFiles);
+        sorted.sort(Comparator.comparing(TextFile::getFileId));
+        for (TextFile textFile : sorted) {
+            addWalkedFile(textFile, walk, null);
+        }
+    }
+
+    private void addWalkedFile(TextFile textFile, PendingWalk walk, @Nullable Consumer<? super TextFile> onAdded) {
+        synchronized (this) {
+            if (walk.excludedFiles.contains(textFile)) {
+                LOG.trace("Excluding file {}", textFile.getFileId().getAbsolutePath());
+                return;
+            }
+            if (!addFileImpl(textFile, walk.fileFilter)) {
+                return;
+            }
+        }
+        if (onAdded != null) {
+            onAdded.accept(textFile);
+        }
+    }
+
+    /**
+     * Walks the directories whose walk was {@linkplain #setDeferDirectoryWalks(boolean) deferred}.
+     */
+    private void runPendingWalks(Consumer<? super TextFile> onAdded) {
+        List<PendingWalk> walks;
+        synchronized (this) {
+            if (pendingWalks.isEmpty()) {
+                return;
+            }
+            walks = new ArrayList<>(pendingWalks);
+            pendingWalks.clear();
+        }
+        for (PendingWalk walk : walks) {
+            try {
+                walkDirectory(walk, onAdded);
+            } catch (IOException e) {
+                reporter.errorEx("Error collecting {0}", new Object[] { walk.dir }, e);
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer with each file that has been collected, and with
+     * each file of the directories whose walk was deferred, as soon as it
+     * is found. Afterwards, the collector contains all those files.
+     */
+    void streamFiles(Consumer<? super TextFile> consumer) {
+        List<TextFile> collected;
+        synchronized (this) {
+            collected = new ArrayList<>(allFilesToProcess);
+        }
+        collected.forEach(consumer);
+        runPendingWalks(consumer);
+    }
+
+    private boolean shouldEnterDirectory(Path subdir) {
+        if (isExcludedDirectory(subdir)) {
+            LOG.trace("Directory {} is excluded, skipping", subdir);
+            return false;
+        }
         return true;
     }
 
+    private boolean isExcludedDirectory(Path dir) {
+        return !excludedDirectories.isEmpty()
+            && excludedDirectories.contains(dir.toAbsolutePath().normalize());
+    }
+
+    private boolean isInExcludedDirectory(Path file) {
+        if (excludedDirectories.isEmpty()) {
+            return false;
+        }
+        for (Path p = file.toAbsolutePath().normalize(); p != null; p = p.getParent()) {
+            if (excludedDirectories.contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
     /**
      * Add a file or directory recursively. Language is determined automatically
@@ -375,6 +545,51 @@ public final class FileCollector implements AutoCloseable {
         this.recursive = collectFilesRecursively;
     }
 
+    /**
+     * Sets the number of threads used to walk directories in {@link #addDirectory(Path)}.
+     * With more than one thread, several directories are listed at the
+     * same time, which is faster on file systems with a high latency,
+     * like network file systems. The default is 1.
+     *
+     * <p>The files of a directory are added once it has been walked
+     * entirely, in the order of their id. Only when PMD analyses files
+     * while they are collected, which it does in pipelined mode, are they
+     * added and handed over to the analysis as soon as they are found.
+     *
+     * @param threads Number of threads
+     *
+     * @since 7.27.0
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * If true, {@link #addDirectory(Path)} only records the directory,
+     * which is walked when the collected files are first needed. Files
+     * can then be {@linkplain #streamFiles(Consumer) streamed} to the
+     * analysis while the directories are walked. The directory is walked
+     * with the charset and file filter that were set when it was added.
+     * Errors while walking are reported instead of thrown.
+     */
+    void setDeferDirectoryWalks(boolean deferDirectoryWalks) {
+        this.deferDirectoryWalks = deferDirectoryWalks;
+    }
+
+    /**
+     * Excludes a directory from subsequent additions. Files in this directory
+     * or in one of its subdirectories are not added, and such directories
+     * are not walked by {@link #addDirectory(Path)}. Unlike {@link #exclude(FileCollector)},
+     * this doesn't remove files that were already collected.
+     *
+     * @param dir Directory path
+     *
+     * @since 7.27.0
+     */
+    public void excludeDirectory(Path dir) {
+        excludedDirectories.add(dir.toAbsolutePath().normalize());
+    }
+
     /**
      * Sets the charset to use for subsequent calls to {@link #addFile(Path)}
      * and other overloads using a {@link Path}.
@@ -403,7 +618,11 @@ public final class FileCollector implements AutoCloseable {
      * Remove all files collected by the given collector from this one.
      */
     public void exclude(FileCollector excludeCollector) {
+        excludeCollector.runPendingWalks(file -> { });
         Set<TextFile> toExclude = new HashSet<>(excludeCollector.allFilesToProcess);
+        for (PendingWalk walk : pendingWalks) {
+            walk.excludedFiles.addAll(toExclude);
+        }
         for (Iterator<TextFile> iterator = allFilesToProcess.iterator(); iterator.hasNext();) {
             TextFile file = iterator.next();
             if (toExclude.contains(file)) {
@@ -418,6 +637,7 @@ public final class FileCollector implements AutoCloseable {
      * Transfers resources to close as well. The parameter is left empty.
      */
     public void absorb(FileCollector otherCollector) {
+        otherCollector.runPendingWalks(file -> { });
         this.allFilesToProcess.addAll(otherCollector.allFilesToProcess);
         this.resourcesToClose.addAll(otherCollector.resourcesToClose);
         otherCollector.allFilesToProcess.clear();
@@ -429,6 +649,7 @@ public final class FileCollector implements AutoCloseable {
      * collection.
      */
     public void filterLanguages(Set<Language> languages) {
+        runPendingWalks(file -> { });
         for (Iterator<TextFile> iterator = allFilesToProcess.iterator(); iterator.hasNext();) {
             TextFile file = iterator.next();
             Language lang = file.getLanguageVersion().getLanguage();
@@ -444,4 +665,21 @@ public final class FileCollector implements AutoCloseable {
     public String toString() {
         return "FileCollector{filesToProcess=" + allFilesToProcess + '}';
     }
+
+    /** A directory to walk, with the configuration at the time it was added. */
+    private static final class PendingWalk {
+        private final Path dir;
+        private final int maxDepth;
+        private final Charset charset;
+        private final Predicate<FileId> fileFilter;
+        /** Files excluded after the directory was added, before it was walked. */
+        private final Set<TextFile> excludedFiles = new HashSet<>();
+
+        PendingWalk(Path dir, int maxDepth, Charset charset, Predicate<FileId> fileFilter) {
+            this.dir = dir;
+            this.maxDepth = maxDepth;
+            this.charset = charset;
+            this.fileFilter = fileFilter;
+        }
+    }
 }
@@ -4,6 +4,10 @@
 
 package net.sourceforge.pmd.lang.document;
 
+import java.util.function.Consumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
 import net.sourceforge.pmd.util.log.PmdReporter;
@@ -30,4 +34,48 @@ public final class InternalApiBridge {
     public static FileCollector newCollector(FileCollector collector, PmdReporter reporter) {
         return collector.newCollector(reporter);
     }
+
+    /**
+     * Makes the collector record the directories it is given, and only
+     * walk them when the files are needed, or when they are {@linkplain #streamFiles(FileCollector, Consumer) streamed}.
+     */
+    public static void deferDirectoryWalks(FileCollector collector) {
+        collector.setDeferDirectoryWalks(true);
+    }
+
+    /**
+     * Calls the consumer with each file of the collector, including the
+     * files of the directories whose walk was deferred, as soon as they are
+     * found. Afterwards, the collector contains all those files.
+     */
+    public static void streamFiles(FileCollector collector, Consumer<? super TextFile> consumer) {
+        collector.streamFiles(consumer);
+    }
+
+    /**
+     * Creates a location with the given region, eg to restore a location
+     * that was serialized. The region may be null.
+     */
+    public static FileLocation newFileLocation(FileId fileId, TextRange2d range2d, @Nullable TextRegion region) {
+        return new FileLocation(fileId,
+                                range2d.getStartPos().getLine(),
+                                range2d.getStartPos().getColumn(),
+                                range2d.getEndPos().getLine(),
+                                range2d.getEndPos().getColumn(),
+                                region);
+    }
+
+    /**
+     * Returns an estimate of the size of the given file, without reading
+     * its contents. This is used to schedule the analysis of large files
+     * first. Returns -1 if the size is unknown.
+     */
+    public static long getEstimatedSize(TextFile file) {
+        if (file instanceof NioTextFile) {
+            return ((NioTextFile) file).getSizeInBytes();
+        } else if (file instanceof StringTextFile) {
+            return ((StringTextFile) file).getSizeInBytes();
+        }
+        return -1;
+    }
 }
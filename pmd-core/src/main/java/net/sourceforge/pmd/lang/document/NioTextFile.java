@@ -6,14 +6,19 @@ package net.sourceforge.pmd.lang.document;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.internal.util.BaseCloseable;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.util.AssertionUtil;
@@ -23,6 +28,9 @@ import net.sourceforge.pmd.util.AssertionUtil;
  */
 class NioTextFile extends BaseCloseable implements TextFile {
 
+    /** Files smaller than this are read, even if memory mapping is enabled. */
+    private static final long MIN_MAPPED_SIZE = 256 * 1024;
+
     private final Path path;
     private final Charset charset;
     private final LanguageVersion languageVersion;
@@ -86,9 +94,51 @@ class NioTextFile extends BaseCloseable implements TextFile {
             throw new IOException("Not a regular file: " + path);
         }
 
+        if (TextFileContent.canDecodeBytes(charset)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size <= Integer.MAX_VALUE) {
+                    return TextFileContent.fromBytes(readBytes(channel, (int) size), charset);
+                }
+            }
+        }
         return TextFileContent.fromInputStream(Files.newInputStream(path), charset);
     }
 
+    /**
+     * Returns the bytes of the file. A mapped buffer is only used by
+     * {@link #readContents()} to decode the text, {@link TextFileContent}
+     * keeps no reference to it. Java has no portable way to unmap it
+     * explicitly, so the mapping is released when the buffer is garbage
+     * collected. Until then, it only uses address space, not heap, but
+     * on Windows the file cannot be deleted.
+     */
+    private ByteBuffer readBytes(FileChannel channel, int size) throws IOException {
+        if (size >= MIN_MAPPED_SIZE && SystemProps.isMemoryMappedSourcesMode()
+            && path.getFileSystem() == FileSystems.getDefault()) {
+            // only the default file system supports mapping, not eg zip file systems
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+            // read until the end
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * Returns the size of the underlying file in bytes, or -1 if it
+     * cannot be determined. This does not read the file.
+     */
+    long getSizeInBytes() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
 
     @Override
     protected void doClose() throws IOException {
@@ -0,0 +1,179 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.document;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Walks a file tree with several threads, following links. Each directory
+ * is listed by a separate task, so that the latency of listing directories
+ * and reading file attributes, which is high on network file systems, is
+ * spread over the threads.
+ *
+ * <p>This visits the same files as {@link Files#walkFileTree(Path, java.util.Set, int, java.nio.file.FileVisitor)}
+ * with {@link java.nio.file.FileVisitOption#FOLLOW_LINKS}, but in no particular
+ * order, and reports the same errors: the first error aborts the walk
+ * and is rethrown, and a cycle of links is reported as a {@link FileSystemLoopException}.
+ *
+ * <p>With a single thread, the walk is done on the calling thread, and the
+ * entries of each directory are visited in the order of their paths. The
+ * files are then visited in the same order on every run.
+ */
+final class ParallelFileWalker {
+
+    private final int threads;
+    private final int maxDepth;
+    private final Predicate<Path> enterDirectory;
+    private final Consumer<Path> visitFile;
+
+    /**
+     * @param threads        Number of threads to use
+     * @param maxDepth       Maximum number of directory levels to visit, like for {@link Files#walkFileTree(Path, java.util.Set, int, java.nio.file.FileVisitor)}
+     * @param enterDirectory Whether the given directory should be walked, this allows pruning subtrees.
+     *                       This is called concurrently.
+     * @param visitFile      Called for each regular file. This is called concurrently.
+     */
+    ParallelFileWalker(int threads, int maxDepth, Predicate<Path> enterDirectory, Consumer<Path> visitFile) {
+        this.threads = threads;
+        this.maxDepth = maxDepth;
+        this.enterDirectory = enterDirectory;
+        this.visitFile = visitFile;
+    }
+
+    void walk(Path root) throws IOException {
+        BasicFileAttributes attrs = readAttributes(root);
+        if (!attrs.isDirectory()) {
+            if (attrs.isRegularFile()) {
+                visitFile.accept(root);
+            }
+            return;
+        }
+        if (!enterDirectory.test(root)) {
+            return;
+        }
+        DirectoryTask rootTask = new DirectoryTask(root, 0, new Ancestor(null, root, attrs.fileKey()));
+        if (threads == 1) {
+            try {
+                rootTask.compute();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(rootTask);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // a broken link, like Files.walkFileTree, use the attributes of the link
+            try {
+                return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException ignored) {
+                throw e;
+            }
+        }
+    }
+
+    /** The chain of directories above a directory, to detect cycles of links. */
+    private static final class Ancestor {
+        private final Ancestor parent;
+        private final Path dir;
+        private final Object fileKey;
+
+        Ancestor(Ancestor parent, Path dir, Object fileKey) {
+            this.parent = parent;
+            this.dir = dir;
+            this.fileKey = fileKey;
+        }
+
+        boolean isCycle(Path subdir, Object subdirKey) throws IOException {
+            for (Ancestor a = this; a != null; a = a.parent) {
+                if (subdirKey != null && a.fileKey != null
+                    ? subdirKey.equals(a.fileKey)
+                    : Files.isSameFile(subdir, a.dir)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path dir;
+        private final int depth;
+        private final transient Ancestor ancestors;
+
+        DirectoryTask(Path dir, int depth, Ancestor ancestors) {
+            this.dir = dir;
+            this.depth = depth;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try {
+                for (Path entry : listEntries()) {
+                    BasicFileAttributes attrs = readAttributes(entry);
+                    if (attrs.isRegularFile()) {
+                        visitFile.accept(entry);
+                    } else if (attrs.isDirectory() && depth + 1 < maxDepth && enterDirectory.test(entry)) {
+                        if (ancestors.isCycle(entry, attrs.fileKey())) {
+                            throw new FileSystemLoopException(entry.toString());
+                        }
+                        DirectoryTask task = new DirectoryTask(entry, depth + 1, new Ancestor(ancestors, entry, attrs.fileKey()));
+                        if (threads == 1) {
+                            task.compute();
+                        } else {
+                            task.fork();
+                            subdirectories.add(task);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+
+        private List<Path> listEntries() throws IOException {
+            List<Path> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                stream.forEach(entries::add);
+            }
+            if (threads == 1) {
+                entries.sort(Comparator.naturalOrder());
+            }
+            return entries;
+        }
+    }
+}
@@ -44,6 +44,13 @@ class StringTextFile implements TextFile {
         return content;
     }
 
+    /**
+     * Returns the length of the text. This is used as a size estimate.
+     */
+    long getSizeInBytes() {
+        return content.getNormalizedText().length();
+    }
+
     @Override
     public void close() {
         // nothing to do
@@ -13,6 +13,8 @@ import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -161,6 +163,97 @@ public final class TextFileContent {
         }
     }
 
+    /**
+     * Whether {@link #fromBytes(ByteBuffer, Charset)} supports this charset.
+     * This is the case when decoding never produces more chars than
+     * there are bytes, eg for UTF-8 or ISO-8859-1.
+     */
+    static boolean canDecodeBytes(Charset charset) {
+        return charset.newDecoder().maxCharsPerByte() <= 1.0f;
+    }
+
+    /**
+     * Decodes the remaining bytes of the buffer into a TextFileContent.
+     * This produces the same content as {@link #fromInputStream(InputStream, Charset)},
+     * but the bytes are decoded in a single pass into a char buffer of
+     * the size of the input, and line terminators are normalized in that
+     * buffer. The char buffer is then copied into the final string and
+     * dropped. The position of the byte buffer is not changed, and no
+     * reference to it is kept.
+     *
+     * @param bytes   Bytes of the file, eg a mapped file
+     * @param charset A charset for which {@link #canDecodeBytes(Charset)} is true
+     */
+    static TextFileContent fromBytes(ByteBuffer bytes, Charset charset) {
+        return fromBytes(bytes, charset, FALLBACK_LINESEP);
+    }
+
+    // the fallbackLineSep parameter is here just for testability
+    static TextFileContent fromBytes(ByteBuffer bytes, Charset charset, String fallbackLineSep) {
+        // the checksum is computed on the original bytes, like with fromInputStream
+        Adler32 checksum = newChecksum();
+        checksum.update(bytes.duplicate());
+
+        // same error handling as an InputStreamReader
+        CharsetDecoder decoder = charset.newDecoder()
+                                        .onMalformedInput(CodingErrorAction.REPLACE)
+                                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer out = CharBuffer.allocate(Math.max(bytes.remaining(), 1));
+        ByteBuffer in = bytes.duplicate();
+        // overflows are not expected for supported charsets, but grow the buffer to be safe
+        while (decoder.decode(in, out, true).isOverflow()) {
+            out = grow(out);
+        }
+        while (decoder.flush(out).isOverflow()) {
+            out = grow(out);
+        }
+        return normalizeInPlace(out.array(), out.position(), fallbackLineSep, checksum.getValue());
+    }
+
+    private static CharBuffer grow(CharBuffer buf) {
+        CharBuffer bigger = CharBuffer.allocate(buf.capacity() * 2);
+        buf.flip();
+        bigger.put(buf);
+        return bigger;
+    }
+
+    /**
+     * Normalizes the line terminators of the first {@code n} chars of
+     * the buffer in place. This only ever shrinks the text.
+     */
+    private static TextFileContent normalizeInPlace(char[] cbuf, int n, String fallbackLineSep, long checksum) {
+        SourceCodePositioner.Builder positionerBuilder = new SourceCodePositioner.Builder();
+        String detectedLineTerm = null;
+        int start = n > 0 && cbuf[0] == IOUtil.UTF_BOM ? 1 : 0;
+        int w = 0;
+        for (int r = start; r < n; r++) {
+            char c = cbuf[r];
+            if (c == '\r') {
+                String newLineTerm = CR;
+                if (r + 1 < n && cbuf[r + 1] == NORMALIZED_LINE_TERM_CHAR) {
+                    newLineTerm = CRLF;
+                    r++;
+                }
+                cbuf[w++] = NORMALIZED_LINE_TERM_CHAR;
+                positionerBuilder.addLineEndAtOffset(w);
+                detectedLineTerm = detectLineTerm(detectedLineTerm, newLineTerm, fallbackLineSep);
+            } else {
+                cbuf[w++] = c;
+                if (c == NORMALIZED_LINE_TERM_CHAR) {
+                    positionerBuilder.addLineEndAtOffset(w);
+                    detectedLineTerm = detectLineTerm(detectedLineTerm, LF, fallbackLineSep);
+                }
+            }
+        }
+
+        if (detectedLineTerm == null) {
+            // no line terminator in text
+            detectedLineTerm = fallbackLineSep;
+        }
+
+        return new TextFileContent(Chars.wrap(new String(cbuf, 0, w)), detectedLineTerm, checksum, positionerBuilder.build(w));
+    }
+
     // test only
     static @NonNull TextFileContent normalizeCharSeq(CharSequence text, String fallBackLineSep) {
         long checksum = getCheckSum(text); // the checksum is computed on the original file
@@ -328,7 +421,7 @@ public final class TextFileContent {
     }
 
 
-    private static Checksum newChecksum() {
+    private static Adler32 newChecksum() {
         return new Adler32();
     }
 }
@@ -4,6 +4,9 @@
 
 package net.sourceforge.pmd.lang.impl;
 
+import org.slf4j.event.Level;
+
+import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
 import net.sourceforge.pmd.lang.document.TextFile;
 
@@ -37,11 +40,25 @@ abstract class AbstractPMDProcessor implements AutoCloseable {
      * determined by {@link AnalysisTask#getThreadCount()}.
      * <p>Note: Only {@code 0} threads disables multi-thread processing. See the CLI documentation
      * for parameter {@code --threads}.</p>
+     * <p>If {@linkplain SystemProps#isVirtualThreadsMode() virtual threads mode}
+     * is enabled and supported by the JVM, files are processed on virtual threads.</p>
+     * <p>Otherwise, if {@linkplain SystemProps#isPipelinedMode() pipelined mode}
+     * is enabled, files are read ahead of the analysis by separate threads.</p>
      */
     public static AbstractPMDProcessor newFileProcessor(AnalysisTask analysisTask) {
-        return analysisTask.getThreadCount() > 0
-               ? new MultiThreadProcessor(analysisTask)
-               : new MonoThreadProcessor(analysisTask);
+        if (analysisTask.getThreadCount() <= 0) {
+            return new MonoThreadProcessor(analysisTask);
+        }
+        if (SystemProps.isVirtualThreadsMode()) {
+            if (VirtualThreadProcessor.isSupported()) {
+                return new VirtualThreadProcessor(analysisTask);
+            }
+            analysisTask.getMessageReporter().log(Level.DEBUG, "Virtual threads are not supported by this JVM, ignoring system property {0}", SystemProps.PMD_VIRTUAL_THREADS);
+        }
+        if (SystemProps.isPipelinedMode()) {
+            return new PipelinedProcessor(analysisTask);
+        }
+        return new MultiThreadProcessor(analysisTask);
     }
 
 }
@@ -58,10 +58,14 @@ public abstract class BatchLanguageProcessor<P extends LanguagePropertyBundle> i
 
     @Override
     public @NonNull AutoCloseable launchAnalysis(@NonNull AnalysisTask task) {
-        // The given analysis task has all files to analyse, not only the ones for this language.
-        List<TextFile> files = new ArrayList<>(task.getFiles());
-        files.removeIf(it -> !it.getLanguageVersion().getLanguage().equals(getLanguage()));
-        AnalysisTask newTask = InternalApiBridge.taskWithFiles(task, files);
+        AnalysisTask newTask = task;
+        if (InternalApiBridge.getFileQueue(task) == null) {
+            // The given analysis task has all files to analyse, not only the ones for this language.
+            // A queue of files that are still being collected only has the files for this language.
+            List<TextFile> files = new ArrayList<>(task.getFiles());
+            files.removeIf(it -> !it.getLanguageVersion().getLanguage().equals(getLanguage()));
+            newTask = InternalApiBridge.taskWithFiles(task, files);
+        }
 
         task.getRulesets().initializeRules(task.getLpRegistry(), task.getMessageReporter());
 
@@ -4,29 +4,40 @@
 
 package net.sourceforge.pmd.lang.impl;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.event.Level;
 
 import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
+import net.sourceforge.pmd.lang.document.InternalApiBridge;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.internal.RuleSets;
-import net.sourceforge.pmd.util.log.PmdReporter;
 
 
 /**
+ * Processes files on a thread pool. Files are submitted largest first,
+ * so that a few big files (eg generated sources) don't end up being
+ * processed last by a single thread while the others idle. Each file is
+ * a single task, so the threads take the files from the shared queue in
+ * that order, there is no finer grained work to steal.
+ *
+ * <p>Each task borrows a copy of the rulesets from a {@link RuleSetsPool}
+ * and gives it back when done, so there are at most as many copies as
+ * threads. Completions are not tracked per file: the first failure is
+ * recorded, the files that have not been started yet are skipped, and
+ * the failure is reported when the processor is closed.
+ *
  * @author Romain Pelisse &lt;belaran@gmail.com&gt;
  */
 final class MultiThreadProcessor extends AbstractPMDProcessor {
-    private final ExecutorService executor;
+    private final ForkJoinPool executor;
 
-    private final List<Future<?>> futureList;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
 
     MultiThreadProcessor(final AnalysisTask task) {
         super(task);
@@ -36,58 +47,91 @@ final class MultiThreadProcessor extends AbstractPMDProcessor {
         } else {
             task.getMessageReporter().log(Level.DEBUG, "Using {0} threads for analysis", threadCount);
         }
-        executor = Executors.newFixedThreadPool(threadCount, new PmdThreadFactory());
-        futureList = new LinkedList<>();
+        executor = new ForkJoinPool(threadCount, new PmdThreadFactory(), null, true);
     }
 
     @Override
     @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
     public void processFiles() {
-        // The thread-local is not static, but analysis-global
-        // This means we don't have to reset it manually, every analysis is isolated.
-        // The initial value makes a copy of the rulesets
-        final ThreadLocal<RuleSets> ruleSetCopy = ThreadLocal.withInitial(() -> {
-            RuleSets copy = new RuleSets(task.getRulesets());
-            // use a noop reporter because the copy should only contain rules that
-            // initialized properly
-            copy.initializeRules(task.getLpRegistry(), PmdReporter.quiet());
-            return copy;
-        });
-
-        for (final TextFile textFile : task.getFiles()) {
-            futureList.add(executor.submit(new PmdRunnable(textFile, task) {
-                @Override
-                protected RuleSets getRulesets() {
-                    return ruleSetCopy.get();
+        final RuleSetsPool ruleSetsPool = new RuleSetsPool(task);
+
+        for (final TextFile textFile : largestFirst(task.getFiles())) {
+            if (firstFailure.get() != null) {
+                break;
+            }
+            executor.execute(() -> {
+                if (firstFailure.get() != null) {
+                    // fail fast, the analysis is aborted anyway
+                    return;
+                }
+                RuleSets ruleSets = ruleSetsPool.borrow();
+                try {
+                    new PmdRunnable(textFile, task) {
+                        @Override
+                        protected RuleSets getRulesets() {
+                            return ruleSets;
+                        }
+                    }.run();
+                } catch (Throwable e) { // NOPMD AvoidCatchingThrowable - rethrown in close
+                    firstFailure.compareAndSet(null, e);
+                } finally {
+                    ruleSetsPool.giveBack(ruleSets);
                 }
-            }));
+            });
         }
     }
 
+    /**
+     * Sort the files by decreasing size. Files whose size is unknown
+     * are scheduled last. The sort is stable, so files of the same size
+     * keep the order of the collector.
+     */
+    static List<TextFile> largestFirst(List<TextFile> files) {
+        List<SizedFile> sized = new ArrayList<>(files.size());
+        for (TextFile file : files) {
+            sized.add(new SizedFile(file, InternalApiBridge.getEstimatedSize(file)));
+        }
+        sized.sort(Comparator.comparingLong((SizedFile f) -> f.size).reversed());
+
+        List<TextFile> result = new ArrayList<>(sized.size());
+        for (SizedFile sizedFile : sized) {
+            result.add(sizedFile.file);
+        }
+        return result;
+    }
+
     @Override
     public void close() {
         try {
-            try {
-                for (Future<?> task : futureList) {
-                    task.get();
-                }
-            } catch (ExecutionException e) {
-                task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
-                        e.getCause().toString(), e.getCause());
-                if (e.getCause() instanceof Error) {
-                    throw (Error) e.getCause();
-                }
-            }
-
             executor.shutdown();
             while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
                 // still waiting
                 Thread.yield();
             }
+
+            Throwable failure = firstFailure.get();
+            if (failure != null) {
+                task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
+                        failure.toString(), failure);
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } finally {
             executor.shutdownNow();
         }
     }
+
+    private static final class SizedFile {
+
+        private final TextFile file;
+        private final long size;
+
+        SizedFile(TextFile file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
 }
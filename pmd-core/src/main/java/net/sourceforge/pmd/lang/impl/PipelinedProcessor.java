@@ -0,0 +1,160 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.event.Level;
+
+import net.sourceforge.pmd.lang.InternalApiBridge;
+import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
+import net.sourceforge.pmd.lang.document.CollectedFileQueue;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+
+/**
+ * Processes files in three stages connected by bounded hand-offs:
+ * <ol>
+ * <li>a producer thread submits the files, largest first, to the reader
+ * stage, as long as the read-ahead bound is not reached. If the files
+ * are still being collected, they are instead submitted in the order
+ * in which they are found;
+ * <li>reader threads read and decode the contents of the files;
+ * <li>analysis threads parse the files and apply the rules.
+ * </ol>
+ * The analysis threads thus never wait for IO, as long as the readers
+ * keep up. The number of files that have been read but not yet analysed,
+ * and hence the memory held by their contents, is bounded.
+ *
+ * <p>If the producer or the thread closing the processor is interrupted,
+ * the remaining files are not analysed, which is reported as an error.
+ *
+ * <p>Like in {@link MultiThreadProcessor}, the analysis of each file
+ * borrows a copy of the rulesets from a {@link RuleSetsPool}, and gives
+ * it back when done.
+ */
+final class PipelinedProcessor extends AbstractPMDProcessor {
+
+    /**
+     * How many files may be read ahead of the analysis, per analysis thread.
+     */
+    private static final int READ_AHEAD_FACTOR = 4;
+
+    private final ExecutorService producer;
+    private final ExecutorService readers;
+    private final ForkJoinPool analysers;
+    private final Semaphore readAheadPermits;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    PipelinedProcessor(AnalysisTask task) {
+        super(task);
+        int threadCount = task.getThreadCount();
+        task.getMessageReporter().log(Level.DEBUG, "Using pipelined analysis with {0} threads", threadCount);
+        PmdThreadFactory threadFactory = new PmdThreadFactory();
+        this.producer = Executors.newSingleThreadExecutor(threadFactory);
+        this.readers = Executors.newFixedThreadPool(threadCount, threadFactory);
+        this.analysers = new ForkJoinPool(threadCount, threadFactory, null, true);
+        this.readAheadPermits = new Semaphore(threadCount * READ_AHEAD_FACTOR);
+    }
+
+    @Override
+    public void processFiles() {
+        final RuleSetsPool ruleSetsPool = new RuleSetsPool(task);
+        final CollectedFileQueue fileQueue = InternalApiBridge.getFileQueue(task);
+
+        producer.execute(() -> {
+            try {
+                if (fileQueue != null) {
+                    // files are submitted as they are collected
+                    for (TextFile textFile = fileQueue.take(); textFile != null; textFile = fileQueue.take()) {
+                        submit(textFile, ruleSetsPool);
+                    }
+                } else {
+                    for (TextFile textFile : MultiThreadProcessor.largestFirst(task.getFiles())) {
+                        submit(textFile, ruleSetsPool);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                firstFailure.compareAndSet(null, e);
+            } catch (Throwable e) { // NOPMD AvoidCatchingThrowable - rethrown in close
+                firstFailure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    private void submit(TextFile textFile, RuleSetsPool ruleSetsPool) throws InterruptedException {
+        readAheadPermits.acquire();
+        readers.execute(() -> read(textFile, ruleSetsPool));
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
+    private void read(TextFile textFile, RuleSetsPool ruleSetsPool) {
+        try {
+            TextFile prefetched = PrefetchedTextFile.prefetch(textFile);
+            analysers.execute(() -> {
+                RuleSets ruleSets = ruleSetsPool.borrow();
+                try {
+                    new PmdRunnable(prefetched, task) {
+                        @Override
+                        protected RuleSets getRulesets() {
+                            return ruleSets;
+                        }
+                    }.run();
+                } catch (Throwable e) { // NOPMD AvoidCatchingThrowable - rethrown in close
+                    firstFailure.compareAndSet(null, e);
+                } finally {
+                    ruleSetsPool.giveBack(ruleSets);
+                    readAheadPermits.release();
+                }
+            });
+        } catch (Throwable e) { // NOPMD AvoidCatchingThrowable - rethrown in close
+            readAheadPermits.release();
+            firstFailure.compareAndSet(null, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            // each stage only submits to the next one, so they are
+            // shut down in order
+            awaitTermination(producer);
+            awaitTermination(readers);
+            awaitTermination(analysers);
+
+            Throwable failure = firstFailure.get();
+            if (failure instanceof InterruptedException) {
+                task.getMessageReporter().error("Interrupted while submitting files for analysis, the remaining files were not analyzed");
+            } else if (failure != null) {
+                task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
+                        failure.toString(), failure);
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.getMessageReporter().error("Interrupted while waiting for the analysis, the remaining files were not analyzed");
+        } finally {
+            producer.shutdownNow();
+            readers.shutdownNow();
+            analysers.shutdownNow();
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
+            // still waiting
+            Thread.yield();
+        }
+    }
+}
@@ -6,6 +6,9 @@ package net.sourceforge.pmd.lang.impl;
 
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 
+import java.util.Set;
+import java.util.function.Supplier;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -138,6 +141,11 @@ abstract class PmdRunnable implements Runnable {
         }
 
         ruleSets.apply(rootNode, listener);
+
+        Supplier<Set<String>> dependencies = rootNode.getAstInfo().getUserMap().get(AnalysisCache.TYPE_DEPENDENCIES);
+        if (dependencies != null) {
+            task.getAnalysisCache().recordDependencies(textDocument, dependencies);
+        }
     }
 
 }
@@ -0,0 +1,90 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.io.IOException;
+
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextFileContent;
+
+/**
+ * A text file whose contents have already been read. Other operations
+ * are delegated to the original file: closing it closes the original
+ * file, and writing to it writes to the original file, after which the
+ * contents are read from the original file again.
+ */
+final class PrefetchedTextFile implements TextFile {
+
+    private final TextFile delegate;
+    private volatile TextFileContent content;
+
+    private PrefetchedTextFile(TextFile delegate, TextFileContent content) {
+        this.delegate = delegate;
+        this.content = content;
+    }
+
+    /**
+     * Read and decode the contents of the file now, so that this IO is
+     * not performed by the thread that analyses the file. If reading fails,
+     * the original file is returned and the error will be reported when
+     * the file is analysed.
+     */
+    static TextFile prefetch(TextFile textFile) {
+        try {
+            return new PrefetchedTextFile(textFile, textFile.readContents());
+        } catch (IOException e) {
+            return textFile;
+        }
+    }
+
+    @Override
+    public LanguageVersion getLanguageVersion() {
+        return delegate.getLanguageVersion();
+    }
+
+    @Override
+    public FileId getFileId() {
+        return delegate.getFileId();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return delegate.isReadOnly();
+    }
+
+    @Override
+    public void writeContents(TextFileContent newContent) throws IOException {
+        delegate.writeContents(newContent);
+        content = null;
+    }
+
+    @Override
+    public TextFileContent readContents() throws IOException {
+        TextFileContent prefetched = content;
+        return prefetched != null ? prefetched : delegate.readContents();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PrefetchedTextFile && delegate.equals(((PrefetchedTextFile) o).delegate);
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Prefetched[" + delegate + "]";
+    }
+}
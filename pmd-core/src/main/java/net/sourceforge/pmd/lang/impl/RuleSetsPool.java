@@ -0,0 +1,59 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+/**
+ * Pool of copies of the rulesets of an analysis, for use by concurrent
+ * analysis threads. Each copy shares the stateless rules (eg XPath rules)
+ * of a template instance, and only the other rules are copied. The
+ * template is initialized once, when the pool is created, and is not
+ * used to analyse files itself.
+ *
+ * @see RuleSets#copyForThread(net.sourceforge.pmd.lang.LanguageProcessorRegistry, PmdReporter)
+ */
+final class RuleSetsPool {
+
+    private final AnalysisTask task;
+    private final RuleSets template;
+    private final Queue<RuleSets> pool = new ConcurrentLinkedQueue<>();
+
+    RuleSetsPool(AnalysisTask task) {
+        this.task = task;
+        this.template = new RuleSets(task.getRulesets());
+        // use a noop reporter because the copy should only contain rules that
+        // initialized properly
+        template.initializeRules(task.getLpRegistry(), PmdReporter.quiet());
+        for (Rule rule : template.getAllRules()) {
+            // The target selector is computed lazily. Do it now, on this
+            // thread, so that rules shared by copies are not mutated afterwards.
+            rule.getTargetSelector();
+        }
+    }
+
+    /**
+     * Returns a copy of the rulesets that is not in use by another thread.
+     * It should be given back with {@link #giveBack(RuleSets)} when the
+     * thread is done with it.
+     */
+    RuleSets borrow() {
+        RuleSets ruleSets = pool.poll();
+        if (ruleSets == null) {
+            ruleSets = template.copyForThread(task.getLpRegistry(), PmdReporter.quiet());
+        }
+        return ruleSets;
+    }
+
+    void giveBack(RuleSets ruleSets) {
+        pool.offer(ruleSets);
+    }
+}
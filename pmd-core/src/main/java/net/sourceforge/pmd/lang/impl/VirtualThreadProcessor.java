@@ -0,0 +1,161 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.event.Level;
+
+import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+
+/**
+ * Processes each file on its own virtual thread (Java 21+). Reading
+ * the file happens before a processing permit is acquired, so that IO
+ * overlaps with the analysis of other files. The number of files that
+ * are analysed at the same time is bounded by the thread count.
+ *
+ * <p>Rulesets are not copied per thread, as virtual threads are not
+ * reused. Instead, copies are kept in a {@link RuleSetsPool}, from which
+ * each task borrows one for the duration of the analysis of its file.
+ * Since the number of concurrent analyses is bounded, so is the size of
+ * the pool.
+ */
+final class VirtualThreadProcessor extends AbstractPMDProcessor {
+
+    /**
+     * How many files may be read ahead of the analysis, per analysis thread.
+     * This bounds the number of file contents held in memory.
+     */
+    private static final int READ_AHEAD_FACTOR = 4;
+
+    private static final @Nullable Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private final ExecutorService executor;
+    private final Semaphore readPermits;
+    private final Semaphore analysisPermits;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    VirtualThreadProcessor(AnalysisTask task) {
+        this(task, newVirtualThreadExecutor());
+        task.getMessageReporter().log(Level.DEBUG, "Using virtual threads for analysis, with {0} files analysed in parallel", task.getThreadCount());
+    }
+
+    /**
+     * Processes the files with the given executor instead of virtual threads.
+     * This is only used for tests, which may run on a JVM without virtual threads.
+     */
+    VirtualThreadProcessor(AnalysisTask task, ExecutorService executor) {
+        super(task);
+        int threadCount = task.getThreadCount();
+        this.executor = executor;
+        this.analysisPermits = new Semaphore(threadCount);
+        this.readPermits = new Semaphore(threadCount * READ_AHEAD_FACTOR);
+    }
+
+    /**
+     * Returns true if the running JVM supports virtual threads.
+     */
+    static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    private static @Nullable Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM");
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual thread executor", e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
+    public void processFiles() {
+        final RuleSetsPool ruleSetsPool = new RuleSetsPool(task);
+        for (TextFile textFile : MultiThreadProcessor.largestFirst(task.getFiles())) {
+            executor.execute(() -> {
+                try {
+                    processFile(textFile, ruleSetsPool);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    firstFailure.compareAndSet(null, e);
+                } catch (Throwable e) { // NOPMD AvoidCatchingThrowable - rethrown in close
+                    firstFailure.compareAndSet(null, e);
+                }
+            });
+        }
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
+    private void processFile(TextFile textFile, RuleSetsPool ruleSetsPool) throws InterruptedException {
+        readPermits.acquire();
+        try {
+            TextFile prefetched = PrefetchedTextFile.prefetch(textFile);
+            analysisPermits.acquire();
+            try {
+                RuleSets ruleSets = ruleSetsPool.borrow();
+                try {
+                    new PmdRunnable(prefetched, task) {
+                        @Override
+                        protected RuleSets getRulesets() {
+                            return ruleSets;
+                        }
+                    }.run();
+                } finally {
+                    ruleSetsPool.giveBack(ruleSets);
+                }
+            } finally {
+                analysisPermits.release();
+            }
+        } finally {
+            readPermits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            executor.shutdown();
+            while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
+                // still waiting
+                Thread.yield();
+            }
+
+            Throwable failure = firstFailure.get();
+            if (failure instanceof InterruptedException) {
+                task.getMessageReporter().error("Interrupted while waiting to analyze files, some files were not analyzed");
+            } else if (failure != null) {
+                task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
+                        failure.toString(), failure);
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.getMessageReporter().error("Interrupted while waiting for the analysis, the remaining files were not analyzed");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -5,6 +5,7 @@
 package net.sourceforge.pmd.lang.rule;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
@@ -40,6 +41,10 @@ public final class InternalApiBridge {
         return ruleSetLoader.loadRuleSetsWithoutException(rulesetPaths);
     }
 
+    public static RuleSet copyRuleSet(RuleSet ruleSet, Predicate<? super Rule> shareRule) {
+        return new RuleSet(ruleSet, shareRule);
+    }
+
     public static RuleSetLoader withReporter(RuleSetLoader ruleSetLoader, @NonNull PmdReporter reporter) {
         return ruleSetLoader.withReporter(reporter);
     }
@@ -77,6 +77,17 @@ public class RuleSet implements ChecksumAware {
     }
 
     public RuleSet(final RuleSet rs) {
+        this(rs, rule -> false);
+    }
+
+    /**
+     * Copy constructor that shares some rule instances with the
+     * original ruleset, instead of copying them.
+     *
+     * @param rs        The ruleset to copy
+     * @param shareRule Tests whether a rule may be shared
+     */
+    RuleSet(final RuleSet rs, Predicate<? super Rule> shareRule) {
         checksum = rs.checksum;
         fileName = rs.fileName;
         name = rs.name;
@@ -84,7 +95,7 @@ public class RuleSet implements ChecksumAware {
 
         rules = new ArrayList<>(rs.rules.size());
         for (final Rule rule : rs.rules) {
-            rules.add(rule.deepCopy());
+            rules.add(shareRule.test(rule) ? rule : rule.deepCopy());
         }
 
         excludePatterns = rs.excludePatterns; // we can share immutable lists of immutable elements
@@ -0,0 +1,33 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule;
+
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.reporting.RuleContext;
+
+/**
+ * Marker interface for rules that keep no state while they are applied.
+ * When PMD analyses files on several threads, each thread normally uses
+ * its own {@linkplain Rule#deepCopy() copy} of every rule. A single,
+ * initialized instance of a stateless rule is instead shared by all
+ * threads, which saves copying and initializing it for each thread.
+ *
+ * <p>A rule may only implement this interface if, once it has been
+ * {@linkplain Rule#initialize(net.sourceforge.pmd.lang.LanguageProcessor) initialized},
+ * {@link Rule#start(RuleContext)}, {@link Rule#apply(net.sourceforge.pmd.lang.ast.Node, RuleContext)}
+ * and {@link Rule#end(RuleContext)} can be called concurrently from several
+ * threads, that is, if they don't modify the fields of the rule, and only
+ * report violations to the given {@link RuleContext}. Its
+ * {@linkplain Rule#getTargetSelector() target selector} is computed before
+ * it is shared.
+ *
+ * <p>A {@link RuleReference} is stateless if the rule it references is.
+ *
+ * @since 7.27.0
+ * @experimental This is a new API for parallel analysis.
+ */
+@Experimental
+public interface StatelessRule extends Rule {
+}
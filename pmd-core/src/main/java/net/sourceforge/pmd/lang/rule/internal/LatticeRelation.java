@@ -15,6 +15,7 @@ import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -162,7 +163,6 @@ class LatticeRelation<K, @NonNull V, C> {
         return new IllegalStateException("Cycle in graph: " + String.join(" -> ", toStrings));
     }
 
-    // test only
     /** Returns the keys of all transitive successors. */
     Set<K> transitiveQuerySuccs(K key) {
         LNode lNode = nodes.get(key);
@@ -173,6 +173,26 @@ class LatticeRelation<K, @NonNull V, C> {
         }
     }
 
+    /**
+     * Returns the keys that can be queried, and whose value contains the
+     * values put for the given key. This is the key itself if it can be
+     * queried, and its transitive successors that can be queried. The
+     * key must have been {@linkplain #put(Object, Object) put} or
+     * {@linkplain #addKey(Object) added} before, otherwise this returns
+     * an empty set.
+     */
+    Set<K> getQueryKeysAbove(K key) {
+        LNode lNode = nodes.get(key);
+        if (lNode == null) {
+            return Collections.emptySet();
+        }
+        Set<K> result = new HashSet<>(transitiveQuerySuccs(key));
+        if (lNode instanceof QueryNode) {
+            result.add(key);
+        }
+        return result;
+    }
+
     /**
      * Adds one value to the given key. This value will be joined to the
      * values of all keys inferior to it when calling {@link #get(Object)}.
@@ -186,6 +206,18 @@ class LatticeRelation<K, @NonNull V, C> {
         putDontCheckParams(key, value);
     }
 
+    /**
+     * Adds the given key to the lattice, without adding a value. This
+     * is enough for {@link #getQueryKeysAbove(Object)} to find its successors.
+     *
+     * @throws IllegalStateException If the order has a cycle
+     * @throws NullPointerException  If the key is null
+     */
+    void addKey(@NonNull K key) {
+        AssertionUtil.requireParamNotNull("key", key);
+        putDontCheckParams(key, null);
+    }
+
     private void putDontCheckParams(@NonNull K key, @Nullable V value) {
         addSucc(null, key, value);
     }
@@ -6,8 +6,12 @@ package net.sourceforge.pmd.lang.rule.internal;
 
 import static net.sourceforge.pmd.lang.rule.InternalApiBridge.ruleSetApplies;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.exception.ExceptionContext;
 import org.slf4j.Logger;
@@ -24,7 +28,9 @@ import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.reporting.InternalApiBridge;
 import net.sourceforge.pmd.reporting.Report.ProcessingError;
+import net.sourceforge.pmd.reporting.Report.SuppressedViolation;
 import net.sourceforge.pmd.reporting.RuleContext;
+import net.sourceforge.pmd.reporting.RuleViolation;
 import net.sourceforge.pmd.util.AssertionUtil;
 import net.sourceforge.pmd.util.StringUtil;
 
@@ -40,7 +46,9 @@ public class RuleApplicator {
     // to eg type resolution.
 
     private final TreeIndex idx;
+    private RootNode currentRoot;
     private LanguageVersion currentLangVer;
+    private RuleDispatchTable dispatchTable;
 
     public RuleApplicator(TreeIndex index) {
         this.idx = index;
@@ -50,11 +58,16 @@ public class RuleApplicator {
     public void index(RootNode root) {
         idx.reset();
         indexTree(root, idx);
+        currentRoot = root;
         currentLangVer = root.getLanguageVersion();
     }
 
     public void apply(Collection<? extends Rule> rules, FileAnalysisListener listener) {
-        applyOnIndex(idx, rules, listener);
+        if (SystemProps.isFusedRuleDispatchMode()) {
+            applyFused(rules, listener);
+        } else {
+            applyOnIndex(idx, rules, listener);
+        }
     }
 
     private void applyOnIndex(TreeIndex idx, Collection<? extends Rule> rules, FileAnalysisListener listener) {
@@ -62,35 +75,139 @@ public class RuleApplicator {
             if (!ruleSetApplies(rule, currentLangVer)) {
                 continue; // No point in even trying to apply the rule
             }
-            
-            RuleContext ctx = InternalApiBridge.createRuleContext(listener, rule);
-            rule.start(ctx);
-            try (TimedOperation rcto = TimeTracker.startOperation(TimedOperationCategory.RULE, rule.getName())) {
-
-                int nodeCounter = 0;
-                Iterator<? extends Node> targets = rule.getTargetSelector().getVisitedNodes(idx);
-                while (targets.hasNext()) {
-                    Node node = targets.next();
-
-                    try {
-                        nodeCounter++;
-                        rule.apply(node, ctx);
-                    } catch (RuntimeException e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), true);
-                    } catch (StackOverflowError e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
-                    } catch (AssertionError e) {
-                        reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
-                    }
+            applyRule(idx, rule, listener);
+        }
+    }
+
+    private void applyRule(TreeIndex idx, Rule rule, FileAnalysisListener listener) {
+        RuleContext ctx = InternalApiBridge.createRuleContext(listener, rule);
+        rule.start(ctx);
+        try (TimedOperation rcto = TimeTracker.startOperation(TimedOperationCategory.RULE, rule.getName())) {
+
+            int nodeCounter = 0;
+            Iterator<? extends Node> targets = rule.getTargetSelector().getVisitedNodes(idx);
+            while (targets.hasNext()) {
+                nodeCounter++;
+                applyOnNode(rule, targets.next(), ctx, listener);
+            }
+
+            rcto.close(nodeCounter);
+        } finally {
+            rule.end(ctx);
+        }
+    }
+
+    private void applyOnNode(Rule rule, Node node, RuleContext ctx, FileAnalysisListener listener) {
+        try {
+            rule.apply(node, ctx);
+        } catch (RuntimeException e) {
+            reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), true);
+        } catch (StackOverflowError e) {
+            reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
+        } catch (AssertionError e) {
+            reportOrRethrow(listener, rule, node, AssertionUtil.contexted(e), SystemProps.isErrorRecoveryMode());
+        }
+    }
+
+    /**
+     * Applies the rules in a single traversal of the tree. Each node is
+     * passed to all the rules that visit it before moving on to the next
+     * node, in document order, instead of iterating over the visited nodes
+     * once per rule. The rules that visit a node are looked up in a
+     * {@link RuleDispatchTable}, which is reused for the next files as
+     * long as the rules are the same. The events of each rule are buffered,
+     * and forwarded to the listener in the order of the rules once the
+     * traversal is done, so that the listener receives them in the same
+     * order as if the rules were applied one after the other. The time
+     * spent in each rule is summed up over the traversal, and recorded once
+     * per rule and file.
+     */
+    private void applyFused(Collection<? extends Rule> rules, FileAnalysisListener listener) {
+        List<Rule> applicable = new ArrayList<>(rules.size());
+        for (Rule rule : rules) {
+            if (ruleSetApplies(rule, currentLangVer)) {
+                applicable.add(rule);
+            }
+        }
+        if (dispatchTable == null || !dispatchTable.isFor(applicable)) {
+            dispatchTable = new RuleDispatchTable(applicable);
+        }
+
+        RuleEventBuffer[] buffers = new RuleEventBuffer[applicable.size()];
+        RuleContext[] contexts = new RuleContext[applicable.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new RuleEventBuffer(applicable.get(i));
+            contexts[i] = InternalApiBridge.createRuleContext(buffers[i], applicable.get(i));
+        }
+
+        int started = 0;
+        try {
+            for (; started < buffers.length; started++) {
+                try {
+                    buffers[started].rule.start(contexts[started]);
+                } catch (RuntimeException | Error e) {
+                    buffers[started].failure = e;
+                    throw e;
                 }
-                
-                rcto.close(nodeCounter);
+            }
+            dispatch(currentRoot, buffers, contexts, TimeTracker.isTrackingTime());
+        } catch (RuntimeException | Error e) {
+            if (Arrays.stream(buffers).noneMatch(it -> it.failure == e)) { // NOPMD CompareObjectsWithEquals
+                throw e;
+            }
+            // otherwise it is rethrown by replay
+        } finally {
+            for (int i = 0; i < started; i++) {
+                buffers[i].rule.end(contexts[i]);
+                TimeTracker.recordOperation(TimedOperationCategory.RULE, buffers[i].rule.getName(),
+                                            buffers[i].nanos, buffers[i].visitedNodes);
+            }
+        }
+
+        replay(Arrays.asList(buffers), listener);
+    }
+
+    private void dispatch(Node node, RuleEventBuffer[] buffers, RuleContext[] contexts, boolean timed) {
+        dispatch(dispatchTable.getRulesByClass(node.getClass(), idx), node, buffers, contexts, timed);
+        dispatch(dispatchTable.getRulesByName(node.getXPathNodeName()), node, buffers, contexts, timed);
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            dispatch(node.getChild(i), buffers, contexts, timed);
+        }
+    }
+
+    private void dispatch(int[] ruleIndices, Node node, RuleEventBuffer[] buffers, RuleContext[] contexts, boolean timed) {
+        for (int i : ruleIndices) {
+            RuleEventBuffer buffer = buffers[i];
+            long start = timed ? System.nanoTime() : 0;
+            try {
+                applyOnNode(buffer.rule, node, contexts[i], buffer);
+            } catch (RuntimeException | Error e) {
+                buffer.failure = e;
+                throw e;
             } finally {
-                rule.end(ctx);
+                if (timed) {
+                    buffer.nanos += System.nanoTime() - start;
+                }
             }
+            buffer.visitedNodes++;
         }
     }
 
+    /**
+     * Forwards the buffered events to the listener in order. If a rule
+     * failed, its error is rethrown, and the events of the following
+     * rules are dropped, like if the rules had been applied sequentially.
+     */
+    private static void replay(List<RuleEventBuffer> buffers, FileAnalysisListener listener) {
+        for (RuleEventBuffer buffer : buffers) {
+            buffer.replay(listener);
+            if (buffer.failure instanceof RuntimeException) {
+                throw (RuntimeException) buffer.failure;
+            } else if (buffer.failure != null) {
+                throw (Error) buffer.failure;
+            }
+        }
+    }
 
     private <E extends Throwable> void reportOrRethrow(FileAnalysisListener listener, Rule rule, Node node, E e, boolean reportAndDontThrow) throws E {
         if (e instanceof ExceptionContext) {
@@ -124,6 +241,44 @@ public class RuleApplicator {
         }
     }
 
+    /**
+     * Records the events reported by a rule, to forward them to the
+     * listener of the file later.
+     */
+    private static final class RuleEventBuffer implements FileAnalysisListener {
+
+        private final Rule rule;
+        private final List<Consumer<FileAnalysisListener>> events = new ArrayList<>();
+        private Throwable failure;
+        private long nanos;
+        private int visitedNodes;
+
+        RuleEventBuffer(Rule rule) {
+            this.rule = rule;
+        }
+
+        @Override
+        public void onRuleViolation(RuleViolation violation) {
+            events.add(l -> l.onRuleViolation(violation));
+        }
+
+        @Override
+        public void onSuppressedRuleViolation(SuppressedViolation violation) {
+            events.add(l -> l.onSuppressedRuleViolation(violation));
+        }
+
+        @Override
+        public void onError(ProcessingError error) {
+            events.add(l -> l.onError(error));
+        }
+
+        void replay(FileAnalysisListener listener) {
+            for (Consumer<FileAnalysisListener> event : events) {
+                event.accept(listener);
+            }
+        }
+    }
+
     public static RuleApplicator build(Iterable<? extends Rule> rules) {
         TargetSelectorInternal.ApplicatorBuilder builder = new TargetSelectorInternal.ApplicatorBuilder();
         for (Rule it : rules) {
@@ -0,0 +1,97 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.internal.TargetSelectorInternal.ApplicatorBuilder;
+
+/**
+ * Maps nodes to the rules that visit them, for the fused application
+ * of rules by the {@link RuleApplicator}. Rules are identified by their
+ * index in the list of rules the table was built for.
+ *
+ * <p>A rule that visits several classes visits a node once for each of
+ * these classes the node is an instance of, like when the rule is applied
+ * on its own through {@link TargetSelectorInternal#getVisitedNodes(TreeIndex)}.
+ */
+final class RuleDispatchTable {
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final List<Rule> rules;
+    private final List<Set<Class<? extends Node>>> visitedClasses;
+    private final Map<String, int[]> byName;
+    // computed lazily, as node classes are encountered
+    private final Map<Class<?>, int[]> byClass = new HashMap<>();
+
+    RuleDispatchTable(List<Rule> rules) {
+        this.rules = rules;
+        this.visitedClasses = new ArrayList<>(rules.size());
+
+        Map<String, List<Integer>> rulesByName = new HashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            ApplicatorBuilder visits = new ApplicatorBuilder();
+            rules.get(i).getTargetSelector().prepare(visits);
+            visitedClasses.add(visits.getClassesToIndex());
+            for (String name : visits.getNamesToIndex()) {
+                rulesByName.computeIfAbsent(name, k -> new ArrayList<>()).add(i);
+            }
+        }
+        this.byName = new HashMap<>();
+        rulesByName.forEach((name, indices) -> byName.put(name, toArray(indices)));
+    }
+
+    /** Returns whether this table was built for the same rules, in the same order. */
+    boolean isFor(List<? extends Rule> rules) {
+        if (rules.size() != this.rules.size()) {
+            return false;
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i) != this.rules.get(i)) { // NOPMD CompareObjectsWithEquals
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the indices of the rules that visit nodes with the given XPath name. */
+    int[] getRulesByName(String xpathName) {
+        return byName.getOrDefault(xpathName, NO_RULES);
+    }
+
+    /**
+     * Returns the indices of the rules that visit nodes of the given class.
+     * The supertypes of the class are looked up in the index, which must
+     * have indexed a node of this class.
+     */
+    int[] getRulesByClass(Class<? extends Node> nodeClass, TreeIndex index) {
+        int[] result = byClass.get(nodeClass);
+        if (result == null) {
+            Set<Class<?>> supertypes = index.getIndexedSupertypes(nodeClass);
+            List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < visitedClasses.size(); i++) {
+                for (Class<? extends Node> visited : visitedClasses.get(i)) {
+                    if (supertypes.contains(visited)) {
+                        indices.add(i);
+                    }
+                }
+            }
+            result = indices.isEmpty() ? NO_RULES : toArray(indices);
+            byClass.put(nodeClass, result);
+        }
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> indices) {
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -11,10 +11,12 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.internal.SystemProps;
 import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.document.TextFile;
@@ -23,7 +25,10 @@ import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleReference;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.lang.rule.RuleSet.RuleSetBuilder;
+import net.sourceforge.pmd.lang.rule.StatelessRule;
 import net.sourceforge.pmd.lang.rule.impl.UnnecessaryPmdSuppressionRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonXPathRuleQuery;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.util.log.PmdReporter;
 
@@ -44,9 +49,13 @@ public class RuleSets {
      * @param ruleSets The RuleSets to copy.
      */
     public RuleSets(final RuleSets ruleSets) {
+        this(ruleSets, rule -> false);
+    }
+
+    private RuleSets(final RuleSets ruleSets, Predicate<? super Rule> shareRule) {
         List<RuleSet> rsets = new ArrayList<>();
         for (final RuleSet rs : ruleSets.ruleSets) {
-            rsets.add(new RuleSet(rs));
+            rsets.add(InternalApiBridge.copyRuleSet(rs, shareRule));
         }
         this.ruleSets = Collections.unmodifiableList(rsets);
     }
@@ -103,6 +112,63 @@ public class RuleSets {
                 }
             }
         }
+        if (SystemProps.isSharedXPathStepsMode()) {
+            planSharedXPathEvaluation();
+        }
+    }
+
+    private void planSharedXPathEvaluation() {
+        List<SaxonXPathRuleQuery> queries = new ArrayList<>();
+        for (RuleSet rset : ruleSets) {
+            for (Rule rule : rset.getRules()) {
+                Rule target = followReference(rule);
+                if (target instanceof XPathRule) {
+                    queries.add(net.sourceforge.pmd.lang.rule.xpath.InternalApiBridge.getXPathRuleQuery((XPathRule) target));
+                }
+            }
+        }
+        SaxonXPathRuleQuery.planSharedEvaluation(queries);
+    }
+
+    /**
+     * Returns a copy of these rulesets to be used by another analysis
+     * thread. {@linkplain #isStateless(Rule) Stateless rules} are shared
+     * with this instance, while other rules are deep-copied and initialized.
+     * This instance must have been {@linkplain #initializeRules(LanguageProcessorRegistry, PmdReporter) initialized}
+     * before, and its shared rules must not be reinitialized afterwards.
+     *
+     * @param lpReg    Registry used to initialize the copied rules
+     * @param reporter Reporter for initialization errors of the copied rules
+     */
+    public RuleSets copyForThread(LanguageProcessorRegistry lpReg, PmdReporter reporter) {
+        RuleSets copy = new RuleSets(this, RuleSets::isStateless);
+        for (RuleSet rset : copy.ruleSets) {
+            for (Iterator<Rule> iterator = rset.getRules().iterator(); iterator.hasNext();) {
+                Rule rule = iterator.next();
+                if (isStateless(rule)) {
+                    continue; // shared, already initialized
+                }
+                try {
+                    rule.initialize(lpReg.getProcessor(rule.getLanguage()));
+                } catch (Exception e) {
+                    reporter.errorEx(
+                        "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
+                    iterator.remove();
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Whether the rule declares that it keeps no state while being applied,
+     * so that the same instance can be used by several threads at the same
+     * time. Rule references are stateless if the referenced rule is.
+     *
+     * @see StatelessRule
+     */
+    static boolean isStateless(Rule rule) {
+        return followReference(rule) instanceof StatelessRule;
     }
 
     private RuleApplicator prepareApplicator() {
@@ -178,11 +244,15 @@ public class RuleSets {
             ruleApplicator.index(root);
         }
 
+        // the rules of all rulesets are applied together, so that they
+        // can be dispatched in a single traversal or in parallel
+        List<Rule> rules = new ArrayList<>();
         for (RuleSet ruleSet : ruleSets) {
             if (InternalApiBridge.ruleSetApplies(ruleSet, root.getTextDocument().getFileId())) {
-                ruleApplicator.apply(ruleSet.getRules(), listener);
+                rules.addAll(ruleSet.getRules());
             }
         }
+        ruleApplicator.apply(rules, listener);
     }
 
     /**
@@ -43,6 +43,14 @@ public abstract class TargetSelectorInternal {
             classesToIndex.addAll(names);
         }
 
+        Set<String> getNamesToIndex() {
+            return namesToIndex;
+        }
+
+        Set<Class<? extends Node>> getClassesToIndex() {
+            return classesToIndex;
+        }
+
         RuleApplicator build() {
             return new RuleApplicator(new TreeIndex(namesToIndex, classesToIndex));
         }
@@ -4,12 +4,12 @@
 
 package net.sourceforge.pmd.lang.rule.internal;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -19,45 +19,111 @@ import net.sourceforge.pmd.util.IteratorUtil;
 
 /**
  * Index of an AST, for use by the {@link RuleApplicator}.
+ *
+ * <p>Each indexed XPath name and class is assigned a small integer id
+ * when the index is created. The nodes are stored into one array per id,
+ * in document order. The arrays are reused for the next trees, so
+ * that indexing a tree allocates next to nothing once the arrays have
+ * grown to the size of the usual trees.
  */
 public class TreeIndex {
 
-    private final LatticeRelation<Class<?>, Node, Iterable<Node>> byClass;
-    private final Set<String> interestingNames;
-    private final Map<String, List<Node>> byName;
+    private static final int[] NO_IDS = new int[0];
+
+    /**
+     * Only used for its topology: this gives the indexed classes
+     * that a node class is a subtype of. No value is stored in it.
+     */
+    private final LatticeRelation<Class<?>, Node, Set<Node>> typeLattice;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final Map<Class<?>, Integer> classIds = new HashMap<>();
+    /** Ids of the indexed supertypes of each node class encountered so far. */
+    private final Map<Class<?>, int[]> supertypeIds = new HashMap<>();
+    private final Class<?>[] classesById;
+    /** Indexed nodes, by id of their name or class. */
+    private final NodeArray[] nodesById;
 
 
     public TreeIndex(Set<String> namesToIndex,
                      Set<Class<? extends Node>> classesToIndex) {
 
-        byClass = new LatticeRelation<>(
+        typeLattice = new LatticeRelation<>(
             TopoOrder.TYPE_HIERARCHY_ORDERING,
             classesToIndex,
             Class::getSimpleName,
             Collectors.toSet()
         );
-        this.interestingNames = namesToIndex;
-        byName = new HashMap<>();
+
+        int id = 0;
+        for (String name : namesToIndex) {
+            nameIds.put(name, id++);
+        }
+        classesById = new Class<?>[namesToIndex.size() + classesToIndex.size()];
+        for (Class<? extends Node> klass : classesToIndex) {
+            classesById[id] = klass;
+            classIds.put(klass, id++);
+        }
+        nodesById = new NodeArray[id];
+        for (int i = 0; i < nodesById.length; i++) {
+            nodesById[i] = new NodeArray();
+        }
     }
 
     void indexNode(Node n) {
-        if (interestingNames.contains(n.getXPathNodeName())) {
-            byName.computeIfAbsent(n.getXPathNodeName(), k -> new ArrayList<>()).add(n);
+        Integer nameId = nameIds.get(n.getXPathNodeName());
+        if (nameId != null) {
+            nodesById[nameId].add(n);
+        }
+        for (int classId : getSupertypeIds(n.getClass())) {
+            nodesById[classId].add(n);
         }
-        byClass.put(n.getClass(), n);
+    }
+
+    private int[] getSupertypeIds(Class<?> nodeClass) {
+        int[] ids = supertypeIds.get(nodeClass);
+        if (ids == null) {
+            typeLattice.addKey(nodeClass);
+            ids = typeLattice.getQueryKeysAbove(nodeClass).stream()
+                             .mapToInt(classIds::get)
+                             .sorted()
+                             .toArray();
+            if (ids.length == 0) {
+                ids = NO_IDS;
+            }
+            supertypeIds.put(nodeClass, ids);
+        }
+        return ids;
     }
 
     void reset() {
-        byClass.clearValues();
-        byName.clear();
+        for (NodeArray nodes : nodesById) {
+            nodes.clear();
+        }
     }
 
     Iterator<Node> getByName(String n) {
-        return byName.getOrDefault(n, Collections.emptyList()).iterator();
+        Integer id = nameIds.get(n);
+        return id == null ? Collections.emptyIterator() : nodesById[id].iterator();
     }
 
     Iterator<Node> getByClass(Class<? extends Node> n) {
-        return byClass.get(n).iterator();
+        Integer id = classIds.get(n);
+        return id == null ? Collections.emptyIterator() : nodesById[id].iterator();
+    }
+
+
+    /**
+     * Returns the indexed classes that the given node class is a subtype of,
+     * including itself. The nodes of this class are part of the result
+     * of {@link #getByClass(Class)} for each of these classes. Nodes of
+     * that class must have been indexed before.
+     */
+    Set<Class<?>> getIndexedSupertypes(Class<? extends Node> nodeClass) {
+        Set<Class<?>> result = new HashSet<>();
+        for (int id : supertypeIds.getOrDefault(nodeClass, NO_IDS)) {
+            result.add(classesById[id]);
+        }
+        return result;
     }
 
 
@@ -68,4 +134,39 @@ public class TreeIndex {
     public Iterator<Node> getByClass(Collection<? extends Class<? extends Node>> n) {
         return IteratorUtil.flatMap(n.iterator(), this::getByClass);
     }
+
+    /**
+     * A growable array of nodes. Clearing it keeps the array, unless
+     * it has grown very large, so that a single huge tree doesn't
+     * retain memory for the rest of the analysis.
+     */
+    private static final class NodeArray {
+
+        private static final int INITIAL_CAPACITY = 16;
+        private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+        private Node[] nodes = new Node[INITIAL_CAPACITY];
+        private int size;
+
+        void add(Node node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size++] = node;
+        }
+
+        void clear() {
+            if (nodes.length > MAX_RETAINED_CAPACITY) {
+                nodes = new Node[INITIAL_CAPACITY];
+            } else {
+                // don't retain the nodes of the previous tree
+                Arrays.fill(nodes, 0, size, null);
+            }
+            size = 0;
+        }
+
+        Iterator<Node> iterator() {
+            return Arrays.asList(nodes).subList(0, size).iterator();
+        }
+    }
 }
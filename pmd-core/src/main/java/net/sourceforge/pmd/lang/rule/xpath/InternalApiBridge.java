@@ -5,6 +5,7 @@
 package net.sourceforge.pmd.lang.rule.xpath;
 
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonXPathRuleQuery;
 
 /**
  * Internal API.
@@ -28,4 +29,8 @@ public final class InternalApiBridge {
     public static XPathRule newXPathRule() {
         return new XPathRule();
     }
+
+    public static SaxonXPathRuleQuery getXPathRuleQuery(XPathRule rule) {
+        return rule.getXPathRuleQuery();
+    }
 }
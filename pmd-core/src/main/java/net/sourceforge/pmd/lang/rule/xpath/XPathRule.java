@@ -19,6 +19,7 @@ import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleTargetSelector;
+import net.sourceforge.pmd.lang.rule.StatelessRule;
 import net.sourceforge.pmd.lang.rule.xpath.internal.DeprecatedAttrLogger;
 import net.sourceforge.pmd.lang.rule.xpath.internal.SaxonXPathRuleQuery;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
@@ -30,8 +31,10 @@ import net.sourceforge.pmd.util.internal.ResourceLoader;
 
 /**
  * Rule that tries to match an XPath expression against a DOM view of an AST.
+ * It is {@linkplain StatelessRule stateless}: the query is compiled when the
+ * rule is initialized, and only read afterwards.
  */
-public final class XPathRule extends AbstractRule {
+public final class XPathRule extends AbstractRule implements StatelessRule {
 
     private static final Logger LOG = LoggerFactory.getLogger(XPathRule.class);
 
@@ -144,6 +147,11 @@ public final class XPathRule extends AbstractRule {
         }
     }
 
+    /** Returns the query of this rule, or null if the rule has not been initialized. */
+    SaxonXPathRuleQuery getXPathRuleQuery() {
+        return xpathRuleQuery;
+    }
+
     private SaxonXPathRuleQuery getQueryMaybeInitialize() throws PmdXPathException {
         if (xpathRuleQuery == null) {
             throw new IllegalStateException("Not initialized");
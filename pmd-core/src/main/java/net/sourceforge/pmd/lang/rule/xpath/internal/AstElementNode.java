@@ -60,6 +60,7 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
         this.treeInfo = document;
         this.wrappedNode = wrappedNode;
         this.id = idGenerator.getAndIncrement();
+        document.registerWrapper(id, this);
 
         this.children = new ArrayList<>(wrappedNode.getNumChildren());
 
@@ -127,6 +128,11 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
         return wrappedNode.getBeginColumn();
     }
 
+    /** Returns the index of this node in the tree according to document order. */
+    int getId() {
+        return id;
+    }
+
     @Override
     public int getSiblingPosition() {
         BaseNodeInfo parent = getParent();
@@ -5,18 +5,21 @@
 package net.sourceforge.pmd.lang.rule.xpath.internal;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.commons.lang3.mutable.MutableInt;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.ast.impl.InternalApiBridge;
 
 import net.sf.saxon.Configuration;
 import net.sf.saxon.om.GenericTreeInfo;
+import net.sf.saxon.om.Item;
 
 
 /**
@@ -25,19 +28,19 @@ import net.sf.saxon.om.GenericTreeInfo;
 public final class AstTreeInfo extends GenericTreeInfo {
 
     private DeprecatedAttrLogger logger;
-    private final Map<Node, AstElementNode> wrapperCache = new LinkedHashMap<Node, AstElementNode>() {
-        @Override
-        protected boolean removeEldestEntry(Entry eldest) {
-            /*
-            hit ratio depending on cache size:
-            512: 61%
-            1024: 75%
-            2048: 82%
-            unbounded: 85%
-             */
-            return size() > 1024;
-        }
-    };
+    /**
+     * The wrappers of the nodes, indexed by their id in document order,
+     * which is also stored on the nodes. This is filled when the wrapper
+     * tree is built, and has one entry per node.
+     */
+    private AstElementNode[] wrappersById = new AstElementNode[64];
+    /**
+     * The results of the {@link SharedPathStep}s evaluated on this tree,
+     * by key of the step, then by id of the context node. Steps are only
+     * evaluated on the few nodes their rule chain visits, so the results
+     * are kept in maps rather than in arrays indexed by node id.
+     */
+    private final Map<String, Map<Integer, Item[]>> sharedStepResults = new HashMap<>();
 
     /**
      * Builds an AstDocument, with the given node as the root.
@@ -51,25 +54,52 @@ public final class AstTreeInfo extends GenericTreeInfo {
         super(configuration);
         MutableInt idGenerator = new MutableInt(1); // 0 is taken by the document node
         setRootNode(new AstDocumentNode(this, idGenerator, node, configuration));
+        if (idGenerator.intValue() < wrappersById.length) {
+            wrappersById = Arrays.copyOf(wrappersById, idGenerator.intValue());
+        }
+    }
+
+    /** Called by the wrapper of each node, when it is created. */
+    void registerWrapper(int id, AstElementNode wrapper) {
+        if (id >= wrappersById.length) {
+            wrappersById = Arrays.copyOf(wrappersById, Math.max(id + 1, wrappersById.length * 2));
+        }
+        wrappersById[id] = wrapper;
+        InternalApiBridge.setDocumentOrderId(wrapper.getUnderlyingNode(), id);
     }
 
     public AstElementNode findWrapperFor(Node node) {
-        AstElementNode element = wrapperCache.get(node);
+        AstElementNode element = findWrapperById(node);
         if (element == null) {
             element = findWrapperImpl(node);
-            wrapperCache.put(node, element);
             assert element.getUnderlyingNode() == node : "Incorrect wrapper " + element + " for " + node;
         }
         return element;
     }
 
+    /**
+     * Returns the wrapper of the node, using the id stored on the node,
+     * or null if the node has no id, eg because it is not an AbstractNode,
+     * or if the id doesn't match (the node is not part of this tree).
+     */
+    private @Nullable AstElementNode findWrapperById(Node node) {
+        int id = InternalApiBridge.getDocumentOrderId(node);
+        if (id > 0 && id < wrappersById.length) {
+            AstElementNode element = wrappersById[id];
+            if (element != null && element.getUnderlyingNode() == node) {
+                return element;
+            }
+        }
+        return null;
+    }
+
     // for the RootNode, this returns the document node
     private AstElementNode findWrapperImpl(Node node) {
-        // find the closest cached ancestor
+        // find the closest ancestor with an id
         AstElementNode cur = getRootNode().getRootElement();
         List<Node> ancestors = new ArrayList<>();
         for (Node ancestor : node.ancestorsOrSelf()) {
-            AstElementNode wrappedAncestor = wrapperCache.get(ancestor);
+            AstElementNode wrappedAncestor = findWrapperById(ancestor);
             ancestors.add(ancestor);
             if (wrappedAncestor != null) {
                 cur = wrappedAncestor;
@@ -88,7 +118,6 @@ public final class AstTreeInfo extends GenericTreeInfo {
             }
 
             cur = cur.getChildren().get(idx);
-            wrapperCache.put(ancestor, cur);
         }
         if (cur.getUnderlyingNode() != node) {
             // may happen with the root
@@ -97,6 +126,20 @@ public final class AstTreeInfo extends GenericTreeInfo {
         return cur;
     }
 
+    /**
+     * Returns the result of the shared step with the given key, evaluated
+     * with the given node as context item, or null if it has not been
+     * evaluated yet.
+     */
+    @Nullable Item[] getSharedStepResult(String key, AstElementNode context) {
+        Map<Integer, Item[]> results = sharedStepResults.get(key);
+        return results == null ? null : results.get(context.getId());
+    }
+
+    void putSharedStepResult(String key, AstElementNode context, Item[] result) {
+        sharedStepResults.computeIfAbsent(key, k -> new HashMap<>()).put(context.getId(), result);
+    }
+
     /**
      * Returns the document node of the tree. Note that this has a single
      * child of element type. Both the document and this element child have
@@ -5,13 +5,17 @@
 package net.sourceforge.pmd.lang.rule.xpath.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.exception.ContextedRuntimeException;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,13 +71,20 @@ public class SaxonXPathRuleQuery {
     private final Map<PropertyDescriptor<?>, Object> properties;
     private final XPathHandler xPathHandler;
     private final List<String> rulechainQueries = new ArrayList<>();
-    private Configuration configuration;
+    private final Configuration configuration;
+    final StaticContextWithProperties staticContext;
 
     /**
      * Contains for each nodeName a sub expression, used for implementing rule chain.
      */
     Map<String, List<Expression>> nodeNameToXPaths = new HashMap<>();
 
+    /**
+     * The rule chain expressions whose leading path is evaluated once for
+     * several queries, see {@link #planSharedEvaluation(Collection)}.
+     */
+    private final Map<Expression, SharedPathStep> sharedSteps = new IdentityHashMap<>();
+
     /**
      * Representation of an XPath query, created at {@link #initialize()} using {@link #xpathExpr}.
      */
@@ -92,6 +103,9 @@ public class SaxonXPathRuleQuery {
         this.properties = properties;
         this.xPathHandler = xPathHandler;
         this.attrCtx = logger;
+        this.configuration = Configuration.newConfiguration();
+        this.configuration.setNamePool(getNamePool());
+        this.staticContext = new StaticContextWithProperties(this.configuration);
         try {
             initialize();
         } catch (XPathException e) {
@@ -122,16 +136,19 @@ public class SaxonXPathRuleQuery {
             final Set<Node> results = new LinkedHashSet<>();
             List<Expression> expressions = getExpressionsForLocalNameOrDefault(node.getXPathNodeName());
             for (Expression expression : expressions) {
-                @SuppressWarnings("PMD.CloseResource")
-                SequenceIterator iterator = expression.iterate(xpathDynamicContext.getXPathContextObject());
-                Item current = iterator.next();
-                while (current != null) {
-                    if (current instanceof AstNodeOwner) {
-                        results.add(((AstNodeOwner) current).getUnderlyingNode());
-                    } else {
-                        throw new XPathException("XPath rule expression returned a non-node (" + current.getClass() + "): " + current);
+                SharedPathStep sharedStep = sharedSteps.get(expression);
+                if (sharedStep != null) {
+                    for (Item item : sharedStep.evaluate(xpathDynamicContext.getXPathContextObject(), documentNode)) {
+                        addResult(item, results);
+                    }
+                } else {
+                    @SuppressWarnings("PMD.CloseResource")
+                    SequenceIterator iterator = expression.iterate(xpathDynamicContext.getXPathContextObject());
+                    Item current = iterator.next();
+                    while (current != null) {
+                        addResult(current, results);
+                        current = iterator.next();
                     }
-                    current = iterator.next();
                 }
             }
 
@@ -147,6 +164,14 @@ public class SaxonXPathRuleQuery {
         }
     }
 
+    private static void addResult(Item item, Set<Node> results) throws XPathException {
+        if (item instanceof AstNodeOwner) {
+            results.add(((AstNodeOwner) item).getUnderlyingNode());
+        } else {
+            throw new XPathException("XPath rule expression returned a non-node (" + item.getClass() + "): " + item);
+        }
+    }
+
     private ContextedRuntimeException wrapException(XPathException e, Phase phase) {
         return new PmdXPathException(e, phase, xpathExpr, version);
     }
@@ -186,10 +211,7 @@ public class SaxonXPathRuleQuery {
     }
 
     private void initialize() throws XPathException {
-        this.configuration = Configuration.newConfiguration();
-        this.configuration.setNamePool(getNamePool());
-
-        StaticContextWithProperties staticCtx = new StaticContextWithProperties(this.configuration);
+        StaticContextWithProperties staticCtx = this.staticContext;
         staticCtx.setXPathLanguageLevel(version == XPathVersion.XPATH_3_1 ? 31 : 20);
         staticCtx.declareNamespace("fn", NamespaceUri.FN);
 
@@ -253,6 +275,51 @@ public class SaxonXPathRuleQuery {
         addExpressionForNode(AST_ROOT, xpathExpression.getInternalExpression());
     }
 
+    /**
+     * Finds the rule chain expressions of the given queries that start with
+     * the same {@linkplain SharedPathStep path of axis steps} from the same
+     * rule chain node, so that these paths are evaluated once per node
+     * and file, instead of once per query. This must be called before the
+     * queries are evaluated, as it modifies them. Expressions that don't
+     * share their path with another expression are evaluated as before.
+     */
+    public static void planSharedEvaluation(Collection<SaxonXPathRuleQuery> queries) {
+        Map<SaxonXPathRuleQuery, Map<Expression, SharedPathStep>> candidates = new LinkedHashMap<>();
+        Map<String, Integer> useCount = new HashMap<>();
+        for (SaxonXPathRuleQuery query : queries) {
+            Map<Expression, SharedPathStep> querySteps = new IdentityHashMap<>();
+            query.nodeNameToXPaths.forEach((nodeName, expressions) -> {
+                if (AST_ROOT.equals(nodeName)) {
+                    return;
+                }
+                for (Expression expression : expressions) {
+                    SharedPathStep step = querySteps.computeIfAbsent(expression, e -> SharedPathStep.split(e, query.staticContext));
+                    if (step != null) {
+                        useCount.merge(nodeName + " " + step.getKey(), 1, Integer::sum);
+                    }
+                }
+            });
+            candidates.put(query, querySteps);
+        }
+
+        candidates.forEach((query, querySteps) -> {
+            query.sharedSteps.clear();
+            query.nodeNameToXPaths.forEach((nodeName, expressions) -> {
+                for (Expression expression : expressions) {
+                    SharedPathStep step = querySteps.get(expression);
+                    if (step != null && useCount.getOrDefault(nodeName + " " + step.getKey(), 0) > 1) {
+                        query.sharedSteps.put(expression, step);
+                    }
+                }
+            });
+        });
+    }
+
+    // test only
+    @Nullable SharedPathStep getSharedStep(Expression expression) {
+        return sharedSteps.get(expression);
+    }
+
     public static NamePool getNamePool() {
         return NAME_POOL;
     }
@@ -0,0 +1,248 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sf.saxon.expr.AxisExpression;
+import net.sf.saxon.expr.ContextItemExpression;
+import net.sf.saxon.expr.Expression;
+import net.sf.saxon.expr.FilterExpression;
+import net.sf.saxon.expr.SlashExpression;
+import net.sf.saxon.expr.StaticProperty;
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.expr.XPathContextMinor;
+import net.sf.saxon.expr.instruct.SlotManager;
+import net.sf.saxon.expr.parser.ContextItemStaticInfo;
+import net.sf.saxon.expr.parser.ExpressionTool;
+import net.sf.saxon.expr.parser.ExpressionVisitor;
+import net.sf.saxon.expr.parser.RebindingMap;
+import net.sf.saxon.om.AxisInfo;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.SequenceIterator;
+import net.sf.saxon.pattern.AnyNodeTest;
+import net.sf.saxon.pattern.NodeTest;
+import net.sf.saxon.sxpath.IndependentContext;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.tree.iter.ManualIterator;
+import net.sf.saxon.type.TypeHierarchy;
+
+/**
+ * A rule chain expression split into a leading path of axis steps, the
+ * {@linkplain #getNavigation() navigation}, and the {@linkplain #getRemainder() remainder}
+ * of the expression, which is evaluated on each node the navigation selects.
+ *
+ * <p>Example: the expression <code>(self::node()/descendant::A/child::B)[condition()]</code>
+ * is split into the navigation <code>self::node()/descendant::A/child::B</code> and the
+ * remainder <code>.[condition()]</code>. The remainder is type checked and optimized
+ * like an expression compiled by Saxon, with the static context of the query.
+ *
+ * <p>Several rules often start with the same navigation from the same rule
+ * chain nodes. The result of the navigation only depends on its context node,
+ * so it is computed once per context node and file, and cached in the
+ * {@link AstTreeInfo}. Steps with the same {@linkplain #getKey() key} select the
+ * same nodes.
+ *
+ * <p>The split is only possible if the remainder applies to each node selected
+ * by the navigation independently, that is, if it only consists of path steps
+ * and filters that don't depend on the position of the node in the sequence.
+ * The results are not sorted, nor deduplicated, like those of rule chain
+ * expressions.
+ */
+final class SharedPathStep {
+
+    private final String key;
+    private final Expression navigation;
+    private final Expression remainder;
+
+    private SharedPathStep(String key, Expression navigation, Expression remainder) {
+        this.key = key;
+        this.navigation = navigation;
+        this.remainder = remainder;
+    }
+
+    /** A key, that is equal for navigations that select the same nodes. */
+    String getKey() {
+        return key;
+    }
+
+    Expression getNavigation() {
+        return navigation;
+    }
+
+    Expression getRemainder() {
+        return remainder;
+    }
+
+    /**
+     * Evaluates the expression that was split, with the context item
+     * of the given context. The navigation is only evaluated if no other
+     * step with the same key has been evaluated on the same context node
+     * before.
+     *
+     * @param context Dynamic context, whose context item is the rule chain node
+     * @param tree    Tree of the context node, which caches the results of the navigation
+     * @return The items selected by the expression
+     */
+    List<Item> evaluate(XPathContext context, AstTreeInfo tree) throws XPathException {
+        List<Item> results = new ArrayList<>();
+        for (Item node : navigate(context, tree)) {
+            XPathContextMinor nodeContext = context.newMinorContext();
+            nodeContext.setCurrentIterator(new ManualIterator(node));
+            @SuppressWarnings("PMD.CloseResource")
+            SequenceIterator iterator = remainder.iterate(nodeContext);
+            for (Item current = iterator.next(); current != null; current = iterator.next()) {
+                results.add(current);
+            }
+        }
+        return results;
+    }
+
+    private Item[] navigate(XPathContext context, AstTreeInfo tree) throws XPathException {
+        Item contextItem = context.getContextItem();
+        if (contextItem instanceof AstElementNode) {
+            Item[] result = tree.getSharedStepResult(key, (AstElementNode) contextItem);
+            if (result == null) {
+                result = evaluateNavigation(context);
+                tree.putSharedStepResult(key, (AstElementNode) contextItem, result);
+            }
+            return result;
+        }
+        return evaluateNavigation(context);
+    }
+
+    private Item[] evaluateNavigation(XPathContext context) throws XPathException {
+        List<Item> nodes = new ArrayList<>();
+        @SuppressWarnings("PMD.CloseResource")
+        SequenceIterator iterator = navigation.iterate(context);
+        for (Item current = iterator.next(); current != null; current = iterator.next()) {
+            nodes.add(current);
+        }
+        return nodes.toArray(new Item[0]);
+    }
+
+    /**
+     * Splits the given rule chain expression, or returns null if it doesn't
+     * start with a navigation, or if the remainder cannot be evaluated on
+     * each of the nodes the navigation selects separately. The given expression
+     * is not modified, the navigation and remainder are built from a copy.
+     *
+     * @param expr          A rule chain expression of the query
+     * @param staticContext The static context the query was compiled with.
+     *                      The variables of the remainder are allocated in its stack frame.
+     */
+    static @Nullable SharedPathStep split(Expression expr, IndependentContext staticContext) {
+        TypeHierarchy typeHierarchy = staticContext.getConfiguration().getTypeHierarchy();
+        // the filters and path expressions that enclose the navigation, the innermost on top
+        Deque<Expression> enclosing = new ArrayDeque<>();
+        Expression walker = expr.copy(new RebindingMap());
+        while (!isNavigation(walker)) {
+            if (walker instanceof FilterExpression) {
+                Expression filter = ((FilterExpression) walker).getFilter();
+                if (FilterExpression.isPositionalFilter(filter, typeHierarchy) || dependsOnFocusPosition(filter)) {
+                    return null;
+                }
+                enclosing.push(walker);
+                walker = ((FilterExpression) walker).getBase();
+            } else if (walker instanceof SlashExpression) {
+                if (dependsOnFocusPosition(((SlashExpression) walker).getStep())) {
+                    return null;
+                }
+                enclosing.push(walker);
+                walker = ((SlashExpression) walker).getStart();
+            } else {
+                return null;
+            }
+        }
+
+        String key = navigationKey(walker);
+        if (key.isEmpty()) {
+            // the navigation is only self::node()
+            return null;
+        }
+
+        try {
+            return new SharedPathStep(key, walker, compileRemainder(enclosing, staticContext));
+        } catch (XPathException e) {
+            // the expression is evaluated as a whole instead
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the enclosing expressions, innermost first, on top of the
+     * context item, the way the Saxon parser builds them. Then checks and
+     * optimizes the result, like Saxon does when it compiles an expression.
+     */
+    private static Expression compileRemainder(Deque<Expression> enclosing, IndependentContext staticContext) throws XPathException {
+        Expression remainder = new ContextItemExpression();
+        while (!enclosing.isEmpty()) {
+            Expression e = enclosing.pop();
+            if (e instanceof FilterExpression) {
+                remainder = new FilterExpression(remainder, ((FilterExpression) e).getFilter());
+            } else {
+                remainder = ExpressionTool.makePathExpression(remainder, ((SlashExpression) e).getStep());
+            }
+            ExpressionTool.copyLocationInfo(e, remainder);
+        }
+        remainder.setRetainedStaticContextThoroughly(staticContext.makeRetainedStaticContext());
+
+        ExpressionVisitor visitor = ExpressionVisitor.make(staticContext);
+        ContextItemStaticInfo contextItemType =
+            staticContext.getConfiguration().makeContextItemStaticInfo(AnyNodeTest.getInstance(), false);
+        remainder = remainder.simplify();
+        remainder = remainder.typeCheck(visitor, contextItemType);
+        remainder = remainder.optimize(visitor, contextItemType);
+
+        // the remainder is evaluated in the stack frame of the query
+        SlotManager stackFrame = staticContext.getStackFrameMap();
+        ExpressionTool.allocateSlots(remainder, stackFrame.getNumberOfVariables(), stackFrame);
+        return remainder;
+    }
+
+    /** Whether the expression is a path of axis steps, without filters. */
+    private static boolean isNavigation(Expression e) {
+        if (e instanceof AxisExpression) {
+            return true;
+        } else if (e instanceof SlashExpression) {
+            SlashExpression path = (SlashExpression) e;
+            return path.getStep() instanceof AxisExpression && isNavigation(path.getStart());
+        }
+        return false;
+    }
+
+    private static boolean dependsOnFocusPosition(Expression e) {
+        return (e.getDependencies() & (StaticProperty.DEPENDS_ON_POSITION | StaticProperty.DEPENDS_ON_LAST)) != 0;
+    }
+
+    private static String navigationKey(Expression navigation) {
+        List<AxisExpression> steps = new ArrayList<>();
+        Expression walker = navigation;
+        while (walker instanceof SlashExpression) {
+            steps.add(0, (AxisExpression) ((SlashExpression) walker).getStep());
+            walker = ((SlashExpression) walker).getStart();
+        }
+        steps.add(0, (AxisExpression) walker);
+
+        StringBuilder key = new StringBuilder();
+        for (AxisExpression step : steps) {
+            NodeTest test = step.getNodeTest();
+            boolean anyNode = test == null || test instanceof AnyNodeTest;
+            if (step.getAxis() == AxisInfo.SELF && anyNode) {
+                continue; // self::node() selects the context node
+            }
+            if (key.length() > 0) {
+                key.append('/');
+            }
+            key.append(AxisInfo.axisName[step.getAxis()]).append("::").append(anyNode ? "node()" : test.toString());
+        }
+        return key.toString();
+    }
+}
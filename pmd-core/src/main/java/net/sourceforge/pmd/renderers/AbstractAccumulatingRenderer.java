@@ -4,6 +4,8 @@
 
 package net.sourceforge.pmd.renderers;
 
+import static net.sourceforge.pmd.properties.NumericConstraints.above;
+
 import java.io.IOException;
 import java.util.Objects;
 
@@ -11,8 +13,11 @@ import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.properties.PropertyFactory;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
+import net.sourceforge.pmd.reporting.InternalApiBridge;
 import net.sourceforge.pmd.reporting.Report;
 import net.sourceforge.pmd.reporting.Report.ConfigurationError;
 import net.sourceforge.pmd.reporting.Report.GlobalReportBuilderListener;
@@ -31,9 +36,25 @@ import net.sourceforge.pmd.reporting.Report.GlobalReportBuilderListener;
  */
 public abstract class AbstractAccumulatingRenderer extends AbstractRenderer {
 
+    /**
+     * Approximate maximum memory, in kilobytes, used by the violations kept
+     * in memory until the report is output. Once it is reached, violations
+     * are written to a temporary file, and read back from it by {@link #outputReport(Report)}.
+     *
+     * @since 7.27.0
+     */
+    public static final PropertyDescriptor<Integer> MAX_VIOLATIONS_MEMORY_KB =
+        PropertyFactory.intProperty("maxViolationsMemoryKb")
+                       .desc("Approximate maximum memory in kilobytes used by the violations kept in memory until "
+                                 + "the report is rendered. Further violations are written to a temporary file. "
+                                 + "Zero means no limit.")
+                       .defaultValue(0)
+                       .require(above(0))
+                       .build();
 
     public AbstractAccumulatingRenderer(String name, String description) {
         super(name, description);
+        definePropertyDescriptor(MAX_VIOLATIONS_MEMORY_KB);
     }
 
     @Override
@@ -80,7 +101,7 @@ public abstract class AbstractAccumulatingRenderer extends AbstractRenderer {
         }
 
         return new GlobalAnalysisListener() {
-            final GlobalReportBuilderListener reportBuilder = new GlobalReportBuilderListener();
+            final GlobalReportBuilderListener reportBuilder = newReportBuilder();
 
             @Override
             public FileAnalysisListener startFileAnalysis(TextFile file) {
@@ -96,12 +117,21 @@ public abstract class AbstractAccumulatingRenderer extends AbstractRenderer {
             @Override
             public void close() throws Exception {
                 reportBuilder.close();
+                Report report = reportBuilder.getResult();
                 try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.REPORTING)) {
-                    outputReport(reportBuilder.getResult());
+                    outputReport(report);
                     end();
                     flush();
+                } finally {
+                    InternalApiBridge.discardSpilledViolations(report);
                 }
             }
         };
     }
+
+    private GlobalReportBuilderListener newReportBuilder() {
+        int maxViolationsMemoryKb = getProperty(MAX_VIOLATIONS_MEMORY_KB);
+        return maxViolationsMemoryKb > 0 ? InternalApiBridge.newSpillingReportBuilder(maxViolationsMemoryKb * 1024L)
+                                         : new GlobalReportBuilderListener();
+    }
 }
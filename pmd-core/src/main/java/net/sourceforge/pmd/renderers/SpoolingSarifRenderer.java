@@ -0,0 +1,78 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.renderers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import net.sourceforge.pmd.internal.util.IOUtil;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLogWriter;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * Renders the same SARIF log as {@link SarifRenderer}, but spools the
+ * results to a temporary file as they are reported, instead of building
+ * the whole log in memory. This is meant for large reports.
+ *
+ * <p>The log itself is only written at the end of the analysis: the rules
+ * (the {@code tool.driver.rules} of the log) come before the results, and
+ * renderers don't know the rulesets of the analysis, so the rules are
+ * collected from the reported violations. The spooled results are then
+ * copied after them. Only rules with results are therefore described,
+ * like with {@link SarifRenderer}. A rule that reports different messages
+ * is only described once, with the message of its first result, while
+ * {@link SarifRenderer} describes it once per message.
+ *
+ * @since 7.27.0
+ */
+public class SpoolingSarifRenderer extends AbstractIncrementingRenderer {
+    public static final String NAME = "sarifspool";
+    private static final String DEFAULT_DESCRIPTION = "Static Analysis Results Interchange Format (SARIF), spooled to a temporary file";
+    private static final String DEFAULT_FILE_EXTENSION = "sarif.json";
+
+    private SarifLogWriter sarifLogWriter;
+
+    public SpoolingSarifRenderer() {
+        super(NAME, DEFAULT_DESCRIPTION);
+    }
+
+    @Override
+    public String defaultFileExtension() {
+        return DEFAULT_FILE_EXTENSION;
+    }
+
+    @Override
+    public void start() throws IOException {
+        sarifLogWriter = new SarifLogWriter(writer);
+    }
+
+    @Override
+    public void renderFileViolations(Iterator<RuleViolation> violations) throws IOException {
+        while (violations.hasNext()) {
+            sarifLogWriter.add(violations.next());
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        for (Report.ProcessingError error : this.errors) {
+            sarifLogWriter.addRunTimeError(error);
+        }
+
+        for (Report.ConfigurationError error : this.configErrors) {
+            sarifLogWriter.addConfigurationError(error);
+        }
+
+        sarifLogWriter.finish();
+        writer.println();
+    }
+
+    @Override
+    public void setReportFile(String reportFilename) {
+        this.setWriter(IOUtil.createWriter(StandardCharsets.UTF_8, reportFilename));
+    }
+}
@@ -2672,11 +2672,11 @@ public final class SarifLog {
         }
     }
 
-    private static String defaultSchema() {
+    static String defaultSchema() {
         return "https://json.schemastore.org/sarif-2.1.0.json";
     }
 
-    private static String defaultVersion() {
+    static String defaultVersion() {
         return "2.1.0";
     }
 
@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.List;
 
 import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RulePriority;
 import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ArtifactLocation;
 import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.AssociatedRule;
@@ -45,21 +46,57 @@ public class SarifLogBuilder {
     }
 
     public SarifLogBuilder add(RuleViolation violation) {
-        final ReportingDescriptor ruleDescriptor = getReportingDescriptor(violation);
+        final ReportingDescriptor ruleDescriptor = getReportingDescriptor(violation.getRule(), violation.getDescription());
         int ruleIndex = rules.indexOf(ruleDescriptor);
         if (ruleIndex == -1) {
             rules.add(ruleDescriptor);
             ruleIndex = rules.size() - 1;
         }
 
-        final Location location = getRuleViolationLocation(violation);
-        final Result result = resultFrom(ruleDescriptor, ruleIndex, location, violation.getRule().getPriority());
-        results.add(result);
+        results.add(resultFrom(violation, ruleIndex));
 
         return this;
     }
 
     public SarifLogBuilder addRunTimeError(Report.ProcessingError error) {
+        toolExecutionNotifications.add(toolExecutionNotificationFrom(error));
+
+        return this;
+    }
+
+    public SarifLogBuilder addConfigurationError(Report.ConfigurationError error) {
+        toolConfigurationNotifications.add(toolConfigurationNotificationFrom(error));
+
+        return this;
+    }
+
+    public SarifLog build() {
+        final Run run = Run.builder()
+                .tool(getTool(rules))
+                .results(results)
+                .invocations(Collections.singletonList(getInvocation(toolExecutionNotifications, toolConfigurationNotifications)))
+                .build();
+
+        List<Run> runs = Collections.singletonList(run);
+
+        return SarifLog.builder().runs(runs).build();
+    }
+
+    static Tool getTool(List<ReportingDescriptor> rules) {
+        final Component driver = getDriverComponent().toBuilder().rules(rules).build();
+        return Tool.builder().driver(driver).build();
+    }
+
+    static Invocation getInvocation(List<ToolExecutionNotification> toolExecutionNotifications,
+                                    List<ToolConfigurationNotification> toolConfigurationNotifications) {
+        return Invocation.builder()
+                .toolExecutionNotifications(toolExecutionNotifications)
+                .toolConfigurationNotifications(toolConfigurationNotifications)
+                .executionSuccessful(toolExecutionNotifications.isEmpty() && toolConfigurationNotifications.isEmpty())
+                .build();
+    }
+
+    static ToolExecutionNotification toolExecutionNotificationFrom(Report.ProcessingError error) {
         ArtifactLocation artifactLocation = ArtifactLocation.builder()
                 .uri(error.getFileId().getUriString())
                 .build();
@@ -81,75 +118,44 @@ public class SarifLogBuilder {
                 .message(error.getDetail())
                 .build();
 
-        ToolExecutionNotification toolExecutionNotification = ToolExecutionNotification.builder()
+        return ToolExecutionNotification.builder()
                 .locations(Collections.singletonList(location))
                 .message(message)
                 .exception(exception)
                 .build();
-
-        toolExecutionNotifications.add(toolExecutionNotification);
-
-        return this;
     }
 
-    public SarifLogBuilder addConfigurationError(Report.ConfigurationError error) {
+    static ToolConfigurationNotification toolConfigurationNotificationFrom(Report.ConfigurationError error) {
         AssociatedRule associatedRule = AssociatedRule.builder()
                 .id(error.rule().getName())
                 .build();
 
         Message message = Message.builder().text(error.issue()).build();
 
-        ToolConfigurationNotification toolConfigurationNotification = ToolConfigurationNotification.builder()
+        return ToolConfigurationNotification.builder()
                 .associatedRule(associatedRule)
                 .message(message)
                 .build();
-
-        toolConfigurationNotifications.add(toolConfigurationNotification);
-
-        return this;
-    }
-
-    public SarifLog build() {
-        final Component driver = getDriverComponent().toBuilder().rules(rules).build();
-        final Tool tool = Tool.builder().driver(driver).build();
-        final Invocation invocation = Invocation.builder()
-                .toolExecutionNotifications(toolExecutionNotifications)
-                .toolConfigurationNotifications(toolConfigurationNotifications)
-                .executionSuccessful(isExecutionSuccessful())
-                .build();
-        final Run run = Run.builder()
-                .tool(tool)
-                .results(results)
-                .invocations(Collections.singletonList(invocation))
-                .build();
-
-        List<Run> runs = Collections.singletonList(run);
-
-        return SarifLog.builder().runs(runs).build();
-    }
-
-    private boolean isExecutionSuccessful() {
-        return toolExecutionNotifications.isEmpty() && toolConfigurationNotifications.isEmpty();
     }
 
-    private Result resultFrom(ReportingDescriptor rule, Integer ruleIndex, Location location, RulePriority rulePriority) {
+    static Result resultFrom(RuleViolation violation, Integer ruleIndex) {
         final Result result = Result.builder()
-                .ruleId(rule.getId())
+                .ruleId(violation.getRule().getName())
                 .ruleIndex(ruleIndex)
-                .level(pmdPriorityToSarifSeverityLevel(rulePriority))
+                .level(pmdPriorityToSarifSeverityLevel(violation.getRule().getPriority()))
                 .build();
 
         final Message message = Message.builder()
-                .text(rule.getShortDescription().getText())
+                .text(violation.getDescription())
                 .build();
 
         result.setMessage(message);
-        result.setLocations(Collections.singletonList(location));
+        result.setLocations(Collections.singletonList(getRuleViolationLocation(violation)));
 
         return result;
     }
 
-    private Location getRuleViolationLocation(RuleViolation rv) {
+    private static Location getRuleViolationLocation(RuleViolation rv) {
         ArtifactLocation artifactLocation = ArtifactLocation.builder()
                 .uri(rv.getFileId().getUriString())
                 .build();
@@ -171,34 +177,34 @@ public class SarifLogBuilder {
             .build();
     }
 
-    private ReportingDescriptor getReportingDescriptor(RuleViolation rv) {
+    static ReportingDescriptor getReportingDescriptor(Rule rule, String shortDescription) {
         return ReportingDescriptor.builder()
-            .id(rv.getRule().getName())
-            .shortDescription(new MultiformatMessage(rv.getDescription()))
-            .fullDescription(new MultiformatMessage(rv.getRule().getDescription()))
-            .helpUri(rv.getRule().getExternalInfoUrl())
-            .help(new MultiformatMessage(rv.getRule().getDescription()))
-            .properties(getRuleProperties(rv))
-            .defaultConfiguration(getDefaultConfigForRuleViolation(rv))
+            .id(rule.getName())
+            .shortDescription(new MultiformatMessage(shortDescription))
+            .fullDescription(new MultiformatMessage(rule.getDescription()))
+            .helpUri(rule.getExternalInfoUrl())
+            .help(new MultiformatMessage(rule.getDescription()))
+            .properties(getRuleProperties(rule))
+            .defaultConfiguration(getDefaultConfigForRule(rule))
             .build();
     }
 
-    private ReportingConfiguration getDefaultConfigForRuleViolation(RuleViolation rv) {
+    private static ReportingConfiguration getDefaultConfigForRule(Rule rule) {
         return ReportingConfiguration.builder()
-                // get pmd level from rv and translate it to sarif level (for the config)
-                .level(pmdPriorityToSarifSeverityLevel(rv.getRule().getPriority()))
+                // get pmd level from the rule and translate it to sarif level (for the config)
+                .level(pmdPriorityToSarifSeverityLevel(rule.getPriority()))
                 .build();
     }
 
-    private PropertyBag getRuleProperties(RuleViolation rv) {
+    private static PropertyBag getRuleProperties(Rule rule) {
         return PropertyBag.builder()
-                .ruleset(rv.getRule().getRuleSetName())
-                .priority(rv.getRule().getPriority().getPriority())
-                .tags(new HashSet<>(Arrays.asList(rv.getRule().getRuleSetName())))
+                .ruleset(rule.getRuleSetName())
+                .priority(rule.getPriority().getPriority())
+                .tags(new HashSet<>(Arrays.asList(rule.getRuleSetName())))
                 .build();
     }
 
-    private Component getDriverComponent() {
+    private static Component getDriverComponent() {
         return Component.builder()
                 .name("PMD")
                 .version(PMDVersion.VERSION)
@@ -213,7 +219,7 @@ public class SarifLogBuilder {
      * @return sarif's severity level.
      * @see net.sourceforge.pmd.lang.rule.RulePriority
      */
-    private String pmdPriorityToSarifSeverityLevel(RulePriority rulePriority) {
+    private static String pmdPriorityToSarifSeverityLevel(RulePriority rulePriority) {
         switch (rulePriority) {
         case HIGH:
         case MEDIUM_HIGH:
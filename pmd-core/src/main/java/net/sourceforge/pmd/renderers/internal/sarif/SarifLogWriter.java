@@ -0,0 +1,188 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.renderers.internal.sarif;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Invocation;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ReportingDescriptor;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Result;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Tool;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ToolConfigurationNotification;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ToolExecutionNotification;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a SARIF log with a single run incrementally, as the results
+ * are added. Unlike {@link SarifLogBuilder}, this doesn't keep the results
+ * in memory, only the rule descriptors and the notifications.
+ *
+ * <p>The log has the same layout as the one of {@link SarifLogBuilder}, in
+ * which the tool component, that describes the rules, comes before the
+ * results. Since the rules are only known once all results have been
+ * added, the results are written to a temporary file first, and copied
+ * into the log by {@link #finish()}.
+ *
+ * <p>Rules are described like {@link SarifLogBuilder} does, from the first
+ * result of each rule. Descriptors are keyed by rule, so that their number
+ * doesn't grow with the number of distinct messages. A rule that reports
+ * different messages is therefore described once, with the message of its
+ * first result, where {@link SarifLogBuilder} would add a descriptor per message.
+ */
+public class SarifLogWriter {
+
+    private final Gson gson = new GsonBuilder()
+            .disableHtmlEscaping()
+            .create();
+
+    private final Writer writer;
+    private final Path resultsFile;
+    private final JsonWriter resultsWriter;
+
+    private final Map<Rule, Integer> ruleIndexes = new HashMap<>();
+    private final List<ReportingDescriptor> rules = new ArrayList<>();
+    private final List<ToolConfigurationNotification> toolConfigurationNotifications = new ArrayList<>();
+    private final List<ToolExecutionNotification> toolExecutionNotifications = new ArrayList<>();
+
+    /**
+     * Creates a new writer, and the temporary file that holds the results
+     * until the log is finished.
+     *
+     * @throws IOException If the temporary file cannot be created
+     */
+    public SarifLogWriter(Writer writer) throws IOException {
+        this.writer = writer;
+        this.resultsFile = Files.createTempFile("pmd-sarif-results", ".json");
+        resultsFile.toFile().deleteOnExit();
+        this.resultsWriter = new JsonWriter(Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8));
+        resultsWriter.setHtmlSafe(false);
+        resultsWriter.beginArray();
+    }
+
+    public SarifLogWriter add(RuleViolation violation) throws IOException {
+        Integer ruleIndex = ruleIndexes.get(violation.getRule());
+        if (ruleIndex == null) {
+            ruleIndex = rules.size();
+            ruleIndexes.put(violation.getRule(), ruleIndex);
+            rules.add(SarifLogBuilder.getReportingDescriptor(violation.getRule(), violation.getDescription()));
+        }
+        gson.toJson(SarifLogBuilder.resultFrom(violation, ruleIndex), Result.class, resultsWriter);
+        return this;
+    }
+
+    public SarifLogWriter addRunTimeError(Report.ProcessingError error) {
+        toolExecutionNotifications.add(SarifLogBuilder.toolExecutionNotificationFrom(error));
+        return this;
+    }
+
+    public SarifLogWriter addConfigurationError(Report.ConfigurationError error) {
+        toolConfigurationNotifications.add(SarifLogBuilder.toolConfigurationNotificationFrom(error));
+        return this;
+    }
+
+    /**
+     * Writes the log, and deletes the temporary file. No results can be
+     * added after this.
+     */
+    public void finish() throws IOException {
+        try {
+            resultsWriter.endArray();
+            resultsWriter.close();
+
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            jsonWriter.setHtmlSafe(false);
+            jsonWriter.setIndent("  ");
+            jsonWriter.beginObject();
+            jsonWriter.name("$schema").value(SarifLog.defaultSchema());
+            jsonWriter.name("version").value(SarifLog.defaultVersion());
+            jsonWriter.name("runs").beginArray();
+            jsonWriter.beginObject(); // run
+            jsonWriter.name("tool");
+            gson.toJson(SarifLogBuilder.getTool(rules), Tool.class, jsonWriter);
+            jsonWriter.name("results").beginArray();
+            copyResults(jsonWriter);
+            jsonWriter.endArray();
+            Invocation invocation = SarifLogBuilder.getInvocation(toolExecutionNotifications, toolConfigurationNotifications);
+            jsonWriter.name("invocations").beginArray();
+            gson.toJson(invocation, Invocation.class, jsonWriter);
+            jsonWriter.endArray();
+            jsonWriter.endObject(); // run
+            jsonWriter.endArray(); // runs
+            jsonWriter.endObject();
+            jsonWriter.flush();
+        } finally {
+            resultsWriter.close();
+            Files.deleteIfExists(resultsFile);
+        }
+    }
+
+    /**
+     * Copies the results token by token, so that they are not held in memory.
+     */
+    private void copyResults(JsonWriter jsonWriter) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(resultsFile, StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                copyValue(reader, jsonWriter);
+            }
+            reader.endArray();
+        }
+    }
+
+    private static void copyValue(JsonReader reader, JsonWriter jsonWriter) throws IOException {
+        switch (reader.peek()) {
+        case BEGIN_ARRAY:
+            reader.beginArray();
+            jsonWriter.beginArray();
+            while (reader.hasNext()) {
+                copyValue(reader, jsonWriter);
+            }
+            reader.endArray();
+            jsonWriter.endArray();
+            break;
+        case BEGIN_OBJECT:
+            reader.beginObject();
+            jsonWriter.beginObject();
+            while (reader.hasNext()) {
+                jsonWriter.name(reader.nextName());
+                copyValue(reader, jsonWriter);
+            }
+            reader.endObject();
+            jsonWriter.endObject();
+            break;
+        case STRING:
+            jsonWriter.value(reader.nextString());
+            break;
+        case NUMBER:
+            // the literal, as written by gson
+            jsonWriter.jsonValue(reader.nextString());
+            break;
+        case BOOLEAN:
+            jsonWriter.value(reader.nextBoolean());
+            break;
+        case NULL:
+            reader.nextNull();
+            jsonWriter.nullValue();
+            break;
+        default:
+            throw new IOException("Unexpected token " + reader.peek() + " in " + reader.getPath());
+        }
+    }
+}
@@ -6,12 +6,12 @@ package net.sourceforge.pmd.reporting;
 
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
@@ -37,18 +37,25 @@ import net.sourceforge.pmd.reporting.Report.SuppressedViolation;
  * by an instance of this wrapper. Note that each wrapper maintains its own buffer
  * so it should be
  *
+ * <p>If the analysis starts while the files are still being collected, the
+ * files are declared one by one as they are collected, and the reports are
+ * passed on in that order. The report of a file is passed on as soon as
+ * all the files collected before it have been analysed, so the buffer only
+ * holds the reports of the files that finish ahead of an earlier file.
+ *
  * @since 7.12.0
  */
 public class DeterministicOutputListenerWrapper implements GlobalAnalysisListener {
     private static final Logger LOG = LoggerFactory.getLogger(DeterministicOutputListenerWrapper.class.getName());
 
     private final GlobalAnalysisListener listener;
-    private final Map<FileId, Integer> filesToIdx = new HashMap<>();
+    private final Map<FileId, Integer> filesToIdx = new ConcurrentHashMap<>();
 
     // use linkedlist because we are mostly doing one-element insertions and removals
     private final List<ReportWrapper> reportBuffer = new LinkedList<>();
     private final Object lock = new Object();
     private int nextToOutput;
+    private int numCollected;
 
 
     public DeterministicOutputListenerWrapper(GlobalAnalysisListener listener) {
@@ -67,6 +74,17 @@ public class DeterministicOutputListenerWrapper implements GlobalAnalysisListene
         }, listener.initializer()));
     }
 
+    /**
+     * Declare the next file in the order of the file collector, when the
+     * files to analyze are not known in advance. This must be called before
+     * the analysis of the file starts.
+     */
+    void fileCollected(FileId file) {
+        synchronized (lock) {
+            filesToIdx.put(file, numCollected++);
+        }
+    }
+
     @Override
     public FileAnalysisListener startFileAnalysis(TextFile file) {
         Integer fileIdx = filesToIdx.get(file.getFileId());
@@ -4,10 +4,12 @@
 
 package net.sourceforge.pmd.reporting;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.FileLocation;
 import net.sourceforge.pmd.lang.rule.Rule;
 
@@ -41,6 +43,29 @@ public final class InternalApiBridge {
         return new RuleContext(listener, rule);
     }
 
+    /**
+     * Create a report builder whose report keeps violations in memory up to
+     * an approximate number of bytes, see {@link #discardSpilledViolations(Report)}.
+     */
+    public static Report.GlobalReportBuilderListener newSpillingReportBuilder(long maxBytesInMemory) {
+        return new Report.GlobalReportBuilderListener(maxBytesInMemory);
+    }
+
+    /**
+     * Delete the temporary file of a report created by {@link #newSpillingReportBuilder(int)}.
+     */
+    public static void discardSpilledViolations(Report report) throws IOException {
+        report.discardSpilledViolations();
+    }
+
+    /**
+     * Declare the next file collected by a streaming analysis to the wrapper,
+     * see {@link DeterministicOutputListenerWrapper#fileCollected(FileId)}.
+     */
+    public static void fileCollected(DeterministicOutputListenerWrapper wrapper, FileId file) {
+        wrapper.fileCollected(file);
+    }
+
     public static ParametricRuleViolation createRuleViolation(Rule theRule, FileLocation location, String message, Map<String, String> additionalInfo) {
         return new ParametricRuleViolation(theRule, location, message, additionalInfo);
     }
@@ -15,6 +15,8 @@ import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.PmdAnalysis;
 import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextFile;
@@ -40,13 +42,21 @@ import net.sourceforge.pmd.util.BaseResultProducingCloseable;
  *
  */
 public final class Report {
-    private final List<RuleViolation> violations = synchronizedList(new ArrayList<>());
+    private final List<RuleViolation> violations;
+    // sorted copy of the violations, null if violations were added since it was made,
+    // guarded by the lock of the violations list
+    private @Nullable List<RuleViolation> sortedViolations = Collections.emptyList();
     private final List<SuppressedViolation> suppressedRuleViolations = synchronizedList(new ArrayList<>());
     private final List<ProcessingError> errors = synchronizedList(new ArrayList<>());
     private final List<ConfigurationError> configErrors = synchronizedList(new ArrayList<>());
 
     private Report() {
+        this(synchronizedList(new ArrayList<>()));
+    }
+
+    private Report(List<RuleViolation> violations) {
         // constructor is private
+        this.violations = violations;
     }
 
     /**
@@ -187,10 +197,29 @@ public final class Report {
      */
     private void addRuleViolation(RuleViolation violation) {
         synchronized (violations) {
-            // note that this binary search is inefficient as we usually
-            // report violations file by file.
-            int index = Collections.binarySearch(violations, violation, RuleViolation.DEFAULT_COMPARATOR);
-            violations.add(index < 0 ? -index - 1 : index, violation);
+            violations.add(violation);
+            sortedViolations = null;
+        }
+    }
+
+    /**
+     * Adds the events collected for one file. This takes each lock
+     * once, instead of once per event.
+     */
+    private void addFileResults(List<RuleViolation> fileViolations,
+                                List<SuppressedViolation> fileSuppressedViolations,
+                                List<ProcessingError> fileErrors) {
+        if (!fileViolations.isEmpty()) {
+            synchronized (violations) {
+                violations.addAll(fileViolations);
+                sortedViolations = null;
+            }
+        }
+        if (!fileSuppressedViolations.isEmpty()) {
+            suppressedRuleViolations.addAll(fileSuppressedViolations);
+        }
+        if (!fileErrors.isEmpty()) {
+            errors.addAll(fileErrors);
         }
     }
 
@@ -231,9 +260,24 @@ public final class Report {
      * recorded until now. None of those violations were suppressed.
      *
      * <p>The violations list is sorted with {@link RuleViolation#DEFAULT_COMPARATOR}.
+     * It is a snapshot: violations that are added to the report later
+     * are not visible in a list that was returned before, call this
+     * method again to get them. The snapshot is only copied again if
+     * violations were added in between.
      */
     public List<RuleViolation> getViolations() {
-        return Collections.unmodifiableList(violations);
+        if (violations instanceof SpillingViolationList) {
+            // the spilling list sorts the violations itself when it is read,
+            // copying it would load all of them into memory
+            return Collections.unmodifiableList(violations);
+        }
+        synchronized (violations) {
+            if (sortedViolations == null) {
+                violations.sort(RuleViolation.DEFAULT_COMPARATOR);
+                sortedViolations = Collections.unmodifiableList(new ArrayList<>(violations));
+            }
+            return sortedViolations;
+        }
     }
 
 
@@ -304,18 +348,42 @@ public final class Report {
         }
     }
 
+    /**
+     * Deletes the temporary file of the violations, if they were written
+     * to one. The violations cannot be read afterwards.
+     */
+    void discardSpilledViolations() throws IOException {
+        if (violations instanceof SpillingViolationList) {
+            ((SpillingViolationList) violations).close();
+        }
+    }
+
     /**
      * A {@link GlobalAnalysisListener} that accumulates the events of
      * all files into a {@link Report}.
      */
     public static final class GlobalReportBuilderListener extends BaseResultProducingCloseable<Report> implements GlobalAnalysisListener {
 
-        private final Report report = new Report();
+        private final Report report;
+
+        public GlobalReportBuilderListener() {
+            this.report = new Report();
+        }
+
+        /**
+         * Creates a builder whose report keeps violations in memory up to an
+         * approximate number of bytes. The others are written to a temporary file,
+         * and read back when the violations of the report are accessed.
+         */
+        GlobalReportBuilderListener(long maxBytesInMemory) {
+            this.report = new Report(new SpillingViolationList(maxBytesInMemory));
+        }
 
         @Override
         public FileAnalysisListener startFileAnalysis(TextFile file) {
-            // note that the report is shared, but Report is now thread-safe
-            return new ReportBuilderListener(this.report);
+            // events are buffered per file, so that threads don't
+            // contend on the shared report for every violation
+            return new FileReportBuilderListener(this.report);
         }
 
         @Override
@@ -329,6 +397,51 @@ public final class Report {
         }
     }
 
+    /**
+     * Collects the events of one file, and adds them to the shared report
+     * when closed. A file is analysed by a single thread, so this needs
+     * no synchronization.
+     */
+    private static final class FileReportBuilderListener implements FileAnalysisListener {
+
+        private final Report report;
+        private final List<RuleViolation> violations = new ArrayList<>();
+        private final List<SuppressedViolation> suppressedViolations = new ArrayList<>();
+        private final List<ProcessingError> errors = new ArrayList<>();
+
+        FileReportBuilderListener(Report report) {
+            this.report = report;
+        }
+
+        @Override
+        public void onRuleViolation(RuleViolation violation) {
+            violations.add(violation);
+        }
+
+        @Override
+        public void onSuppressedRuleViolation(SuppressedViolation violation) {
+            suppressedViolations.add(violation);
+        }
+
+        @Override
+        public void onError(ProcessingError error) {
+            errors.add(error);
+        }
+
+        @Override
+        public void close() {
+            report.addFileResults(violations, suppressedViolations, errors);
+            violations.clear();
+            suppressedViolations.clear();
+            errors.clear();
+        }
+
+        @Override
+        public String toString() {
+            return "FileReportBuilderListener";
+        }
+    }
+
     /**
      * Creates a new report taking all the information from this report,
      * but filtering the violations.
@@ -0,0 +1,393 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.reporting;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.document.TextRegion;
+import net.sourceforge.pmd.lang.rule.Rule;
+
+/**
+ * A list of violations that keeps violations in memory up to an
+ * approximate number of bytes. When that budget is reached, the violations
+ * are sorted and written to a temporary file as a run, and the memory is
+ * released. The size of a violation is {@linkplain #estimateSize(RuleViolation) estimated}
+ * from its description and additional info, which are what makes the
+ * size of violations vary.
+ * When the list is read, the runs are merged into an index of the file
+ * offsets of all violations, in the order of {@link RuleViolation#DEFAULT_COMPARATOR},
+ * and violations are read back from the file on demand. Only the index,
+ * and the rules and file ids the violations refer to, stay in memory.
+ *
+ * <p>Violations read from the file are copies: they have the same rule,
+ * location, including its {@linkplain FileLocation#getRegionInFile() region},
+ * description and additional info as the original.
+ *
+ * <p>Adding a violation appends it. Reading the list always sees the
+ * violations sorted. All methods are synchronized. {@link #close()} must
+ * be called to delete the temporary file.
+ */
+final class SpillingViolationList extends AbstractList<RuleViolation> implements AutoCloseable {
+
+    // size of the read buffer of each run during the merge
+    private static final int MERGE_BUFFER_SIZE = 1 << 13;
+
+    // approximate heap size of a violation, its location, text range and
+    // region, and its slot in the buffer, without strings
+    private static final int VIOLATION_OVERHEAD = 160;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int MAP_ENTRY_OVERHEAD = 48;
+
+    private final long maxBytesInMemory;
+
+    private List<RuleViolation> buffer = new ArrayList<>();
+    private long bufferBytes;
+    private boolean bufferSorted = true;
+
+    // rules and file ids are not written, only their index in these tables
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<Rule, Integer> ruleIds = new IdentityHashMap<>();
+    private final List<FileId> fileIds = new ArrayList<>();
+    private final Map<FileId, Integer> fileIdIds = new HashMap<>();
+
+    private @Nullable Path file;
+    private @Nullable FileChannel channel;
+    private long fileSize;
+    // start offset and size of each sorted run in the file
+    private final List<long[]> runs = new ArrayList<>();
+    private int spilledCount;
+    // offsets of all spilled violations in sorted order, null if not merged yet
+    private long @Nullable [] index;
+
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+
+    /**
+     * @param maxBytesInMemory Approximate number of bytes of the violations
+     *                         kept in memory before they are written to the file
+     */
+    SpillingViolationList(long maxBytesInMemory) {
+        this.maxBytesInMemory = maxBytesInMemory;
+    }
+
+    /**
+     * Returns an approximation of the heap used by the violation. The rule
+     * and the file id are shared by many violations, and not counted.
+     */
+    static long estimateSize(RuleViolation violation) {
+        long size = VIOLATION_OVERHEAD + estimateSize(violation.getDescription());
+        for (Map.Entry<String, String> entry : violation.getAdditionalInfo().entrySet()) {
+            size += MAP_ENTRY_OVERHEAD + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateSize(@Nullable String string) {
+        return string == null ? 0 : STRING_OVERHEAD + 2L * string.length();
+    }
+
+    @Override
+    public synchronized boolean add(RuleViolation violation) {
+        buffer.add(violation);
+        bufferBytes += estimateSize(violation);
+        bufferSorted = false;
+        if (bufferBytes >= maxBytesInMemory) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write violations to " + file, e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized RuleViolation get(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + size());
+        }
+        try {
+            if (channel == null) {
+                sortBuffer();
+                return buffer.get(i);
+            }
+            if (!buffer.isEmpty()) {
+                spill();
+            }
+            if (index == null) {
+                index = mergeRuns();
+            }
+            return readViolation(index[i]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read violations from " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return spilledCount + buffer.size();
+    }
+
+    // test only
+    synchronized boolean hasSpilled() {
+        return channel != null;
+    }
+
+    /**
+     * Deletes the temporary file. The list must not be used afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer = Collections.emptyList();
+        index = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(file);
+                channel = null;
+            }
+        }
+    }
+
+    private void sortBuffer() {
+        if (!bufferSorted) {
+            buffer.sort(RuleViolation.DEFAULT_COMPARATOR);
+            bufferSorted = true;
+        }
+    }
+
+    private void spill() throws IOException {
+        if (channel == null) {
+            file = Files.createTempFile("pmd-violations", ".bin");
+            file.toFile().deleteOnExit();
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        sortBuffer();
+
+        long runStart = fileSize;
+        channel.position(runStart);
+        // not closed, as that would close the channel
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        for (RuleViolation violation : buffer) {
+            recordBytes.reset();
+            writeViolation(recordOut, violation);
+            out.writeInt(recordBytes.size());
+            recordBytes.writeTo(out);
+            fileSize += Integer.BYTES + recordBytes.size();
+        }
+        out.flush();
+        runs.add(new long[] {runStart, buffer.size()});
+        spilledCount += buffer.size();
+        index = null;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+    }
+
+    /**
+     * Merges the sorted runs into the offsets of all violations, sorted.
+     * Runs are read with positional reads on {@link #channel}, through a
+     * small buffer per run, so this doesn't open any other file, and only
+     * keeps one violation per run in memory.
+     */
+    private long[] mergeRuns() throws IOException {
+        long[] offsets = new long[spilledCount];
+        PriorityQueue<RunHead> heads = new PriorityQueue<>();
+        for (int r = 0; r < runs.size(); r++) {
+            long[] run = runs.get(r);
+            RunHead head = new RunHead(r, run[0], (int) run[1]);
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        int i = 0;
+        while (!heads.isEmpty()) {
+            RunHead head = heads.poll();
+            offsets[i++] = head.offset;
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return offsets;
+    }
+
+    private RuleViolation readViolation(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(record, offset + Integer.BYTES);
+        return readViolation(new DataInputStream(new ByteArrayInputStream(record.array())));
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, pos);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            pos += read;
+        }
+    }
+
+    private void writeViolation(DataOutputStream out, RuleViolation violation) throws IOException {
+        out.writeInt(ruleIds.computeIfAbsent(violation.getRule(), rule -> {
+            rules.add(rule);
+            return rules.size() - 1;
+        }));
+        FileLocation location = violation.getLocation();
+        out.writeInt(fileIdIds.computeIfAbsent(location.getFileId(), fileId -> {
+            fileIds.add(fileId);
+            return fileIds.size() - 1;
+        }));
+        out.writeInt(location.getStartLine());
+        out.writeInt(location.getStartColumn());
+        out.writeInt(location.getEndLine());
+        out.writeInt(location.getEndColumn());
+        TextRegion region = location.getRegionInFile();
+        out.writeBoolean(region != null);
+        if (region != null) {
+            out.writeInt(region.getStartOffset());
+            out.writeInt(region.getLength());
+        }
+        writeString(out, violation.getDescription());
+        Map<String, String> additionalInfo = violation.getAdditionalInfo();
+        out.writeInt(additionalInfo.size());
+        for (Map.Entry<String, String> entry : additionalInfo.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private RuleViolation readViolation(DataInputStream in) throws IOException {
+        Rule rule = rules.get(in.readInt());
+        FileId fileId = fileIds.get(in.readInt());
+        TextRange2d range = TextRange2d.range2d(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        TextRegion region = in.readBoolean() ? TextRegion.fromOffsetLength(in.readInt(), in.readInt()) : null;
+        String description = readString(in);
+        int numInfos = in.readInt();
+        Map<String, String> additionalInfo = numInfos == 0 ? Collections.emptyMap() : new LinkedHashMap<>();
+        for (int i = 0; i < numInfos; i++) {
+            additionalInfo.put(readString(in), readString(in));
+        }
+        FileLocation location = net.sourceforge.pmd.lang.document.InternalApiBridge.newFileLocation(fileId, range, region);
+        return new ParametricRuleViolation(rule, location, description, additionalInfo);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** The next violation of a run, during the merge. */
+    private final class RunHead implements Comparable<RunHead> {
+        private final int runIndex;
+        private int remaining;
+        private long nextOffset;
+        // bytes read from the file but not consumed yet, in read mode
+        private ByteBuffer readBuffer = ByteBuffer.allocate(MERGE_BUFFER_SIZE);
+        private long readPosition;
+
+        private long offset;
+        private RuleViolation violation;
+
+        RunHead(int runIndex, long start, int size) {
+            this.runIndex = runIndex;
+            this.nextOffset = start;
+            this.readPosition = start;
+            this.remaining = size;
+            readBuffer.flip();
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            offset = nextOffset;
+            fill(Integer.BYTES);
+            int length = readBuffer.getInt();
+            fill(length);
+            int start = readBuffer.position();
+            readBuffer.position(start + length);
+            nextOffset += Integer.BYTES + length;
+            violation = readViolation(new DataInputStream(new ByteArrayInputStream(readBuffer.array(), start, length)));
+            return true;
+        }
+
+        /** Makes sure that the buffer has at least the given number of bytes remaining. */
+        private void fill(int bytes) throws IOException {
+            if (readBuffer.remaining() >= bytes) {
+                return;
+            }
+            if (readBuffer.capacity() < bytes) {
+                // a record larger than the buffer
+                ByteBuffer larger = ByteBuffer.allocate(bytes);
+                larger.put(readBuffer);
+                readBuffer = larger;
+            } else {
+                readBuffer.compact();
+            }
+            while (readBuffer.position() < bytes) {
+                int read = channel.read(readBuffer, readPosition);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                readPosition += read;
+            }
+            readBuffer.flip();
+        }
+
+        @Override
+        public int compareTo(RunHead other) {
+            int cmp = RuleViolation.DEFAULT_COMPARATOR.compare(violation, other.violation);
+            // earlier runs first, so that the merge is stable
+            return cmp != 0 ? cmp : Integer.compare(runIndex, other.runIndex);
+        }
+    }
+}
@@ -427,7 +427,34 @@ public class AuxClasspathLoader implements AutoCloseable {
         }
 
         // then search in jrt-fs, if available
+        return findPlatformResource(name);
+    }
+
+    /**
+     * Finds the resource with the given name only in the Java Runtime Image
+     * given by the "jrt-fs.jar" on the auxClasspath, ignoring all other entries.
+     * The name has the same format as for {@link #findResource(String)}.
+     * If there is no Java Runtime Image or the resource is not found, {@code null}
+     * is returned.
+     *
+     * <p>This allows callers, that already know that the resource is not in the
+     * jars or directories of the auxClasspath, to avoid opening these.</p>
+     *
+     * @param name Name of the resource to load, e.g. {@code java/lang/Object.class}
+     * @return an open {@link InputStream} or {@code null} if the resource is not found.
+     *
+     * @since 7.27.0
+     * @experimental
+     */
+    @Experimental
+    public @Nullable InputStream findPlatformResource(String name) {
+        assert name != null;
+        assert name.charAt(0) != '/' : "not a relative path name: " + name; // assuming only relative paths
+
+        ensureNotClosed();
+
         if (fileSystem != null) {
+            String moduleName = extractModuleName(name);
             if (moduleName != null) {
                 LOG.trace("Trying to load module-info.class for module {} in jrt-fs", moduleName);
                 Path candidate = fileSystem.getPath("modules", moduleName, MODULE_INFO_SUFFIX);
@@ -32,8 +32,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.api.io.TempDirDeletionStrategy;
 
+import net.sourceforge.pmd.cache.AnalysisCacheFormat;
+import net.sourceforge.pmd.cache.internal.ContentAddressedAnalysisCache;
 import net.sourceforge.pmd.cache.internal.FileAnalysisCache;
+import net.sourceforge.pmd.cache.internal.IndexedFileAnalysisCache;
 import net.sourceforge.pmd.cache.internal.NoopAnalysisCache;
+import net.sourceforge.pmd.cache.internal.ShardedAnalysisCache;
 import net.sourceforge.pmd.lang.CpdOnlyDummyLanguage;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.rule.RulePriority;
@@ -334,6 +338,38 @@ class PmdConfigurationTest {
                 "File cache location doesn't produce a file cache");
     }
 
+    @Test
+    void testAnalysisCacheFormat() {
+        final PMDConfiguration configuration = new PMDConfiguration();
+
+        configuration.setAnalysisCacheLocation(null, AnalysisCacheFormat.INDEXED);
+        assertTrue(configuration.getAnalysisCache() instanceof NoopAnalysisCache, "Null cache location accepted");
+
+        configuration.setAnalysisCacheLocation("pmd.cache", AnalysisCacheFormat.INDEXED);
+        assertTrue(configuration.getAnalysisCache() instanceof IndexedFileAnalysisCache,
+                "Indexed format doesn't produce an indexed cache");
+
+        configuration.setAnalysisCacheLocation("pmd-cache", AnalysisCacheFormat.SHARDED);
+        assertTrue(configuration.getAnalysisCache() instanceof ShardedAnalysisCache,
+                "Sharded format doesn't produce a sharded cache");
+
+        configuration.setAnalysisCacheLocation("pmd-cache", AnalysisCacheFormat.CONTENT_ADDRESSED);
+        assertTrue(configuration.getAnalysisCache() instanceof ContentAddressedAnalysisCache,
+                "Content-addressed format doesn't produce a content-addressed cache");
+
+        configuration.setAnalysisCacheLocation("pmd.cache", AnalysisCacheFormat.FILE);
+        assertTrue(configuration.getAnalysisCache() instanceof FileAnalysisCache,
+                "File format doesn't produce a file cache");
+        assertFalse(configuration.getAnalysisCache().tracksDependencies(),
+                "File format tracks dependencies");
+
+        configuration.setAnalysisCacheLocation("pmd.cache", AnalysisCacheFormat.FILE_WITH_DEPENDENCIES);
+        assertTrue(configuration.getAnalysisCache() instanceof FileAnalysisCache,
+                "File format with dependencies doesn't produce a file cache");
+        assertTrue(configuration.getAnalysisCache().tracksDependencies(),
+                "File format with dependencies doesn't track dependencies");
+    }
+
 
     @Test
     void testIgnoreIncrementalAnalysis(@TempDir Path folder) throws IOException {
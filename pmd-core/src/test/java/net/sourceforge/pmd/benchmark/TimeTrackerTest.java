@@ -0,0 +1,48 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.benchmark.TimeTracker.TimedResult;
+
+class TimeTrackerTest {
+
+    @Test
+    void testRecordedOperationsAreAccumulated() {
+        TimeTracker.startGlobalTracking();
+        assertTrue(TimeTracker.isTrackingTime());
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.FILE_PROCESSING)) {
+            TimeTracker.recordOperation(TimedOperationCategory.RULE, "Rule", 100, 3);
+            TimeTracker.recordOperation(TimedOperationCategory.RULE, "Rule", 200, 4);
+        }
+        TimingReport report = TimeTracker.stopGlobalTracking();
+        assertFalse(TimeTracker.isTrackingTime());
+
+        TimedResult rule = report.getLabeledMeasurements(TimedOperationCategory.RULE).get("Rule");
+        assertEquals(2, rule.callCount.get());
+        assertEquals(300, rule.totalTimeNanos.get());
+        assertEquals(300, rule.selfTimeNanos.get());
+        assertEquals(7, rule.extraDataCounter.get());
+
+        // the recorded time is not counted as self time of the enclosing operation
+        TimedResult file = report.getUnlabeledMeasurements(TimedOperationCategory.FILE_PROCESSING);
+        assertEquals(300, file.totalTimeNanos.get() - file.selfTimeNanos.get());
+    }
+
+    @Test
+    void testRecordedOperationsAreIgnoredWithoutTracking() {
+        TimeTracker.recordOperation(TimedOperationCategory.RULE, "Rule", 100, 3);
+
+        TimeTracker.startGlobalTracking();
+        TimingReport report = TimeTracker.stopGlobalTracking();
+        assertNull(report.getLabeledMeasurements(TimedOperationCategory.RULE).get("Rule"));
+    }
+}
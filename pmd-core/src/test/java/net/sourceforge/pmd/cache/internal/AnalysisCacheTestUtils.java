@@ -0,0 +1,80 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.PmdCoreTestUtils;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+/**
+ * Fixtures shared by the tests of the {@link AnalysisCache} implementations.
+ */
+final class AnalysisCacheTestUtils {
+
+    private AnalysisCacheTestUtils() {
+        // utility class
+    }
+
+    /**
+     * Writes a source file of the dummy language, creating its parent
+     * directories if needed.
+     */
+    static TextFile newSourceFile(Path path, String contents) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, listOf(contents));
+        return TextFile.forPath(path, StandardCharsets.UTF_8, PmdCoreTestUtils.dummyVersion());
+    }
+
+    /**
+     * Simulates an analysis of the given files with a cache whose validity
+     * was checked. Each file that is not up to date reports the given
+     * number of violations, on successive lines. The cache is persisted
+     * afterwards.
+     */
+    static void analyze(AnalysisCache cache, Collection<? extends TextFile> files, int violationsPerFile) throws Exception {
+        for (TextFile file : files) {
+            // note: the document is not closed, as this would close the text file
+            TextDocument doc = TextDocument.create(file);
+            if (!cache.isUpToDate(doc)) {
+                try (FileAnalysisListener listener = cache.startFileAnalysis(doc)) {
+                    for (int i = 0; i < violationsPerFile; i++) {
+                        listener.onRuleViolation(newViolation(doc, i + 1));
+                    }
+                }
+            }
+        }
+        cache.persist();
+    }
+
+    /**
+     * Returns a violation of a mock rule on the given line of the document.
+     */
+    static RuleViolation newViolation(TextDocument doc, int line) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getLocation()).thenReturn(FileLocation.range(doc.getFileId(), TextRange2d.range2d(line, 2, line, 4)));
+        final Rule rule = mock(Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rule.getLanguage()).thenReturn(mock(Language.class));
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+}
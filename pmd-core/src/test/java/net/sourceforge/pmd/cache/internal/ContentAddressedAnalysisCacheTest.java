@@ -0,0 +1,105 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static java.util.Collections.emptyList;
+import static net.sourceforge.pmd.cache.internal.AnalysisCacheTestUtils.analyze;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+
+class ContentAddressedAnalysisCacheTest {
+
+    @TempDir
+    private Path tempFolder;
+
+    private File storeDir;
+    private final RuleSets ruleSets = mock(RuleSets.class);
+
+    @BeforeEach
+    void setUp() {
+        storeDir = tempFolder.resolve("store").toFile();
+    }
+
+    private TextFile newSourceFile(String checkout, String contents) throws IOException {
+        return AnalysisCacheTestUtils.newSourceFile(tempFolder.resolve(checkout).resolve("Source.dummy"), contents);
+    }
+
+    private ContentAddressedAnalysisCache newCache(TextFile file) {
+        ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(storeDir);
+        cache.checkValidity(ruleSets, emptyList(), listOf(file));
+        return cache;
+    }
+
+    private ContentAddressedAnalysisCache runAnalysis(TextFile file) throws Exception {
+        ContentAddressedAnalysisCache cache = newCache(file);
+        analyze(cache, listOf(file), 1);
+        return cache;
+    }
+
+    @Test
+    void testStorePersistsEntry() throws Exception {
+        TextFile source = newSourceFile("checkout", "abc");
+        ContentAddressedAnalysisCache cache = runAnalysis(source);
+
+        assertTrue(cache.entryFile(source.getFileId()).isFile());
+    }
+
+    @Test
+    void testEntryIsSharedBetweenCheckouts() throws Exception {
+        runAnalysis(newSourceFile("checkout1", "abc"));
+
+        TextFile other = newSourceFile("checkout2", "abc");
+        ContentAddressedAnalysisCache cache = newCache(other);
+        TextDocument doc = TextDocument.create(other);
+        assertTrue(cache.isUpToDate(doc));
+        assertEquals(1, cache.getCachedViolations(doc).size());
+        assertSame(other.getFileId(), cache.getCachedViolations(doc).get(0).getFileId());
+    }
+
+    @Test
+    void testChangedContentIsNotUpToDate() throws Exception {
+        runAnalysis(newSourceFile("checkout", "abc"));
+
+        TextFile changed = newSourceFile("checkout", "abcd");
+        assertFalse(newCache(changed).isUpToDate(TextDocument.create(changed)));
+    }
+
+    @Test
+    void testRulesetChangeIsNotUpToDate() throws Exception {
+        TextFile source = newSourceFile("checkout", "abc");
+        runAnalysis(source);
+
+        when(ruleSets.getChecksum()).thenReturn(1L);
+        assertFalse(newCache(source).isUpToDate(TextDocument.create(source)));
+    }
+
+    @Test
+    void testFailedAnalysisIsNotPersisted() throws Exception {
+        TextFile source = newSourceFile("checkout", "abc");
+        ContentAddressedAnalysisCache cache = newCache(source);
+        TextDocument doc = TextDocument.create(source);
+        assertFalse(cache.isUpToDate(doc));
+        cache.analysisFailed(doc);
+        cache.persist();
+
+        assertFalse(cache.entryFile(source.getFileId()).exists());
+    }
+}
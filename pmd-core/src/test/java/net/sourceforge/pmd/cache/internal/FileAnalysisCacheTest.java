@@ -19,6 +19,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -26,6 +28,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -341,6 +344,186 @@ class FileAnalysisCacheTest {
                 "Cache believes cache is up to date when a auxclasspath file changed");
     }
 
+    @Test
+    void testChangedClassInDirectoryOnlyInvalidatesDependentFiles() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final Path classesDir = tempFolder.resolve("classes");
+        final Path dependency = classesDir.resolve("com/foo/Dependency.class");
+        final Path other = classesDir.resolve("com/foo/Other.class");
+        Files.createDirectories(dependency.getParent());
+        Files.write(dependency, "dependency".getBytes(StandardCharsets.UTF_8));
+        Files.write(other, "other".getBytes(StandardCharsets.UTF_8));
+        final List<Path> analysisClasspath = listOf(classesDir);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile, true);
+        cache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.recordDependencies(sourceFile, () -> setOf("com.foo.Dependency", "com.foo.Missing"));
+        cache.persist();
+
+        // a class the file doesn't depend on changes
+        Files.write(other, "other, changed".getBytes(StandardCharsets.UTF_8));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile, true);
+        reloadedCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file is not up to date after an unrelated class changed");
+        reloadedCache.persist();
+
+        // a dependency changes
+        Files.write(dependency, "dependency, changed".getBytes(StandardCharsets.UTF_8));
+        final FileAnalysisCache lastCache = new FileAnalysisCache(newCacheFile, true);
+        lastCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertFalse(lastCache.isUpToDate(sourceFile),
+                "Cache believes file is up to date after a dependency changed");
+    }
+
+    @Test
+    void testAuxClasspathChangeKeepsFilesWithUnchangedDependencies() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final Path classesDir = tempFolder.resolve("classes");
+        Files.createDirectories(classesDir);
+        final List<Path> analysisClasspath = new ArrayList<>();
+        analysisClasspath.add(classesDir);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile, true);
+        cache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.recordDependencies(sourceFile, () -> setOf("com.foo.Dependency"));
+        cache.persist();
+
+        // the added jar doesn't contain a dependency
+        analysisClasspath.add(createZipFile("lib.jar"));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile, true);
+        reloadedCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file is not up to date after an unrelated auxclasspath change");
+    }
+
+    @Test
+    void testAuxClasspathChangeInvalidatesAllFilesWithoutDependencyTracking() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final Path classesDir = tempFolder.resolve("classes");
+        Files.createDirectories(classesDir);
+        final List<Path> analysisClasspath = new ArrayList<>();
+        analysisClasspath.add(classesDir);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        assertFalse(cache.tracksDependencies());
+        cache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.recordDependencies(sourceFile, () -> setOf("com.foo.Dependency"));
+        cache.persist();
+
+        analysisClasspath.add(createZipFile("lib.jar"));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile, true);
+        reloadedCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file is up to date after the auxclasspath changed, but no dependencies were recorded");
+    }
+
+    @Test
+    void testAuxClasspathChangeInvalidatesFilesWithUnknownDependencies() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final Path classesDir = tempFolder.resolve("classes");
+        Files.createDirectories(classesDir);
+        final List<Path> analysisClasspath = new ArrayList<>();
+        analysisClasspath.add(classesDir);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile, true);
+        cache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+
+        analysisClasspath.add(createZipFile("lib.jar"));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile, true);
+        reloadedCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file is up to date after the auxclasspath changed");
+    }
+
+    @Test
+    void testChangedSupertypeOfDependencyInvalidatesFile() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final Path classesDir = tempFolder.resolve("classes");
+        final Path dependency = classesDir.resolve("com/foo/Dependency.class");
+        final Path base = classesDir.resolve("com/foo/Base.class");
+        final Path other = classesDir.resolve("com/foo/Other.class");
+        Files.createDirectories(dependency.getParent());
+        Files.write(dependency, classFile("com/foo/Dependency", "com/foo/Base"));
+        Files.write(base, classFile("com/foo/Base", "java/lang/Object"));
+        Files.write(other, classFile("com/foo/Other", "java/lang/Object"));
+        final List<Path> analysisClasspath = listOf(classesDir);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile, true);
+        cache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.recordDependencies(sourceFile, () -> setOf("com.foo.Dependency"));
+        cache.persist();
+
+        // a class that is not referenced changes
+        Files.write(other, classFile("com/foo/Other", "com/foo/Base"));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile, true);
+        reloadedCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file is not up to date after an unrelated class changed");
+        reloadedCache.persist();
+
+        // a class referenced by a dependency changes
+        Files.write(base, classFile("com/foo/Base", "java/util/AbstractList"));
+        final FileAnalysisCache lastCache = new FileAnalysisCache(newCacheFile, true);
+        lastCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertFalse(lastCache.isUpToDate(sourceFile),
+                "Cache believes file is up to date after a supertype of a dependency changed");
+    }
+
+    @Test
+    void testClassFileReferences() {
+        assertEquals(setOf("com.foo.Dependency", "com.foo.Base", "java.lang.String", "java.util.List"),
+                     ClassFileFingerprinter.readReferences(
+                         classFile("com/foo/Dependency", "com/foo/Base", "[Ljava/lang/String;",
+                                   "(ILjava/util/List<Ljava/lang/String;>;)V")));
+        assertEquals(emptySet(), ClassFileFingerprinter.readReferences("not a class".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testCacheFileOfPreviousFormatIsIgnored() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final FileAnalysisCache writer = new FileAnalysisCache(newCacheFile, true);
+        writer.checkValidity(rs, emptyList(), setOf(sourceFileBackend));
+        writer.isUpToDate(sourceFile);
+        writer.persist();
+
+        // previous versions started directly with the PMD version
+        final byte[] bytes = Files.readAllBytes(newCacheFile.toPath());
+        Files.write(newCacheFile.toPath(), Arrays.copyOfRange(bytes, 8, bytes.length));
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile, true);
+        cache.checkValidity(rs, emptyList(), setOf(sourceFileBackend));
+        assertFalse(cache.isUpToDate(sourceFile), "Cache file of a previous format should be ignored");
+    }
+
+    @Test
+    void testAuxClasspathChangeInvalidatesFilesWithNewDependency() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final Path classesDir = tempFolder.resolve("classes");
+        Files.createDirectories(classesDir);
+        final List<Path> analysisClasspath = new ArrayList<>();
+        analysisClasspath.add(classesDir);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile, true);
+        cache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.recordDependencies(sourceFile, () -> setOf("lib.foo0"));
+        cache.persist();
+
+        // the class that was missing is now available
+        analysisClasspath.add(createZipFile("lib.jar"));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile, true);
+        reloadedCache.checkValidity(rs, analysisClasspath, setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file is up to date after a missing dependency was added");
+    }
+
     @Test
     void testClasspathNonExistingEntryIsIgnored() throws Exception {
         restoreSystemProperties(() -> {
@@ -509,6 +692,38 @@ class FileAnalysisCacheTest {
         cache.persist();
     }
 
+    /**
+     * Creates the start of a class file, whose constant pool has a class
+     * entry for each of the given internal names. Descriptors, which start
+     * with a parenthesis, are only added as strings.
+     */
+    private static byte[] classFile(String... internalNames) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeInt(52);
+            int poolSize = 1;
+            for (String name : internalNames) {
+                poolSize += name.startsWith("(") ? 1 : 2;
+            }
+            out.writeShort(poolSize);
+            int index = 1;
+            for (String name : internalNames) {
+                out.writeByte(1); // Utf8
+                out.writeUTF(name);
+                if (!name.startsWith("(")) {
+                    out.writeByte(7); // Class
+                    out.writeShort(index);
+                    index++;
+                }
+                index++;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
     private Path createZipFile(String fileName) throws IOException {
         return createZipFile(fileName, 1);
     }
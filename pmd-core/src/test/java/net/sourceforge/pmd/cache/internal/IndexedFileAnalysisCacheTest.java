@@ -0,0 +1,148 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static java.util.Collections.emptyList;
+import static net.sourceforge.pmd.cache.internal.AnalysisCacheTestUtils.analyze;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static net.sourceforge.pmd.util.CollectionUtil.setOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.RuleViolation;
+
+class IndexedFileAnalysisCacheTest {
+
+    @TempDir
+    private Path tempFolder;
+
+    private File cacheFile;
+    private final RuleSets ruleSets = mock(RuleSets.class);
+
+    @BeforeEach
+    void setUp() {
+        cacheFile = tempFolder.resolve("pmd-analysis.cache").toFile();
+    }
+
+    private TextFile newSourceFile(String name, String contents) throws IOException {
+        return AnalysisCacheTestUtils.newSourceFile(tempFolder.resolve(name), contents);
+    }
+
+    private void runAnalysis(List<TextFile> files, int violationsPerFile) throws Exception {
+        IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, emptyList(), files);
+        analyze(cache, files, violationsPerFile);
+    }
+
+    private List<RuleViolation> reload(TextFile file, boolean expectUpToDate) throws IOException {
+        IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, emptyList(), setOf(file));
+        TextDocument doc = TextDocument.create(file);
+        assertEquals(expectUpToDate, cache.isUpToDate(doc));
+        return cache.getCachedViolations(doc);
+    }
+
+    @Test
+    void testStoreCreatesFile() {
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.persist();
+        assertTrue(cacheFile.exists(), "Cache file doesn't exist after store");
+    }
+
+    @Test
+    void testLoadFromMalformedFileShouldntThrow() throws Exception {
+        Files.write(cacheFile.toPath(), listOf("not a cache file"));
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        assertTrue(reload(source, false).isEmpty());
+    }
+
+    @Test
+    void testStorePersistsFilesWithViolations() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        runAnalysis(listOf(source), 2);
+
+        final List<RuleViolation> cachedViolations = reload(source, true);
+        assertEquals(2, cachedViolations.size(), "Cached rule violations count mismatch");
+        final RuleViolation cachedViolation = cachedViolations.get(0);
+        assertSame(source.getFileId(), cachedViolation.getFileId());
+        assertEquals(1, cachedViolation.getBeginLine());
+        assertEquals(2, cachedViolation.getBeginColumn());
+        assertEquals(1, cachedViolation.getEndLine());
+        assertEquals(4, cachedViolation.getEndColumn());
+    }
+
+    @Test
+    void testChangedFileIsNotUpToDate() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        runAnalysis(listOf(source), 1);
+
+        source = newSourceFile("Source.dummy", "abcd");
+        assertTrue(reload(source, false).isEmpty());
+    }
+
+    @Test
+    void testRulesetChangeInvalidatesCache() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        runAnalysis(listOf(source), 1);
+
+        when(ruleSets.getChecksum()).thenReturn(1L);
+        assertTrue(reload(source, false).isEmpty());
+    }
+
+    @Test
+    void testUpToDateRecordsAreKeptWhenAppending() throws Exception {
+        List<TextFile> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(newSourceFile("Source" + i + ".dummy", "abc" + i));
+        }
+        runAnalysis(files, 3);
+        long initialSize = cacheFile.length();
+
+        // one file changed: its record and a new index are appended
+        TextFile changed = newSourceFile("Source0.dummy", "changed");
+        files.set(0, changed);
+        runAnalysis(files, 1);
+        assertTrue(cacheFile.length() > initialSize, "Records should have been appended");
+
+        assertEquals(1, reload(changed, true).size());
+        for (TextFile file : files.subList(1, files.size())) {
+            assertEquals(3, reload(file, true).size());
+        }
+    }
+
+    @Test
+    void testCacheIsCompactedWhenMostlyStale() throws Exception {
+        List<TextFile> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(newSourceFile("Source" + i + ".dummy", "abc" + i));
+        }
+        runAnalysis(files, 3);
+        long initialSize = cacheFile.length();
+
+        // only one file is still part of the analysis
+        TextFile remaining = files.get(5);
+        runAnalysis(listOf(remaining), 3);
+        assertTrue(cacheFile.length() < initialSize, "Cache should have been compacted");
+
+        assertEquals(3, reload(remaining, true).size());
+        assertTrue(reload(files.get(6), false).isEmpty());
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static java.util.Collections.emptyList;
+import static net.sourceforge.pmd.cache.internal.AnalysisCacheTestUtils.analyze;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+
+class ShardedAnalysisCacheTest {
+
+    @TempDir
+    private Path tempFolder;
+
+    private File cacheDir;
+    private final RuleSets ruleSets = mock(RuleSets.class);
+
+    @BeforeEach
+    void setUp() {
+        cacheDir = tempFolder.resolve("cache").toFile();
+    }
+
+    private TextFile newSourceFile(String name, String contents) throws IOException {
+        return AnalysisCacheTestUtils.newSourceFile(tempFolder.resolve(name), contents);
+    }
+
+    private ShardedAnalysisCache runAnalysis(List<TextFile> files) throws Exception {
+        return runAnalysis(files, 0);
+    }
+
+    private ShardedAnalysisCache runAnalysis(List<TextFile> files, int threads) throws Exception {
+        ShardedAnalysisCache cache = new ShardedAnalysisCache(cacheDir, 4, () -> threads);
+        cache.checkValidity(ruleSets, emptyList(), files);
+        analyze(cache, files, 1);
+        return cache;
+    }
+
+    private boolean isUpToDate(TextFile file) throws IOException {
+        ShardedAnalysisCache cache = new ShardedAnalysisCache(cacheDir, 4, () -> 0);
+        cache.checkValidity(ruleSets, emptyList(), listOf(file));
+        TextDocument doc = TextDocument.create(file);
+        boolean upToDate = cache.isUpToDate(doc);
+        if (upToDate) {
+            assertEquals(1, cache.getCachedViolations(doc).size());
+        }
+        return upToDate;
+    }
+
+    @Test
+    void testStorePersistsFilesWithViolations() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        runAnalysis(listOf(source));
+
+        assertTrue(cacheDir.isDirectory());
+        assertTrue(isUpToDate(source));
+    }
+
+    @Test
+    void testResultsOfOtherAnalysesAreKept() throws Exception {
+        TextFile moduleA = newSourceFile("A.dummy", "a");
+        TextFile moduleB = newSourceFile("B.dummy", "b");
+
+        runAnalysis(listOf(moduleA));
+        runAnalysis(listOf(moduleB));
+
+        assertTrue(isUpToDate(moduleA));
+        assertTrue(isUpToDate(moduleB));
+    }
+
+    @Test
+    void testConcurrentAnalysesKeepEachOthersResults() throws Exception {
+        TextFile moduleA = newSourceFile("A.dummy", "a");
+        TextFile moduleB = newSourceFile("B.dummy", "b");
+
+        // both files are in the same shard, and both analyses load it before either persists
+        ShardedAnalysisCache cacheA = new ShardedAnalysisCache(cacheDir, 1, () -> 0);
+        cacheA.checkValidity(ruleSets, emptyList(), listOf(moduleA));
+        ShardedAnalysisCache cacheB = new ShardedAnalysisCache(cacheDir, 1, () -> 0);
+        cacheB.checkValidity(ruleSets, emptyList(), listOf(moduleB));
+        analyze(cacheA, listOf(moduleA), 1);
+        analyze(cacheB, listOf(moduleB), 1);
+
+        ShardedAnalysisCache reloaded = new ShardedAnalysisCache(cacheDir, 1, () -> 0);
+        reloaded.checkValidity(ruleSets, emptyList(), listOf(moduleA, moduleB));
+        assertTrue(reloaded.isUpToDate(TextDocument.create(moduleA)));
+        assertTrue(reloaded.isUpToDate(TextDocument.create(moduleB)));
+    }
+
+    @Test
+    void testCacheExistsOnceAShardIsWritten() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        ShardedAnalysisCache cache = new ShardedAnalysisCache(cacheDir, 4, () -> 0);
+        assertFalse(cache.cacheExists());
+
+        cache.checkValidity(ruleSets, emptyList(), listOf(source));
+        analyze(cache, listOf(source), 1);
+        assertTrue(cache.cacheExists());
+    }
+
+    @Test
+    void testShardsArePersistedWithSeveralThreads() throws Exception {
+        List<TextFile> sources = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sources.add(newSourceFile("Source" + i + ".dummy", "abc" + i));
+        }
+        runAnalysis(sources, 3);
+
+        for (TextFile source : sources) {
+            assertTrue(isUpToDate(source));
+        }
+    }
+
+    @Test
+    void testUnchangedShardsAreNotWritten() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        ShardedAnalysisCache cache = runAnalysis(listOf(source));
+
+        Path shardFile = cache.shardFile(source.getFileId()).toPath();
+        FileTime epoch = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(shardFile, epoch);
+
+        runAnalysis(listOf(source));
+        assertEquals(epoch, Files.getLastModifiedTime(shardFile));
+
+        TextFile changed = newSourceFile("Source.dummy", "changed");
+        runAnalysis(listOf(changed));
+        assertNotEquals(epoch, Files.getLastModifiedTime(shardFile));
+    }
+
+    @Test
+    void testRulesetChangeInvalidatesShards() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        runAnalysis(listOf(source));
+
+        when(ruleSets.getChecksum()).thenReturn(1L);
+        assertFalse(isUpToDate(source));
+    }
+
+    @Test
+    void testMalformedShardIsIgnored() throws Exception {
+        TextFile source = newSourceFile("Source.dummy", "abc");
+        ShardedAnalysisCache cache = runAnalysis(listOf(source));
+
+        Files.write(cache.shardFile(source.getFileId()).toPath(), new byte[] {0, 1});
+        assertFalse(isUpToDate(source));
+    }
+}
@@ -202,6 +202,81 @@ class CpdAnalysisTest {
         }
     }
 
+    @Test
+    void testParallelTokenizationFindsSameMatches() throws Exception {
+        Path dup1 = Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup1.txt");
+        Path dup2 = Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup2.txt");
+
+        AtomicReference<CPDReport> sequential = new AtomicReference<>();
+        try (CpdAnalysis cpd = CpdAnalysis.create(config)) {
+            assertTrue(cpd.files().addFile(dup1));
+            assertTrue(cpd.files().addFile(dup2));
+            cpd.performAnalysis(sequential::set);
+        }
+
+        config.setThreads(2);
+        AtomicReference<CPDReport> parallel = new AtomicReference<>();
+        try (CpdAnalysis cpd = CpdAnalysis.create(config)) {
+            assertTrue(cpd.files().addFile(dup1));
+            assertTrue(cpd.files().addFile(dup2));
+            cpd.performAnalysis(parallel::set);
+        }
+
+        assertFalse(sequential.get().getMatches().isEmpty());
+        assertEquals(sequential.get().getNumberOfTokensPerFile(), parallel.get().getNumberOfTokensPerFile());
+        assertEquals(sequential.get().getMatches().size(), parallel.get().getMatches().size());
+        for (int i = 0; i < sequential.get().getMatches().size(); i++) {
+            Match expected = sequential.get().getMatches().get(i);
+            Match actual = parallel.get().getMatches().get(i);
+            assertEquals(expected.getTokenCount(), actual.getTokenCount());
+            assertEquals(expected.getFirstMark().getLocation().getStartPos(), actual.getFirstMark().getLocation().getStartPos());
+            assertEquals(expected.getSecondMark().getLocation().getStartPos(), actual.getSecondMark().getLocation().getStartPos());
+        }
+    }
+
+    @Test
+    void testSuffixArrayEngine() throws Exception {
+        Path dup1 = Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup1.txt");
+        Path dup2 = Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup2.txt");
+
+        config.setMatchEngine(CPDConfiguration.MatchEngine.SUFFIX_ARRAY);
+        try (CpdAnalysis cpd = CpdAnalysis.create(config)) {
+            assertTrue(cpd.files().addFile(dup1));
+            assertTrue(cpd.files().addFile(dup2));
+            cpd.performAnalysis(report -> {
+                List<Match> matches = report.getMatches();
+                assertFalse(matches.isEmpty());
+                for (Match match : matches) {
+                    assertEquals("dup1.txt", match.getFirstMark().getFileId().getFileName());
+                    assertEquals("dup2.txt", match.getSecondMark().getFileId().getFileName());
+                }
+            });
+        }
+    }
+
+    @Test
+    void reportShouldContainProcessingErrorsWithParallelTokenization() throws IOException {
+        AtomicReference<CPDReport> report = new AtomicReference<>();
+        PmdReporter reporter = mock(PmdReporter.class);
+        config.setReporter(reporter);
+        config.setThreads(2);
+
+        try (CpdAnalysis cpd = CpdAnalysis.create(config)) {
+            assertTrue(cpd.files().addSourceFile(FileId.fromPathLikeString("foo.dummy"), DummyLanguageModule.CPD_THROW_LEX_EXCEPTION));
+            assertTrue(cpd.files().addSourceFile(FileId.fromPathLikeString("foo2.dummy"), DummyLanguageModule.CPD_THROW_MALFORMED_SOURCE_EXCEPTION));
+            cpd.performAnalysis(report::set);
+        }
+
+        List<Report.ProcessingError> processingErrors = report.get().getProcessingErrors();
+        assertEquals(2, processingErrors.size());
+        assertEquals("foo.dummy", processingErrors.get(0).getFileId().getFileName());
+        assertEquals("foo2.dummy", processingErrors.get(1).getFileId().getFileName());
+
+        verify(reporter).errorEx(eq("Skipping file"), any(LexException.class));
+        verify(reporter).errorEx(eq("Skipping file"), any(MalformedSourceException.class));
+        verifyNoMoreInteractions(reporter);
+    }
+
     @Test
     void testNoSkipLexicalErrors() throws IOException {
         PmdReporter reporter = mock(PmdReporter.class);
@@ -0,0 +1,143 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+
+class SuffixArrayMatchAlgorithmTest {
+
+    private static final String LINE_1 = "public class Foo { ";
+    private static final String LINE_2 = " public void bar() {";
+    private static final String LINE_3 = "  System.out.println(\"hello\");";
+    private static final String LINE_4 = "  System.out.println(\"hello\");";
+    private static final String LINE_5 = "  int i = 5";
+    private static final String LINE_6 = "  System.out.print(\"hello\");";
+    private static final String LINE_7 = " }";
+    private static final String LINE_8 = "}";
+
+    private static String getSampleCode() {
+        return LINE_1 + "\n" + LINE_2 + "\n" + LINE_3 + "\n" + LINE_4 + "\n" + LINE_5 + "\n" + LINE_6
+                + "\n" + LINE_7 + "\n" + LINE_8;
+    }
+
+    private static List<Match> findMatches(SourceManager sourceManager, int minTileSize) throws IOException {
+        DummyLanguageModule dummy = DummyLanguageModule.getInstance();
+        CpdLexer cpdLexer = dummy.createCpdLexer(dummy.newPropertyBundle());
+        Tokens tokens = new Tokens();
+        for (TextFile textFile : sourceManager.getTextFiles()) {
+            CpdLexer.tokenize(cpdLexer, sourceManager.get(textFile), tokens);
+        }
+        return new SuffixArrayMatchAlgorithm(tokens, minTileSize).findMatches(new CPDNullListener(), sourceManager);
+    }
+
+    @Test
+    void testSimple() throws IOException {
+        DummyLanguageModule dummy = DummyLanguageModule.getInstance();
+        FileId fileName = FileId.fromPathLikeString("Foo.dummy");
+        TextFile textFile = TextFile.forCharSeq(getSampleCode(), fileName, dummy.getDefaultVersion());
+        SourceManager sourceManager = new SourceManager(listOf(textFile));
+
+        List<Match> matches = findMatches(sourceManager, 5);
+        assertEquals(1, matches.size());
+        Match match = matches.get(0);
+
+        Iterator<Mark> marks = match.iterator();
+        Mark mark1 = marks.next();
+        Mark mark2 = marks.next();
+        assertFalse(marks.hasNext());
+
+        assertEquals(3, mark1.getLocation().getStartLine());
+        assertEquals(LINE_3 + "\n", sourceManager.getSlice(mark1).toString());
+        assertEquals(4, mark2.getLocation().getStartLine());
+        assertEquals(LINE_4 + "\n", sourceManager.getSlice(mark2).toString());
+    }
+
+    @Test
+    void testMatchesAreNotOverlapping() throws IOException {
+        DummyLanguageModule dummy = DummyLanguageModule.getInstance();
+        String code = "a b a b a b a b a b a b a b a b";
+        TextFile textFile = TextFile.forCharSeq(code, FileId.fromPathLikeString("Foo.dummy"), dummy.getDefaultVersion());
+        SourceManager sourceManager = new SourceManager(listOf(textFile));
+
+        for (Match match : findMatches(sourceManager, 4)) {
+            int lastEnd = -1;
+            for (Mark mark : match) {
+                assertTrue(mark.getToken().getIndex() > lastEnd, "Overlapping marks in " + match);
+                lastEnd = mark.getToken().getIndex() + match.getTokenCount() - 1;
+            }
+        }
+    }
+
+    @Test
+    void testMatchesDoNotCrossFiles() throws IOException {
+        DummyLanguageModule dummy = DummyLanguageModule.getInstance();
+        TextFile file1 = TextFile.forCharSeq("a b c d", FileId.fromPathLikeString("Foo1.dummy"), dummy.getDefaultVersion());
+        TextFile file2 = TextFile.forCharSeq("e f a b", FileId.fromPathLikeString("Foo2.dummy"), dummy.getDefaultVersion());
+        TextFile file3 = TextFile.forCharSeq("c d e f", FileId.fromPathLikeString("Foo3.dummy"), dummy.getDefaultVersion());
+        SourceManager sourceManager = new SourceManager(listOf(file1, file2, file3));
+
+        assertTrue(findMatches(sourceManager, 3).isEmpty());
+    }
+
+    @Test
+    void testSuffixArrayIsSorted() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int[] text = new int[random.nextInt(200) + 1];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = random.nextInt(round % 5 + 2);
+            }
+
+            int[] sa = SuffixArrayMatchAlgorithm.suffixArray(text);
+            assertArrayEquals(naiveSuffixArray(text), sa);
+
+            int[] lcp = SuffixArrayMatchAlgorithm.lcp(text, sa);
+            assertEquals(0, lcp[0]);
+            for (int i = 1; i < text.length; i++) {
+                assertEquals(naiveLcp(text, sa[i - 1], sa[i]), lcp[i]);
+            }
+        }
+    }
+
+    private static int[] naiveSuffixArray(int[] text) {
+        Integer[] suffixes = new Integer[text.length];
+        for (int i = 0; i < text.length; i++) {
+            suffixes[i] = i;
+        }
+        Arrays.sort(suffixes, (a, b) -> {
+            int lcp = naiveLcp(text, a, b);
+            if (a + lcp == text.length || b + lcp == text.length) {
+                // a proper prefix is smaller
+                return Integer.compare(text.length - a, text.length - b);
+            }
+            return Integer.compare(text[a + lcp], text[b + lcp]);
+        });
+        return Arrays.stream(suffixes).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int naiveLcp(int[] text, int a, int b) {
+        int lcp = 0;
+        while (a + lcp < text.length && b + lcp < text.length && text[a + lcp] == text[b + lcp]) {
+            lcp++;
+        }
+        return lcp;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static net.sourceforge.pmd.cpd.CpdTestUtils.BAR_FILE_ID;
+import static net.sourceforge.pmd.cpd.CpdTestUtils.FOO_FILE_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class TokensTest {
+
+    @Test
+    void testFileOfTokens() {
+        Tokens tokens = new Tokens();
+        for (int i = 0; i < 3000; i++) {
+            tokens.addToken("a" + i % 10, FOO_FILE_ID, 1, i + 1, 1, i + 2);
+        }
+        tokens.addToken("b", BAR_FILE_ID, 2, 1, 2, 2);
+        tokens.addToken("c", BAR_FILE_ID, 3, 1, 3, 2);
+
+        assertEquals(3002, tokens.size());
+        assertEquals(FOO_FILE_ID, tokens.getTokens().get(0).getFileId());
+        assertEquals(FOO_FILE_ID, tokens.getTokens().get(2999).getFileId());
+        assertEquals(BAR_FILE_ID, tokens.getTokens().get(3000).getFileId());
+        assertEquals(BAR_FILE_ID, tokens.getTokens().get(3001).getFileId());
+
+        TokenEntry token = tokens.getTokens().get(2500);
+        assertEquals(2501, token.getBeginColumn());
+        assertEquals(2502, token.getEndColumn());
+        assertEquals("a0", token.getImage(tokens));
+    }
+
+    @Test
+    void testRestoreState() {
+        Tokens tokens = new Tokens();
+        tokens.addToken("a", FOO_FILE_ID, 1, 1, 1, 2);
+        Tokens.State state = tokens.savePoint();
+        tokens.addToken("b", BAR_FILE_ID, 1, 1, 1, 2);
+        state.restore(tokens);
+
+        assertEquals(1, tokens.size());
+        TokenEntry token = tokens.addToken("c", BAR_FILE_ID, 2, 1, 2, 2);
+        assertEquals(BAR_FILE_ID, token.getFileId());
+        assertEquals(FOO_FILE_ID, tokens.getTokens().get(0).getFileId());
+        assertEquals("c", token.getImage(tokens));
+    }
+
+    @Test
+    void testAppendAllRemapsImages() {
+        Tokens tokens = new Tokens();
+        tokens.addToken("a", FOO_FILE_ID, 1, 1, 1, 2);
+        tokens.addToken("b", FOO_FILE_ID, 1, 2, 1, 3);
+
+        Tokens other = new Tokens();
+        other.addToken("b", BAR_FILE_ID, 2, 1, 2, 2);
+        other.addToken("c", BAR_FILE_ID, 2, 2, 2, 3);
+
+        tokens.appendAll(other);
+
+        assertEquals(4, tokens.size());
+        TokenEntry b = tokens.getTokens().get(2);
+        assertEquals(BAR_FILE_ID, b.getFileId());
+        assertEquals(2, b.getBeginLine());
+        assertEquals(tokens.getTokens().get(1).getIdentifier(), b.getIdentifier());
+        assertEquals("c", tokens.getTokens().get(3).getImage(tokens));
+        assertEquals(FOO_FILE_ID, tokens.getTokens().get(1).getFileId());
+    }
+
+    @Test
+    void testTokenViews() {
+        Tokens tokens = new Tokens();
+        TokenEntry token = tokens.addToken("a", FOO_FILE_ID, 1, 1, 1, 2);
+        TokenEntry other = tokens.addToken("a", FOO_FILE_ID, 1, 2, 1, 3);
+
+        assertEquals(token, tokens.getTokens().get(0));
+        assertNotEquals(token, other);
+        assertEquals(token.getIdentifier(), other.getIdentifier());
+    }
+}
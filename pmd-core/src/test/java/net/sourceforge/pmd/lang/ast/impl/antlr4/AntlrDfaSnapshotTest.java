@@ -0,0 +1,217 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.impl.antlr4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.Vocabulary;
+import org.antlr.v4.runtime.VocabularyImpl;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.ATNType;
+import org.antlr.v4.runtime.atn.AtomTransition;
+import org.antlr.v4.runtime.atn.BasicBlockStartState;
+import org.antlr.v4.runtime.atn.BasicState;
+import org.antlr.v4.runtime.atn.BlockEndState;
+import org.antlr.v4.runtime.atn.EpsilonTransition;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.RuleStartState;
+import org.antlr.v4.runtime.atn.RuleStopState;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AntlrDfaSnapshotTest {
+
+    private static final int A = 1;
+    private static final int B = 2;
+    private static final int C = 3;
+
+    // s : A B | A C ;
+    private static final ATN ATN = buildAtn();
+    private static final Vocabulary VOCABULARY = new VocabularyImpl(new String[] {null, "'a'", "'b'", "'c'"}, null);
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void testSnapshotIsRestored() throws IOException {
+        Path file = tempDir.resolve("dfa.bin");
+        ParserInterpreter parser = newParser("S.g4", A, B);
+        AntlrDfaSnapshot snapshot = new AntlrDfaSnapshot(file);
+        snapshot.restore(parser);
+        parser.parse(0);
+        int states = numStates(parser);
+        assertTrue(states > 0);
+        snapshot.save();
+
+        ParserInterpreter restored = newParser("S.g4", A, B);
+        new AntlrDfaSnapshot(file).restore(restored);
+        assertEquals(states, numStates(restored));
+        restored.parse(0);
+        // the DFA was warm, the same input doesn't add states
+        assertEquals(states, numStates(restored));
+        assertEquals(0, restored.getNumberOfSyntaxErrors());
+
+        // the restored DFA still grows with new inputs
+        restored.setInputStream(tokens(A, C));
+        restored.parse(0);
+        assertTrue(numStates(restored) > states);
+        assertEquals(0, restored.getNumberOfSyntaxErrors());
+    }
+
+    @Test
+    void testSnapshotOfOtherGrammarIsIgnored() throws IOException {
+        Path file = tempDir.resolve("dfa.bin");
+        ParserInterpreter parser = newParser("S.g4", A, B);
+        AntlrDfaSnapshot snapshot = new AntlrDfaSnapshot(file);
+        snapshot.restore(parser);
+        parser.parse(0);
+        snapshot.save();
+
+        ParserInterpreter other = newParser("T.g4", A, B);
+        new AntlrDfaSnapshot(file).restore(other);
+        assertEquals(0, numStates(other));
+    }
+
+    @Test
+    void testMissingOrCorruptSnapshotIsIgnored() throws IOException {
+        Path file = tempDir.resolve("dfa.bin");
+        ParserInterpreter parser = newParser("S.g4", A, B);
+        new AntlrDfaSnapshot(file).restore(parser);
+        assertEquals(0, numStates(parser));
+
+        Files.write(file, new byte[] {1, 2, 3});
+        parser = newParser("S.g4", A, B);
+        new AntlrDfaSnapshot(file).restore(parser);
+        assertEquals(0, numStates(parser));
+        parser.parse(0);
+        assertEquals(0, parser.getNumberOfSyntaxErrors());
+    }
+
+    @Test
+    void testLargestDfaIsSaved() throws IOException {
+        Path file = tempDir.resolve("dfa.bin");
+        AntlrDfaSnapshot snapshot = new AntlrDfaSnapshot(file);
+        ParserInterpreter small = newParser("S.g4", A, B);
+        ParserInterpreter large = newParser("S.g4", A, B);
+        snapshot.restore(small);
+        snapshot.restore(large);
+        small.parse(0);
+        large.parse(0);
+        large.setInputStream(tokens(A, C));
+        large.parse(0);
+        snapshot.save();
+
+        ParserInterpreter restored = newParser("S.g4", A, B);
+        new AntlrDfaSnapshot(file).restore(restored);
+        assertEquals(numStates(large), numStates(restored));
+
+        snapshot.forget(large);
+        snapshot.save();
+        restored = newParser("S.g4", A, B);
+        new AntlrDfaSnapshot(file).restore(restored);
+        assertEquals(numStates(small), numStates(restored));
+    }
+
+    @Test
+    void testDfaOfDiscardedParserIsSaved() throws IOException {
+        Path file = tempDir.resolve("dfa.bin");
+        AntlrDfaSnapshot snapshot = new AntlrDfaSnapshot(file);
+        ParserInterpreter parser = newParser("S.g4", A, B);
+        snapshot.restore(parser);
+        parser.parse(0);
+        int states = numStates(parser);
+        // the parser drops its DFA, the snapshot still holds it
+        parser.setInterpreter(new ParserATNSimulator(parser, ATN, new DFA[0], new PredictionContextCache()));
+        snapshot.save();
+
+        ParserInterpreter restored = newParser("S.g4", A, B);
+        new AntlrDfaSnapshot(file).restore(restored);
+        assertEquals(states, numStates(restored));
+    }
+
+    @Test
+    void testStatesAddedWhileRestoringAreKept() throws IOException {
+        Path file = tempDir.resolve("dfa.bin");
+        ParserInterpreter parser = newParser("S.g4", A, B);
+        parser.parse(0);
+        AntlrDfaSnapshot snapshot = new AntlrDfaSnapshot(file);
+        snapshot.restore(parser);
+        snapshot.save();
+
+        // another parser sharing the DFA filled it before the snapshot was published
+        ParserInterpreter restored = newParser("S.g4", A, C);
+        restored.parse(0);
+        int states = numStates(restored);
+        new AntlrDfaSnapshot(file).restore(restored);
+        assertEquals(states, numStates(restored));
+        assertEquals(0, restored.getNumberOfSyntaxErrors());
+    }
+
+    private static int numStates(ParserInterpreter parser) {
+        return AntlrDfaSnapshot.countStates(parser.getInterpreter().decisionToDFA);
+    }
+
+    private static ParserInterpreter newParser(String grammarFileName, int... tokens) {
+        return new ParserInterpreter(grammarFileName, VOCABULARY, Collections.singletonList("s"), ATN, tokens(tokens));
+    }
+
+    private static CommonTokenStream tokens(int... types) {
+        List<Token> tokens = new ArrayList<>();
+        for (int type : types) {
+            tokens.add(new CommonToken(type, VOCABULARY.getLiteralName(type)));
+        }
+        return new CommonTokenStream(new ListTokenSource(tokens));
+    }
+
+    private static ATN buildAtn() {
+        ATN atn = new ATN(ATNType.PARSER, C);
+        RuleStartState start = state(atn, new RuleStartState());
+        RuleStopState stop = state(atn, new RuleStopState());
+        start.stopState = stop;
+        atn.ruleToStartState = new RuleStartState[] {start};
+        atn.ruleToStopState = new RuleStopState[] {stop};
+
+        BasicBlockStartState block = state(atn, new BasicBlockStartState());
+        BlockEndState blockEnd = state(atn, new BlockEndState());
+        block.endState = blockEnd;
+        blockEnd.startState = block;
+        atn.defineDecisionState(block);
+
+        start.addTransition(new EpsilonTransition(block));
+        for (int second : new int[] {B, C}) {
+            BasicState first = state(atn, new BasicState());
+            BasicState middle = state(atn, new BasicState());
+            BasicState last = state(atn, new BasicState());
+            block.addTransition(new EpsilonTransition(first));
+            first.addTransition(new AtomTransition(middle, A));
+            middle.addTransition(new AtomTransition(last, second));
+            last.addTransition(new EpsilonTransition(blockEnd));
+        }
+        blockEnd.addTransition(new EpsilonTransition(stop));
+        return atn;
+    }
+
+    private static <T extends ATNState> T state(ATN atn, T state) {
+        state.ruleIndex = 0;
+        atn.addState(state);
+        return state;
+    }
+}
@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
@@ -101,6 +103,105 @@ class FileCollectorTest {
         assertCollected(collector, listOf(FileId.fromPath(foo), FileId.fromPath(bar)));
     }
 
+    @Test
+    void testAddDirectoryInParallel() throws IOException {
+        Path root = tempFolder;
+        Path foo = newFile(root, "src/foo.dummy");
+        newFile(root, "src/bar.unknown");
+        Path bar = newFile(root, "src/x/bar.dummy");
+        Path baz = newFile(root, "src/x/y/baz.dummy");
+        Path qux = newFile(root, "src/z/qux.dummy");
+
+        FileCollector collector = newCollector();
+        collector.setThreads(4);
+
+        assertTrue(collector.addDirectory(root.resolve("src")));
+
+        assertCollected(collector, listOf(FileId.fromPath(foo), FileId.fromPath(bar), FileId.fromPath(baz), FileId.fromPath(qux)));
+        assertNoErrors(collector);
+    }
+
+    @Test
+    void testAddDirectoryNotRecursiveInParallel() throws IOException {
+        Path root = tempFolder;
+        Path foo = newFile(root, "src/foo.dummy");
+        newFile(root, "src/x/bar.dummy");
+
+        FileCollector collector = newCollector();
+        collector.setThreads(4);
+
+        assertTrue(collector.addDirectory(root.resolve("src"), false));
+
+        assertCollected(collector, listOf(FileId.fromPath(foo)));
+    }
+
+    @Test
+    void testExcludedDirectoryIsNotWalked() throws IOException {
+        Path root = tempFolder;
+        Path foo = newFile(root, "src/foo.dummy");
+        Path bar = newFile(root, "src/x/bar.dummy");
+        newFile(root, "src/gen/baz.dummy");
+        newFile(root, "src/gen/y/qux.dummy");
+
+        for (int threads : new int[] {1, 4}) {
+            FileCollector collector = newCollector();
+            collector.setThreads(threads);
+            collector.excludeDirectory(root.resolve("src/x/../gen"));
+
+            assertTrue(collector.addDirectory(root.resolve("src")));
+            assertFalse(collector.addFile(root.resolve("src/gen/baz.dummy")));
+            assertFalse(collector.addDirectory(root.resolve("src/gen/y")));
+
+            assertCollected(collector, listOf(FileId.fromPath(foo), FileId.fromPath(bar)));
+            assertNoErrors(collector);
+        }
+    }
+
+    @Test
+    void testDeferredDirectoryWalkIsStreamed() throws IOException {
+        Path root = tempFolder;
+        Path foo = newFile(root, "src/foo.dummy");
+        Path bar = newFile(root, "src/x/bar.dummy");
+        Path baz = newFile(root, "src/x/baz.dummy");
+        Path qux = newFile(root, "qux.dummy");
+
+        for (int threads : new int[] {1, 4}) {
+            FileCollector collector = newCollector();
+            collector.setThreads(threads);
+            collector.setDeferDirectoryWalks(true);
+
+            assertTrue(collector.addFile(qux));
+            assertTrue(collector.addDirectory(root.resolve("src")));
+            FileCollector excludeCollector = newCollector();
+            excludeCollector.addFile(baz);
+            collector.exclude(excludeCollector);
+
+            List<FileId> streamed = new ArrayList<>();
+            collector.streamFiles(file -> streamed.add(file.getFileId()));
+
+            // the added files come first, then the walked files in the order of their path
+            List<FileId> expected = new ArrayList<>(listOf(FileId.fromPath(qux), FileId.fromPath(foo), FileId.fromPath(bar)));
+            assertEquals(expected, streamed);
+            expected.sort(Comparator.naturalOrder());
+            assertCollected(collector, expected);
+            assertNoErrors(collector);
+        }
+    }
+
+    @Test
+    void testDeferredDirectoryWalkIsRunWhenFilesAreNeeded() throws IOException {
+        Path root = tempFolder;
+        Path foo = newFile(root, "src/foo.dummy");
+        Path bar = newFile(root, "src/x/bar.dummy");
+
+        FileCollector collector = newCollector();
+        collector.setDeferDirectoryWalks(true);
+        assertTrue(collector.addDirectory(root.resolve("src")));
+
+        assertCollected(collector, listOf(FileId.fromPath(foo), FileId.fromPath(bar)));
+        assertNoErrors(collector);
+    }
+
     @Test
     void testGetApplicableFiles() {
         FileCollector collector = newCollector();
@@ -6,8 +6,11 @@ package net.sourceforge.pmd.lang.document;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -18,6 +21,8 @@ import org.junit.jupiter.api.io.TempDir;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.internal.SystemProps;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
 
 class NioTextFileTest {
 
@@ -45,4 +50,31 @@ class NioTextFileTest {
                     pmd.fileNameRenderer().getDisplayName(textFile));
         }
     }
+
+    @Test
+    void readLargeFileMapped() throws Exception {
+        StringBuilder text = new StringBuilder("\uFEFF");
+        for (int i = 0; i < 20_000; i++) {
+            text.append("line ").append(i).append(" \u00e9\u20ac\uD83D\uDE00").append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1}) {
+            byte[] bytes = text.toString().getBytes(charset);
+            Path file = tempDir.resolve("large-" + charset.name() + ".dummy");
+            Files.write(file, bytes);
+            TextFileContent expected = TextFileContent.fromInputStream(new ByteArrayInputStream(bytes), charset);
+
+            System.setProperty(SystemProps.PMD_MMAP_SOURCES, "");
+            try (TextFile textFile = TextFile.forPath(file, charset, DummyLanguageModule.getInstance().getDefaultVersion())) {
+                TextFileContent content = textFile.readContents();
+                assertEquals(expected.getNormalizedText().toString(), content.getNormalizedText().toString());
+                assertEquals(expected.getLineTerminator(), content.getLineTerminator());
+                assertEquals(expected.getCheckSum(), content.getCheckSum());
+                assertEquals(expected.getPositioner().getLastLine(), content.getPositioner().getLastLine());
+                assertEquals(expected.getPositioner().getLastLineColumn(), content.getPositioner().getLastLineColumn());
+                assertEquals(expected.getPositioner().offsetOfEndOfLine(1000), content.getPositioner().offsetOfEndOfLine(1000));
+            } finally {
+                System.clearProperty(SystemProps.PMD_MMAP_SOURCES);
+            }
+        }
+    }
 }
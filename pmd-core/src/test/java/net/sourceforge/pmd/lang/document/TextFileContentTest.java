@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -203,6 +204,13 @@ class TextFileContentTest {
                 return content;
             }
         },
+        BYTES {
+            @Override
+            TextFileContent normalize(String text) {
+                Charset charset = StandardCharsets.UTF_8;
+                return TextFileContent.fromBytes(ByteBuffer.wrap(text.getBytes(charset)), charset, LINESEP_SENTINEL);
+            }
+        },
         READER {
             @Override
             TextFileContent normalize(String input) throws IOException {
@@ -62,13 +62,21 @@ abstract class AbstractPMDProcessorTest {
         // note: two executions for dummy and dummydialect
         assertEquals(2, reportListener.files.get());
         assertEquals(2, reportListener.errors.get());
+        verifyProcessorCreationLogged(2);
+        // exceptions are reported as processing errors
+        Mockito.verifyNoMoreInteractions(reporter);
+    }
+
+    /**
+     * Verifies the debug message logged when the processor is created
+     * (once per language).
+     */
+    protected void verifyProcessorCreationLogged(int times) {
         if (getThreads() == 0) {
-            Mockito.verify(reporter, Mockito.times(2)).log(Level.DEBUG, "Using main thread for analysis");
+            Mockito.verify(reporter, Mockito.times(times)).log(Level.DEBUG, "Using main thread for analysis");
         } else {
-            Mockito.verify(reporter, Mockito.times(2)).log(Level.DEBUG, "Using {0} threads for analysis", getThreads());
+            Mockito.verify(reporter, Mockito.times(times)).log(Level.DEBUG, "Using {0} threads for analysis", getThreads());
         }
-        // exceptions are reported as processing errors
-        Mockito.verifyNoMoreInteractions(reporter);
     }
 
     protected PmdAnalysis createPmdAnalysis() {
@@ -4,17 +4,23 @@
 
 package net.sourceforge.pmd.lang.impl;
 
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.reporting.RuleContext;
@@ -48,10 +54,10 @@ class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
         });
         assertEquals("test error", error.getMessage());
 
-        // in multithreading mode, all files are started but eventually fail
-        // depending on how many tasks have been started before getting the first results
-        // we might have started only one file analysis or more. But we rethrow
-        // the error on the first.
+        // in multithreading mode, the files that are not started when the
+        // first error occurs are skipped. Depending on how many tasks have
+        // been started before, we might have started only one file analysis
+        // or more. But we rethrow the error on the first.
         assertTrue(reportListener.files.get() >= 1);
         // we report the first error
         Mockito.verify(reporter).error(Mockito.eq("Unknown error occurred while executing a PmdRunnable: {0}"),
@@ -59,6 +65,19 @@ class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
                 Mockito.any(Error.class));
     }
 
+    @Test
+    void testLargestFilesAreScheduledFirst() {
+        LanguageVersion version = DummyLanguageModule.getInstance().getDefaultVersion();
+        TextFile small = TextFile.forCharSeq("a", FileId.fromPathLikeString("small.dummy"), version);
+        TextFile medium = TextFile.forCharSeq("abc", FileId.fromPathLikeString("medium.dummy"), version);
+        TextFile medium2 = TextFile.forCharSeq("def", FileId.fromPathLikeString("medium2.dummy"), version);
+        TextFile large = TextFile.forCharSeq("abcdefgh", FileId.fromPathLikeString("large.dummy"), version);
+
+        List<TextFile> sorted = MultiThreadProcessor.largestFirst(listOf(small, medium, large, medium2));
+        // the sort is stable
+        assertEquals(listOf(large, medium, medium2, small), sorted);
+    }
+
     // TODO: Dysfunctional rules are pruned upstream of the processor.
     //
     //    @Test
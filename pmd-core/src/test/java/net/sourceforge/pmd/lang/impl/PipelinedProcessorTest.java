@@ -0,0 +1,158 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.slf4j.event.Level;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.internal.SystemProps;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.InternalApiBridge;
+import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.CollectedFileQueue;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.reporting.GlobalAnalysisListener;
+import net.sourceforge.pmd.reporting.RuleContext;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+class PipelinedProcessorTest extends AbstractPMDProcessorTest {
+
+    @BeforeEach
+    void enablePipelinedMode() {
+        System.setProperty(SystemProps.PMD_PIPELINED, "");
+    }
+
+    @AfterEach
+    void disablePipelinedMode() {
+        System.clearProperty(SystemProps.PMD_PIPELINED);
+    }
+
+    @Override
+    protected int getThreads() {
+        return 2;
+    }
+
+    @Override
+    protected Class<? extends AbstractPMDProcessor> getExpectedImplementation() {
+        return PipelinedProcessor.class;
+    }
+
+    @Override
+    protected void verifyProcessorCreationLogged(int times) {
+        Mockito.verify(reporter, Mockito.times(times))
+               .log(Level.DEBUG, "Using pipelined analysis with {0} threads", getThreads());
+    }
+
+    @Test
+    void errorsShouldBeThrown() {
+        Error error = assertThrows(Error.class, () -> {
+            try (PmdAnalysis pmd = createPmdAnalysis()) {
+                pmd.addRuleSet(RuleSet.forSingleRule(new RuleThatThrowsError()));
+                pmd.performAnalysis();
+            }
+        });
+        assertEquals("test error", error.getMessage());
+        Mockito.verify(reporter).error(Mockito.eq("Unknown error occurred while executing a PmdRunnable: {0}"),
+                Mockito.eq("java.lang.Error: test error"),
+                Mockito.any(Error.class));
+    }
+
+    @Test
+    void testRulesThreadSafety() {
+        MultiThreadProcessorTest.NotThreadSafeRule.count.set(0);
+        try (PmdAnalysis pmd = createPmdAnalysis()) {
+            pmd.addRuleSet(pmd.newRuleSetLoader().loadFromResource("rulesets/MultiThreadProcessorTest/basic.xml"));
+            pmd.performAnalysis();
+        }
+
+        assertEquals(2, MultiThreadProcessorTest.NotThreadSafeRule.count.get(), "Test rule has not been executed");
+        // if the violation is not reported, then the rule instances have been
+        // shared between the analysis threads
+        assertEquals(1, reportListener.violations.get(), "Missing violation");
+    }
+
+    @Test
+    void testFilesAreAnalysedWhileCollected(@TempDir Path tempDir) throws IOException {
+        Path sources = tempDir.resolve("src");
+        for (int i = 0; i < 30; i++) {
+            Path file = sources.resolve("dir" + i % 3).resolve("file" + i + ".dummy");
+            Files.createDirectories(file.getParent());
+            Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Path streamedReport = tempDir.resolve("streamed.txt");
+        analyseDirectory(sources, streamedReport);
+        System.clearProperty(SystemProps.PMD_PIPELINED);
+        Path collectedReport = tempDir.resolve("collected.txt");
+        analyseDirectory(sources, collectedReport);
+
+        List<String> lines = Files.readAllLines(streamedReport, StandardCharsets.UTF_8);
+        assertEquals(30, lines.size());
+        assertEquals(Files.readAllLines(collectedReport, StandardCharsets.UTF_8), lines);
+    }
+
+    private void analyseDirectory(Path dir, Path reportFile) {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setThreads(getThreads());
+        configuration.setIgnoreIncrementalAnalysis(true);
+        configuration.addInputPath(dir);
+        configuration.setReportFormat("text");
+        configuration.setReportFile(reportFile);
+        try (PmdAnalysis pmd = PmdAnalysis.create(configuration)) {
+            pmd.addRuleSet(RuleSet.forSingleRule(new RuleThatReportsEachFile()));
+            pmd.performAnalysis();
+            assertEquals(0, pmd.getReporter().numErrors());
+        }
+    }
+
+    @Test
+    void testInterruptionIsReported() {
+        PmdReporter reporter = Mockito.mock(PmdReporter.class);
+        AnalysisTask task = InternalApiBridge.createAnalysisTask(new RuleSets(Collections.emptyList()), Collections.emptyList(),
+                GlobalAnalysisListener.noop(), getThreads(), null, reporter, null);
+        // the queue is never completed, so the analysis never ends
+        task = InternalApiBridge.taskWithFileQueue(task, new CollectedFileQueue(Collections::emptyList));
+
+        PipelinedProcessor processor = new PipelinedProcessor(task);
+        processor.processFiles();
+        Thread.currentThread().interrupt();
+        processor.close();
+
+        assertTrue(Thread.interrupted(), "Interruption should be preserved");
+        Mockito.verify(reporter).error("Interrupted while waiting for the analysis, the remaining files were not analyzed");
+    }
+
+    private static final class RuleThatReportsEachFile extends AbstractRule {
+        RuleThatReportsEachFile() {
+            setLanguage(DummyLanguageModule.getInstance());
+            setMessage("a violation");
+        }
+
+        @Override
+        public void apply(Node target, RuleContext ctx) {
+            ctx.addViolation(target);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.ReadOnlyFileException;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextFileContent;
+
+class PrefetchedTextFileTest {
+
+    private final LanguageVersion dummyVersion = DummyLanguageModule.getInstance().getDefaultVersion();
+
+    @Test
+    void testWritesAreDelegated(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("file.dummy");
+        Files.write(path, "abc".getBytes(StandardCharsets.UTF_8));
+        TextFile original = TextFile.forPath(path, StandardCharsets.UTF_8, dummyVersion);
+
+        try (TextFile prefetched = PrefetchedTextFile.prefetch(original)) {
+            assertFalse(prefetched.isReadOnly());
+            assertEquals("abc", prefetched.readContents().getNormalizedText().toString());
+
+            prefetched.writeContents(TextFileContent.fromCharSeq("def"));
+            assertEquals("def", new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            assertEquals("def", prefetched.readContents().getNormalizedText().toString());
+        }
+    }
+
+    @Test
+    void testReadOnlyFile() throws IOException {
+        TextFile original = TextFile.forCharSeq("abc", FileId.fromPathLikeString("file.dummy"), dummyVersion);
+
+        try (TextFile prefetched = PrefetchedTextFile.prefetch(original)) {
+            assertTrue(prefetched.isReadOnly());
+            assertThrows(ReadOnlyFileException.class, () -> prefetched.writeContents(TextFileContent.fromCharSeq("def")));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.InternalApiBridge;
+import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.AbstractPMDProcessorTest.SimpleReportListener;
+import net.sourceforge.pmd.lang.rule.internal.RuleSets;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+/**
+ * Runs the {@link VirtualThreadProcessor} on platform threads, so that
+ * it is tested on JVMs without virtual threads too.
+ */
+class VirtualThreadProcessorPlatformThreadsTest {
+
+    private final PmdReporter reporter = Mockito.mock(PmdReporter.class);
+    private final SimpleReportListener listener = new SimpleReportListener();
+
+    @Test
+    void testFilesAreProcessed() {
+        VirtualThreadProcessor processor = new VirtualThreadProcessor(newTask(10), Executors.newCachedThreadPool());
+        processor.processFiles();
+        processor.close();
+
+        assertEquals(10, listener.files.get());
+        Mockito.verifyNoInteractions(reporter);
+    }
+
+    @Test
+    void testInterruptionOfFileTaskIsReported() {
+        // each file task is interrupted before it starts, while it waits for its permits
+        ExecutorService executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                t.interrupt();
+            }
+        };
+        VirtualThreadProcessor processor = new VirtualThreadProcessor(newTask(2), executor);
+        processor.processFiles();
+        processor.close();
+
+        assertEquals(0, listener.files.get());
+        Mockito.verify(reporter).error("Interrupted while waiting to analyze files, some files were not analyzed");
+    }
+
+    @Test
+    void testInterruptionIsReported() throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        // this task never ends, so the analysis never ends
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+
+        VirtualThreadProcessor processor = new VirtualThreadProcessor(newTask(0), executor);
+        processor.processFiles();
+        Thread.currentThread().interrupt();
+        processor.close();
+
+        assertTrue(Thread.interrupted(), "Interruption should be preserved");
+        Mockito.verify(reporter).error("Interrupted while waiting for the analysis, the remaining files were not analyzed");
+    }
+
+    private AnalysisTask newTask(int numFiles) {
+        List<TextFile> files = new ArrayList<>();
+        for (int i = 0; i < numFiles; i++) {
+            files.add(TextFile.forCharSeq("abc", FileId.fromPathLikeString("file" + i + ".dummy"),
+                                          DummyLanguageModule.getInstance().getDefaultVersion()));
+        }
+        return InternalApiBridge.createAnalysisTask(new RuleSets(Collections.emptyList()), files,
+                listener, 2, null, reporter, null);
+    }
+}
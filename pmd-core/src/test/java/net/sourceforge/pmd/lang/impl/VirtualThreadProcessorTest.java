@@ -0,0 +1,77 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.event.Level;
+
+import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.internal.SystemProps;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+
+class VirtualThreadProcessorTest extends AbstractPMDProcessorTest {
+
+    @BeforeEach
+    void enableVirtualThreads() {
+        assumeTrue(VirtualThreadProcessor.isSupported(), "Virtual threads are not supported by this JVM");
+        System.setProperty(SystemProps.PMD_VIRTUAL_THREADS, "");
+    }
+
+    @AfterEach
+    void disableVirtualThreads() {
+        System.clearProperty(SystemProps.PMD_VIRTUAL_THREADS);
+    }
+
+    @Override
+    protected int getThreads() {
+        return 2;
+    }
+
+    @Override
+    protected Class<? extends AbstractPMDProcessor> getExpectedImplementation() {
+        return VirtualThreadProcessor.class;
+    }
+
+    @Override
+    protected void verifyProcessorCreationLogged(int times) {
+        Mockito.verify(reporter, Mockito.times(times))
+               .log(Level.DEBUG, "Using virtual threads for analysis, with {0} files analysed in parallel", getThreads());
+    }
+
+    @Test
+    void errorsShouldBeThrown() {
+        Error error = assertThrows(Error.class, () -> {
+            try (PmdAnalysis pmd = createPmdAnalysis()) {
+                pmd.addRuleSet(RuleSet.forSingleRule(new RuleThatThrowsError()));
+                pmd.performAnalysis();
+            }
+        });
+        assertEquals("test error", error.getMessage());
+        Mockito.verify(reporter).error(Mockito.eq("Unknown error occurred while executing a PmdRunnable: {0}"),
+                Mockito.eq("java.lang.Error: test error"),
+                Mockito.any(Error.class));
+    }
+
+    @Test
+    void testRulesThreadSafety() {
+        MultiThreadProcessorTest.NotThreadSafeRule.count.set(0);
+        try (PmdAnalysis pmd = createPmdAnalysis()) {
+            pmd.addRuleSet(pmd.newRuleSetLoader().loadFromResource("rulesets/MultiThreadProcessorTest/basic.xml"));
+            pmd.performAnalysis();
+        }
+
+        assertEquals(2, MultiThreadProcessorTest.NotThreadSafeRule.count.get(), "Test rule has not been executed");
+        // if the violation is not reported, then the rule instances have been
+        // shared between the virtual threads
+        assertEquals(1, reportListener.violations.get(), "Missing violation");
+    }
+}
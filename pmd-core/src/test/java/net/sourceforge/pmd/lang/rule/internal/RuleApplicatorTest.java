@@ -0,0 +1,169 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.internal;
+
+import static net.sourceforge.pmd.PmdCoreTestUtils.setDummyLanguage;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.internal.SystemProps;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.RuleTargetSelector;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleContext;
+import net.sourceforge.pmd.reporting.RuleViolation;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+class RuleApplicatorTest {
+
+    @RegisterExtension
+    private final DummyParsingHelper helper = new DummyParsingHelper();
+
+    @AfterEach
+    void disableModes() {
+        System.clearProperty(SystemProps.PMD_FUSED_RULE_DISPATCH);
+        System.clearProperty(SystemProps.PMD_SHARED_XPATH_STEPS);
+    }
+
+    @Test
+    void testFusedModeReportsSameViolations() {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new EveryNodeRule("Rule0"));
+        rules.add(xpathRule("XPath1", "//dummyNode[@Image='b']"));
+        rules.add(new EveryNodeRule("ByName") {
+            @Override
+            protected @NonNull RuleTargetSelector buildTargetSelector() {
+                return RuleTargetSelector.forXPathNames(Collections.singleton("dummyNode"));
+            }
+        });
+        rules.add(new EveryNodeRule("TwoClasses") {
+            @Override
+            protected @NonNull RuleTargetSelector buildTargetSelector() {
+                // the root is visited twice
+                return RuleTargetSelector.forTypes(DummyNode.class, DummyRootNode.class);
+            }
+        });
+        rules.add(new EveryNodeRule("RootOnly") {
+            @Override
+            protected @NonNull RuleTargetSelector buildTargetSelector() {
+                return RuleTargetSelector.forRootOnly();
+            }
+        });
+        DummyRootNode root = helper.parse("(a)(b)(c(d)(e))");
+
+        List<String> sequential = applyAndDescribe(rules, root);
+
+        System.setProperty(SystemProps.PMD_FUSED_RULE_DISPATCH, "");
+        List<String> fused = applyAndDescribe(rules, root);
+
+        assertEquals(ruleOrder(sequential), ruleOrder(fused));
+        sequential.sort(null);
+        fused.sort(null);
+        assertEquals(sequential, fused);
+    }
+
+    @Test
+    void testFusedModeRethrowsErrors() {
+        System.setProperty(SystemProps.PMD_FUSED_RULE_DISPATCH, "");
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new EveryNodeRule("Rule0"));
+        rules.add(new EveryNodeRule("Rule1") {
+            @Override
+            public void apply(Node node, RuleContext ctx) {
+                throw new AssertionError("test error");
+            }
+        });
+        rules.add(new EveryNodeRule("Rule2"));
+
+        List<RuleViolation> violations = new ArrayList<>();
+        AssertionError error = assertThrows(AssertionError.class, () -> apply(rules, helper.parse("(a)(b)"), violations::add));
+
+        assertThat(error.getMessage(), startsWith("test error"));
+        // the traversal stops at the first node, only Rule0 has been applied to it
+        assertEquals(1, violations.size());
+        assertEquals("Rule0", violations.get(0).getRule().getName());
+    }
+
+    @Test
+    void testSharedXPathStepsModeReportsSameViolations() {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(xpathRule("XPath1", "//dummyNode/dummyNode[@Image = 'b']"));
+        rules.add(xpathRule("XPath2", "//dummyNode/dummyNode[@Image != 'b']"));
+        rules.add(new EveryNodeRule("Rule0"));
+        rules.add(xpathRule("XPath3", "//dummyNode/dummyNode/dummyNode"));
+        DummyRootNode root = helper.parse("(a(b)(c(b)(d)))(b(b))");
+
+        List<String> separate = applyAndDescribe(rules, root);
+
+        System.setProperty(SystemProps.PMD_SHARED_XPATH_STEPS, "");
+        assertEquals(separate, applyAndDescribe(rules, helper.parse("(a(b)(c(b)(d)))(b(b))")));
+    }
+
+    private static List<String> applyAndDescribe(List<Rule> rules, DummyRootNode root) {
+        Report report = Report.buildReport(listener -> apply(rules, root, listener));
+        return report.getViolations().stream()
+                     .map(v -> v.getRule().getName() + ":" + v.getBeginLine() + ":" + v.getBeginColumn())
+                     .collect(Collectors.toList());
+    }
+
+    private static List<String> ruleOrder(List<String> violations) {
+        return violations.stream().map(v -> v.substring(0, v.indexOf(':'))).distinct().collect(Collectors.toList());
+    }
+
+    private static void apply(List<Rule> rules, DummyRootNode root, FileAnalysisListener listener) {
+        RuleSets ruleSets = new RuleSets(RuleSet.create("Test", "desc", "file.xml",
+                                                        Collections.emptyList(), Collections.emptyList(), rules));
+        LanguageProcessorRegistry registry = LanguageProcessorRegistry.singleton(root.getAstInfo().getLanguageProcessor());
+        ruleSets.initializeRules(registry, PmdReporter.quiet());
+        ruleSets.apply(root, listener);
+    }
+
+    private static Rule xpathRule(String name, String xpath) {
+        XPathRule rule = setDummyLanguage(new XPathRule(XPathVersion.DEFAULT, xpath));
+        rule.setName(name);
+        rule.setMessage("message");
+        return rule;
+    }
+
+    private static class EveryNodeRule extends MockRule {
+
+        EveryNodeRule(String name) {
+            setName(name);
+            setMessage("message");
+        }
+
+        @Override
+        protected @NonNull RuleTargetSelector buildTargetSelector() {
+            return RuleTargetSelector.forTypes(DummyNode.class);
+        }
+
+        @Override
+        public void apply(Node node, RuleContext ctx) {
+            ctx.addViolation(node);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.internal;
+
+import static net.sourceforge.pmd.PmdCoreTestUtils.setDummyLanguage;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.FooRule;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.RuleSet;
+import net.sourceforge.pmd.lang.rule.StatelessRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
+import net.sourceforge.pmd.util.log.PmdReporter;
+
+class RuleSetsTest {
+
+    @Test
+    void testCopyForThreadSharesStatelessRules() throws Exception {
+        XPathRule xpathRule = setDummyLanguage(new XPathRule(XPathVersion.DEFAULT, "//dummyNode"));
+        xpathRule.setName("XPathRule");
+        RuleReference xpathRuleRef = new RuleReference(xpathRule, null);
+        FooRule fooRule = new FooRule();
+
+        RuleSets ruleSets = new RuleSets(RuleSet.create("Test", "desc", "file.xml",
+                                                        Collections.emptyList(), Collections.emptyList(),
+                                                        listOf(xpathRule, xpathRuleRef, fooRule)));
+
+        try (LanguageProcessorRegistry registry = LanguageProcessorRegistry.create(LanguageRegistry.PMD,
+                                                                                   Collections.emptyMap(),
+                                                                                   PmdReporter.quiet())) {
+            ruleSets.initializeRules(registry, PmdReporter.quiet());
+            RuleSets copy = ruleSets.copyForThread(registry, PmdReporter.quiet());
+
+            List<Rule> copiedRules = new ArrayList<>(copy.getAllRuleSets()[0].getRules());
+            assertEquals(3, copiedRules.size());
+            assertSame(xpathRule, copiedRules.get(0));
+            assertSame(xpathRuleRef, copiedRules.get(1));
+            assertNotSame(fooRule, copiedRules.get(2));
+            assertEquals(fooRule.getName(), copiedRules.get(2).getName());
+        }
+    }
+
+    @Test
+    void testCopyForThreadSharesRulesThatDeclareThemselvesStateless() throws Exception {
+        Rule statelessRule = new StatelessFooRule();
+        RuleSets ruleSets = new RuleSets(RuleSet.forSingleRule(statelessRule));
+
+        try (LanguageProcessorRegistry registry = LanguageProcessorRegistry.create(LanguageRegistry.PMD,
+                                                                                   Collections.emptyMap(),
+                                                                                   PmdReporter.quiet())) {
+            ruleSets.initializeRules(registry, PmdReporter.quiet());
+            RuleSets copy = ruleSets.copyForThread(registry, PmdReporter.quiet());
+
+            assertSame(statelessRule, copy.getAllRuleSets()[0].getRules().iterator().next());
+        }
+    }
+
+    @Test
+    void testCopyConstructorCopiesAllRules() {
+        XPathRule xpathRule = setDummyLanguage(new XPathRule(XPathVersion.DEFAULT, "//dummyNode"));
+        RuleSets ruleSets = new RuleSets(RuleSet.forSingleRule(xpathRule));
+
+        RuleSets copy = new RuleSets(ruleSets);
+
+        assertNotSame(xpathRule, copy.getAllRuleSets()[0].getRules().iterator().next());
+    }
+
+    public static class StatelessFooRule extends FooRule implements StatelessRule {
+    }
+}
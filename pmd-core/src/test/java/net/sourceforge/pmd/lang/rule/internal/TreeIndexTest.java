@@ -0,0 +1,77 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.internal;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static net.sourceforge.pmd.util.CollectionUtil.setOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import net.sourceforge.pmd.DummyParsingHelper;
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.util.IteratorUtil;
+
+class TreeIndexTest {
+
+    @RegisterExtension
+    private final DummyParsingHelper helper = new DummyParsingHelper();
+
+    @Test
+    void testNodesAreIndexedInDocumentOrder() {
+        TreeIndex index = new TreeIndex(setOf("dummyNode"), setOf(DummyNode.class, RootNode.class));
+        DummyRootNode root = helper.parse("(a(b))(c)");
+        index(index, root);
+
+        List<Node> byName = IteratorUtil.toList(index.getByName("dummyNode"));
+        assertEquals(listOf("a", "b", "c"), images(byName));
+
+        // the root node is a DummyNode too
+        List<Node> byClass = IteratorUtil.toList(index.getByClass(DummyNode.class));
+        assertEquals(4, byClass.size());
+        assertEquals(root, byClass.get(0));
+        assertEquals(listOf("a", "b", "c"), images(byClass.subList(1, 4)));
+
+        assertEquals(Collections.singletonList(root), IteratorUtil.toList(index.getByClass(RootNode.class)));
+        assertEquals(setOf(DummyNode.class, RootNode.class), index.getIndexedSupertypes(DummyRootNode.class));
+    }
+
+    @Test
+    void testResetForgetsPreviousTree() {
+        TreeIndex index = new TreeIndex(setOf("dummyNode"), setOf(DummyNode.class));
+        index(index, helper.parse("(a)(b)(c)"));
+        index(index, helper.parse("(d)"));
+
+        assertEquals(listOf("d"), images(IteratorUtil.toList(index.getByName("dummyNode"))));
+        assertEquals(2, IteratorUtil.toList(index.getByClass(DummyNode.class)).size());
+    }
+
+    @Test
+    void testNotIndexedNamesAndClasses() {
+        TreeIndex index = new TreeIndex(setOf("dummyNode"), setOf(RootNode.class));
+        index(index, helper.parse("(a)"));
+
+        assertFalse(index.getByName("other").hasNext());
+        assertFalse(index.getByClass(DummyNode.class).hasNext());
+    }
+
+    private static void index(TreeIndex index, Node root) {
+        index.reset();
+        root.descendantsOrSelf().forEach(index::indexNode);
+    }
+
+    private static List<String> images(List<Node> nodes) {
+        return nodes.stream().map(Node::getImage).collect(Collectors.toList());
+    }
+}
@@ -8,6 +8,7 @@ package net.sourceforge.pmd.lang.rule.xpath.internal;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
@@ -107,4 +108,23 @@ class ElementNodeTest {
         assertSame(elementComment, treeInfo.findWrapperFor(c1));
     }
 
+    @Test
+    void testFindWrapperForAllNodes() {
+        DummyRootNode root = helper.parse("(a(b)(c(d)))(e)");
+        AstTreeInfo treeInfo = new AstTreeInfo(root, Configuration.newConfiguration());
+
+        root.descendantsOrSelf().forEach(
+            node -> assertSame(node, treeInfo.findWrapperFor(node).getUnderlyingNode()));
+    }
+
+    @Test
+    void testFindWrapperForNodeOfAnotherTree() {
+        DummyRootNode root = helper.parse("(a)(b)");
+        DummyRootNode otherRoot = helper.parse("(c(d))");
+        AstTreeInfo treeInfo = new AstTreeInfo(root, Configuration.newConfiguration());
+        new AstTreeInfo(otherRoot, Configuration.newConfiguration());
+
+        // the node has an id, which is not that of a node of this tree
+        assertThrows(IllegalArgumentException.class, () -> treeInfo.findWrapperFor(otherRoot.getChild(0).getChild(0)));
+    }
 }
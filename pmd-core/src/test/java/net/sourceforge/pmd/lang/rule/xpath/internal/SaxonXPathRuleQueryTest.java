@@ -9,11 +9,15 @@ import static net.sourceforge.pmd.lang.ast.impl.DummyTreeUtil.node;
 import static net.sourceforge.pmd.lang.ast.impl.DummyTreeUtil.nodeB;
 import static net.sourceforge.pmd.lang.ast.impl.DummyTreeUtil.root;
 import static net.sourceforge.pmd.lang.ast.impl.DummyTreeUtil.tree;
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -400,6 +404,87 @@ class SaxonXPathRuleQueryTest {
         assertTrue(ruleChainVisits.contains("ForStatement"));
     }
 
+    @Test
+    void sharedPathStepIsSplitFromFilters() {
+        SaxonXPathRuleQuery query1 = createQuery("//dummyNode/foo/*/bar[@Test = 'false']");
+        SaxonXPathRuleQuery query2 = createQuery("//dummyNode/foo/*/bar[@Test = 'true']");
+        SaxonXPathRuleQuery.planSharedEvaluation(listOf(query1, query2));
+
+        Expression expr1 = query1.getExpressionsForLocalNameOrDefault("dummyNode").get(0);
+        SharedPathStep step1 = query1.getSharedStep(expr1);
+        SharedPathStep step2 = query2.getSharedStep(query2.getExpressionsForLocalNameOrDefault("dummyNode").get(0));
+        assertNotNull(step1);
+        assertNotNull(step2);
+        assertEquals(step1.getKey(), step2.getKey());
+        assertExpression("((self::node()/child::element(foo))/child::element())/child::element(bar)", step1.getNavigation());
+        assertExpression(".[(data(attribute::attribute(Test))) = false]", step1.getRemainder());
+        // the original expression is not modified
+        assertExpression("(((self::node()/child::element(foo))/child::element())/child::element(bar))[(data(attribute::attribute(Test))) = false]", expr1);
+        // the fallback expression is never shared
+        assertNull(query1.getSharedStep(query1.getFallbackExpr()));
+    }
+
+    @Test
+    void sharedPathStepIsSplitBeforeFilteredSteps() {
+        SaxonXPathRuleQuery query1 = createQuery("//dummyNode/foo[@Baz = 'a']/*/bar[@Test = 'false']");
+        SaxonXPathRuleQuery query2 = createQuery("//dummyNode/foo[@Baz = 'b']");
+        SaxonXPathRuleQuery.planSharedEvaluation(listOf(query1, query2));
+
+        SharedPathStep step1 = query1.getSharedStep(query1.getExpressionsForLocalNameOrDefault("dummyNode").get(0));
+        SharedPathStep step2 = query2.getSharedStep(query2.getExpressionsForLocalNameOrDefault("dummyNode").get(0));
+        assertNotNull(step1);
+        assertNotNull(step2);
+        assertEquals(step1.getKey(), step2.getKey());
+        assertExpression("(((.[(data(attribute::attribute(Baz))) = a])/child::element())/child::element(bar))[(data(attribute::attribute(Test))) = false]", step1.getRemainder());
+    }
+
+    @Test
+    void sharedPathStepNotUsedWithoutOtherQuery() {
+        SaxonXPathRuleQuery query1 = createQuery("//dummyNode/foo[@Baz = 'a']");
+        SaxonXPathRuleQuery query2 = createQuery("//dummyNode/bar[@Baz = 'a']");
+        SaxonXPathRuleQuery query3 = createQuery("//foo/bar[@Baz = 'a']");
+        SaxonXPathRuleQuery.planSharedEvaluation(listOf(query1, query2, query3));
+
+        for (SaxonXPathRuleQuery query : listOf(query1, query2, query3)) {
+            for (List<Expression> expressions : query.nodeNameToXPaths.values()) {
+                assertNull(query.getSharedStep(expressions.get(0)));
+            }
+        }
+    }
+
+    @Test
+    void sharedPathStepNotSplitWithPositionalFilter() {
+        for (String xpath : listOf("//dummyNode/foo[position() > 1]", "//dummyNode/foo[@Image = 'a'][last()]", "//dummyNode/foo[@Image = 'a'][1]")) {
+            SaxonXPathRuleQuery query = createQuery(xpath);
+            Expression expr = query.getExpressionsForLocalNameOrDefault("dummyNode").get(0);
+            assertNull(SharedPathStep.split(expr, query.staticContext), xpath);
+        }
+    }
+
+    @Test
+    void sharedPathStepsSelectSameNodes() {
+        DummyRootNode tree = helper.parse("(a(b)(c(b)(d(b))))(b(a(b)))");
+        List<String> xpaths = listOf("//dummyNode/dummyNode[@Image = 'b']",
+                                     "//dummyNode/dummyNode[@Image = 'a']/dummyNode",
+                                     "//dummyNode/dummyNode/dummyNode[@Image != 'b']",
+                                     "//dummyNode//dummyNode[@Image = 'b'] | //dummyNode/dummyNode[@Image = 'd']",
+                                     "//dummyNode//dummyNode[@Image = 'a']",
+                                     "//dummyNode//dummyNode[let $image := @Image return $image = 'b']",
+                                     "//dummyNode/dummyNode[some $child in dummyNode satisfies $child/@Image = 'b']");
+        List<SaxonXPathRuleQuery> shared = new ArrayList<>();
+        for (String xpath : xpaths) {
+            shared.add(createQuery(xpath));
+        }
+        SaxonXPathRuleQuery.planSharedEvaluation(shared);
+        assertNotNull(shared.get(0).getSharedStep(shared.get(0).getExpressionsForLocalNameOrDefault("dummyNode").get(0)));
+
+        for (int i = 0; i < xpaths.size(); i++) {
+            SaxonXPathRuleQuery notShared = createQuery(xpaths.get(i));
+            SaxonXPathRuleQuery query = shared.get(i);
+            tree.descendantsOrSelf().forEach(n -> assertEquals(notShared.evaluate(n), query.evaluate(n)));
+        }
+    }
+
     private static void assertExpression(String expected, Expression actual) {
         assertEquals(normalizeExprDump(expected),
                      normalizeExprDump(actual.toString()));
@@ -22,6 +22,7 @@ import org.junit.platform.suite.api.Suite;
     JsonRendererTest.class,
     TextColorRendererTest.class,
     SarifRendererTest.class,
+    SpoolingSarifRendererTest.class,
     SummaryHTMLRendererTest.class,
     TextPadRendererTest.class,
     TextRendererTest.class,
@@ -0,0 +1,91 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.renderers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.reporting.Report;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Checks that the spooling renderer produces the same log as {@link SarifRenderer}.
+ */
+class SpoolingSarifRendererTest extends AbstractRendererTest {
+
+    private final SarifRendererTest sarifRendererTest = new SarifRendererTest();
+
+    @Override
+    Renderer getRenderer() {
+        return new SpoolingSarifRenderer();
+    }
+
+    @Override
+    String getExpected() {
+        return sarifRendererTest.getExpected();
+    }
+
+    @Override
+    String getExpectedEmpty() {
+        return sarifRendererTest.getExpectedEmpty();
+    }
+
+    @Override
+    String getExpectedMultiple() {
+        return sarifRendererTest.getExpectedMultiple();
+    }
+
+    @Override
+    String getExpectedError(Report.ProcessingError error) {
+        return sarifRendererTest.getExpectedError(error);
+    }
+
+    @Override
+    String getExpectedError(Report.ConfigurationError error) {
+        return sarifRendererTest.getExpectedError(error);
+    }
+
+    @Override
+    String getExpectedErrorWithoutMessage(Report.ProcessingError error) {
+        return sarifRendererTest.getExpectedErrorWithoutMessage(error);
+    }
+
+    @Override
+    String filter(String expected) {
+        return sarifRendererTest.filter(expected);
+    }
+
+    @Test
+    void testRulesAreWrittenBeforeResults() throws Exception {
+        Rule fooRule = createFooRule();
+        String json = renderReport(getRenderer(), it -> it.onRuleViolation(newRuleViolation(fooRule, createLocation(1, 1, 1, 1), "message")));
+
+        int rules = json.indexOf("\"rules\"");
+        assertTrue(rules >= 0 && rules < json.indexOf("\"results\""), "Rules should come before results");
+    }
+
+    @Test
+    void testRuleIsDescribedOnce() throws Exception {
+        Rule fooRule = createFooRule();
+        String json = renderReport(getRenderer(), it -> {
+            it.onRuleViolation(newRuleViolation(fooRule, createLocation(1, 1, 1, 1), "first"));
+            it.onRuleViolation(newRuleViolation(fooRule, createLocation(2, 1, 2, 1), "second"));
+        });
+
+        JsonObject run = JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("runs").get(0).getAsJsonObject();
+        JsonArray rules = run.getAsJsonObject("tool").getAsJsonObject("driver").getAsJsonArray("rules");
+        assertEquals(1, rules.size());
+        assertEquals("first", rules.get(0).getAsJsonObject().getAsJsonObject("shortDescription").get("text").getAsString());
+        JsonArray results = run.getAsJsonArray("results");
+        assertEquals(2, results.size());
+        assertEquals(0, results.get(1).getAsJsonObject().get("ruleIndex").getAsInt());
+    }
+}
@@ -15,12 +15,15 @@ import java.util.List;
 
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
 import net.sourceforge.pmd.FooRule;
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.Rule;
 import net.sourceforge.pmd.lang.rule.RuleSet;
 import net.sourceforge.pmd.renderers.AbstractIncrementingRenderer;
@@ -70,6 +73,53 @@ class DeterministicOutputListenerWrapperTest {
 
     }
 
+    @Test
+    void testCollectedFilesAreOutputInCollectionOrder() throws Exception {
+        List<FileId> output = new ArrayList<>();
+        GlobalAnalysisListener spy = new GlobalAnalysisListener() {
+            @Override
+            public FileAnalysisListener startFileAnalysis(TextFile file) {
+                output.add(file.getFileId());
+                return FileAnalysisListener.noop();
+            }
+
+            @Override
+            public void close() {
+                // nothing to do
+            }
+        };
+
+        List<FileId> fileIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            fileIds.add(FileId.fromPathLikeString("file" + i + ".dummy"));
+        }
+
+        DeterministicOutputListenerWrapper wrapper = new DeterministicOutputListenerWrapper(spy);
+        try (ListenerInitializer ignored = wrapper.initializer()) {
+            // the files are not declared
+        }
+        for (FileId fileId : fileIds) {
+            wrapper.fileCollected(fileId);
+        }
+
+        analyze(wrapper, fileIds.get(1));
+        assertEquals(Collections.emptyList(), output);
+        analyze(wrapper, fileIds.get(0));
+        assertEquals(fileIds.subList(0, 2), output);
+        analyze(wrapper, fileIds.get(3));
+        assertEquals(fileIds.subList(0, 2), output);
+        analyze(wrapper, fileIds.get(2));
+        assertEquals(fileIds, output);
+
+        wrapper.close();
+        assertEquals(fileIds, output);
+    }
+
+    private static void analyze(GlobalAnalysisListener listener, FileId fileId) throws Exception {
+        TextFile file = TextFile.forCharSeq("abc", fileId, DummyLanguageModule.getInstance().getDefaultVersion());
+        listener.startFileAnalysis(file).close();
+    }
+
     static class MyRuleReportingAlways extends FooRule {
 
         /** This can be used to check that the order is random. */
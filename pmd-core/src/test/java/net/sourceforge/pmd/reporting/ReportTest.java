@@ -7,10 +7,17 @@ package net.sourceforge.pmd.reporting;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -100,6 +107,49 @@ class ReportTest {
 
         Report union = report1.union(report2);
         assertEquals(2, union.getViolations().size());
+        // sorted, although the violation of report2 was added last
+        assertEquals(2, union.getViolations().get(1).getBeginLine());
+        // not copied again if no violation was added
+        assertSame(union.getViolations(), union.getViolations());
+    }
+
+    @Test
+    void testGlobalReportBuilderFromManyThreads() throws Exception {
+        Rule rule = new MockRule("name", "desc", "msg", "rulesetname");
+        LanguageVersion dummyVersion = DummyLanguageModule.getInstance().getDefaultVersion();
+        Report.GlobalReportBuilderListener builder = new Report.GlobalReportBuilderListener();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int f = 0; f < 20; f++) {
+                String filename = "file" + f;
+                futures.add(executor.submit(() -> {
+                    TextFile file = TextFile.forCharSeq("dummyText", FileId.fromPathLikeString(filename), dummyVersion);
+                    try (FileAnalysisListener listener = builder.startFileAnalysis(file)) {
+                        for (int line = 50; line > 0; line--) {
+                            listener.onRuleViolation(violation(rule, getNode(line, 1, filename)));
+                        }
+                        listener.onError(new Report.ProcessingError(new RuntimeException(), file.getFileId()));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        builder.close();
+
+        Report report = builder.getResult();
+        assertEquals(20, report.getProcessingErrors().size());
+        List<RuleViolation> violations = report.getViolations();
+        assertEquals(20 * 50, violations.size());
+        List<RuleViolation> sorted = new ArrayList<>(violations);
+        sorted.sort(RuleViolation.DEFAULT_COMPARATOR);
+        assertEquals(sorted, violations);
     }
 
     public static @NonNull RuleViolation violation(Rule rule, FileLocation loc2) {
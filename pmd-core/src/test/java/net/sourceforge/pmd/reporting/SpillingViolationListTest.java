@@ -0,0 +1,149 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.reporting;
+
+import static net.sourceforge.pmd.reporting.ReportTest.violation;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.document.TextRegion;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
+import net.sourceforge.pmd.renderers.SummaryHTMLRenderer;
+
+class SpillingViolationListTest {
+
+    @Test
+    void testViolationsAreReadBackSorted() throws Exception {
+        Rule rule1 = new MockRule("rule1", "desc", "msg", "rulesetname");
+        Rule rule2 = new MockRule("rule2", "desc", "msg", "rulesetname");
+        List<RuleViolation> expected = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            FileLocation location = FileLocation.range(FileId.fromPathLikeString("file" + random.nextInt(5)),
+                                                       TextRange2d.range2d(random.nextInt(50) + 1, 1, 60, random.nextInt(10) + 1));
+            expected.add(violation(random.nextBoolean() ? rule1 : rule2, location, "message " + random.nextInt(3)));
+        }
+
+        try (SpillingViolationList list = new SpillingViolationList(1000)) {
+            expected.forEach(list::add);
+            assertEquals(expected.size(), list.size());
+
+            expected.sort(RuleViolation.DEFAULT_COMPARATOR);
+            for (int i = 0; i < expected.size(); i++) {
+                RuleViolation violation = list.get(i);
+                assertEquals(0, RuleViolation.DEFAULT_COMPARATOR.compare(expected.get(i), violation), "at " + i);
+                assertSame(expected.get(i).getRule(), violation.getRule());
+            }
+        }
+    }
+
+    @Test
+    void testViolationsCanBeAddedAfterReading() throws Exception {
+        Rule rule = new MockRule("rule", "desc", "msg", "rulesetname");
+        try (SpillingViolationList list = new SpillingViolationList(2)) {
+            for (int line = 5; line > 0; line--) {
+                list.add(violation(rule, FileLocation.caret(FileId.fromPathLikeString("file"), line, 1)));
+            }
+            assertEquals(1, list.get(0).getBeginLine());
+
+            list.add(violation(rule, FileLocation.caret(FileId.fromPathLikeString("a"), 3, 1)));
+            assertEquals(6, list.size());
+            assertEquals("a", list.get(0).getFileId().getOriginalPath());
+            assertEquals(5, list.get(5).getBeginLine());
+        }
+    }
+
+    @Test
+    void testRecordsLargerThanTheMergeBufferAreRead() throws Exception {
+        Rule rule = new MockRule("rule", "desc", "msg", "rulesetname");
+        StringBuilder longMessage = new StringBuilder();
+        while (longMessage.length() < 20_000) {
+            longMessage.append("a long message ");
+        }
+        try (SpillingViolationList list = new SpillingViolationList(2)) {
+            for (int line = 6; line > 0; line--) {
+                String message = line % 2 == 0 ? longMessage.toString() : "short";
+                list.add(violation(rule, FileLocation.caret(FileId.fromPathLikeString("file"), line, 1), message));
+            }
+            for (int i = 0; i < list.size(); i++) {
+                RuleViolation violation = list.get(i);
+                assertEquals(i + 1, violation.getBeginLine());
+                assertEquals(i % 2 == 0 ? "short" : longMessage.toString(), violation.getDescription());
+            }
+        }
+    }
+
+    @Test
+    void testAdditionalInfoIsKept() throws Exception {
+        Rule rule = new MockRule("rule", "desc", "msg", "rulesetname");
+        Map<String, String> info = Collections.singletonMap(RuleViolation.VARIABLE_NAME, "föö");
+        try (SpillingViolationList list = new SpillingViolationList(1)) {
+            list.add(new ParametricRuleViolation(rule, FileLocation.caret(FileId.fromPathLikeString("file"), 1, 1), "msg", info));
+            assertEquals(info, list.get(0).getAdditionalInfo());
+        }
+    }
+
+    @Test
+    void testRegionIsKept() throws Exception {
+        Rule rule = new MockRule("rule", "desc", "msg", "rulesetname");
+        TextDocument doc = TextDocument.readOnlyString("class Foo {\n  int x;\n}", DummyLanguageModule.getInstance().getDefaultVersion());
+        FileLocation location = doc.toLocation(TextRegion.fromOffsetLength(14, 6));
+        try (SpillingViolationList list = new SpillingViolationList(1)) {
+            list.add(violation(rule, location));
+            assertEquals(location.getRegionInFile(), list.get(0).getLocation().getRegionInFile());
+            assertEquals(location.getStartLine(), list.get(0).getBeginLine());
+        }
+    }
+
+    @Test
+    void testSpillsWhenTheSizeOfTheViolationsExceedsTheBudget() throws Exception {
+        Rule rule = new MockRule("rule", "desc", "msg", "rulesetname");
+        FileLocation location = FileLocation.caret(FileId.fromPathLikeString("file"), 1, 1);
+        RuleViolation small = violation(rule, location, "short");
+        RuleViolation large = violation(rule, location, new String(new char[10_000]));
+        assertTrue(SpillingViolationList.estimateSize(large) > 10 * SpillingViolationList.estimateSize(small));
+
+        try (SpillingViolationList list = new SpillingViolationList(10 * SpillingViolationList.estimateSize(small))) {
+            for (int i = 0; i < 9; i++) {
+                list.add(small);
+            }
+            assertFalse(list.hasSpilled());
+            list.add(large);
+            assertTrue(list.hasSpilled());
+        }
+    }
+
+    @Test
+    void testAccumulatingRendererWithSpilling() {
+        SummaryHTMLRenderer renderer = new SummaryHTMLRenderer();
+        renderer.setProperty(AbstractAccumulatingRenderer.MAX_VIOLATIONS_MEMORY_KB, 1);
+        String result = ReportTest.render(renderer, r -> {
+            Rule rule = new MockRule("name", "desc", "msg", "rulesetname");
+            r.onRuleViolation(violation(rule, FileLocation.caret(FileId.fromPathLikeString("foo"), 10, 5)));
+            r.onRuleViolation(violation(rule, FileLocation.caret(FileId.fromPathLikeString("bar"), 10, 5)));
+        });
+        assertThat(result, containsString("bar"));
+        assertThat(result, containsString("foo"));
+    }
+}
@@ -126,6 +126,24 @@ class AuxClasspathLoaderTest {
         }
     }
 
+    @Test
+    void findPlatformResourceIgnoresJars() throws Exception {
+        Path jrtfsPath = Paths.get(System.getProperty("java.home")).resolve("lib/jrt-fs.jar");
+        assumeTrue(Files.isRegularFile(jrtfsPath), "test needs jrt-fs.jar");
+        Path lib1 = createLib1();
+
+        try (AuxClasspathLoader loader = new AuxClasspathLoader(lib1 + File.pathSeparator + jrtfsPath)) {
+            assertNotNull(loader.findResource("my/package/MyClass.class"));
+            assertNull(loader.findPlatformResource("my/package/MyClass.class"));
+            try (InputStream stream = loader.findPlatformResource("java/lang/Object.class")) {
+                assertNotNull(stream);
+            }
+            try (InputStream stream = loader.findPlatformResource("java.base/module-info.class")) {
+                assertNotNull(stream);
+            }
+        }
+    }
+
     @Test
     void findModuleInfoFromJar() throws IOException {
         try (AuxClasspathLoader loader = AuxClasspathLoader.create(toRawClasspath(getRuntimeClasspath()))) {
@@ -10,6 +10,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.cache.internal.AnalysisCache;
 import net.sourceforge.pmd.lang.ast.NodeStream;
 import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
@@ -18,6 +19,7 @@ import net.sourceforge.pmd.lang.java.ast.JavaNode;
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
 import net.sourceforge.pmd.lang.java.symbols.JTypeDeclSymbol;
 import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
+import net.sourceforge.pmd.lang.java.symbols.internal.DependencyRecordingResolver;
 import net.sourceforge.pmd.lang.java.symbols.internal.UnresolvedClassStore;
 import net.sourceforge.pmd.lang.java.symbols.internal.ast.SymbolResolutionPass;
 import net.sourceforge.pmd.lang.java.symbols.table.internal.ReferenceCtx;
@@ -52,7 +54,14 @@ public final class JavaAstProcessor {
                              TypeInferenceLogger typeInfLogger,
                              ASTCompilationUnit acu) {
 
-        this.symResolver = globalProc.getTypeSystem().bootstrapResolver();
+        SymbolResolver classpathResolver = globalProc.getTypeSystem().bootstrapResolver();
+        if (globalProc.recordsTypeDependencies()) {
+            // lets the analysis cache know which classes this file depends on
+            DependencyRecordingResolver recorder = new DependencyRecordingResolver(classpathResolver);
+            acu.getAstInfo().getUserMap().set(AnalysisCache.TYPE_DEPENDENCIES, recorder::getDependencies);
+            classpathResolver = recorder;
+        }
+        this.symResolver = classpathResolver;
         this.globalProc = globalProc;
         this.logger = logger;
         this.typeInferenceLogger = typeInfLogger;
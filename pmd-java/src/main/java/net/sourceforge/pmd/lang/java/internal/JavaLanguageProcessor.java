@@ -26,7 +26,9 @@ import net.sourceforge.pmd.lang.java.rule.xpath.internal.GetModifiersFun;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.MatchesSignatureFunction;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.MetricFunction;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.NodeIsFunction;
+import net.sourceforge.pmd.lang.java.types.InternalApiBridge;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
+import net.sourceforge.pmd.lang.java.types.TypeSystemCache;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger.SimpleLogger;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger.VerboseLogger;
@@ -34,7 +36,6 @@ import net.sourceforge.pmd.lang.metrics.LanguageMetricsProvider;
 import net.sourceforge.pmd.lang.rule.xpath.impl.XPathHandler;
 import net.sourceforge.pmd.reporting.ViolationDecorator;
 import net.sourceforge.pmd.reporting.ViolationSuppressor;
-import net.sourceforge.pmd.util.AuxClasspathLoader;
 import net.sourceforge.pmd.util.designerbindings.DesignerBindings;
 import net.sourceforge.pmd.util.internal.AuxClasspathUtil;
 
@@ -51,7 +52,8 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
     private final JavaParser parserWithoutProcessing;
     private final boolean firstClassLombok;
     private TypeSystem typeSystem;
-    private AuxClasspathLoader auxClasspathLoader;
+    private TypeSystemCache.Lease typeSystemLease;
+    private volatile boolean recordTypeDependencies;
 
     public JavaLanguageProcessor(JavaLanguageProperties properties) {
         super(properties);
@@ -82,8 +84,10 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
                 auxClasspath += File.pathSeparator + platformClasspath;
             }
             LOG.debug("Using auxClasspath as analysis classloader: {}", auxClasspath);
-            this.auxClasspathLoader = AuxClasspathLoader.create(auxClasspath);
-            this.typeSystem = TypeSystem.usingClasspath(name -> auxClasspathLoader.findResource(name));
+            String classStubIndexDir = properties.getProperty(JavaLanguageProperties.INTERNAL_CLASS_STUB_INDEX);
+            this.typeSystemLease = InternalApiBridge.acquireTypeSystem(
+                auxClasspath, classStubIndexDir.isEmpty() ? null : Paths.get(classStubIndexDir));
+            this.typeSystem = typeSystemLease.getTypeSystem();
         }
     }
 
@@ -109,6 +113,20 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
         return firstClassLombok;
     }
 
+    @Override
+    public @NonNull AutoCloseable launchAnalysis(@NonNull AnalysisTask task) {
+        recordTypeDependencies = task.getAnalysisCache().tracksDependencies();
+        return super.launchAnalysis(task);
+    }
+
+    /**
+     * Whether the classes each file depends on should be recorded for
+     * the analysis cache. This is only the case if the cache uses them.
+     */
+    boolean recordsTypeDependencies() {
+        return recordTypeDependencies;
+    }
+
     TypeInferenceLogger newTypeInfLogger() {
         InferenceLoggingVerbosity verbosity = getProperties().getProperty(JavaLanguageProperties.INTERNAL_INFERENCE_LOGGING_VERBOSITY);
         if (verbosity == InferenceLoggingVerbosity.VERBOSE) {
@@ -165,8 +183,8 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
     @Override
     public void close() throws Exception {
         this.typeSystem.logStats();
-        if (this.auxClasspathLoader != null) {
-            this.auxClasspathLoader.close();
+        if (this.typeSystemLease != null) {
+            this.typeSystemLease.close();
         }
         super.close();
     }
@@ -48,11 +48,22 @@ public class JavaLanguageProperties extends JvmLanguagePropertyBundle {
                        .defaultValue(true)
                        .build();
 
+    /**
+     * @since 7.27.0
+     */
+    static final PropertyDescriptor<String> INTERNAL_CLASS_STUB_INDEX =
+        PropertyFactory.stringProperty("xClassStubIndex")
+                       .desc("Directory where the parsed class files of the jars on the auxclasspath are stored, "
+                                 + "to be reused by later runs if the jars have not changed. Disabled if empty.")
+                       .defaultValue("")
+                       .build();
+
     public JavaLanguageProperties() {
         super(JavaLanguageModule.getInstance());
         definePropertyDescriptor(INTERNAL_INFERENCE_LOGGING_VERBOSITY);
         definePropertyDescriptor(INTERNAL_DO_STRICT_TYPERES);
         definePropertyDescriptor(FIRST_CLASS_LOMBOK);
+        definePropertyDescriptor(INTERNAL_CLASS_STUB_INDEX);
         definePropertyDescriptor(CpdLanguageProperties.CPD_IGNORE_METADATA);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_IDENTIFIERS);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_LITERALS);
@@ -0,0 +1,67 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.symbols.JModuleSymbol;
+import net.sourceforge.pmd.lang.java.symbols.JPackageSymbol;
+import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
+
+/**
+ * A symbol resolver that records the classes looked up by the analysis
+ * of a single file. This is used by the analysis cache to find out whether
+ * the results of a file are still valid.
+ *
+ * <p>Only the classes looked up through this resolver are recorded, which
+ * are the classes named in the file. The classes those depend on, eg their
+ * supertypes or the types of their members, are found by the analysis cache
+ * from the class files. The recorded set therefore doesn't depend on which
+ * classes were already loaded for other files. Failed lookups are recorded
+ * too, as the analysis may change if the class becomes available.
+ */
+public final class DependencyRecordingResolver implements SymbolResolver {
+
+    private final SymbolResolver delegate;
+    private final Set<String> queried = ConcurrentHashMap.newKeySet();
+
+    public DependencyRecordingResolver(SymbolResolver delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public @Nullable JClassSymbol resolveClassFromBinaryName(@NonNull String binaryName) {
+        queried.add(binaryName);
+        return delegate.resolveClassFromBinaryName(binaryName);
+    }
+
+    @Override
+    public @Nullable JModuleSymbol resolveModule(@NonNull String moduleName) {
+        return delegate.resolveModule(moduleName);
+    }
+
+    @Override
+    public @Nullable JPackageSymbol resolvePackage(@NonNull String packageName) {
+        return delegate.resolvePackage(packageName);
+    }
+
+    @Override
+    public void logStats() {
+        delegate.logStats();
+    }
+
+    /**
+     * Returns the binary names of the classes that were looked up.
+     */
+    public Set<String> getDependencies() {
+        return new HashSet<>(queried);
+    }
+}
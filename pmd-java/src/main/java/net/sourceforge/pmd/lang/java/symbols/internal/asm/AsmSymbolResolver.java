@@ -59,12 +59,12 @@ public class AsmSymbolResolver implements SymbolResolver {
         String internalName = getInternalName(binaryName);
 
         ClassStub found = knownStubs.computeIfAbsent(internalName, iname -> {
-            @Nullable InputStream inputStream = getStreamOfInternalName(iname);
-            if (inputStream == null) {
+            @Nullable Loader loader = getLoaderOfInternalName(iname, binaryName);
+            if (loader == null) {
                 return failed;
             }
 
-            return new ClassStub(this, iname, new StreamLoader(binaryName, inputStream), ClassStub.UNKNOWN_ARITY);
+            return new ClassStub(this, iname, loader, ClassStub.UNKNOWN_ARITY);
         });
 
         if (!found.hasCanonicalName()) {
@@ -119,6 +119,15 @@ public class AsmSymbolResolver implements SymbolResolver {
         return classLoader.findResource(internalName + ".class");
     }
 
+    private @Nullable Loader getLoaderOfInternalName(String internalName, String displayName) {
+        if (classLoader instanceof ClassStubIndex) {
+            // the index may have recorded the class already
+            return ((ClassStubIndex) classLoader).findClass(internalName + ".class");
+        }
+        @Nullable InputStream inputStream = getStreamOfInternalName(internalName);
+        return inputStream == null ? null : new StreamLoader(displayName, inputStream);
+    }
+
     /*
        These methods return an unresolved symbol if the url is not found.
      */
@@ -136,12 +145,20 @@ public class AsmSymbolResolver implements SymbolResolver {
             if (prev != failed && prev != null) {
                 return prev;
             }
-            @Nullable InputStream inputStream = getStreamOfInternalName(iname);
-            Loader loader = inputStream == null ? FailedLoader.INSTANCE : new StreamLoader(internalName, inputStream);
-            return new ClassStub(this, iname, loader, observedArity);
+            @Nullable Loader loader = getLoaderOfInternalName(iname, iname);
+            return new ClassStub(this, iname, loader == null ? FailedLoader.INSTANCE : loader, observedArity);
         });
     }
 
+    /**
+     * Returns the number of distinct classes that were queried, including
+     * the ones that were not found. This is an estimate of the memory
+     * held by this resolver.
+     */
+    public int getKnownStubCount() {
+        return knownStubs.size();
+    }
+
     @Override
     public void logStats() {
         int numParsed = 0;
@@ -0,0 +1,471 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Adler32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.cache.internal.ClasspathFingerprinter;
+import net.sourceforge.pmd.internal.util.IOUtil;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.Loader.StreamLoader;
+import net.sourceforge.pmd.util.AuxClasspathLoader;
+
+/**
+ * A classpath that keeps a persistent index of the jars of the auxclasspath
+ * in a directory, which is reused by later runs. For each jar, the index
+ * contains the names of its class files, and a {@linkplain ClassStubRecorder record}
+ * of each class that has been parsed in an earlier run. The index of a jar
+ * is keyed by the {@linkplain ClasspathFingerprinter fingerprint} of the
+ * jar, so it is rebuilt if the jar changes.
+ *
+ * <p>Recorded classes are loaded without parsing the class file, and
+ * without reading the jar. Directories of the auxclasspath are not indexed.
+ * Platform classes and module descriptors are found by the {@link AuxClasspathLoader}.
+ * The records of newly parsed classes are written when this classpath
+ * is closed. Writing the index of a jar deletes the indexes of the same
+ * jar name with another fingerprint, so that the directory does not grow
+ * with every version of a jar.
+ *
+ * @since 7.27.0
+ */
+public final class ClassStubIndex implements Classpath, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassStubIndex.class);
+
+    private static final int MAGIC = 0x504d4453; // "PMDS"
+    private static final int FORMAT_VERSION = 1;
+    private static final String INDEX_EXTENSION = ".stubs";
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String MODULE_INFO_SUFFIX = "/module-info.class";
+
+    private final Path indexDirectory;
+    private final List<ClasspathEntry> entries;
+    private final AuxClasspathLoader auxClasspathLoader;
+
+    private ClassStubIndex(Path indexDirectory, List<ClasspathEntry> entries, AuxClasspathLoader auxClasspathLoader) {
+        this.indexDirectory = indexDirectory;
+        this.entries = entries;
+        this.auxClasspathLoader = auxClasspathLoader;
+    }
+
+    /**
+     * Creates a new index. The index of each jar is only read when a
+     * resource is first searched in it.
+     *
+     * @param indexDirectory     Directory where the index is stored. It is created if needed.
+     * @param auxClasspath       Entries of the auxclasspath, in order
+     * @param auxClasspathLoader Loader for the same auxclasspath, used for
+     *                           platform classes and modules. It is not closed
+     *                           by the index.
+     */
+    public static ClassStubIndex create(Path indexDirectory, List<Path> auxClasspath, AuxClasspathLoader auxClasspathLoader) {
+        List<ClasspathEntry> entries = new ArrayList<>();
+        Path jrtFsJar = Paths.get("lib", "jrt-fs.jar");
+        for (Path path : auxClasspath) {
+            if (Files.isDirectory(path)) {
+                entries.add(new DirectoryEntry(path));
+            } else if (Files.isRegularFile(path) && !path.toAbsolutePath().endsWith(jrtFsJar)) {
+                // the jrt-fs.jar is handled by the AuxClasspathLoader
+                entries.add(new IndexedJar(path, indexDirectory));
+            }
+        }
+        return new ClassStubIndex(indexDirectory, entries, auxClasspathLoader);
+    }
+
+    @Override
+    public @Nullable InputStream findResource(String resourcePath) {
+        if (resourcePath.endsWith(MODULE_INFO_SUFFIX)) {
+            // module descriptors are searched by module name
+            return auxClasspathLoader.findResource(resourcePath);
+        }
+        try {
+            for (ClasspathEntry entry : entries) {
+                InputStream stream = entry.findResource(resourcePath);
+                if (stream != null) {
+                    return stream;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return auxClasspathLoader.findPlatformResource(resourcePath);
+    }
+
+    /**
+     * Returns a loader for the class file with the given path, or null
+     * if it is not found. If the class has been recorded, the loader
+     * replays the record, otherwise it records the class when it is parsed.
+     */
+    @Nullable Loader findClass(String resourcePath) {
+        try {
+            for (ClasspathEntry entry : entries) {
+                Loader loader = entry.findClass(resourcePath);
+                if (loader != null) {
+                    return loader;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        InputStream stream = auxClasspathLoader.findPlatformResource(resourcePath);
+        return stream == null ? null : new StreamLoader(resourcePath, stream);
+    }
+
+    /**
+     * Writes the index of the jars in which new classes were parsed,
+     * and closes the jars. Failures to write the index are logged.
+     */
+    @Override
+    public void close() throws IOException {
+        Exception failure = IOUtil.closeAll(entries);
+        deleteOutdatedIndexes();
+        if (failure != null) {
+            throw new IOException("Could not close the class stub index", failure);
+        }
+    }
+
+    /**
+     * Deletes the index files of the jars whose index was written, that
+     * were written for another fingerprint. The index files used by this
+     * classpath are kept, in case several of its jars have the same name.
+     */
+    private void deleteOutdatedIndexes() {
+        Set<String> writtenJars = new HashSet<>();
+        Set<Path> usedIndexes = new HashSet<>();
+        for (ClasspathEntry entry : entries) {
+            if (entry instanceof IndexedJar) {
+                IndexedJar indexedJar = (IndexedJar) entry;
+                if (indexedJar.indexFile != null) {
+                    usedIndexes.add(indexedJar.indexFile.getFileName());
+                }
+                if (indexedJar.indexWritten) {
+                    writtenJars.add(indexedJar.jar.getFileName().toString());
+                }
+            }
+        }
+        if (writtenJars.isEmpty()) {
+            return;
+        }
+        try (DirectoryStream<Path> indexFiles = Files.newDirectoryStream(indexDirectory, "*" + INDEX_EXTENSION)) {
+            for (Path indexFile : indexFiles) {
+                if (!usedIndexes.contains(indexFile.getFileName()) && writtenJars.contains(jarNameOf(indexFile))) {
+                    try {
+                        Files.deleteIfExists(indexFile);
+                        LOG.debug("Deleted outdated class stub index {}", indexFile);
+                    } catch (IOException e) {
+                        LOG.debug("Could not delete outdated class stub index {}", indexFile, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not list the class stub indexes in {}", indexDirectory, e);
+        }
+    }
+
+    /**
+     * Returns the name of the jar for which the given index file was
+     * written, or null if the name is not of the form {@code <jar>-<fingerprint>.stubs}.
+     */
+    private static @Nullable String jarNameOf(Path indexFile) {
+        String fileName = indexFile.getFileName().toString();
+        String baseName = fileName.substring(0, fileName.length() - INDEX_EXTENSION.length());
+        int dash = baseName.lastIndexOf('-');
+        if (dash <= 0 || dash == baseName.length() - 1) {
+            return null;
+        }
+        for (int i = dash + 1; i < baseName.length(); i++) {
+            if (Character.digit(baseName.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        return baseName.substring(0, dash);
+    }
+
+    private interface ClasspathEntry extends AutoCloseable {
+
+        @Nullable InputStream findResource(String resourcePath) throws IOException;
+
+        @Nullable Loader findClass(String resourcePath) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final class DirectoryEntry implements ClasspathEntry {
+
+        private final Path directory;
+
+        DirectoryEntry(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public @Nullable InputStream findResource(String resourcePath) throws IOException {
+            Path file = directory.resolve(resourcePath);
+            return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+        }
+
+        @Override
+        public @Nullable Loader findClass(String resourcePath) throws IOException {
+            InputStream stream = findResource(resourcePath);
+            return stream == null ? null : new StreamLoader(resourcePath, stream);
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+
+    private static final class IndexedJar implements ClasspathEntry {
+
+        private final Path jar;
+        private final Path indexDirectory;
+
+        // these are initialized on first use, by loadIndex
+        private volatile Set<String> classNames;
+        private Path indexFile;
+        private long fingerprint;
+
+        private final ConcurrentMap<String, byte[]> records = new ConcurrentHashMap<>();
+        private volatile boolean dirty;
+        private boolean indexWritten;
+        private ZipFile zipFile;
+
+        IndexedJar(Path jar, Path indexDirectory) {
+            this.jar = jar;
+            this.indexDirectory = indexDirectory;
+        }
+
+        @Override
+        public @Nullable InputStream findResource(String resourcePath) throws IOException {
+            if (resourcePath.endsWith(CLASS_EXTENSION) && !getClassNames().contains(resourcePath)) {
+                return null;
+            }
+            return openResource(resourcePath);
+        }
+
+        @Override
+        public @Nullable Loader findClass(String resourcePath) throws IOException {
+            return getClassNames().contains(resourcePath) ? new IndexedLoader(this, resourcePath) : null;
+        }
+
+        private Set<String> getClassNames() throws IOException {
+            Set<String> names = classNames;
+            if (names == null) {
+                synchronized (this) {
+                    names = classNames;
+                    if (names == null) {
+                        names = loadIndex();
+                        classNames = names;
+                    }
+                }
+            }
+            return names;
+        }
+
+        private synchronized @Nullable InputStream openResource(String resourcePath) throws IOException {
+            if (zipFile == null) {
+                zipFile = new ZipFile(jar.toFile());
+            }
+            ZipEntry entry = zipFile.getEntry(resourcePath);
+            return entry == null ? null : zipFile.getInputStream(entry);
+        }
+
+        void addRecord(String resourcePath, byte[] record) {
+            records.put(resourcePath, record);
+            dirty = true;
+        }
+
+        byte @Nullable [] getRecord(String resourcePath) {
+            return records.get(resourcePath);
+        }
+
+        private Set<String> loadIndex() throws IOException {
+            fingerprint = new ClasspathFingerprinter().fingerprint(Collections.singletonList(jar));
+            indexFile = indexDirectory.resolve(jar.getFileName() + "-" + Long.toHexString(fingerprint) + INDEX_EXTENSION);
+            if (Files.isRegularFile(indexFile)) {
+                try {
+                    Set<String> names = readIndex();
+                    LOG.debug("Using class stub index {} for {}, with {} recorded classes", indexFile, jar, records.size());
+                    return names;
+                } catch (IOException e) {
+                    LOG.debug("Ignoring invalid class stub index {}", indexFile, e);
+                    records.clear();
+                }
+            }
+            LOG.debug("Creating class stub index for {}", jar);
+            dirty = true;
+            return listClassNames();
+        }
+
+        private Set<String> listClassNames() throws IOException {
+            Set<String> names = new HashSet<>();
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry entry = zipEntries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().endsWith(CLASS_EXTENSION)) {
+                        names.add(entry.getName());
+                    }
+                }
+            }
+            return Collections.unmodifiableSet(names);
+        }
+
+        private Set<String> readIndex() throws IOException {
+            Adler32 checksum = new Adler32();
+            try (DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(indexFile)), checksum))) {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != fingerprint) {
+                    throw new IOException("Not a class stub index of version " + FORMAT_VERSION + " for " + jar);
+                }
+                int numClasses = in.readInt();
+                Set<String> names = new HashSet<>();
+                for (int i = 0; i < numClasses; i++) {
+                    names.add(in.readUTF());
+                }
+                int numRecords = in.readInt();
+                for (int i = 0; i < numRecords; i++) {
+                    String name = in.readUTF();
+                    byte[] record = new byte[in.readInt()];
+                    in.readFully(record);
+                    records.put(name, record);
+                }
+                long expectedChecksum = checksum.getValue();
+                if (in.readLong() != expectedChecksum) {
+                    throw new IOException("Checksum mismatch");
+                }
+                return Collections.unmodifiableSet(names);
+            }
+        }
+
+        private void writeIndex() throws IOException {
+            Files.createDirectories(indexDirectory);
+            Path tempFile = Files.createTempFile(indexDirectory, indexFile.getFileName().toString(), ".tmp");
+            try {
+                Adler32 checksum = new Adler32();
+                try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)), checksum))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeLong(fingerprint);
+                    out.writeInt(classNames.size());
+                    for (String name : classNames) {
+                        out.writeUTF(name);
+                    }
+                    // take a snapshot, the size must match the written records
+                    List<Map.Entry<String, byte[]>> snapshot = new ArrayList<>(records.entrySet());
+                    out.writeInt(snapshot.size());
+                    for (Map.Entry<String, byte[]> record : snapshot) {
+                        out.writeUTF(record.getKey());
+                        out.writeInt(record.getValue().length);
+                        out.write(record.getValue());
+                    }
+                    out.writeLong(checksum.getValue());
+                }
+                // another run may write the same index concurrently, the last one wins
+                try {
+                    Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (dirty && classNames != null) {
+                try {
+                    writeIndex();
+                    dirty = false;
+                    indexWritten = true;
+                } catch (IOException e) {
+                    LOG.warn("Could not write class stub index {}", indexFile, e);
+                }
+            }
+            if (zipFile != null) {
+                zipFile.close();
+                zipFile = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return jar.toString();
+        }
+    }
+
+    private static final class IndexedLoader extends Loader {
+
+        private final IndexedJar jar;
+        private final @NonNull String resourcePath;
+
+        IndexedLoader(IndexedJar jar, @NonNull String resourcePath) {
+            this.jar = jar;
+            this.resourcePath = resourcePath;
+        }
+
+        @Override
+        @Nullable InputStream getInputStream() throws IOException {
+            return jar.openResource(resourcePath);
+        }
+
+        @Override
+        boolean load(ClassVisitor visitor) throws IOException {
+            byte[] record = jar.getRecord(resourcePath);
+            if (record != null) {
+                ClassStubRecorder.replay(record, visitor);
+                return true;
+            }
+            try (InputStream instream = getInputStream()) {
+                if (instream == null) {
+                    return false;
+                }
+                ClassStubRecorder recorder = new ClassStubRecorder(visitor);
+                new ClassReader(instream).accept(recorder, PARSING_OPTIONS);
+                jar.addRecord(resourcePath, recorder.toByteArray());
+                return true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "IndexedLoader(for " + resourcePath + " in " + jar + ")";
+        }
+    }
+}
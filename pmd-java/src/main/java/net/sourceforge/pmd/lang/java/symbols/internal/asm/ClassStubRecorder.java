@@ -0,0 +1,848 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.RecordComponentVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+/**
+ * A class visitor that forwards the events of a class file to a delegate,
+ * and records them into a compact byte array. The events can later be
+ * {@linkplain #replay(byte[], ClassVisitor) replayed} into another visitor,
+ * which then sees the same events as if it had read the class file itself,
+ * without parsing it again.
+ *
+ * <p>This records the events produced by {@link Loader#PARSING_OPTIONS},
+ * except non-standard attributes and module declarations, which class stubs
+ * don't use.
+ */
+final class ClassStubRecorder extends ClassVisitor {
+
+    // tags of the recorded events
+    private static final int END = 0;
+    private static final int HEADER = 1;
+    private static final int OUTER_CLASS = 2;
+    private static final int NEST_HOST = 3;
+    private static final int NEST_MEMBER = 4;
+    private static final int PERMITTED_SUBCLASS = 5;
+    private static final int INNER_CLASS = 6;
+    private static final int ANNOTATION = 7;
+    private static final int TYPE_ANNOTATION = 8;
+    private static final int RECORD_COMPONENT = 9;
+    private static final int FIELD = 10;
+    private static final int METHOD = 11;
+    private static final int PARAMETER = 12;
+    private static final int ANNOTATION_DEFAULT = 13;
+    private static final int ANNOTABLE_PARAMETER_COUNT = 14;
+    private static final int PARAMETER_ANNOTATION = 15;
+    private static final int VALUE = 16;
+    private static final int ENUM_VALUE = 17;
+    private static final int ANNOTATION_VALUE = 18;
+    private static final int ARRAY_VALUE = 19;
+
+    // tags of constant values, like in descriptors
+    private static final char NULL_CONSTANT = 'N';
+    private static final char STRING_CONSTANT = 's';
+    private static final char TYPE_CONSTANT = 'T';
+    private static final char ARRAY_CONSTANT = '[';
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final Output out = new Output(new DataOutputStream(bytes));
+
+    ClassStubRecorder(@Nullable ClassVisitor delegate) {
+        super(AsmSymbolResolver.ASM_API_V, delegate);
+    }
+
+    /**
+     * Returns the recorded events. This must be called after {@link #visitEnd()}.
+     */
+    byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        out.tag(HEADER);
+        out.writeInt(version);
+        out.writeInt(access);
+        out.writeString(name);
+        out.writeNullableString(signature);
+        out.writeNullableString(superName);
+        out.writeStrings(interfaces);
+        super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public void visitOuterClass(String owner, String name, String descriptor) {
+        out.tag(OUTER_CLASS);
+        out.writeString(owner);
+        out.writeNullableString(name);
+        out.writeNullableString(descriptor);
+        super.visitOuterClass(owner, name, descriptor);
+    }
+
+    @Override
+    public void visitNestHost(String nestHost) {
+        out.tag(NEST_HOST);
+        out.writeString(nestHost);
+        super.visitNestHost(nestHost);
+    }
+
+    @Override
+    public void visitNestMember(String nestMember) {
+        out.tag(NEST_MEMBER);
+        out.writeString(nestMember);
+        super.visitNestMember(nestMember);
+    }
+
+    @Override
+    public void visitPermittedSubclass(String permittedSubclass) {
+        out.tag(PERMITTED_SUBCLASS);
+        out.writeString(permittedSubclass);
+        super.visitPermittedSubclass(permittedSubclass);
+    }
+
+    @Override
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        out.tag(INNER_CLASS);
+        out.writeString(name);
+        out.writeNullableString(outerName);
+        out.writeNullableString(innerName);
+        out.writeInt(access);
+        super.visitInnerClass(name, outerName, innerName, access);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        out.annotation(descriptor, visible);
+        return new AnnotationRecorder(out, super.visitAnnotation(descriptor, visible));
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        out.typeAnnotation(typeRef, typePath, descriptor, visible);
+        return new AnnotationRecorder(out, super.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+    }
+
+    @Override
+    public RecordComponentVisitor visitRecordComponent(String name, String descriptor, String signature) {
+        out.tag(RECORD_COMPONENT);
+        out.writeString(name);
+        out.writeString(descriptor);
+        out.writeNullableString(signature);
+        RecordComponentVisitor delegate = super.visitRecordComponent(name, descriptor, signature);
+        return new RecordComponentVisitor(api, delegate) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                out.annotation(descriptor, visible);
+                return new AnnotationRecorder(out, super.visitAnnotation(descriptor, visible));
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                out.typeAnnotation(typeRef, typePath, descriptor, visible);
+                return new AnnotationRecorder(out, super.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+            }
+
+            @Override
+            public void visitEnd() {
+                out.tag(END);
+                super.visitEnd();
+            }
+        };
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        out.tag(FIELD);
+        out.writeInt(access);
+        out.writeString(name);
+        out.writeString(descriptor);
+        out.writeNullableString(signature);
+        out.writeConstant(value);
+        FieldVisitor delegate = super.visitField(access, name, descriptor, signature, value);
+        return new FieldVisitor(api, delegate) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                out.annotation(descriptor, visible);
+                return new AnnotationRecorder(out, super.visitAnnotation(descriptor, visible));
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                out.typeAnnotation(typeRef, typePath, descriptor, visible);
+                return new AnnotationRecorder(out, super.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+            }
+
+            @Override
+            public void visitEnd() {
+                out.tag(END);
+                super.visitEnd();
+            }
+        };
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        out.tag(METHOD);
+        out.writeInt(access);
+        out.writeString(name);
+        out.writeString(descriptor);
+        out.writeNullableString(signature);
+        out.writeStrings(exceptions);
+        MethodVisitor delegate = super.visitMethod(access, name, descriptor, signature, exceptions);
+        return new MethodVisitor(api, delegate) {
+            @Override
+            public void visitParameter(String name, int access) {
+                out.tag(PARAMETER);
+                out.writeNullableString(name);
+                out.writeInt(access);
+                super.visitParameter(name, access);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                out.tag(ANNOTATION_DEFAULT);
+                return new AnnotationRecorder(out, super.visitAnnotationDefault());
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                out.annotation(descriptor, visible);
+                return new AnnotationRecorder(out, super.visitAnnotation(descriptor, visible));
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                out.typeAnnotation(typeRef, typePath, descriptor, visible);
+                return new AnnotationRecorder(out, super.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+            }
+
+            @Override
+            public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+                out.tag(ANNOTABLE_PARAMETER_COUNT);
+                out.writeInt(parameterCount);
+                out.writeBoolean(visible);
+                super.visitAnnotableParameterCount(parameterCount, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+                out.tag(PARAMETER_ANNOTATION);
+                out.writeInt(parameter);
+                out.writeString(descriptor);
+                out.writeBoolean(visible);
+                return new AnnotationRecorder(out, super.visitParameterAnnotation(parameter, descriptor, visible));
+            }
+
+            @Override
+            public void visitEnd() {
+                out.tag(END);
+                super.visitEnd();
+            }
+        };
+    }
+
+    @Override
+    public void visitEnd() {
+        out.tag(END);
+        super.visitEnd();
+    }
+
+    private static final class AnnotationRecorder extends AnnotationVisitor {
+
+        private final Output out;
+
+        AnnotationRecorder(Output out, @Nullable AnnotationVisitor delegate) {
+            super(AsmSymbolResolver.ASM_API_V, delegate);
+            this.out = out;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            out.tag(VALUE);
+            out.writeNullableString(name);
+            out.writeConstant(value);
+            super.visit(name, value);
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            out.tag(ENUM_VALUE);
+            out.writeNullableString(name);
+            out.writeString(descriptor);
+            out.writeString(value);
+            super.visitEnum(name, descriptor, value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            out.tag(ANNOTATION_VALUE);
+            out.writeNullableString(name);
+            out.writeString(descriptor);
+            return new AnnotationRecorder(out, super.visitAnnotation(name, descriptor));
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            out.tag(ARRAY_VALUE);
+            out.writeNullableString(name);
+            return new AnnotationRecorder(out, super.visitArray(name));
+        }
+
+        @Override
+        public void visitEnd() {
+            out.tag(END);
+            super.visitEnd();
+        }
+    }
+
+    /**
+     * Writes to a byte array, so never actually throws IO exceptions.
+     */
+    private static final class Output {
+
+        private final DataOutputStream out;
+
+        Output(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void tag(int tag) {
+            try {
+                out.writeByte(tag);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeInt(int i) {
+            try {
+                out.writeInt(i);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeBoolean(boolean b) {
+            try {
+                out.writeBoolean(b);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeString(String s) {
+            try {
+                // strings of the constant pool are limited to 65535 bytes in the
+                // modified UTF-8 encoding, which is the same as the limit of writeUTF
+                out.writeUTF(s);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeNullableString(@Nullable String s) {
+            writeBoolean(s != null);
+            if (s != null) {
+                writeString(s);
+            }
+        }
+
+        void writeStrings(String @Nullable [] strings) {
+            writeInt(strings == null ? -1 : strings.length);
+            if (strings != null) {
+                for (String s : strings) {
+                    writeString(s);
+                }
+            }
+        }
+
+        void annotation(String descriptor, boolean visible) {
+            tag(ANNOTATION);
+            writeString(descriptor);
+            writeBoolean(visible);
+        }
+
+        void typeAnnotation(int typeRef, @Nullable TypePath typePath, String descriptor, boolean visible) {
+            tag(TYPE_ANNOTATION);
+            writeInt(typeRef);
+            writeNullableString(typePath == null ? null : typePath.toString());
+            writeString(descriptor);
+            writeBoolean(visible);
+        }
+
+        /**
+         * Writes a constant value of a field, or a value of an annotation.
+         * Arrays of primitives are given to {@link AnnotationVisitor#visit(String, Object)}
+         * as a whole.
+         */
+        void writeConstant(@Nullable Object value) {
+            try {
+                writeConstantImpl(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @SuppressWarnings("PMD.CyclomaticComplexity")
+        private void writeConstantImpl(@Nullable Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL_CONSTANT);
+            } else if (value instanceof String) {
+                out.writeByte(STRING_CONSTANT);
+                out.writeUTF((String) value);
+            } else if (value instanceof Type) {
+                out.writeByte(TYPE_CONSTANT);
+                out.writeUTF(((Type) value).getDescriptor());
+            } else if (value instanceof Integer) {
+                out.writeByte('I');
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte('J');
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                out.writeByte('F');
+                out.writeFloat((Float) value);
+            } else if (value instanceof Double) {
+                out.writeByte('D');
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte('Z');
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Byte) {
+                out.writeByte('B');
+                out.writeByte((Byte) value);
+            } else if (value instanceof Character) {
+                out.writeByte('C');
+                out.writeChar((Character) value);
+            } else if (value instanceof Short) {
+                out.writeByte('S');
+                out.writeShort((Short) value);
+            } else if (value instanceof int[]) {
+                int[] array = (int[]) value;
+                writeArrayHeader('I', array.length);
+                for (int v : array) {
+                    out.writeInt(v);
+                }
+            } else if (value instanceof long[]) {
+                long[] array = (long[]) value;
+                writeArrayHeader('J', array.length);
+                for (long v : array) {
+                    out.writeLong(v);
+                }
+            } else if (value instanceof float[]) {
+                float[] array = (float[]) value;
+                writeArrayHeader('F', array.length);
+                for (float v : array) {
+                    out.writeFloat(v);
+                }
+            } else if (value instanceof double[]) {
+                double[] array = (double[]) value;
+                writeArrayHeader('D', array.length);
+                for (double v : array) {
+                    out.writeDouble(v);
+                }
+            } else if (value instanceof boolean[]) {
+                boolean[] array = (boolean[]) value;
+                writeArrayHeader('Z', array.length);
+                for (boolean v : array) {
+                    out.writeBoolean(v);
+                }
+            } else if (value instanceof byte[]) {
+                byte[] array = (byte[]) value;
+                writeArrayHeader('B', array.length);
+                out.write(array);
+            } else if (value instanceof char[]) {
+                char[] array = (char[]) value;
+                writeArrayHeader('C', array.length);
+                for (char v : array) {
+                    out.writeChar(v);
+                }
+            } else if (value instanceof short[]) {
+                short[] array = (short[]) value;
+                writeArrayHeader('S', array.length);
+                for (short v : array) {
+                    out.writeShort(v);
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported constant " + value + " of type " + value.getClass());
+            }
+        }
+
+        private void writeArrayHeader(char elementTag, int length) throws IOException {
+            out.writeByte(ARRAY_CONSTANT);
+            out.writeByte(elementTag);
+            out.writeInt(length);
+        }
+    }
+
+    /**
+     * Replays the events recorded by a {@link ClassStubRecorder} into
+     * the given visitor.
+     *
+     * @throws IOException If the record is corrupt
+     */
+    static void replay(byte[] record, ClassVisitor visitor) throws IOException {
+        new Replayer(new DataInputStream(new ByteArrayInputStream(record))).replayClass(visitor);
+    }
+
+    /**
+     * Reads recorded events. Visitors returned by the visited visitors
+     * may be null, the events for them are then skipped.
+     */
+    private static final class Replayer {
+
+        private final DataInputStream in;
+
+        Replayer(DataInputStream in) {
+            this.in = in;
+        }
+
+        void replayClass(ClassVisitor visitor) throws IOException {
+            while (true) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case HEADER:
+                    visitor.visit(in.readInt(), in.readInt(), in.readUTF(), readNullableString(),
+                                  readNullableString(), readStrings());
+                    break;
+                case OUTER_CLASS:
+                    visitor.visitOuterClass(in.readUTF(), readNullableString(), readNullableString());
+                    break;
+                case NEST_HOST:
+                    visitor.visitNestHost(in.readUTF());
+                    break;
+                case NEST_MEMBER:
+                    visitor.visitNestMember(in.readUTF());
+                    break;
+                case PERMITTED_SUBCLASS:
+                    visitor.visitPermittedSubclass(in.readUTF());
+                    break;
+                case INNER_CLASS:
+                    visitor.visitInnerClass(in.readUTF(), readNullableString(), readNullableString(), in.readInt());
+                    break;
+                case ANNOTATION: {
+                    String descriptor = in.readUTF();
+                    replayAnnotation(visitor.visitAnnotation(descriptor, in.readBoolean()));
+                    break;
+                }
+                case TYPE_ANNOTATION: {
+                    int typeRef = in.readInt();
+                    TypePath typePath = readTypePath();
+                    String descriptor = in.readUTF();
+                    replayAnnotation(visitor.visitTypeAnnotation(typeRef, typePath, descriptor, in.readBoolean()));
+                    break;
+                }
+                case RECORD_COMPONENT:
+                    replayRecordComponent(visitor.visitRecordComponent(in.readUTF(), in.readUTF(), readNullableString()));
+                    break;
+                case FIELD:
+                    replayField(visitor.visitField(in.readInt(), in.readUTF(), in.readUTF(), readNullableString(), readConstant()));
+                    break;
+                case METHOD:
+                    replayMethod(visitor.visitMethod(in.readInt(), in.readUTF(), in.readUTF(), readNullableString(), readStrings()));
+                    break;
+                case END:
+                    visitor.visitEnd();
+                    return;
+                default:
+                    throw unknownTag(tag);
+                }
+            }
+        }
+
+        private void replayRecordComponent(@Nullable RecordComponentVisitor visitor) throws IOException {
+            while (true) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case ANNOTATION: {
+                    String descriptor = in.readUTF();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(visitor == null ? null : visitor.visitAnnotation(descriptor, visible));
+                    break;
+                }
+                case TYPE_ANNOTATION: {
+                    int typeRef = in.readInt();
+                    TypePath typePath = readTypePath();
+                    String descriptor = in.readUTF();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(visitor == null ? null : visitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+                    break;
+                }
+                case END:
+                    if (visitor != null) {
+                        visitor.visitEnd();
+                    }
+                    return;
+                default:
+                    throw unknownTag(tag);
+                }
+            }
+        }
+
+        private void replayField(@Nullable FieldVisitor visitor) throws IOException {
+            while (true) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case ANNOTATION: {
+                    String descriptor = in.readUTF();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(visitor == null ? null : visitor.visitAnnotation(descriptor, visible));
+                    break;
+                }
+                case TYPE_ANNOTATION: {
+                    int typeRef = in.readInt();
+                    TypePath typePath = readTypePath();
+                    String descriptor = in.readUTF();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(visitor == null ? null : visitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+                    break;
+                }
+                case END:
+                    if (visitor != null) {
+                        visitor.visitEnd();
+                    }
+                    return;
+                default:
+                    throw unknownTag(tag);
+                }
+            }
+        }
+
+        private void replayMethod(@Nullable MethodVisitor visitor) throws IOException {
+            while (true) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case PARAMETER: {
+                    String name = readNullableString();
+                    int access = in.readInt();
+                    if (visitor != null) {
+                        visitor.visitParameter(name, access);
+                    }
+                    break;
+                }
+                case ANNOTATION_DEFAULT:
+                    replayAnnotation(visitor == null ? null : visitor.visitAnnotationDefault());
+                    break;
+                case ANNOTATION: {
+                    String descriptor = in.readUTF();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(visitor == null ? null : visitor.visitAnnotation(descriptor, visible));
+                    break;
+                }
+                case TYPE_ANNOTATION: {
+                    int typeRef = in.readInt();
+                    TypePath typePath = readTypePath();
+                    String descriptor = in.readUTF();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(visitor == null ? null : visitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible));
+                    break;
+                }
+                case ANNOTABLE_PARAMETER_COUNT: {
+                    int parameterCount = in.readInt();
+                    boolean visible = in.readBoolean();
+                    if (visitor != null) {
+                        visitor.visitAnnotableParameterCount(parameterCount, visible);
+                    }
+                    break;
+                }
+                case PARAMETER_ANNOTATION: {
+                    int parameter = in.readInt();
+                    String descriptor = in.readUTF();
+                    boolean visible = in.readBoolean();
+                    replayAnnotation(visitor == null ? null : visitor.visitParameterAnnotation(parameter, descriptor, visible));
+                    break;
+                }
+                case END:
+                    if (visitor != null) {
+                        visitor.visitEnd();
+                    }
+                    return;
+                default:
+                    throw unknownTag(tag);
+                }
+            }
+        }
+
+        private void replayAnnotation(@Nullable AnnotationVisitor visitor) throws IOException {
+            while (true) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case VALUE: {
+                    String name = readNullableString();
+                    Object value = readConstant();
+                    if (visitor != null) {
+                        visitor.visit(name, value);
+                    }
+                    break;
+                }
+                case ENUM_VALUE: {
+                    String name = readNullableString();
+                    String descriptor = in.readUTF();
+                    String value = in.readUTF();
+                    if (visitor != null) {
+                        visitor.visitEnum(name, descriptor, value);
+                    }
+                    break;
+                }
+                case ANNOTATION_VALUE: {
+                    String name = readNullableString();
+                    String descriptor = in.readUTF();
+                    replayAnnotation(visitor == null ? null : visitor.visitAnnotation(name, descriptor));
+                    break;
+                }
+                case ARRAY_VALUE: {
+                    String name = readNullableString();
+                    replayAnnotation(visitor == null ? null : visitor.visitArray(name));
+                    break;
+                }
+                case END:
+                    if (visitor != null) {
+                        visitor.visitEnd();
+                    }
+                    return;
+                default:
+                    throw unknownTag(tag);
+                }
+            }
+        }
+
+        private @Nullable String readNullableString() throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        private String @Nullable [] readStrings() throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            String[] strings = new String[length];
+            for (int i = 0; i < length; i++) {
+                strings[i] = in.readUTF();
+            }
+            return strings;
+        }
+
+        private @Nullable TypePath readTypePath() throws IOException {
+            String path = readNullableString();
+            return path == null ? null : TypePath.fromString(path);
+        }
+
+        @SuppressWarnings("PMD.CyclomaticComplexity")
+        private @Nullable Object readConstant() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+            case NULL_CONSTANT:
+                return null;
+            case STRING_CONSTANT:
+                return in.readUTF();
+            case TYPE_CONSTANT:
+                return Type.getType(in.readUTF());
+            case 'I':
+                return in.readInt();
+            case 'J':
+                return in.readLong();
+            case 'F':
+                return in.readFloat();
+            case 'D':
+                return in.readDouble();
+            case 'Z':
+                return in.readBoolean();
+            case 'B':
+                return in.readByte();
+            case 'C':
+                return in.readChar();
+            case 'S':
+                return in.readShort();
+            case ARRAY_CONSTANT:
+                return readArrayConstant();
+            default:
+                throw unknownTag(tag);
+            }
+        }
+
+        @SuppressWarnings("PMD.CyclomaticComplexity")
+        private Object readArrayConstant() throws IOException {
+            int elementTag = in.readUnsignedByte();
+            int length = in.readInt();
+            switch (elementTag) {
+            case 'I': {
+                int[] array = new int[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            }
+            case 'J': {
+                long[] array = new long[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.readLong();
+                }
+                return array;
+            }
+            case 'F': {
+                float[] array = new float[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.readFloat();
+                }
+                return array;
+            }
+            case 'D': {
+                double[] array = new double[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.readDouble();
+                }
+                return array;
+            }
+            case 'Z': {
+                boolean[] array = new boolean[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.readBoolean();
+                }
+                return array;
+            }
+            case 'B': {
+                byte[] array = new byte[length];
+                in.readFully(array);
+                return array;
+            }
+            case 'C': {
+                char[] array = new char[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.readChar();
+                }
+                return array;
+            }
+            case 'S': {
+                short[] array = new short[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.readShort();
+                }
+                return array;
+            }
+            default:
+                throw unknownTag(elementTag);
+            }
+        }
+
+        private static IOException unknownTag(int tag) {
+            return new IOException("Corrupt class stub record, unknown tag " + tag);
+        }
+    }
+}
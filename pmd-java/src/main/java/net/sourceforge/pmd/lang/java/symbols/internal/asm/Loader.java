@@ -10,12 +10,30 @@ import java.io.InputStream;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 
 abstract class Loader {
 
+    /** Options used to read class files, stubs don't need method bodies. */
+    static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
 
     abstract @Nullable InputStream getInputStream() throws IOException;
 
+    /**
+     * Feeds the class file to the given visitor. Returns false if the
+     * class file was not found.
+     */
+    boolean load(ClassVisitor visitor) throws IOException {
+        try (InputStream instream = getInputStream()) {
+            if (instream == null) {
+                return false;
+            }
+            new ClassReader(instream).accept(visitor, PARSING_OPTIONS);
+            return true;
+        }
+    }
+
 
     static class FailedLoader extends Loader {
 
@@ -4,6 +4,10 @@
 
 package net.sourceforge.pmd.lang.java.types;
 
+import java.nio.file.Path;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import net.sourceforge.pmd.annotation.InternalApi;
 
 /**
@@ -24,4 +28,8 @@ public final class InternalApiBridge {
     public static boolean isSameTypeInInference(JTypeMirror t, JTypeMirror s) {
         return TypeOps.isSameTypeInInference(t, s);
     }
+
+    public static TypeSystemCache.Lease acquireTypeSystem(String auxClasspath, @Nullable Path classStubIndexDir) {
+        return TypeSystemCache.acquire(auxClasspath, classStubIndexDir);
+    }
 }
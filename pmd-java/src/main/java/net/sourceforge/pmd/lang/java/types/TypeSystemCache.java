@@ -0,0 +1,359 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Adler32;
+
+import org.checkerframework.checker.lock.qual.GuardedBy;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.cache.internal.ClasspathFingerprinter;
+import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.AsmSymbolResolver;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.ClassStubIndex;
+import net.sourceforge.pmd.util.AuxClasspathLoader;
+import net.sourceforge.pmd.util.internal.AuxClasspathUtil;
+
+/**
+ * Caches the type systems built for an auxclasspath, so that they can be
+ * reused by later analyses. This is useful for daemons or IDE plugins,
+ * when PMD is executed multiple times within one JVM instance: the classes
+ * of the JDK and of the auxclasspath are then only loaded once.
+ *
+ * <p>A type system is only reused while the contents of the auxclasspath
+ * don't change. This is checked with a fingerprint of the jars and class
+ * files on the auxclasspath, and of the Java runtime, before each analysis.
+ *
+ * <p>The cache keeps at most a given number of type systems, and evicts
+ * the least recently used one first. A type system that has loaded more
+ * than a given number of classes is not reused, which bounds the memory
+ * held by the cache. A type system is closed once it is evicted and no
+ * analysis uses it anymore.
+ *
+ * <p>Caching is disabled by default. See {@link #enableReuse(int)} and
+ * {@link #disableReuse()}.
+ *
+ * @since 7.27.0
+ * @experimental
+ */
+@Experimental
+public final class TypeSystemCache {
+    private static final Logger LOG = LoggerFactory.getLogger(TypeSystemCache.class);
+
+    /**
+     * Default maximum number of classes a type system may have loaded
+     * to be reused, see {@link #enableReuse(int, int)}.
+     */
+    public static final int DEFAULT_MAX_LOADED_CLASSES = 200_000;
+
+    private static final Object LOCK = new Object();
+    private static @GuardedBy("LOCK") Map<String, CachedTypeSystem> cache;
+    private static @GuardedBy("LOCK") int maxCount;
+    private static @GuardedBy("LOCK") int maxLoadedClasses;
+
+    private TypeSystemCache() {
+        // utility class
+    }
+
+    /**
+     * Enables caching of type systems, with the {@linkplain #DEFAULT_MAX_LOADED_CLASSES default}
+     * limit of loaded classes.
+     *
+     * @param count Maximum number of type systems to be cached
+     *
+     * @see #enableReuse(int, int)
+     */
+    public static void enableReuse(int count) {
+        enableReuse(count, DEFAULT_MAX_LOADED_CLASSES);
+    }
+
+    /**
+     * Enables caching of type systems. If caching is already enabled,
+     * this changes the limits, which are enforced when a type system
+     * is next used.
+     *
+     * @param count            Maximum number of type systems to be cached.
+     *                         The least recently used are evicted first.
+     * @param maxLoadedClasses Maximum number of classes a type system may have
+     *                         loaded to be kept in the cache after an analysis.
+     *
+     * @see #disableReuse()
+     */
+    public static void enableReuse(int count, int maxLoadedClasses) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be >= 1");
+        }
+        if (maxLoadedClasses < 1) {
+            throw new IllegalArgumentException("maxLoadedClasses must be >= 1");
+        }
+
+        synchronized (LOCK) {
+            if (cache == null) {
+                // access order, the first entry is the least recently used
+                cache = new LinkedHashMap<>(16, 0.75f, true);
+            }
+            TypeSystemCache.maxCount = count;
+            TypeSystemCache.maxLoadedClasses = maxLoadedClasses;
+        }
+    }
+
+    /**
+     * Disables caching and closes the cached type systems that are not
+     * currently used. The others are closed at the end of the analysis
+     * that uses them.
+     */
+    public static void disableReuse() {
+        List<CachedTypeSystem> toClose = new ArrayList<>();
+        synchronized (LOCK) {
+            if (cache == null) {
+                return;
+            }
+            for (CachedTypeSystem cached : cache.values()) {
+                if (evict(cached)) {
+                    toClose.add(cached);
+                }
+            }
+            cache = null;
+        }
+        toClose.forEach(CachedTypeSystem::close);
+    }
+
+    /**
+     * Returns a type system for the given auxclasspath, which must be
+     * {@linkplain Lease#close() released} at the end of the analysis.
+     * If caching is disabled, a new type system is created, and closed
+     * when it is released.
+     *
+     * @param auxClasspath        The auxclasspath, including the Java runtime
+     * @param classStubIndexDir   The directory of the {@link ClassStubIndex}, or null to not use an index
+     */
+    static Lease acquire(String auxClasspath, @Nullable Path classStubIndexDir) {
+        String key = auxClasspath + '\n' + classStubIndexDir;
+        boolean enabled;
+        synchronized (LOCK) {
+            enabled = cache != null;
+        }
+        // this reads the auxclasspath, so is done outside the lock
+        long fingerprint = enabled ? fingerprint(auxClasspath) : 0;
+
+        CachedTypeSystem outdated = null;
+        synchronized (LOCK) {
+            CachedTypeSystem cached = cache == null || !enabled ? null : cache.get(key);
+            if (cached != null && cached.fingerprint == fingerprint) {
+                LOG.debug("Reusing cached type system for {}", auxClasspath);
+                cached.users++;
+                return new Lease(cached);
+            } else if (cached != null) {
+                LOG.debug("Auxclasspath has changed, not reusing type system for {}", auxClasspath);
+                cache.remove(key);
+                if (evict(cached)) {
+                    outdated = cached;
+                }
+            }
+        }
+        if (outdated != null) {
+            outdated.close();
+        }
+
+        // creating the type system is expensive, other threads may use the cache meanwhile
+        CachedTypeSystem created = new CachedTypeSystem(key, fingerprint, auxClasspath, classStubIndexDir);
+        List<CachedTypeSystem> toClose = new ArrayList<>();
+        synchronized (LOCK) {
+            created.users++;
+            if (cache == null || !enabled) {
+                // not cached, close it when released
+                created.evicted = true;
+            } else {
+                CachedTypeSystem previous = cache.put(key, created);
+                if (previous != null && evict(previous)) {
+                    toClose.add(previous);
+                }
+                trimToSize(toClose);
+            }
+        }
+        toClose.forEach(CachedTypeSystem::close);
+        return new Lease(created);
+    }
+
+    private static void release(CachedTypeSystem cached) {
+        boolean close;
+        synchronized (LOCK) {
+            cached.users--;
+            if (!cached.evicted && cached.getLoadedClasses() > maxLoadedClasses) {
+                LOG.debug("Type system for {} has loaded {} classes, it is not reused", cached.auxClasspath, cached.getLoadedClasses());
+                cache.remove(cached.key, cached);
+                cached.evicted = true;
+            }
+            close = cached.evicted && cached.users == 0;
+        }
+        if (close) {
+            cached.close();
+        }
+    }
+
+    // must hold LOCK
+    private static void trimToSize(List<CachedTypeSystem> toClose) {
+        Iterator<CachedTypeSystem> iterator = cache.values().iterator();
+        while (cache.size() > maxCount && iterator.hasNext()) {
+            CachedTypeSystem eldest = iterator.next();
+            iterator.remove();
+            if (evict(eldest)) {
+                toClose.add(eldest);
+            }
+        }
+    }
+
+    /**
+     * Marks the type system as evicted, and returns whether it can be closed now.
+     * Must hold LOCK.
+     */
+    private static boolean evict(CachedTypeSystem cached) {
+        cached.evicted = true;
+        return cached.users == 0;
+    }
+
+    /**
+     * Fingerprints the contents of the auxclasspath. Jars are fingerprinted
+     * with the {@link ClasspathFingerprinter}, like for the analysis cache.
+     * Directories are fingerprinted with the names, sizes and modification
+     * times of their class files. For the Java runtime, the release
+     * file is used, as the jrt-fs.jar doesn't contain the runtime classes.
+     */
+    private static long fingerprint(String auxClasspath) {
+        Adler32 checksum = new Adler32();
+        List<Path> files = new ArrayList<>();
+        Path jrtFsJar = Paths.get("lib", "jrt-fs.jar");
+        try {
+            for (Path entry : AuxClasspathUtil.expandClasspath(auxClasspath)) {
+                if (Files.isDirectory(entry)) {
+                    fingerprintDirectory(entry, checksum);
+                } else if (Files.isRegularFile(entry)) {
+                    files.add(entry);
+                    if (entry.toAbsolutePath().endsWith(jrtFsJar)) {
+                        Path release = entry.toAbsolutePath().getParent().resolveSibling("release");
+                        if (Files.isRegularFile(release)) {
+                            checksum.update(Files.readAllBytes(release));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        updateLong(checksum, new ClasspathFingerprinter().fingerprint(files));
+        return checksum.getValue();
+    }
+
+    private static void fingerprintDirectory(Path directory, Adler32 checksum) throws IOException {
+        List<Path> classFiles;
+        try (Stream<Path> stream = Files.walk(directory)) {
+            classFiles = stream.filter(p -> p.getFileName().toString().endsWith(".class"))
+                               .sorted()
+                               .collect(Collectors.toList());
+        }
+        for (Path classFile : classFiles) {
+            checksum.update(directory.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+            updateLong(checksum, Files.size(classFile));
+            updateLong(checksum, Files.getLastModifiedTime(classFile).toMillis());
+        }
+    }
+
+    private static void updateLong(Adler32 checksum, long value) {
+        checksum.update(ByteBuffer.allocate(Long.BYTES).putLong(0, value).array());
+    }
+
+    /**
+     * The use of a type system by one analysis.
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final CachedTypeSystem cached;
+        private boolean released;
+
+        Lease(CachedTypeSystem cached) {
+            this.cached = cached;
+        }
+
+        public TypeSystem getTypeSystem() {
+            return cached.typeSystem;
+        }
+
+        /**
+         * Ends the use of the type system. It is closed if it is not cached.
+         */
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                release(cached);
+            }
+        }
+    }
+
+    private static final class CachedTypeSystem {
+
+        private final String key;
+        private final long fingerprint;
+        private final String auxClasspath;
+        private final AuxClasspathLoader auxClasspathLoader;
+        private final @Nullable ClassStubIndex classStubIndex;
+        private final TypeSystem typeSystem;
+
+        // guarded by LOCK
+        private int users;
+        private boolean evicted;
+
+        CachedTypeSystem(String key, long fingerprint, String auxClasspath, @Nullable Path classStubIndexDir) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.auxClasspath = auxClasspath;
+            this.auxClasspathLoader = AuxClasspathLoader.create(auxClasspath);
+            if (classStubIndexDir == null) {
+                this.classStubIndex = null;
+                this.typeSystem = TypeSystem.usingClasspath(auxClasspathLoader::findResource);
+            } else {
+                LOG.debug("Using class stub index in {}", classStubIndexDir);
+                this.classStubIndex = ClassStubIndex.create(classStubIndexDir,
+                                                            AuxClasspathUtil.expandClasspath(auxClasspath),
+                                                            auxClasspathLoader);
+                this.typeSystem = TypeSystem.usingClasspath(classStubIndex);
+            }
+        }
+
+        int getLoadedClasses() {
+            SymbolResolver resolver = typeSystem.bootstrapResolver();
+            return resolver instanceof AsmSymbolResolver ? ((AsmSymbolResolver) resolver).getKnownStubCount() : 0;
+        }
+
+        void close() {
+            LOG.debug("Closing type system for {}", auxClasspath);
+            try {
+                if (classStubIndex != null) {
+                    classStubIndex.close();
+                }
+                auxClasspathLoader.close();
+            } catch (IOException e) {
+                LOG.warn("Error while closing the auxclasspath {}", auxClasspath, e);
+            }
+        }
+    }
+}
@@ -4,15 +4,60 @@
 
 package net.sourceforge.pmd.lang.java;
 
+import static com.github.stefanbirkner.systemlambda.SystemLambda.restoreSystemProperties;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.junit.jupiter.api.Test;
 
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PmdAnalysis;
+import net.sourceforge.pmd.internal.SystemProps;
+import net.sourceforge.pmd.reporting.Report;
 import net.sourceforge.pmd.test.RuleSetAssertions;
 
 class QuickstartRulesetTest {
     private static final String QUICKSTART_RULESET = "rulesets/java/quickstart.xml";
+    private static final String SAMPLE_SOURCES = "quickstart";
 
     @Test
     void noDeprecations() {
         RuleSetAssertions.assertNoWarnings(QUICKSTART_RULESET);
     }
+
+    @Test
+    void fusedRuleDispatchReportsSameViolations() throws Exception {
+        restoreSystemProperties(() -> {
+            System.clearProperty(SystemProps.PMD_FUSED_RULE_DISPATCH);
+            List<String> perRule = analyzeSampleSources();
+            assertFalse(perRule.isEmpty());
+
+            System.setProperty(SystemProps.PMD_FUSED_RULE_DISPATCH, "");
+            assertEquals(perRule, analyzeSampleSources());
+        });
+    }
+
+    private static List<String> analyzeSampleSources() throws URISyntaxException {
+        // the sources are test resources, in the package of this class
+        Path sources = Paths.get(QuickstartRulesetTest.class.getResource(SAMPLE_SOURCES).toURI());
+        PMDConfiguration config = new PMDConfiguration();
+        config.setThreads(0);
+        config.setIgnoreIncrementalAnalysis(true);
+        config.addInputPath(sources);
+        try (PmdAnalysis pmd = PmdAnalysis.create(config)) {
+            pmd.addRuleSet(pmd.newRuleSetLoader().loadFromResource(QUICKSTART_RULESET));
+            Report report = pmd.performAnalysisAndCollectReport();
+            return report.getViolations().stream()
+                         .map(v -> v.getFileId().getOriginalPath() + ":" + v.getBeginLine() + ":" + v.getBeginColumn()
+                             + ":" + v.getRule().getName())
+                         .sorted()
+                         .collect(Collectors.toList());
+        }
+    }
 }
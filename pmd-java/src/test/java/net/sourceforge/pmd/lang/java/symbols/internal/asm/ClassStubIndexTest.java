@@ -0,0 +1,177 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import net.sourceforge.pmd.internal.util.IOUtil;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.types.TypeSystem;
+import net.sourceforge.pmd.util.AuxClasspathLoader;
+
+class ClassStubIndexTest {
+
+    private static final String ANNOT_WITH_DEFAULTS = "net/sourceforge/pmd/lang/java/symbols/testdata/AnnotWithDefaults.class";
+
+    @TempDir
+    private Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        ANNOT_WITH_DEFAULTS,
+        "net/sourceforge/pmd/lang/java/symbols/testdata/SomeClass.class",
+        "java/lang/String.class",
+        "java/util/Map.class",
+    })
+    void testReplayProducesSameEvents(String resource) throws IOException {
+        byte[] classFile = readResource(resource);
+
+        ClassWriter direct = new ClassWriter(0);
+        new ClassReader(classFile).accept(direct, Loader.PARSING_OPTIONS);
+
+        ClassWriter recorded = new ClassWriter(0);
+        ClassStubRecorder recorder = new ClassStubRecorder(recorded);
+        new ClassReader(classFile).accept(recorder, Loader.PARSING_OPTIONS);
+        assertArrayEquals(direct.toByteArray(), recorded.toByteArray());
+
+        ClassWriter replayed = new ClassWriter(0);
+        ClassStubRecorder.replay(recorder.toByteArray(), replayed);
+        assertArrayEquals(direct.toByteArray(), replayed.toByteArray());
+    }
+
+    @Test
+    void testIndexIsReusedByNextRun() throws Exception {
+        Path jar = createJar();
+        Path indexDir = tempDir.resolve("index");
+
+        List<String> firstRun = loadMethodsWithIndex(jar, indexDir);
+        List<Path> indexFiles;
+        try (Stream<Path> files = Files.list(indexDir)) {
+            indexFiles = files.collect(Collectors.toList());
+        }
+        assertEquals(1, indexFiles.size());
+        assertTrue(indexFiles.get(0).getFileName().toString().startsWith("lib.jar-"));
+
+        List<String> secondRun = loadMethodsWithIndex(jar, indexDir);
+        assertEquals(firstRun, secondRun);
+    }
+
+    @Test
+    void testIndexOfPreviousVersionIsDeleted() throws Exception {
+        Path jar = createJar();
+        Path indexDir = tempDir.resolve("index");
+        loadMethodsWithIndex(jar, indexDir);
+        Path oldIndex = listIndexFiles(indexDir).get(0);
+        Path otherJarIndex = Files.createFile(indexDir.resolve("other.jar-1234abcd.stubs"));
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zip.putNextEntry(new ZipEntry(ANNOT_WITH_DEFAULTS));
+            zip.write(readResource(ANNOT_WITH_DEFAULTS));
+            zip.closeEntry();
+            String someClass = "net/sourceforge/pmd/lang/java/symbols/testdata/SomeClass.class";
+            zip.putNextEntry(new ZipEntry(someClass));
+            zip.write(readResource(someClass));
+            zip.closeEntry();
+        }
+        loadMethodsWithIndex(jar, indexDir);
+
+        List<Path> indexFiles = listIndexFiles(indexDir);
+        assertEquals(2, indexFiles.size());
+        assertTrue(indexFiles.contains(otherJarIndex));
+        assertFalse(indexFiles.contains(oldIndex));
+    }
+
+    @Test
+    void testCorruptIndexIsIgnored() throws Exception {
+        Path jar = createJar();
+        Path indexDir = tempDir.resolve("index");
+        List<String> expected = loadMethodsWithIndex(jar, indexDir);
+
+        try (Stream<Path> files = Files.list(indexDir)) {
+            Path indexFile = files.findFirst().get();
+            byte[] bytes = Files.readAllBytes(indexFile);
+            bytes[bytes.length - 20] ^= 1;
+            Files.write(indexFile, bytes);
+        }
+
+        assertEquals(expected, loadMethodsWithIndex(jar, indexDir));
+    }
+
+    @Test
+    void testPlatformClassesAndMissingClasses() throws Exception {
+        Path jrtFsJar = Paths.get(System.getProperty("java.home"), "lib", "jrt-fs.jar");
+        try (AuxClasspathLoader loader = AuxClasspathLoader.create(jrtFsJar.toString());
+             ClassStubIndex index = ClassStubIndex.create(tempDir, Collections.singletonList(jrtFsJar), loader)) {
+            assertInstanceOf(Loader.StreamLoader.class, index.findClass("java/lang/Object.class"));
+            assertNull(index.findClass("does/not/Exist.class"));
+        }
+    }
+
+    private static List<Path> listIndexFiles(Path indexDir) throws IOException {
+        try (Stream<Path> files = Files.list(indexDir)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private Path createJar() throws IOException {
+        Path jar = tempDir.resolve("lib.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zip.putNextEntry(new ZipEntry(ANNOT_WITH_DEFAULTS));
+            zip.write(readResource(ANNOT_WITH_DEFAULTS));
+            zip.closeEntry();
+        }
+        return jar;
+    }
+
+    private static List<String> loadMethodsWithIndex(Path jar, Path indexDir) throws Exception {
+        Path jrtFsJar = Paths.get(System.getProperty("java.home"), "lib", "jrt-fs.jar");
+        List<Path> auxClasspath = Arrays.asList(jar, jrtFsJar);
+        try (AuxClasspathLoader loader = AuxClasspathLoader.create(jar + File.pathSeparator + jrtFsJar);
+             ClassStubIndex index = ClassStubIndex.create(indexDir, auxClasspath, loader)) {
+            TypeSystem ts = TypeSystem.usingClasspath(index);
+            JClassSymbol symbol = ts.getClassSymbol("net.sourceforge.pmd.lang.java.symbols.testdata.AnnotWithDefaults");
+            assertNotNull(symbol);
+            assertTrue(symbol.isAnnotation());
+            return symbol.getDeclaredMethods().stream()
+                         .map(m -> m.getSimpleName() + "=" + m.getDefaultAnnotationValue())
+                         .sorted()
+                         .collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] readResource(String resource) throws IOException {
+        try (InputStream stream = ClassStubIndexTest.class.getClassLoader().getResourceAsStream(resource)) {
+            assertNotNull(stream, resource);
+            return IOUtil.toByteArray(stream);
+        }
+    }
+}
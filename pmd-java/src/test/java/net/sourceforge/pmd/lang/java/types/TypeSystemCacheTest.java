@@ -0,0 +1,95 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.util.internal.AuxClasspathUtil;
+
+class TypeSystemCacheTest {
+
+    private static final String PLATFORM = AuxClasspathUtil.getPlatformClasspath().toString();
+
+    @TempDir
+    private Path tempDir;
+
+    @AfterEach
+    void disableReuse() {
+        TypeSystemCache.disableReuse();
+    }
+
+    @Test
+    void testNotReusedByDefault() {
+        try (TypeSystemCache.Lease first = TypeSystemCache.acquire(PLATFORM, null);
+             TypeSystemCache.Lease second = TypeSystemCache.acquire(PLATFORM, null)) {
+            assertNotSame(first.getTypeSystem(), second.getTypeSystem());
+        }
+    }
+
+    @Test
+    void testReusedForSameClasspath() {
+        TypeSystemCache.enableReuse(1);
+        TypeSystem ts;
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(PLATFORM, null)) {
+            ts = lease.getTypeSystem();
+            ts.getClassSymbol("java.util.ArrayList");
+        }
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(PLATFORM, null)) {
+            assertSame(ts, lease.getTypeSystem());
+        }
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() throws Exception {
+        TypeSystemCache.enableReuse(1);
+        String otherClasspath = Files.createDirectory(tempDir.resolve("classes")) + File.pathSeparator + PLATFORM;
+        TypeSystem ts;
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(PLATFORM, null)) {
+            ts = lease.getTypeSystem();
+        }
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(otherClasspath, null)) {
+            assertNotSame(ts, lease.getTypeSystem());
+        }
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(PLATFORM, null)) {
+            assertNotSame(ts, lease.getTypeSystem());
+        }
+    }
+
+    @Test
+    void testNotReusedWhenClasspathChanges() throws Exception {
+        TypeSystemCache.enableReuse(1);
+        Path classes = Files.createDirectory(tempDir.resolve("classes"));
+        String classpath = classes + File.pathSeparator + PLATFORM;
+        TypeSystem ts;
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(classpath, null)) {
+            ts = lease.getTypeSystem();
+        }
+        Files.write(classes.resolve("Foo.class"), new byte[] {1, 2, 3});
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(classpath, null)) {
+            assertNotSame(ts, lease.getTypeSystem());
+        }
+    }
+
+    @Test
+    void testNotReusedWhenTooManyClassesLoaded() {
+        TypeSystemCache.enableReuse(1, 1);
+        TypeSystem ts;
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(PLATFORM, null)) {
+            ts = lease.getTypeSystem();
+        }
+        try (TypeSystemCache.Lease lease = TypeSystemCache.acquire(PLATFORM, null)) {
+            assertNotSame(ts, lease.getTypeSystem());
+        }
+    }
+}
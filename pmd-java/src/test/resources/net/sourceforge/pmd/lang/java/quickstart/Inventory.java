@@ -0,0 +1,65 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.quickstart;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+// Sample source for QuickstartRulesetTest, it purposely contains violations
+public class Inventory {
+
+    private int unusedCount;
+    private final HashMap<String, Integer> stock = new HashMap<>();
+    private final Vector<String> names = new Vector<>();
+    private String[] labels;
+
+    public Inventory(String[] labels) {
+        this.labels = labels;
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+
+    public void add(String name, int count) {
+        int a, b;
+        Integer boxed = new Integer(count);
+        if (name.equals("none")) {
+            return;
+        }
+        stock.put(name, boxed);
+        names.add(name);
+    }
+
+    public void print(List<String> filter, int unused) {
+        int total = 0;
+        for (int i = 0; i < names.size(); i++) {
+            System.out.println(names.get(i));
+        }
+        if (filter.size() == 0) {
+            System.out.println("no filter");
+        }
+        total = stock.size();
+    }
+
+    public ArrayList<String> copy() {
+        try {
+            return new ArrayList<>(names);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public String toString() {
+        return "Inventory" + names;
+    }
+
+    private void neverCalled() {
+        // nothing
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.quickstart;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Hashtable;
+
+// Sample source for QuickstartRulesetTest, it purposely contains violations
+public interface Scheduler {
+
+    int MAX_TASKS = 10;
+
+    void schedule(Runnable task);
+
+    enum Priority { LOW, HIGH }
+
+    class Default implements Scheduler {
+
+        private final Hashtable<String, Runnable> tasks = new Hashtable<>();
+        private final String ip = "127.0.0.1";
+
+        @Override
+        public void schedule(Runnable task) {
+            tasks.put(task.toString(), task);
+        }
+
+        int weight(Priority priority) {
+            switch (priority) {
+            default:
+                return 0;
+            case HIGH:
+                return 2;
+            }
+        }
+
+        String read(String path) throws IOException {
+            Reader reader = new FileReader(path);
+            try {
+                return String.valueOf((char) reader.read());
+            } finally {
+                reader.close();
+            }
+        }
+
+        void spin() {
+            outer:
+            while (true) {
+                if (tasks.isEmpty()) {
+                    break;
+                }
+                for (int i = 0; i < 3; i++) {
+                    i = i + 1;
+                }
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.lang.kotlin;
 
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 
 import net.sourceforge.pmd.lang.AbstractPmdLanguageVersionHandler;
@@ -36,6 +37,10 @@ public class KotlinHandler extends AbstractPmdLanguageVersionHandler {
         this.parser = InternalApiBridge.newPmdKotlinParser(timeoutExecutor);
     }
 
+    void saveDfaSnapshot() throws IOException {
+        InternalApiBridge.saveDfaSnapshot(parser);
+    }
+
     @Override
     public XPathHandler getXPathHandler() {
         return XPATH_HANDLER;
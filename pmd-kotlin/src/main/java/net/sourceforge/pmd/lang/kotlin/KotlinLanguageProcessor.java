@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.lang.kotlin;
 
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -96,6 +97,12 @@ public class KotlinLanguageProcessor extends BatchLanguageProcessor<KotlinLangua
         boolean result = parseTimeoutExecutor.awaitTermination(getProperties().getParseTimeoutSeconds() * 2L, TimeUnit.SECONDS);
         if (!result) {
             LOG.error("Couldn't properly shutdown parseTimeoutExecutor - threads might still be running!");
+        } else {
+            try {
+                baseHandler.saveDfaSnapshot();
+            } catch (IOException e) {
+                LOG.warn("Couldn't save the parser DFA snapshot: {}", e.toString());
+            }
         }
         typeAwareness.clear();
         super.close();
@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.lang.kotlin;
 
+import static net.sourceforge.pmd.properties.NumericConstraints.above;
 import static net.sourceforge.pmd.properties.NumericConstraints.positive;
 
 import net.sourceforge.pmd.annotation.Experimental;
@@ -30,9 +31,36 @@ public class KotlinLanguageProperties extends JvmLanguagePropertyBundle {
                        .require(positive())
                        .build();
 
+    /**
+     * @since 7.27.0
+     * @experimental might be removed if the parser no longer needs it
+     */
+    @Experimental
+    public static final PropertyDescriptor<Integer> DFA_CACHE_MAX_STATES =
+        PropertyFactory.intProperty("xParserDfaCacheMaxStates")
+                       .desc("Maximum number of DFA states the parser keeps between the files it parses with the same DFA. "
+                                 + "Once exceeded, the DFA is dropped and rebuilt. Zero disables the reuse.")
+                       .defaultValue(20_000)
+                       .require(above(0))
+                       .build();
+
+    /**
+     * @since 7.27.0
+     * @experimental might be moved to pmd-core in the future
+     */
+    @Experimental
+    public static final PropertyDescriptor<String> DFA_SNAPSHOT_FILE =
+        PropertyFactory.stringProperty("xParserDfaSnapshotFile")
+                       .desc("File where the parser DFA is saved at the end of the analysis, and restored from at "
+                                 + "the start of the next one. Empty disables the snapshot.")
+                       .defaultValue("")
+                       .build();
+
     public KotlinLanguageProperties(Language language) {
         super(language);
         definePropertyDescriptor(PARSE_TIMEOUT_SECONDS);
+        definePropertyDescriptor(DFA_CACHE_MAX_STATES);
+        definePropertyDescriptor(DFA_SNAPSHOT_FILE);
     }
 
     /**
@@ -43,4 +71,22 @@ public class KotlinLanguageProperties extends JvmLanguagePropertyBundle {
     public int getParseTimeoutSeconds() {
         return getProperty(PARSE_TIMEOUT_SECONDS);
     }
+
+    /**
+     * @since 7.27.0
+     * @experimental See {@link #DFA_CACHE_MAX_STATES}
+     */
+    @Experimental
+    public int getDfaCacheMaxStates() {
+        return getProperty(DFA_CACHE_MAX_STATES);
+    }
+
+    /**
+     * @since 7.27.0
+     * @experimental See {@link #DFA_SNAPSHOT_FILE}
+     */
+    @Experimental
+    public String getDfaSnapshotFile() {
+        return getProperty(DFA_SNAPSHOT_FILE);
+    }
 }
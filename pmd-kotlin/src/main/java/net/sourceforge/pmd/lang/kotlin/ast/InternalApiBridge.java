@@ -4,7 +4,7 @@
 
 package net.sourceforge.pmd.lang.kotlin.ast;
 
-
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 
 import net.sourceforge.pmd.annotation.InternalApi;
@@ -28,4 +28,8 @@ public final class InternalApiBridge {
     public static PmdKotlinParser newPmdKotlinParser(ExecutorService timeoutExecutor) {
         return new PmdKotlinParser(timeoutExecutor);
     }
+
+    public static void saveDfaSnapshot(PmdKotlinParser parser) throws IOException {
+        parser.saveDfaSnapshot();
+    }
 }
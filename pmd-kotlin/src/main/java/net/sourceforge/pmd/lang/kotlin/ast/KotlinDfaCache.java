@@ -0,0 +1,75 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.kotlin.ast;
+
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+
+/**
+ * DFA arrays and prediction context cache of the Kotlin parser, which are
+ * reused by successive parses. {@link PmdKotlinParser} lends each cache to
+ * one parse at a time. Reusing them lets ANTLR skip most of the ATN
+ * simulation once the DFA is warm, while not sharing them between
+ * concurrent parses avoids the lock contention of the static
+ * {@link KotlinParser#_decisionToDFA}.
+ *
+ * <p>The DFA grows with every new input it sees. When it has more states
+ * than a budget after a parse, it is dropped and the next parse starts
+ * from a fresh one. A cache whose parse doesn't complete normally is
+ * not reused at all, as a cancelled parse may still be running and using it.
+ *
+ * <p>Instances are not thread-safe.
+ */
+final class KotlinDfaCache {
+
+    private DFA[] decisionToDfa;
+    private PredictionContextCache contextCache;
+
+    KotlinDfaCache() {
+        reset();
+    }
+
+    /**
+     * Returns a new simulator for the given parser, which uses the
+     * DFA of this cache.
+     */
+    InterruptibleParserATNSimulator newSimulator(KotlinParser parser) {
+        return new InterruptibleParserATNSimulator(parser, KotlinParser._ATN, decisionToDfa, contextCache);
+    }
+
+    /**
+     * Drops the DFA if it has more states than the given budget. A budget
+     * of zero means that the DFA is never reused.
+     *
+     * @return True if the DFA was dropped
+     */
+    boolean trimToBudget(int maxStates) {
+        if (getNumStates() > maxStates) {
+            reset();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops the DFA. Simulators created previously keep using the old one.
+     */
+    void reset() {
+        DFA[] dfa = new DFA[KotlinParser._ATN.getNumberOfDecisions()];
+        for (int i = 0; i < dfa.length; i++) {
+            dfa[i] = new DFA(KotlinParser._ATN.getDecisionState(i), i);
+        }
+        decisionToDfa = dfa;
+        contextCache = new PredictionContextCache();
+    }
+
+    int getNumStates() {
+        int states = 0;
+        for (DFA dfa : decisionToDfa) {
+            states += dfa.states.size();
+        }
+        return states;
+    }
+}
@@ -4,9 +4,13 @@
 
 package net.sourceforge.pmd.lang.kotlin.ast;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Deque;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -16,13 +20,13 @@ import java.util.concurrent.TimeoutException;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.atn.PredictionContextCache;
-import org.antlr.v4.runtime.dfa.DFA;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.lang.LanguagePropertyBundle;
 import net.sourceforge.pmd.lang.ast.ParseException;
 import net.sourceforge.pmd.lang.ast.impl.antlr4.AntlrBaseParserWithErrorHandling;
+import net.sourceforge.pmd.lang.ast.impl.antlr4.AntlrDfaSnapshot;
 import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.kotlin.KotlinHandler;
 import net.sourceforge.pmd.lang.kotlin.KotlinLanguageModule;
@@ -32,10 +36,17 @@ import net.sourceforge.pmd.lang.kotlin.ast.KotlinParser.KtKotlinFile;
 /**
  * Adapter for the KotlinParser.
  *
- * <p>Each parse injects a fresh {@link InterruptibleParserATNSimulator} with its own DFA arrays
- * and {@link PredictionContextCache}. Using per-parse instances avoids lock contention when
- * PMD parses files in parallel, which would otherwise cause severe performance degradation due
- * to the complexity of the Kotlin grammar.
+ * <p>Each parse injects a fresh {@link InterruptibleParserATNSimulator}, whose DFA arrays
+ * and {@link PredictionContextCache} are borrowed from a pool of {@link KotlinDfaCache}s, and
+ * returned to it after the parse. A cache is only used by one parse at a time, which avoids lock
+ * contention when PMD parses files in parallel, which would otherwise cause severe performance
+ * degradation due to the complexity of the Kotlin grammar. The pool doesn't depend on threads,
+ * so caches are reused even if every file is analyzed on a new thread. The size of each DFA is bounded by
+ * {@link net.sourceforge.pmd.lang.kotlin.KotlinLanguageProperties#DFA_CACHE_MAX_STATES}.
+ * If {@link net.sourceforge.pmd.lang.kotlin.KotlinLanguageProperties#DFA_SNAPSHOT_FILE} is set,
+ * new DFAs are initialized from an {@link AntlrDfaSnapshot} saved by a previous run, until a DFA
+ * restored from it exceeds the budget. After that, new DFAs start empty, as restoring the snapshot
+ * into every DFA that replaces a dropped one would decode it again for almost every parse.
  *
  * <p>A per-file parse timeout acts as a safety net. Files exceeding the timeout are skipped with a processing
  * error. The timeout is configured via {@link net.sourceforge.pmd.lang.kotlin.KotlinLanguageProperties#PARSE_TIMEOUT_SECONDS}.
@@ -48,6 +59,13 @@ public final class PmdKotlinParser extends AntlrBaseParserWithErrorHandling<Kotl
 
     private final ExecutorService timeoutExecutor;
 
+    // Caches that are not used by a parse. The pool is not static, so that the DFAs are
+    // released with the parser. It is used as a stack, so that the warmest cache is reused.
+    private final Deque<KotlinDfaCache> idleDfaCaches = new ConcurrentLinkedDeque<>();
+    private AntlrDfaSnapshot dfaSnapshot;
+    private boolean dfaSnapshotInitialized;
+    private volatile boolean restoreDfaSnapshot = true;
+
     /**
      * @deprecated Since 7.25.0. Don't create a parser directly. Use {@link KotlinLanguageModule#getInstance()},
      *             {@link KotlinLanguageModule#createProcessor(LanguagePropertyBundle)},
@@ -64,14 +82,79 @@ public final class PmdKotlinParser extends AntlrBaseParserWithErrorHandling<Kotl
 
     @Override
     protected KtKotlinFile parse(final KotlinParser kotlinParser, ParserTask task) {
-        kotlinParser.setInterpreter(freshSimulator(kotlinParser));
-
-        FileId fileId = task.getFileId();
-        String fileName = fileId.getOriginalPath();
         // Note: KotlinLanguageProcessor will be closed by LanguageProcessorRegistry as part of PmdAnalysis
         KotlinLanguageProcessor processor = (KotlinLanguageProcessor) task.getLanguageProcessor(); //NOPMD: CloseResource
         int timeoutSeconds = processor.getProperties().getParseTimeoutSeconds();
 
+        KotlinDfaCache cache = idleDfaCaches.pollFirst();
+        if (cache == null) {
+            cache = new KotlinDfaCache();
+        }
+        kotlinParser.setInterpreter(cache.newSimulator(kotlinParser));
+        AntlrDfaSnapshot snapshot = getDfaSnapshot(processor);
+        if (snapshot != null && restoreDfaSnapshot) {
+            snapshot.restore(kotlinParser);
+        }
+        boolean completed = false;
+        try {
+            KtKotlinFile result = parseWithTimeout(kotlinParser, task, timeoutSeconds);
+            completed = true;
+            return result;
+        } finally {
+            boolean dropped;
+            if (completed) {
+                dropped = cache.trimToBudget(processor.getProperties().getDfaCacheMaxStates());
+                idleDfaCaches.push(cache);
+                if (dropped) {
+                    // the snapshot leaves too little room in the budget
+                    restoreDfaSnapshot = false;
+                }
+            } else {
+                // the parse may still be running and using the DFA, don't return the cache
+                dropped = true;
+            }
+            if (dropped && snapshot != null) {
+                snapshot.forget(kotlinParser);
+            }
+        }
+    }
+
+    private synchronized AntlrDfaSnapshot getDfaSnapshot(KotlinLanguageProcessor processor) {
+        if (!dfaSnapshotInitialized) {
+            dfaSnapshotInitialized = true;
+            String file = processor.getProperties().getDfaSnapshotFile();
+            if (!file.isEmpty()) {
+                dfaSnapshot = new AntlrDfaSnapshot(Paths.get(file));
+            }
+        }
+        return dfaSnapshot;
+    }
+
+    /**
+     * Returns whether new DFAs are still initialized from the snapshot.
+     */
+    boolean restoresDfaSnapshot() {
+        return restoreDfaSnapshot;
+    }
+
+    /**
+     * Saves the DFA snapshot, if one is configured. This must be called
+     * once no parse is running anymore.
+     */
+    void saveDfaSnapshot() throws IOException {
+        AntlrDfaSnapshot snapshot;
+        synchronized (this) {
+            snapshot = dfaSnapshot;
+        }
+        if (snapshot != null) {
+            snapshot.save();
+        }
+    }
+
+    private KtKotlinFile parseWithTimeout(final KotlinParser kotlinParser, ParserTask task, int timeoutSeconds) {
+        FileId fileId = task.getFileId();
+        String fileName = fileId.getOriginalPath();
+
         LOG.debug("Parsing Kotlin file {} (timeout: {}s)", fileName, timeoutSeconds);
 
         Callable<KtKotlinFile> callable = () -> kotlinParser.kotlinFile().makeAstInfo(task);
@@ -105,18 +188,6 @@ public final class PmdKotlinParser extends AntlrBaseParserWithErrorHandling<Kotl
         }
     }
 
-    // Note: Not using the static KotlinParser._decisionToDFA and KotlinParser._sharedContextCache
-    // as this turned out to introduce thread contention. Needed unshared DFA and contextCache per
-    // file/simulator to prevent this.
-    private static InterruptibleParserATNSimulator freshSimulator(KotlinParser parser) {
-        DFA[] decisionToDfa = new DFA[KotlinParser._ATN.getNumberOfDecisions()];
-        for (int i = 0; i < decisionToDfa.length; i++) {
-            decisionToDfa[i] = new DFA(KotlinParser._ATN.getDecisionState(i), i);
-        }
-        return new InterruptibleParserATNSimulator(
-                parser, KotlinParser._ATN, decisionToDfa, new PredictionContextCache());
-    }
-
     private static KtKotlinFile unwrapExecutionException(ExecutionException e, FileId fileId) {
         Throwable cause = e.getCause();
         if (cause instanceof ParseException) {
@@ -0,0 +1,46 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.kotlin.ast;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+
+class KotlinDfaCacheTest {
+
+    private static final String CODE = "class Foo { fun bar(a: Int): Int = a + 1 }";
+
+    @Test
+    void testDfaIsReusedWithinBudget() {
+        KotlinDfaCache cache = new KotlinDfaCache();
+        parse(cache, CODE);
+        int states = cache.getNumStates();
+        assertTrue(states > 0);
+
+        cache.trimToBudget(states);
+        parse(cache, CODE);
+        // the DFA is warm, the same input doesn't add states
+        assertEquals(states, cache.getNumStates());
+    }
+
+    @Test
+    void testDfaIsDroppedWhenBudgetIsExceeded() {
+        KotlinDfaCache cache = new KotlinDfaCache();
+        parse(cache, CODE);
+        int states = cache.getNumStates();
+
+        cache.trimToBudget(states - 1);
+        assertEquals(0, cache.getNumStates());
+    }
+
+    private static void parse(KotlinDfaCache cache, String code) {
+        KotlinParser parser = new KotlinParser(new CommonTokenStream(new KotlinLexer(CharStreams.fromString(code))));
+        parser.setInterpreter(cache.newSimulator(parser));
+        parser.kotlinFile();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.kotlin.ast;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.lang.LanguageProcessor;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.ast.Parser.ParserTask;
+import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.kotlin.KotlinLanguageModule;
+import net.sourceforge.pmd.lang.kotlin.KotlinLanguageProperties;
+
+class PmdKotlinParserDfaSnapshotTest {
+
+    private static final String CODE = "class Foo { fun bar(a: Int): Int = a + 1 }";
+    private static final String OTHER_CODE = "object Bar { val x = listOf(1, 2).map { it * 2 }.filter { it > 1 } }";
+
+    @TempDir
+    private Path tempDir;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testSnapshotIsNotRestoredAgainOnceTheBudgetIsExceeded() throws Exception {
+        Path file = tempDir.resolve("kotlin.dfa");
+        try (LanguageProcessor processor = newProcessor(file, 100_000)) {
+            PmdKotlinParser parser = new PmdKotlinParser(executor);
+            parser.parse(task(processor, CODE));
+            parser.saveDfaSnapshot();
+        }
+        assertTrue(Files.exists(file));
+
+        // the snapshot fills the whole budget, new inputs exceed it
+        try (LanguageProcessor processor = newProcessor(file, 1)) {
+            PmdKotlinParser parser = new PmdKotlinParser(executor);
+            assertTrue(parser.restoresDfaSnapshot());
+            parser.parse(task(processor, OTHER_CODE));
+            assertFalse(parser.restoresDfaSnapshot());
+            parser.parse(task(processor, CODE));
+            assertFalse(parser.restoresDfaSnapshot());
+        }
+    }
+
+    @Test
+    void testSnapshotIsRestoredWithinBudget() throws Exception {
+        Path file = tempDir.resolve("kotlin.dfa");
+        try (LanguageProcessor processor = newProcessor(file, 100_000)) {
+            PmdKotlinParser parser = new PmdKotlinParser(executor);
+            parser.parse(task(processor, CODE));
+            parser.saveDfaSnapshot();
+
+            parser = new PmdKotlinParser(executor);
+            parser.parse(task(processor, CODE));
+            parser.parse(task(processor, OTHER_CODE));
+            assertTrue(parser.restoresDfaSnapshot());
+        }
+    }
+
+    private static LanguageProcessor newProcessor(Path snapshotFile, int maxStates) {
+        KotlinLanguageModule kotlin = KotlinLanguageModule.getInstance();
+        KotlinLanguageProperties properties = (KotlinLanguageProperties) kotlin.newPropertyBundle();
+        properties.setProperty(KotlinLanguageProperties.DFA_SNAPSHOT_FILE, snapshotFile.toString());
+        properties.setProperty(KotlinLanguageProperties.DFA_CACHE_MAX_STATES, maxStates);
+        return kotlin.createProcessor(properties);
+    }
+
+    private static ParserTask task(LanguageProcessor processor, String code) {
+        TextDocument doc = TextDocument.readOnlyString(code, FileId.fromPathLikeString("Foo.kt"),
+                                                       KotlinLanguageModule.getInstance().getDefaultVersion());
+        return new ParserTask(doc, SemanticErrorReporter.noop(), LanguageProcessorRegistry.singleton(processor));
+    }
+}